@@ -17,13 +17,8 @@
 package com.sk89q.jnbt;
 
 import java.io.Closeable;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 /**
  * This class reads <strong>NBT</strong>, or <strong>Named Binary Tag</strong>
@@ -38,7 +33,7 @@ import java.util.Map;
  */
 public final class NBTInputStream implements Closeable {
 
-    private final DataInputStream is;
+    private final NBTStreamReader reader;
 
     /**
      * Creates a new {@code NBTInputStream}, which will source its data
@@ -48,122 +43,33 @@ public final class NBTInputStream implements Closeable {
      * @throws IOException if an I/O error occurs
      */
     public NBTInputStream(InputStream is) throws IOException {
-        this.is = new DataInputStream(is);
+        this.reader = new NBTStreamReader(is);
     }
 
     /**
-     * Reads an NBT tag from the stream.
+     * Get a reader that reads the same stream one tag at a time, which
+     * can skip tags and read arrays without building the whole tree.
      * 
-     * @return The tag that was read.
-     * @throws IOException if an I/O error occurs.
+     * @return the stream reader
      */
-    public NamedTag readNamedTag() throws IOException {
-        return readNamedTag(0);
+    public NBTStreamReader getStreamReader() {
+        return reader;
     }
 
     /**
-     * Reads an NBT from the stream.
+     * Reads an NBT tag from the stream.
      * 
-     * @param depth the depth of this tag
      * @return The tag that was read.
      * @throws IOException if an I/O error occurs.
      */
-    private NamedTag readNamedTag(int depth) throws IOException {
-        int type = is.readByte() & 0xFF;
-
-        String name;
-        if (type != NBTConstants.TYPE_END) {
-            int nameLength = is.readShort() & 0xFFFF;
-            byte[] nameBytes = new byte[nameLength];
-            is.readFully(nameBytes);
-            name = new String(nameBytes, NBTConstants.CHARSET);
-        } else {
-            name = "";
-        }
-
-        return new NamedTag(name, readTagPayload(type, depth));
-    }
-
-    /**
-     * Reads the payload of a tag given the type.
-     * 
-     * @param type  the type
-     * @param depth the depth
-     * @return the tag
-     * @throws IOException if an I/O error occurs.
-     */
-    private Tag readTagPayload(int type, int depth) throws IOException {
-        switch (type) {
-            case NBTConstants.TYPE_END:
-                if (depth == 0) {
-                    throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
-                } else {
-                    return new EndTag();
-                }
-            case NBTConstants.TYPE_BYTE:
-                return new ByteTag(is.readByte());
-            case NBTConstants.TYPE_SHORT:
-                return new ShortTag(is.readShort());
-            case NBTConstants.TYPE_INT:
-                return new IntTag(is.readInt());
-            case NBTConstants.TYPE_LONG:
-                return new LongTag(is.readLong());
-            case NBTConstants.TYPE_FLOAT:
-                return new FloatTag(is.readFloat());
-            case NBTConstants.TYPE_DOUBLE:
-                return new DoubleTag(is.readDouble());
-            case NBTConstants.TYPE_BYTE_ARRAY:
-                int length = is.readInt();
-                byte[] bytes = new byte[length];
-                is.readFully(bytes);
-                return new ByteArrayTag(bytes);
-            case NBTConstants.TYPE_STRING:
-                length = is.readShort();
-                bytes = new byte[length];
-                is.readFully(bytes);
-                return new StringTag(new String(bytes, NBTConstants.CHARSET));
-            case NBTConstants.TYPE_LIST:
-                int childType = is.readByte();
-                length = is.readInt();
-
-                List<Tag> tagList = new ArrayList<Tag>();
-                for (int i = 0; i < length; ++i) {
-                    Tag tag = readTagPayload(childType, depth + 1);
-                    if (tag instanceof EndTag) {
-                        throw new IOException("TAG_End not permitted in a list.");
-                    }
-                    tagList.add(tag);
-                }
-
-                return new ListTag(NBTUtils.getTypeClass(childType), tagList);
-            case NBTConstants.TYPE_COMPOUND:
-                Map<String, Tag> tagMap = new HashMap<String, Tag>();
-                while (true) {
-                    NamedTag namedTag = readNamedTag(depth + 1);
-                    Tag tag = namedTag.getTag();
-                    if (tag instanceof EndTag) {
-                        break;
-                    } else {
-                        tagMap.put(namedTag.getName(), tag);
-                    }
-                }
-
-                return new CompoundTag(tagMap);
-            case NBTConstants.TYPE_INT_ARRAY:
-                length = is.readInt();
-                int[] data = new int[length];
-                for (int i = 0; i < length; i++) {
-                    data[i] = is.readInt();
-                }
-                return new IntArrayTag(data);
-            default:
-                throw new IOException("Invalid tag type: " + type + ".");
-        }
+    public NamedTag readNamedTag() throws IOException {
+        reader.next();
+        return new NamedTag(reader.getName(), reader.readTag());
     }
 
     @Override
     public void close() throws IOException {
-        is.close();
+        reader.close();
     }
 
 }
@@ -0,0 +1,495 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.jnbt;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads <strong>NBT</strong> streams one tag at a time, without building
+ * the tree of {@code Tag} objects unless asked to.
+ *
+ * <p>
+ * The reader works like a cursor. {@link #next()} reads the type and name
+ * of the next tag, either the root tag or the next entry of the compound
+ * that was entered last. The value is then read with one of the
+ * {@code read} methods, entered with {@link #beginCompound()} or
+ * {@link #beginList()}, or skipped with {@link #skip()}. A value that is
+ * not read is skipped by the next call to {@link #next()}, so subtrees
+ * that are of no interest never become objects. Byte and int arrays are
+ * returned as they are read, without a tag around them.
+ * </p>
+ *
+ * <p>
+ * Inside a list, elements have no header: each {@code read} call consumes
+ * the next element until the list is left with {@link #endList()}.
+ * </p>
+ */
+public final class NBTStreamReader implements Closeable {
+
+    private final DataInputStream is;
+    private final List<Frame> frames = new ArrayList<Frame>();
+    private int type = -1;
+    private String name = "";
+    private boolean pending;
+
+    /**
+     * Create a new reader.
+     *
+     * @param is the input stream
+     */
+    public NBTStreamReader(InputStream is) {
+        checkNotNull(is);
+        this.is = is instanceof DataInputStream ? (DataInputStream) is : new DataInputStream(is);
+    }
+
+    /**
+     * Read the header of the next tag, skipping the value of the current
+     * tag if it was not read.
+     *
+     * <p>
+     * At the end of a compound, {@link NBTConstants#TYPE_END} is returned
+     * and the compound is left.
+     * </p>
+     *
+     * @return the type of the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public int next() throws IOException {
+        if (pending) {
+            skip();
+        }
+        Frame frame = peek();
+        if (frame != null && frame.list) {
+            throw new IllegalStateException("Elements of a list have no header");
+        }
+
+        type = is.readByte() & 0xFF;
+        if (type == NBTConstants.TYPE_END) {
+            if (frame == null) {
+                throw new IOException("TAG_End found without a TAG_Compound/TAG_List tag preceding it.");
+            }
+            frames.remove(frames.size() - 1);
+            name = "";
+            return type;
+        }
+
+        name = readName();
+        pending = true;
+        return type;
+    }
+
+    /**
+     * Get the type of the tag whose header was read last.
+     *
+     * @return the type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Get the name of the tag whose header was read last.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Read the current value as a byte.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public byte readByte() throws IOException {
+        consume(NBTConstants.TYPE_BYTE);
+        return is.readByte();
+    }
+
+    /**
+     * Read the current value as a short.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public short readShort() throws IOException {
+        consume(NBTConstants.TYPE_SHORT);
+        return is.readShort();
+    }
+
+    /**
+     * Read the current value as an int.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public int readInt() throws IOException {
+        consume(NBTConstants.TYPE_INT);
+        return is.readInt();
+    }
+
+    /**
+     * Read the current value as a long.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public long readLong() throws IOException {
+        consume(NBTConstants.TYPE_LONG);
+        return is.readLong();
+    }
+
+    /**
+     * Read the current value as a float.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public float readFloat() throws IOException {
+        consume(NBTConstants.TYPE_FLOAT);
+        return is.readFloat();
+    }
+
+    /**
+     * Read the current value as a double.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public double readDouble() throws IOException {
+        consume(NBTConstants.TYPE_DOUBLE);
+        return is.readDouble();
+    }
+
+    /**
+     * Read the current value as a string.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public String readString() throws IOException {
+        consume(NBTConstants.TYPE_STRING);
+        return readName();
+    }
+
+    /**
+     * Read the current value as a byte array.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public byte[] readByteArray() throws IOException {
+        consume(NBTConstants.TYPE_BYTE_ARRAY);
+        byte[] bytes = new byte[readLength()];
+        is.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read the current value as an int array.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or the value is of another type
+     */
+    public int[] readIntArray() throws IOException {
+        consume(NBTConstants.TYPE_INT_ARRAY);
+        int[] data = new int[readLength()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = is.readInt();
+        }
+        return data;
+    }
+
+    /**
+     * Enter the current compound, so that {@link #next()} reads its
+     * entries.
+     *
+     * @throws IOException if an I/O error occurs or the tag is not a compound
+     */
+    public void beginCompound() throws IOException {
+        consume(NBTConstants.TYPE_COMPOUND);
+        frames.add(new Frame(false, NBTConstants.TYPE_END, 0));
+    }
+
+    /**
+     * Enter the current list, so that the {@code read} methods read its
+     * elements.
+     *
+     * @return the number of elements
+     * @throws IOException if an I/O error occurs or the tag is not a list
+     */
+    public int beginList() throws IOException {
+        consume(NBTConstants.TYPE_LIST);
+        int elementType = is.readByte() & 0xFF;
+        int length = readLength();
+        if (elementType == NBTConstants.TYPE_END && length > 0) {
+            throw new IOException("TAG_End not permitted in a list.");
+        }
+        frames.add(new Frame(true, elementType, length));
+        return length;
+    }
+
+    /**
+     * Get the type of the elements of the list that was entered last.
+     *
+     * @return the type
+     */
+    public int getElementType() {
+        Frame frame = peek();
+        if (frame == null || !frame.list) {
+            throw new IllegalStateException("Not in a list");
+        }
+        return frame.elementType;
+    }
+
+    /**
+     * Leave the list that was entered last, skipping any elements that
+     * were not read.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void endList() throws IOException {
+        Frame frame = peek();
+        if (frame == null || !frame.list) {
+            throw new IllegalStateException("Not in a list");
+        }
+        while (frame.remaining > 0) {
+            skip();
+        }
+        frames.remove(frames.size() - 1);
+    }
+
+    /**
+     * Read the current value, with all of its children, as a tag.
+     *
+     * @return the tag
+     * @throws IOException if an I/O error occurs
+     */
+    public Tag readTag() throws IOException {
+        return readPayload(consume(-1));
+    }
+
+    /**
+     * Skip the current value without creating any objects for it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void skip() throws IOException {
+        skipPayload(consume(-1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        is.close();
+    }
+
+    private Frame peek() {
+        return frames.isEmpty() ? null : frames.get(frames.size() - 1);
+    }
+
+    /**
+     * Start reading the current value.
+     *
+     * @param expected the expected type, or -1 to accept any type
+     * @return the type of the value
+     * @throws IOException if the value is not of the expected type
+     */
+    private int consume(int expected) throws IOException {
+        int actual;
+        Frame frame = peek();
+        if (frame != null && frame.list) {
+            if (frame.remaining <= 0) {
+                throw new IllegalStateException("No elements left in the list");
+            }
+            frame.remaining--;
+            actual = frame.elementType;
+        } else {
+            if (!pending) {
+                throw new IllegalStateException("No value to read, call next() first");
+            }
+            pending = false;
+            actual = type;
+        }
+
+        if (expected >= 0 && actual != expected) {
+            throw new IOException(
+                (name.isEmpty() ? "Tag" : name) + " is of type "
+                    + getTypeName(actual)
+                    + ", expected "
+                    + getTypeName(expected));
+        }
+        return actual;
+    }
+
+    private static String getTypeName(int type) {
+        try {
+            return NBTUtils.getTypeName(NBTUtils.getTypeClass(type));
+        } catch (IllegalArgumentException e) {
+            return "unknown type " + type;
+        }
+    }
+
+    private String readName() throws IOException {
+        byte[] bytes = new byte[is.readUnsignedShort()];
+        is.readFully(bytes);
+        return new String(bytes, NBTConstants.CHARSET);
+    }
+
+    private int readLength() throws IOException {
+        int length = is.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length: " + length);
+        }
+        return length;
+    }
+
+    private Tag readPayload(int type) throws IOException {
+        switch (type) {
+            case NBTConstants.TYPE_BYTE:
+                return new ByteTag(is.readByte());
+            case NBTConstants.TYPE_SHORT:
+                return new ShortTag(is.readShort());
+            case NBTConstants.TYPE_INT:
+                return new IntTag(is.readInt());
+            case NBTConstants.TYPE_LONG:
+                return new LongTag(is.readLong());
+            case NBTConstants.TYPE_FLOAT:
+                return new FloatTag(is.readFloat());
+            case NBTConstants.TYPE_DOUBLE:
+                return new DoubleTag(is.readDouble());
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                byte[] bytes = new byte[readLength()];
+                is.readFully(bytes);
+                return new ByteArrayTag(bytes);
+            case NBTConstants.TYPE_STRING:
+                return new StringTag(readName());
+            case NBTConstants.TYPE_LIST:
+                int childType = is.readByte() & 0xFF;
+                int length = readLength();
+                if (childType == NBTConstants.TYPE_END && length > 0) {
+                    throw new IOException("TAG_End not permitted in a list.");
+                }
+                List<Tag> tagList = new ArrayList<Tag>(length);
+                for (int i = 0; i < length; ++i) {
+                    tagList.add(readPayload(childType));
+                }
+                return new ListTag(NBTUtils.getTypeClass(childType), tagList);
+            case NBTConstants.TYPE_COMPOUND:
+                Map<String, Tag> tagMap = new HashMap<String, Tag>();
+                int entryType;
+                while ((entryType = is.readByte() & 0xFF) != NBTConstants.TYPE_END) {
+                    String entryName = readName();
+                    tagMap.put(entryName, readPayload(entryType));
+                }
+                return new CompoundTag(tagMap);
+            case NBTConstants.TYPE_INT_ARRAY:
+                int[] data = new int[readLength()];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = is.readInt();
+                }
+                return new IntArrayTag(data);
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    private void skipPayload(int type) throws IOException {
+        switch (type) {
+            case NBTConstants.TYPE_BYTE:
+                skipFully(1);
+                break;
+            case NBTConstants.TYPE_SHORT:
+                skipFully(2);
+                break;
+            case NBTConstants.TYPE_INT:
+            case NBTConstants.TYPE_FLOAT:
+                skipFully(4);
+                break;
+            case NBTConstants.TYPE_LONG:
+            case NBTConstants.TYPE_DOUBLE:
+                skipFully(8);
+                break;
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                skipFully(readLength());
+                break;
+            case NBTConstants.TYPE_STRING:
+                skipFully(is.readUnsignedShort());
+                break;
+            case NBTConstants.TYPE_LIST:
+                int childType = is.readByte() & 0xFF;
+                int length = readLength();
+                for (int i = 0; i < length; ++i) {
+                    skipPayload(childType);
+                }
+                break;
+            case NBTConstants.TYPE_COMPOUND:
+                int entryType;
+                while ((entryType = is.readByte() & 0xFF) != NBTConstants.TYPE_END) {
+                    skipFully(is.readUnsignedShort());
+                    skipPayload(entryType);
+                }
+                break;
+            case NBTConstants.TYPE_INT_ARRAY:
+                skipFully(readLength() * 4L);
+                break;
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = is.skip(count);
+            if (skipped <= 0) {
+                // skip() may give up early, so find out whether the stream has ended
+                if (is.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * A compound or list that was entered.
+     */
+    private static class Frame {
+
+        private final boolean list;
+        private final int elementType;
+        private int remaining;
+
+        private Frame(boolean list, int elementType, int remaining) {
+            this.list = list;
+            this.elementType = elementType;
+            this.remaining = remaining;
+        }
+    }
+
+}
@@ -18,8 +18,14 @@ package com.sk89q.jnbt;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.world.storage.InvalidFormatException;
 
@@ -182,4 +188,53 @@ public final class NBTUtils {
         return expected.cast(tag);
     }
 
+    /**
+     * Return whether two tags hold the same values, comparing the tags
+     * inside of lists and compound tags the same way.
+     *
+     * @param a a tag, or null
+     * @param b another tag, or null
+     * @return true if the tags are equal
+     */
+    public static boolean equals(@Nullable Tag a, @Nullable Tag b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a.getClass() != b.getClass()) {
+            return false;
+        }
+
+        if (a instanceof ByteArrayTag) {
+            return Arrays.equals(((ByteArrayTag) a).getValue(), ((ByteArrayTag) b).getValue());
+        } else if (a instanceof IntArrayTag) {
+            return Arrays.equals(((IntArrayTag) a).getValue(), ((IntArrayTag) b).getValue());
+        } else if (a instanceof ListTag) {
+            List<Tag> first = ((ListTag) a).getValue();
+            List<Tag> second = ((ListTag) b).getValue();
+            if (first.size() != second.size()) {
+                return false;
+            }
+            for (int i = 0; i < first.size(); i++) {
+                if (!equals(first.get(i), second.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (a instanceof CompoundTag) {
+            Map<String, Tag> first = ((CompoundTag) a).getValue();
+            Map<String, Tag> second = ((CompoundTag) b).getValue();
+            if (first.size() != second.size()) {
+                return false;
+            }
+            for (Map.Entry<String, Tag> entry : first.entrySet()) {
+                if (!equals(entry.getValue(), second.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            return Objects.equal(a.getValue(), b.getValue());
+        }
+    }
+
 }
@@ -22,6 +22,7 @@ import static com.sk89q.worldedit.regions.Regions.asFlatRegion;
 import static com.sk89q.worldedit.regions.Regions.maximumBlockY;
 import static com.sk89q.worldedit.regions.Regions.minimumBlockY;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -41,11 +42,16 @@ import com.sk89q.worldedit.blocks.BlockType;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.ChangeSetExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.MaskingExtent;
 import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.extent.budget.BlockBudget;
+import com.sk89q.worldedit.extent.budget.BlockBudgetExtent;
 import com.sk89q.worldedit.extent.buffer.ForgetfulExtentBuffer;
+import com.sk89q.worldedit.extent.cache.ChunkCacheExtent;
 import com.sk89q.worldedit.extent.cache.LastAccessExtentCache;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
@@ -77,6 +83,7 @@ import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.OperationQueue;
 import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.function.pattern.BlockPattern;
 import com.sk89q.worldedit.function.pattern.Patterns;
 import com.sk89q.worldedit.function.util.RegionOffset;
@@ -89,6 +96,7 @@ import com.sk89q.worldedit.history.UndoContext;
 import com.sk89q.worldedit.history.change.BlockChange;
 import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
 import com.sk89q.worldedit.internal.expression.runtime.RValue;
@@ -112,6 +120,7 @@ import com.sk89q.worldedit.util.Countable;
 import com.sk89q.worldedit.util.TreeGenerator;
 import com.sk89q.worldedit.util.collection.DoubleArrayList;
 import com.sk89q.worldedit.util.eventbus.EventBus;
+import com.sk89q.worldedit.world.BlockReadCache;
 import com.sk89q.worldedit.world.NullWorld;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.biome.BaseBiome;
@@ -143,12 +152,15 @@ public class EditSession implements Extent {
 
     @SuppressWarnings("ProtectedField")
     protected final World world;
-    private final ChangeSet changeSet = new BlockOptimizedHistory();
+    private final @Nullable Actor actor;
+    private final ChangeSet changeSet;
+    private final BlockBudget blockBudget = new BlockBudget();
 
     private @Nullable FastModeExtent fastModeExtent;
+    private @Nullable BlockBudgetExtent budgetExtent;
     private final SurvivalModeExtent survivalExtent;
     private @Nullable ChunkLoadingExtent chunkLoadingExtent;
-    private @Nullable LastAccessExtentCache cacheExtent;
+    private @Nullable AbstractDelegateExtent cacheExtent;
     private @Nullable BlockQuirkExtent quirkExtent;
     private @Nullable DataValidatorExtent validator;
     private final BlockBagExtent blockBagExtent;
@@ -161,6 +173,8 @@ public class EditSession implements Extent {
     private final Extent bypassHistory;
     private final Extent bypassNone;
 
+    private final List<Operation> deferredOperations = new ArrayList<Operation>();
+
     @SuppressWarnings("deprecation")
     private Mask oldMask;
 
@@ -196,6 +210,25 @@ public class EditSession implements Extent {
             new EditSessionEvent(world, null, maxBlocks, null));
     }
 
+    /**
+     * Create the change set for a new edit session, spilling history to the
+     * actor's history directory if that is enabled.
+     *
+     * @param actor the actor, or null if there is none
+     * @return a change set
+     */
+    private static ChangeSet createChangeSet(@Nullable Actor actor) {
+        if (actor != null) {
+            WorldEdit worldEdit = WorldEdit.getInstance();
+            int threshold = worldEdit.getConfiguration().historySpillThreshold;
+            if (threshold > 0) {
+                File directory = worldEdit.getWorkingDirectoryFile("history" + File.separator + actor.getUniqueId());
+                return new DiskSpillingHistory(directory, threshold);
+            }
+        }
+        return new BlockOptimizedHistory();
+    }
+
     /**
      * Construct the object with a maximum number of blocks and a block bag.
      *
@@ -211,16 +244,24 @@ public class EditSession implements Extent {
         checkNotNull(event);
 
         this.world = world;
+        this.actor = event.getActor();
+        this.changeSet = createChangeSet(actor);
 
         if (world != null) {
             Extent extent;
 
             // These extents are ALWAYS used
             extent = fastModeExtent = new FastModeExtent(world, false);
+            extent = budgetExtent = new BlockBudgetExtent(extent, blockBudget);
             extent = survivalExtent = new SurvivalModeExtent(extent, world);
             extent = quirkExtent = new BlockQuirkExtent(extent, world);
             extent = chunkLoadingExtent = new ChunkLoadingExtent(extent, world);
-            extent = cacheExtent = new LastAccessExtentCache(extent);
+            BlockReadCache readCache = world.createReadCache();
+            if (readCache != null) {
+                extent = cacheExtent = new ChunkCacheExtent(extent, readCache);
+            } else {
+                extent = cacheExtent = new LastAccessExtentCache(extent);
+            }
             extent = wrapExtent(extent, eventBus, event, Stage.BEFORE_CHANGE);
             extent = validator = new DataValidatorExtent(extent, world);
             extent = blockBagExtent = new BlockBagExtent(extent, blockBag);
@@ -258,6 +299,15 @@ public class EditSession implements Extent {
         return event.getExtent();
     }
 
+    /**
+     * Get the actor that the edit session was created for.
+     *
+     * @return the actor, or null if there is none
+     */
+    public @Nullable Actor getActor() {
+        return actor;
+    }
+
     /**
      * Get the world.
      *
@@ -267,6 +317,15 @@ public class EditSession implements Extent {
         return world;
     }
 
+    /**
+     * Get the budget that block writes to the world are charged against.
+     *
+     * @return the block budget
+     */
+    public BlockBudget getBlockBudget() {
+        return blockBudget;
+    }
+
     /**
      * Get the underlying {@link ChangeSet}.
      *
@@ -459,6 +518,17 @@ public class EditSession implements Extent {
         return world.getBlock(position);
     }
 
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        return world.getBlockState(x, y, z);
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        return world.getNbtBlock(x, y, z);
+    }
+
     /**
      * Get a block type at the given position.
      *
@@ -594,6 +664,17 @@ public class EditSession implements Extent {
         }
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws MaxChangedBlocksException {
+        try {
+            return bypassNone.setBlockState(x, y, z, state);
+        } catch (MaxChangedBlocksException e) {
+            throw e;
+        } catch (WorldEditException e) {
+            throw new RuntimeException("Unexpected exception", e);
+        }
+    }
+
     /**
      * Sets the block at a position, subject to both history and block re-ordering.
      *
@@ -734,9 +815,57 @@ public class EditSession implements Extent {
         Operations.completeBlindly(commit());
     }
 
+    /**
+     * Queue an operation to be completed as part of {@link #commit()}
+     * rather than immediately.
+     *
+     * <p>
+     * This allows large operations to be spread over several server ticks
+     * by whatever completes the commit operation. Queued operations run in
+     * the order that they were added, before the extents are flushed.
+     * </p>
+     *
+     * @param operation the operation
+     */
+    public void enqueue(Operation operation) {
+        checkNotNull(operation);
+        deferredOperations.add(operation);
+    }
+
+    /**
+     * Return whether there are operations waiting for {@link #commit()}.
+     *
+     * @return true if there are queued operations
+     */
+    public boolean hasQueuedOperations() {
+        return !deferredOperations.isEmpty();
+    }
+
     @Override
     public @Nullable Operation commit() {
-        return bypassNone.commit();
+        if (deferredOperations.isEmpty()) {
+            return bypassNone.commit();
+        }
+
+        OperationQueue queue = new OperationQueue(new ArrayList<Operation>(deferredOperations));
+        deferredOperations.clear();
+
+        // The extents can only be committed after the queued operations have
+        // filled their buffers
+        queue.offer(new Operation() {
+
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                return bypassNone.commit();
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public void addStatusMessages(List<String> messages) {}
+        });
+        return queue;
     }
 
     /**
@@ -84,6 +84,12 @@ public abstract class LocalConfiguration {
     public int butcherDefaultRadius = -1;
     public int butcherMaxRadius = -1;
     public boolean allowSymlinks = false;
+    public int jobProgressInterval = 5;
+    public int historySpillThreshold = 1000000;
+    public int historyMemoryLimit = 1024;
+    public int historyMemoryPerSession = 256;
+    public int mappedClipboardThreshold = 100000000;
+    public int schematicCacheLimit = 256;
 
     /**
      * Load the configuration.
@@ -18,6 +18,8 @@ package com.sk89q.worldedit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -41,6 +43,9 @@ import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.ChangeSetReadException;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
 import com.sk89q.worldedit.internal.cui.CUIEvent;
 import com.sk89q.worldedit.internal.cui.CUIRegion;
 import com.sk89q.worldedit.internal.cui.SelectionShapeEvent;
@@ -49,6 +54,7 @@ import com.sk89q.worldedit.regions.RegionSelector;
 import com.sk89q.worldedit.regions.selector.CuboidRegionSelector;
 import com.sk89q.worldedit.regions.selector.RegionSelectorType;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.session.HistoryMemoryManager;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.snapshot.Snapshot;
@@ -172,13 +178,30 @@ public class LocalSession {
     }
 
     /**
-     * Clear history.
+     * Clear history, deleting any history that was written to disk.
      */
     public void clearHistory() {
+        for (EditSession editSession : history) {
+            release(editSession);
+        }
         history.clear();
         historyPointer = 0;
     }
 
+    /**
+     * Release the resources held by the history of an edit session that
+     * is no longer remembered.
+     *
+     * @param editSession the edit session
+     */
+    private static void release(EditSession editSession) {
+        getHistoryManager().untrack(editSession);
+        ChangeSet changeSet = editSession.getChangeSet();
+        if (changeSet instanceof DiskSpillingHistory) {
+            ((DiskSpillingHistory) changeSet).close();
+        }
+    }
+
     /**
      * Remember an edit session for the undo history. If the history maximum
      * size is reached, old edit sessions will be discarded.
@@ -193,13 +216,49 @@ public class LocalSession {
 
         // Destroy any sessions after this undo point
         while (historyPointer < history.size()) {
-            history.remove(historyPointer);
+            release(history.remove(historyPointer));
         }
         history.add(editSession);
         while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
+            release(history.remove(0));
         }
         historyPointer = history.size();
+        getHistoryManager().track(this, editSession);
+    }
+
+    /**
+     * Remove an edit session from the history, wherever it is.
+     *
+     * @param editSession the edit session
+     * @return true if the edit session was in the history
+     */
+    public boolean discard(EditSession editSession) {
+        checkNotNull(editSession);
+        int index = history.indexOf(editSession);
+        if (index < 0) {
+            return false;
+        }
+        history.remove(index);
+        if (index < historyPointer) {
+            --historyPointer;
+        }
+        release(editSession);
+        return true;
+    }
+
+    /**
+     * Get the number of edit sessions in the history.
+     *
+     * @return the number of edit sessions
+     */
+    public int getHistorySize() {
+        return history.size();
+    }
+
+    private static HistoryMemoryManager getHistoryManager() {
+        return WorldEdit.getInstance()
+            .getSessionManager()
+            .getHistoryManager();
     }
 
     /**
@@ -208,8 +267,9 @@ public class LocalSession {
      * @param newBlockBag a new block bag
      * @param player      the player
      * @return whether anything was undone
+     * @throws ChangeSetReadException if the history could not be read back
      */
-    public EditSession undo(@Nullable BlockBag newBlockBag, LocalPlayer player) {
+    public EditSession undo(@Nullable BlockBag newBlockBag, LocalPlayer player) throws ChangeSetReadException {
         return undo(newBlockBag, (Player) player);
     }
 
@@ -219,18 +279,28 @@ public class LocalSession {
      * @param newBlockBag a new block bag
      * @param player      the player
      * @return whether anything was undone
+     * @throws ChangeSetReadException if the history could not be read back, in
+     *                                which case the edit is kept so that it
+     *                                can be undone again
      */
-    public EditSession undo(@Nullable BlockBag newBlockBag, Player player) {
+    public EditSession undo(@Nullable BlockBag newBlockBag, Player player) throws ChangeSetReadException {
         checkNotNull(player);
         --historyPointer;
         if (historyPointer >= 0) {
             EditSession editSession = history.get(historyPointer);
+            getHistoryManager().touch(editSession);
             EditSession newEditSession = WorldEdit.getInstance()
                 .getEditSessionFactory()
                 .getEditSession(editSession.getWorld(), -1, newBlockBag, player);
             newEditSession.enableQueue();
             newEditSession.setFastMode(fastMode);
-            editSession.undo(newEditSession);
+            try {
+                editSession.undo(newEditSession);
+            } catch (RuntimeException e) {
+                // Blocks that were already undone are set again on retry
+                ++historyPointer;
+                throw unwrapReadError(e);
+            }
             return editSession;
         } else {
             historyPointer = 0;
@@ -244,8 +314,9 @@ public class LocalSession {
      * @param newBlockBag a new block bag
      * @param player      the player
      * @return whether anything was redone
+     * @throws ChangeSetReadException if the history could not be read back
      */
-    public EditSession redo(@Nullable BlockBag newBlockBag, LocalPlayer player) {
+    public EditSession redo(@Nullable BlockBag newBlockBag, LocalPlayer player) throws ChangeSetReadException {
         return redo(newBlockBag, (Player) player);
     }
 
@@ -255,17 +326,25 @@ public class LocalSession {
      * @param newBlockBag a new block bag
      * @param player      the player
      * @return whether anything was redone
+     * @throws ChangeSetReadException if the history could not be read back, in
+     *                                which case the edit is kept so that it
+     *                                can be redone again
      */
-    public EditSession redo(@Nullable BlockBag newBlockBag, Player player) {
+    public EditSession redo(@Nullable BlockBag newBlockBag, Player player) throws ChangeSetReadException {
         checkNotNull(player);
         if (historyPointer < history.size()) {
             EditSession editSession = history.get(historyPointer);
+            getHistoryManager().touch(editSession);
             EditSession newEditSession = WorldEdit.getInstance()
                 .getEditSessionFactory()
                 .getEditSession(editSession.getWorld(), -1, newBlockBag, player);
             newEditSession.enableQueue();
             newEditSession.setFastMode(fastMode);
-            editSession.redo(newEditSession);
+            try {
+                editSession.redo(newEditSession);
+            } catch (RuntimeException e) {
+                throw unwrapReadError(e);
+            }
             ++historyPointer;
             return editSession;
         }
@@ -273,6 +352,21 @@ public class LocalSession {
         return null;
     }
 
+    /**
+     * Get the {@link ChangeSetReadException} that caused an exception thrown
+     * while undoing or redoing, or rethrow the exception if it has another
+     * cause.
+     *
+     * @param e the exception
+     * @return the read error
+     */
+    private static ChangeSetReadException unwrapReadError(RuntimeException e) {
+        if (e.getCause() instanceof ChangeSetReadException) {
+            return (ChangeSetReadException) e.getCause();
+        }
+        throw e;
+    }
+
     /**
      * Get the default region selector.
      *
@@ -448,13 +542,20 @@ public class LocalSession {
      * Sets the clipboard.
      *
      * <p>
-     * Pass {@code null} to clear the clipboard.
+     * Pass {@code null} to clear the clipboard. If the previous clipboard
+     * holds resources, such as a memory-mapped file or a reference to a
+     * cached schematic, they are released once pastes that are still queued
+     * have finished with it.
      * </p>
      *
      * @param clipboard the clipboard, or null if the clipboard is to be cleared
      */
     public void setClipboard(@Nullable ClipboardHolder clipboard) {
+        ClipboardHolder previous = this.clipboard;
         this.clipboard = clipboard;
+        if (previous != null && (clipboard == null || previous.getClipboard() != clipboard.getClipboard())) {
+            previous.release();
+        }
     }
 
     /**
@@ -641,7 +742,8 @@ public class LocalSession {
      * Set the tool.
      *
      * @param item the item type ID
-     * @param tool the tool to set, which can be {@code null}
+     * @param tool the tool to set, which can be {@code null}; a tool that
+     *             was bound to the item before is closed if it holds resources
      * @throws InvalidToolBindException if the item can't be bound to that item
      */
     public void setTool(int item, @Nullable Tool tool) throws InvalidToolBindException {
@@ -653,7 +755,28 @@ public class LocalSession {
             throw new InvalidToolBindException(item, "Already used for the navigation wand");
         }
 
-        this.tools.put(item, tool);
+        Tool previous = this.tools.put(item, tool);
+        if (previous != tool) {
+            closeTool(previous);
+        }
+    }
+
+    /**
+     * Unbind all tools, releasing the resources that they hold.
+     */
+    public void clearTools() {
+        for (Tool tool : tools.values()) {
+            closeTool(tool);
+        }
+        tools.clear();
+    }
+
+    private static void closeTool(@Nullable Tool tool) {
+        if (tool instanceof Closeable) {
+            try {
+                ((Closeable) tool).close();
+            } catch (IOException ignored) {}
+        }
     }
 
     /**
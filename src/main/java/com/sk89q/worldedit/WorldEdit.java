@@ -49,13 +49,19 @@ import com.sk89q.worldedit.extension.factory.MaskFactory;
 import com.sk89q.worldedit.extension.factory.PatternFactory;
 import com.sk89q.worldedit.extension.input.ParserContext;
 import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extension.platform.NoCapablePlatformException;
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.MappedClipboard;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.function.mask.Masks;
+import com.sk89q.worldedit.function.operation.DirectOperationScheduler;
+import com.sk89q.worldedit.function.operation.OperationScheduler;
 import com.sk89q.worldedit.function.pattern.Patterns;
 import com.sk89q.worldedit.masks.Mask;
 import com.sk89q.worldedit.patterns.Pattern;
+import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.scripting.CraftScriptContext;
 import com.sk89q.worldedit.scripting.CraftScriptEngine;
 import com.sk89q.worldedit.scripting.RhinoCraftScriptEngine;
@@ -100,6 +106,7 @@ public class WorldEdit {
     private final EditSessionFactory editSessionFactory = new EditSessionFactory.EditSessionFactoryImpl(eventBus);
     private final SessionManager sessions = new SessionManager(this);
     private LightingScheduler lightingScheduler = new DirectLightingScheduler();
+    private OperationScheduler operationScheduler = new DirectOperationScheduler();
 
     private final BlockFactory blockFactory = new BlockFactory(this);
     private final ItemFactory itemFactory = new ItemFactory(this);
@@ -220,6 +227,24 @@ public class WorldEdit {
         this.lightingScheduler = checkNotNull(lightingScheduler);
     }
 
+    /**
+     * Get the scheduler that completes queued edit operations.
+     *
+     * @return the operation scheduler
+     */
+    public OperationScheduler getOperationScheduler() {
+        return operationScheduler;
+    }
+
+    /**
+     * Set the scheduler that completes queued edit operations.
+     *
+     * @param operationScheduler the scheduler to use
+     */
+    public void setOperationScheduler(OperationScheduler operationScheduler) {
+        this.operationScheduler = checkNotNull(operationScheduler);
+    }
+
     /**
      * @deprecated Use {@link #getSessionManager()}
      */
@@ -485,6 +510,43 @@ public class WorldEdit {
         }
     }
 
+    /**
+     * Create a new clipboard for the given region.
+     *
+     * <p>
+     * If the volume of the region passes the configured threshold, the
+     * blocks are kept in a memory-mapped file under the working directory,
+     * which is deleted when the clipboard is closed. If the file cannot be
+     * created, the region is smaller, or no platform has provided a
+     * configuration yet, the blocks are kept in memory.
+     * </p>
+     *
+     * @param region the region
+     * @return a new clipboard
+     */
+    public BlockArrayClipboard createClipboard(Region region) {
+        checkNotNull(region);
+        int threshold;
+        try {
+            threshold = getConfiguration().mappedClipboardThreshold;
+        } catch (NoCapablePlatformException e) {
+            threshold = 0;
+        }
+        // Not getArea(), which overflows for the largest regions
+        Vector size = region.getMaximumPoint()
+            .subtract(region.getMinimumPoint())
+            .add(1, 1, 1);
+        long volume = (long) size.getBlockX() * size.getBlockY() * size.getBlockZ();
+        if (threshold > 0 && volume > threshold) {
+            try {
+                return new MappedClipboard(region, getWorkingDirectoryFile("clipboards"));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to create a memory-mapped clipboard, keeping it in memory", e);
+            }
+        }
+        return new BlockArrayClipboard(region);
+    }
+
     /**
      * Get a file relative to the defined working directory. If the specified
      * path is absolute, then the working directory is not used.
@@ -0,0 +1,113 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.blocks;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.extent.InputExtent;
+import com.sk89q.worldedit.extent.OutputExtent;
+
+/**
+ * Packs the type and data value of a block into a single {@code int}.
+ *
+ * <p>
+ * The ID is kept in the upper 16 bits and the data value in the lower 16
+ * bits. Packed states are used by the int coordinate methods of
+ * {@link InputExtent} and {@link OutputExtent} so that blocks can be read
+ * and written without creating a {@link BaseBlock} for each of them. NBT
+ * data is not part of a packed state.
+ * </p>
+ */
+public final class PackedBlock {
+
+    /**
+     * A value that is never a valid packed state.
+     */
+    public static final int NONE = -1;
+
+    private PackedBlock() {}
+
+    /**
+     * Return whether the given ID and data value can be packed.
+     *
+     * @param id   the block ID
+     * @param data the data value
+     * @return true if the block can be packed
+     */
+    public static boolean canPack(int id, int data) {
+        return id >= 0 && id < 0xFFFF && data >= 0 && data <= 0xFFFF;
+    }
+
+    /**
+     * Pack the given ID and data value.
+     *
+     * @param id   the block ID
+     * @param data the data value
+     * @return the packed state
+     * @throws IllegalArgumentException thrown if the block cannot be packed
+     */
+    public static int pack(int id, int data) {
+        // Not checkArgument(), which would create an array on every call
+        if (!canPack(id, data)) {
+            throw new IllegalArgumentException("Can't pack block " + id + ":" + data);
+        }
+        return id << 16 | data;
+    }
+
+    /**
+     * Pack the ID and data value of the given block. NBT data is ignored.
+     *
+     * @param block the block
+     * @return the packed state
+     * @throws IllegalArgumentException thrown if the block cannot be packed
+     */
+    public static int pack(BaseBlock block) {
+        checkNotNull(block);
+        return pack(block.getId(), block.getData());
+    }
+
+    /**
+     * Get the block ID of a packed state.
+     *
+     * @param state the packed state
+     * @return the block ID
+     */
+    public static int getId(int state) {
+        return state >>> 16;
+    }
+
+    /**
+     * Get the data value of a packed state.
+     *
+     * @param state the packed state
+     * @return the data value
+     */
+    public static int getData(int state) {
+        return state & 0xFFFF;
+    }
+
+    /**
+     * Create a new block for a packed state.
+     *
+     * @param state the packed state
+     * @return a new block
+     */
+    public static BaseBlock toBlock(int state) {
+        return new BaseBlock(getId(state), getData(state));
+    }
+
+}
@@ -79,7 +79,7 @@ public class ClipboardCommands {
     public void copy(Player player, LocalSession session, EditSession editSession, @Selection Region region,
         @Switch('e') boolean copyEntities, @Switch('m') Mask mask) throws WorldEditException {
 
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        BlockArrayClipboard clipboard = worldEdit.createClipboard(region);
         clipboard.setOrigin(session.getPlacementPosition(player));
         ForwardExtentCopy copy = new ForwardExtentCopy(editSession, region, clipboard, region.getMinimumPoint());
         if (mask != null) {
@@ -112,7 +112,7 @@ public class ClipboardCommands {
         @Optional("air") Pattern leavePattern, @Switch('e') boolean copyEntities, @Switch('m') Mask mask)
         throws WorldEditException {
 
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        BlockArrayClipboard clipboard = worldEdit.createClipboard(region);
         clipboard.setOrigin(session.getPlacementPosition(player));
         ForwardExtentCopy copy = new ForwardExtentCopy(editSession, region, clipboard, region.getMinimumPoint());
         copy.setSourceFunction(new BlockReplace(editSession, leavePattern));
@@ -158,7 +158,7 @@ public class ClipboardCommands {
             .to(to)
             .ignoreAirBlocks(ignoreAirBlocks)
             .build();
-        Operations.completeLegacy(operation);
+        editSession.enqueue(operation);
 
         if (selectPasted) {
             Vector max = to.add(
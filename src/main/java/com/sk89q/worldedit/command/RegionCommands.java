@@ -320,23 +320,20 @@ public class RegionCommands {
         usage = "",
         desc = "Regenerates the contents of the selection",
         help = "Regenerates the contents of the current selection.\n"
-            + "This command might affect things outside the selection,\n"
-            + "if they are within the same chunk.",
+            + "Each chunk of the selection is generated and populated\n"
+            + "once and only blocks inside the selection are changed.",
         min = 0,
         max = 0)
     @CommandPermissions("worldedit.regen")
     @Logging(REGION)
-    public void regenerateChunk(Player player, LocalSession session, EditSession editSession, @Selection Region region)
-        throws WorldEditException {
-        Mask mask = session.getMask();
-        try {
-            session.setMask((Mask) null);
-            player.getWorld()
-                .regenerate(region, editSession);
-        } finally {
-            session.setMask(mask);
+    public void regenerateChunk(Player player, LocalSession session, EditSession editSession,
+        @Selection Region region) throws WorldEditException {
+        // The chunks are regenerated over several ticks, during which the
+        // player may change the selection
+        if (!player.getWorld()
+            .regenerate(region.clone(), editSession)) {
+            player.printError("This world cannot be regenerated.");
         }
-        player.print("Region regenerated.");
     }
 
     @Command(
@@ -18,20 +18,26 @@ package com.sk89q.worldedit.command;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandException;
@@ -39,20 +45,22 @@ import com.sk89q.minecraft.util.commands.CommandPermissions;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.LocalConfiguration;
 import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.extension.platform.Actor;
-import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
-import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.function.operation.FutureOperation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.session.ClipboardHolder;
+import com.sk89q.worldedit.session.SchematicCache;
 import com.sk89q.worldedit.util.command.binding.Switch;
 import com.sk89q.worldedit.util.command.parametric.Optional;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
 import com.sk89q.worldedit.util.io.Closer;
 import com.sk89q.worldedit.util.io.file.FilenameException;
 import com.sk89q.worldedit.world.registry.WorldData;
@@ -67,6 +75,8 @@ public class SchematicCommands {
      */
     private static final int SCHEMATICS_PER_PAGE = 9;
     private static final Logger log = Logger.getLogger(SchematicCommands.class.getCanonicalName());
+    private static final ListeningExecutorService executor = MoreExecutors
+        .listeningDecorator(EvenMoreExecutors.newBoundedCachedThreadPool(2, 2, 20));
     private final WorldEdit worldEdit;
 
     /**
@@ -87,47 +97,58 @@ public class SchematicCommands {
         max = 2)
     @Deprecated
     @CommandPermissions({ "worldedit.clipboard.load", "worldedit.schematic.load" })
-    public void load(Player player, LocalSession session, @Optional("schematic") String formatName, String filename)
-        throws FilenameException {
+    public void load(final Player player, final LocalSession session, @Optional("schematic") String formatName,
+        final String filename) throws FilenameException {
         LocalConfiguration config = worldEdit.getConfiguration();
 
         File dir = worldEdit.getWorkingDirectoryFile(config.saveDir);
-        File f = worldEdit.getSafeOpenFile(player, dir, filename, "schematic", "schematic");
+        final File f = worldEdit.getSafeOpenFile(player, dir, filename, "schematic", "schematic");
 
         if (!f.exists()) {
             player.printError("Schematic " + filename + " does not exist!");
             return;
         }
 
-        ClipboardFormat format = ClipboardFormat.findByAlias(formatName);
+        final ClipboardFormat format = ClipboardFormat.findByAlias(formatName);
         if (format == null) {
             player.printError("Unknown schematic format: " + formatName);
             return;
         }
 
-        Closer closer = Closer.create();
+        final WorldData worldData = player.getWorld()
+            .getWorldData();
+        final SchematicCache cache = worldEdit.getSessionManager()
+            .getSchematicCache();
+        ListenableFuture<Clipboard> future;
         try {
-            FileInputStream fis = closer.register(new FileInputStream(f));
-            BufferedInputStream bis = closer.register(new BufferedInputStream(fis));
-            ClipboardReader reader = format.getReader(bis);
-
-            WorldData worldData = player.getWorld()
-                .getWorldData();
-            Clipboard clipboard = reader.read(
-                player.getWorld()
-                    .getWorldData());
-            session.setClipboard(new ClipboardHolder(clipboard, worldData));
-
-            log.info(player.getName() + " loaded " + f.getCanonicalPath());
-            player.print(filename + " loaded. Paste it with //paste");
-        } catch (IOException e) {
-            player.printError("Schematic could not read or it does not exist: " + e.getMessage());
-            log.log(Level.WARNING, "Failed to load a saved clipboard", e);
-        } finally {
-            try {
-                closer.close();
-            } catch (IOException ignored) {}
+            future = executor.submit(new Callable<Clipboard>() {
+
+                @Override
+                public Clipboard call() throws IOException {
+                    return cache.load(f, format, worldData);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            player.printError("Too many schematics are being loaded or saved, please try again later.");
+            return;
         }
+
+        player.print("Loading " + filename + "...");
+        schedule(future, player, "Loading " + filename, new FutureCallback<Clipboard>() {
+
+            @Override
+            public void onSuccess(Clipboard clipboard) {
+                session.setClipboard(new ClipboardHolder(clipboard, worldData));
+                log.info(player.getName() + " loaded " + f.getAbsolutePath());
+                player.print(filename + " loaded. Paste it with //paste");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                player.printError("Schematic could not read or it does not exist: " + t.getMessage());
+                log.log(Level.WARNING, "Failed to load a saved clipboard", t);
+            }
+        });
     }
 
     @Command(
@@ -138,61 +159,186 @@ public class SchematicCommands {
         max = 2)
     @Deprecated
     @CommandPermissions({ "worldedit.clipboard.save", "worldedit.schematic.save" })
-    public void save(Player player, LocalSession session, @Optional("schematic") String formatName, String filename)
-        throws CommandException, WorldEditException {
+    public void save(final Player player, LocalSession session, @Optional("schematic") String formatName,
+        final String filename) throws CommandException, WorldEditException {
         LocalConfiguration config = worldEdit.getConfiguration();
 
         File dir = worldEdit.getWorkingDirectoryFile(config.saveDir);
-        File f = worldEdit.getSafeSaveFile(player, dir, filename, "schematic", "schematic");
+        final File f = worldEdit.getSafeSaveFile(player, dir, filename, "schematic", "schematic");
 
-        ClipboardFormat format = ClipboardFormat.findByAlias(formatName);
+        final ClipboardFormat format = ClipboardFormat.findByAlias(formatName);
         if (format == null) {
             player.printError("Unknown schematic format: " + formatName);
             return;
         }
 
-        ClipboardHolder holder = session.getClipboard();
-        Clipboard clipboard = holder.getClipboard();
-        Transform transform = holder.getTransform();
-        Clipboard target;
-
-        // If we have a transform, bake it into the copy
-        if (!transform.isIdentity()) {
-            FlattenedClipboardTransform result = FlattenedClipboardTransform
-                .transform(clipboard, transform, holder.getWorldData());
-            target = new BlockArrayClipboard(result.getTransformedRegion());
-            target.setOrigin(clipboard.getOrigin());
+        // Session clipboards are never written to in place, so keeping the
+        // clipboard open is enough to write it on the worker. The transform
+        // is applied there too, since that copies the whole clipboard.
+        final ClipboardHolder holder = session.getClipboard();
+        final Clipboard clipboard = holder.getClipboard();
+        final Transform transform = holder.getTransform();
+        holder.retain();
+
+        final SchematicCache cache = worldEdit.getSessionManager()
+            .getSchematicCache();
+        // Whichever of the task or a cancellation comes first releases the clipboard
+        final AtomicBoolean claimed = new AtomicBoolean();
+        ListenableFuture<File> future;
+        try {
+            future = executor.submit(new Callable<File>() {
+
+                @Override
+                public File call() throws IOException {
+                    if (!claimed.compareAndSet(false, true)) {
+                        return f;
+                    }
+                    Clipboard target = null;
+                    try {
+                        target = transform.isIdentity() ? clipboard
+                            : flatten(clipboard, transform, holder.getWorldData());
+                        write(target, holder.getWorldData(), format, f);
+                    } finally {
+                        if (target != null && target != clipboard) {
+                            release(target);
+                        }
+                        holder.release();
+                        // The modification time alone may not change within a second
+                        try {
+                            cache.invalidate(f);
+                        } catch (IOException ignored) {}
+                    }
+                    return f;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            holder.release();
+            player.printError("Too many schematics are being loaded or saved, please try again later.");
+            return;
+        }
+        future.addListener(new Runnable() {
+
+            @Override
+            public void run() {
+                if (claimed.compareAndSet(false, true)) {
+                    holder.release();
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        player.print("Saving " + filename + "...");
+        schedule(future, player, "Saving " + filename, new FutureCallback<File>() {
+
+            @Override
+            public void onSuccess(File file) {
+                log.info(player.getName() + " saved " + file.getAbsolutePath());
+                player.print(filename + " saved.");
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                player.printError("Schematic could not written: " + t.getMessage());
+                log.log(Level.WARNING, "Failed to write a saved clipboard", t);
+            }
+        });
+    }
+
+    /**
+     * Copy a clipboard into a new clipboard with a transform applied.
+     *
+     * @param clipboard the clipboard
+     * @param transform the transform
+     * @param worldData the world data to transform the blocks with
+     * @return the new clipboard
+     * @throws IOException thrown if too many blocks are changed
+     */
+    private Clipboard flatten(Clipboard clipboard, Transform transform, WorldData worldData) throws IOException {
+        FlattenedClipboardTransform result = FlattenedClipboardTransform.transform(clipboard, transform, worldData);
+        Clipboard target = worldEdit.createClipboard(result.getTransformedRegion());
+        target.setOrigin(clipboard.getOrigin());
+        try {
             Operations.completeLegacy(result.copyTo(target));
-        } else {
-            target = clipboard;
+        } catch (MaxChangedBlocksException e) {
+            release(target);
+            throw new IOException(e);
         }
+        return target;
+    }
 
-        Closer closer = Closer.create();
+    /**
+     * Write a clipboard to a file. The clipboard is written to a temporary
+     * file first, which then replaces the file, so that the file is never
+     * read while it is only partly written.
+     *
+     * @param clipboard the clipboard
+     * @param worldData the world data to write the clipboard with
+     * @param format    the format
+     * @param file      the file
+     * @throws IOException thrown if the file cannot be written
+     */
+    private static void write(Clipboard clipboard, WorldData worldData, ClipboardFormat format, File file)
+        throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        boolean written = false;
         try {
-            // Create parent directories
-            File parent = f.getParentFile();
-            if (parent != null && !parent.exists()) {
-                if (!parent.mkdirs()) {
-                    throw new CommandException("Could not create folder for schematics!");
+            Closer closer = Closer.create();
+            try {
+                // Create parent directories
+                File parent = file.getParentFile();
+                if (parent != null && !parent.exists()) {
+                    if (!parent.mkdirs()) {
+                        throw new IOException("Could not create folder for schematics!");
+                    }
                 }
-            }
 
-            FileOutputStream fos = closer.register(new FileOutputStream(f));
-            BufferedOutputStream bos = closer.register(new BufferedOutputStream(fos));
-            ClipboardWriter writer = closer.register(format.getWriter(bos));
-            writer.write(target, holder.getWorldData());
-            log.info(player.getName() + " saved " + f.getCanonicalPath());
-            player.print(filename + " saved.");
-        } catch (IOException e) {
-            player.printError("Schematic could not written: " + e.getMessage());
-            log.log(Level.WARNING, "Failed to write a saved clipboard", e);
+                FileOutputStream fos = closer.register(new FileOutputStream(tempFile));
+                BufferedOutputStream bos = closer.register(new BufferedOutputStream(fos));
+                ClipboardWriter writer = closer.register(format.getWriter(bos));
+                writer.write(clipboard, worldData);
+            } finally {
+                closer.close();
+            }
+            written = true;
         } finally {
+            if (!written) {
+                tempFile.delete();
+            }
+        }
+
+        if (file.exists() && !file.delete()) {
+            tempFile.delete();
+            throw new IOException("Could not replace " + file.getName());
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Could not rename " + tempFile.getName() + " to " + file.getName());
+        }
+    }
+
+    private static void release(Clipboard clipboard) {
+        if (clipboard instanceof Closeable) {
             try {
-                closer.close();
+                ((Closeable) clipboard).close();
             } catch (IOException ignored) {}
         }
     }
 
+    /**
+     * Hand the result of a background task back to the server thread
+     * once the task is done.
+     *
+     * @param future      the task
+     * @param actor       the actor to report errors to
+     * @param description a description of the task
+     * @param callback    the callback to run on the server thread
+     * @param <V>         the type of result
+     */
+    private <V> void schedule(ListenableFuture<V> future, Actor actor, String description,
+        FutureCallback<? super V> callback) {
+        worldEdit.getOperationScheduler()
+            .schedule(new FutureOperation<V>(future, callback, description), actor, null);
+    }
+
     @Command(
         aliases = { "delete", "d" },
         usage = "<filename>",
@@ -220,6 +366,12 @@ public class SchematicCommands {
             return;
         }
 
+        try {
+            worldEdit.getSessionManager()
+                .getSchematicCache()
+                .invalidate(f);
+        } catch (IOException ignored) {}
+
         player.print(filename + " has been deleted.");
     }
 
@@ -245,6 +397,34 @@ public class SchematicCommands {
         }
     }
 
+    @Command(aliases = { "cache" }, desc = "Show statistics of the schematic cache", max = 0)
+    @CommandPermissions("worldedit.schematic.cache")
+    public void cache(Actor actor) throws WorldEditException {
+        SchematicCache cache = worldEdit.getSessionManager()
+            .getSchematicCache();
+        long limit = cache.getLimit();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long loads = hits + misses;
+
+        actor.print(
+            cache.size() + " schematic(s) cached, using "
+                + formatSize(cache.getMemoryUsage())
+                + (limit >= 0 ? " of " + formatSize(limit) : "")
+                + ".");
+        actor.print(
+            hits + " hit(s), " + misses
+                + " miss(es)"
+                + (loads > 0 ? " (" + (hits * 100 / loads) + "% hit rate)" : "")
+                + ", "
+                + cache.getEvictions()
+                + " eviction(s).");
+    }
+
+    private static String formatSize(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
     @Command(
         aliases = { "list", "all", "ls" },
         desc = "List saved schematics",
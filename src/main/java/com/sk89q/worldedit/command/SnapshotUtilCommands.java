@@ -20,6 +20,7 @@ import static com.sk89q.minecraft.util.commands.Logging.LogMode.REGION;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.logging.Logger;
 
 import com.sk89q.minecraft.util.commands.Command;
@@ -32,6 +33,8 @@ import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.snapshot.InvalidSnapshotException;
@@ -54,11 +57,14 @@ public class SnapshotUtilCommands {
         aliases = { "restore", "/restore" },
         usage = "[snapshot]",
         desc = "Restore the selection from a snapshot",
+        help = "Restore the selection from a snapshot.\n" + "Flags:\n"
+            + "  -d only changes the blocks that differ from the snapshot, and reports how many did",
+        flags = "d",
         min = 0,
         max = 1)
     @Logging(REGION)
     @CommandPermissions("worldedit.snapshots.restore")
-    public void restore(Player player, LocalSession session, EditSession editSession, CommandContext args)
+    public void restore(final Player player, LocalSession session, EditSession editSession, CommandContext args)
         throws WorldEditException {
 
         LocalConfiguration config = we.getConfiguration();
@@ -125,34 +131,53 @@ public class SnapshotUtilCommands {
             return;
         }
 
-        try {
-            // Restore snapshot
-            SnapshotRestore restore = new SnapshotRestore(chunkStore, editSession, region);
-            // player.print(restore.getChunksAffected() + " chunk(s) will be loaded.");
-
-            restore.restore();
-
-            if (restore.hadTotalFailure()) {
-                String error = restore.getLastErrorMessage();
-                if (error != null) {
-                    player.printError("Errors prevented any blocks from being restored.");
-                    player.printError("Last error: " + error);
+        // Chunks are decoded in the background while the edit session
+        // commits, so the store is closed and the result reported once
+        // the restore is done
+        final ChunkStore store = chunkStore;
+        final SnapshotRestore restore = new SnapshotRestore(chunkStore, editSession, region.clone());
+        final boolean differential = args.hasFlag('d');
+        restore.setDifferential(differential);
+        // player.print(restore.getChunksAffected() + " chunk(s) will be loaded.");
+        editSession.enqueue(restore);
+        editSession.enqueue(new Operation() {
+
+            @Override
+            public Operation resume(RunContext run) {
+                cancel();
+
+                if (restore.hadTotalFailure()) {
+                    String error = restore.getLastErrorMessage();
+                    if (error != null) {
+                        player.printError("Errors prevented any blocks from being restored.");
+                        player.printError("Last error: " + error);
+                    } else {
+                        player.printError("No chunks could be loaded. (Bad archive?)");
+                    }
                 } else {
-                    player.printError("No chunks could be loaded. (Bad archive?)");
+                    player.print(
+                        String.format(
+                            "Restored; %d " + "missing chunks and %d other errors.",
+                            restore.getMissingChunks()
+                                .size(),
+                            restore.getErrorChunks()
+                                .size()));
+                    if (differential) {
+                        player.print(restore.getDifferingBlocks() + " block(s) differed from the snapshot.");
+                    }
                 }
-            } else {
-                player.print(
-                    String.format(
-                        "Restored; %d " + "missing chunks and %d other errors.",
-                        restore.getMissingChunks()
-                            .size(),
-                        restore.getErrorChunks()
-                            .size()));
+                return null;
             }
-        } finally {
-            try {
-                chunkStore.close();
-            } catch (IOException ignored) {}
-        }
+
+            @Override
+            public void cancel() {
+                try {
+                    store.close();
+                } catch (IOException ignored) {}
+            }
+
+            @Override
+            public void addStatusMessages(List<String> messages) {}
+        });
     }
 }
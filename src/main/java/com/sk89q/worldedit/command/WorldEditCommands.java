@@ -19,8 +19,12 @@ package com.sk89q.worldedit.command;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
+import javax.annotation.Nullable;
+
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandPermissions;
@@ -34,6 +38,10 @@ import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.extension.platform.PlatformManager;
+import com.sk89q.worldedit.session.EditJob;
+import com.sk89q.worldedit.session.EditJobQueue;
+import com.sk89q.worldedit.session.HistoryMemoryManager;
+import com.sk89q.worldedit.session.SessionManager;
 
 public class WorldEditCommands {
 
@@ -98,6 +106,135 @@ public class WorldEditCommands {
                     .getTime()));
     }
 
+    @Command(aliases = { "jobs" }, usage = "", desc = "List your queued edit jobs", min = 0, max = 0)
+    @CommandPermissions("worldedit.jobs")
+    public void jobs(Actor actor) throws WorldEditException {
+        EditJobQueue queue = we.getSessionManager()
+            .getJobQueue(actor);
+        List<EditJob> jobs = queue.getJobs();
+
+        if (jobs.isEmpty()) {
+            actor.printError("You have no queued jobs.");
+            return;
+        }
+
+        actor.print(jobs.size() + " job(s) queued:");
+        for (EditJob job : jobs) {
+            actor.printDebug(job.describeProgress());
+        }
+
+        int deferred = queue.getDeferredCount();
+        if (deferred > 0) {
+            actor.print(deferred + " command(s) will run once these jobs are done.");
+        }
+    }
+
+    @Command(
+        aliases = { "cancel" },
+        usage = "[<id>|all]",
+        desc = "Cancel a queued edit job",
+        help = "Cancels the given job, or the running job if no ID is given.\n"
+            + "Changes that were already made are kept and can be undone.\n"
+            + "Cancelling all jobs also drops the commands waiting for them.",
+        min = 0,
+        max = 1)
+    @CommandPermissions("worldedit.jobs")
+    public void cancel(Actor actor, CommandContext args) throws WorldEditException {
+        EditJobQueue queue = we.getSessionManager()
+            .getJobQueue(actor);
+
+        if (args.argsLength() > 0 && args.getString(0)
+            .equalsIgnoreCase("all")) {
+            int count = queue.cancelAll();
+            actor.print(count + " job(s) and waiting command(s) cancelled.");
+            return;
+        }
+
+        EditJob job = findJob(actor, queue, args);
+        if (job != null) {
+            queue.cancel(job);
+            actor.print("Cancelling job #" + job.getId() + "...");
+        }
+    }
+
+    @Command(
+        aliases = { "pause" },
+        usage = "[<id>]",
+        desc = "Pause or resume a queued edit job",
+        help = "Pauses the given job, or the running job if no ID is given.\n"
+            + "Using the command again on a paused job resumes it.\n"
+            + "Jobs queued after a paused job wait until it is resumed.",
+        min = 0,
+        max = 1)
+    @CommandPermissions("worldedit.jobs")
+    public void pause(Actor actor, CommandContext args) throws WorldEditException {
+        EditJobQueue queue = we.getSessionManager()
+            .getJobQueue(actor);
+
+        EditJob job = findJob(actor, queue, args);
+        if (job != null) {
+            if (queue.togglePause(job)) {
+                actor.print("Job #" + job.getId() + " will be paused.");
+            } else {
+                actor.print("Job #" + job.getId() + " resumed.");
+            }
+        }
+    }
+
+    @Command(
+        aliases = { "history" },
+        usage = "",
+        desc = "Show the memory used by the history of each session",
+        min = 0,
+        max = 0)
+    @CommandPermissions("worldedit.history.footprint")
+    public void history(Actor actor) throws WorldEditException {
+        SessionManager sessionManager = we.getSessionManager();
+        HistoryMemoryManager historyManager = sessionManager.getHistoryManager();
+        long limit = historyManager.getLimit();
+        long sessionLimit = historyManager.getSessionLimit();
+
+        actor.print(
+            "History is using " + formatSize(historyManager.getFootprint())
+                + (limit >= 0 ? " of " + formatSize(limit) : "")
+                + (sessionLimit >= 0 ? " (" + formatSize(sessionLimit) + " per session)" : "")
+                + ".");
+        for (Map.Entry<String, Long> entry : sessionManager.getHistoryFootprints()
+            .entrySet()) {
+            actor.printDebug(entry.getKey() + ": " + formatSize(entry.getValue()));
+        }
+    }
+
+    private static String formatSize(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    @Nullable
+    private static EditJob findJob(Actor actor, EditJobQueue queue, CommandContext args) {
+        if (args.argsLength() == 0) {
+            List<EditJob> jobs = queue.getJobs();
+            if (jobs.isEmpty()) {
+                actor.printError("You have no queued jobs.");
+                return null;
+            }
+            return jobs.get(0);
+        }
+
+        int id;
+        try {
+            id = Integer.parseInt(args.getString(0));
+        } catch (NumberFormatException e) {
+            actor.printError("Invalid job ID, " + args.getString(0) + " is not a valid integer.");
+            return null;
+        }
+
+        EditJob job = queue.getJob(id);
+        if (job == null) {
+            actor.printError("No queued job with the ID " + id + ".");
+        }
+        return job;
+    }
+
     @Command(
         aliases = { "help" },
         usage = "[<command>]",
@@ -18,10 +18,6 @@ package com.sk89q.worldedit.command.composition;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.List;
-
-import com.google.common.base.Joiner;
-import com.google.common.collect.Lists;
 import com.sk89q.minecraft.util.commands.CommandException;
 import com.sk89q.minecraft.util.commands.CommandLocals;
 import com.sk89q.minecraft.util.commands.CommandPermissionsException;
@@ -34,7 +30,7 @@ import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.function.Contextual;
 import com.sk89q.worldedit.function.EditContext;
 import com.sk89q.worldedit.function.operation.Operation;
-import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.internal.command.JobQueueBusyException;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.command.argument.CommandArgs;
 import com.sk89q.worldedit.util.command.composition.CommandExecutor;
@@ -65,10 +61,20 @@ public class SelectionCommand extends SimpleCommand<Operation> {
         if (actor instanceof Player) {
             try {
                 Player player = (Player) actor;
+                if (WorldEdit.getInstance()
+                    .getSessionManager()
+                    .getJobQueue(player)
+                    .isBusy()) {
+                    throw new JobQueueBusyException();
+                }
+
                 LocalSession session = WorldEdit.getInstance()
                     .getSessionManager()
                     .get(player);
-                Region selection = session.getSelection(player.getWorld());
+                // The operation runs over several ticks, during which the
+                // player may change the selection
+                Region selection = session.getSelection(player.getWorld())
+                    .clone();
 
                 EditSession editSession = session.createEditSession(player);
                 editSession.enableQueue();
@@ -79,18 +85,9 @@ public class SelectionCommand extends SimpleCommand<Operation> {
                 editContext.setDestination(locals.get(EditSession.class));
                 editContext.setRegion(selection);
 
+                // Completed (and reported) when the edit session is committed
                 Operation operation = operationFactory.createFromContext(editContext);
-                Operations.completeBlindly(operation);
-
-                List<String> messages = Lists.newArrayList();
-                operation.addStatusMessages(messages);
-                if (messages.isEmpty()) {
-                    actor.print("Operation completed.");
-                } else {
-                    actor.print(
-                        "Operation completed (" + Joiner.on(", ")
-                            .join(messages) + ").");
-                }
+                editSession.enqueue(operation);
 
                 return operation;
             } catch (IncompleteRegionException e) {
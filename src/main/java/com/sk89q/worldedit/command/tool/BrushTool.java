@@ -18,6 +18,9 @@ package com.sk89q.worldedit.command.tool;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.io.Closeable;
+import java.io.IOException;
+
 import javax.annotation.Nullable;
 
 import com.sk89q.worldedit.EditSession;
@@ -38,8 +41,13 @@ import com.sk89q.worldedit.session.request.Request;
 
 /**
  * Builds a shape at the place being looked at.
+ *
+ * <p>
+ * Brushes that hold resources, such as a clipboard, are closed when they
+ * are replaced or when the tool is closed.
+ * </p>
  */
-public class BrushTool implements TraceTool {
+public class BrushTool implements TraceTool, Closeable {
 
     protected static int MAX_RANGE = 500;
     protected int range = -1;
@@ -90,8 +98,28 @@ public class BrushTool implements TraceTool {
      * @param permission the permission
      */
     public void setBrush(Brush brush, String permission) {
+        Brush previous = this.brush;
         this.brush = brush;
         this.permission = permission;
+        if (previous != brush) {
+            closeBrush(previous);
+        }
+    }
+
+    private static void closeBrush(Brush brush) {
+        if (brush instanceof Closeable) {
+            try {
+                ((Closeable) brush).close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Close the brush, releasing the resources that it holds.
+     */
+    @Override
+    public void close() {
+        closeBrush(brush);
     }
 
     /**
@@ -16,6 +16,8 @@
 
 package com.sk89q.worldedit.command.tool.brush;
 
+import java.io.Closeable;
+
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
@@ -26,13 +28,23 @@ import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.session.ClipboardHolder;
 
-public class ClipboardBrush implements Brush {
+/**
+ * Pastes a clipboard.
+ *
+ * <p>
+ * The brush keeps a reference to the clipboard, so that it stays open
+ * when the player copies something else, until the brush is closed.
+ * </p>
+ */
+public class ClipboardBrush implements Brush, Closeable {
 
     private ClipboardHolder holder;
     private boolean ignoreAirBlocks;
     private boolean usingOrigin;
+    private boolean closed;
 
     public ClipboardBrush(ClipboardHolder holder, boolean ignoreAirBlocks, boolean usingOrigin) {
+        holder.retain();
         this.holder = holder;
         this.ignoreAirBlocks = ignoreAirBlocks;
         this.usingOrigin = usingOrigin;
@@ -57,4 +69,16 @@ public class ClipboardBrush implements Brush {
         Operations.completeLegacy(operation);
     }
 
+    /**
+     * Give up the reference to the clipboard. The brush must not be used
+     * afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            holder.release();
+        }
+    }
+
 }
@@ -22,6 +22,7 @@ import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.input.InputParseException;
 import com.sk89q.worldedit.extension.input.ParserContext;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.MappedClipboard;
 import com.sk89q.worldedit.function.pattern.ClipboardPattern;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.internal.registry.InputParser;
@@ -46,6 +47,12 @@ class HashTagPatternParser extends InputParser<Pattern> {
                 try {
                     ClipboardHolder holder = session.getClipboard();
                     Clipboard clipboard = holder.getClipboard();
+                    // Patterns are never told when they are no longer used,
+                    // so they can't keep a clipboard open that is closed
+                    // once the player copies something else
+                    if (clipboard instanceof MappedClipboard) {
+                        clipboard = ((MappedClipboard) clipboard).copy();
+                    }
                     return new ClipboardPattern(clipboard);
                 } catch (EmptyClipboardException e) {
                     throw new InputParseException("To use #clipboard, please first copy something to your clipboard");
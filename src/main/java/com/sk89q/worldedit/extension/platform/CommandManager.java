@@ -21,12 +21,14 @@ import static com.sk89q.worldedit.util.command.composition.LegacyCommandAdapter.
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.sk89q.minecraft.util.commands.CommandException;
 import com.sk89q.minecraft.util.commands.CommandLocals;
 import com.sk89q.minecraft.util.commands.CommandPermissionsException;
@@ -65,11 +67,16 @@ import com.sk89q.worldedit.event.platform.CommandEvent;
 import com.sk89q.worldedit.event.platform.CommandSuggestionEvent;
 import com.sk89q.worldedit.function.factory.Deform;
 import com.sk89q.worldedit.function.factory.Deform.Mode;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
 import com.sk89q.worldedit.internal.command.ActorAuthorizer;
 import com.sk89q.worldedit.internal.command.CommandLoggingHandler;
+import com.sk89q.worldedit.internal.command.JobQueueBusyException;
 import com.sk89q.worldedit.internal.command.UserCommandCompleter;
 import com.sk89q.worldedit.internal.command.WorldEditBinding;
 import com.sk89q.worldedit.internal.command.WorldEditExceptionConverter;
+import com.sk89q.worldedit.session.EditJob;
+import com.sk89q.worldedit.session.EditJobQueue;
 import com.sk89q.worldedit.session.request.Request;
 import com.sk89q.worldedit.util.command.Dispatcher;
 import com.sk89q.worldedit.util.command.InvalidUsageException;
@@ -275,7 +282,7 @@ public final class CommandManager {
     }
 
     @Subscribe
-    public void handleCommand(CommandEvent event) {
+    public void handleCommand(final CommandEvent event) {
         Request.reset();
 
         Actor actor = platformManager.createProxyActor(event.getActor());
@@ -290,7 +297,6 @@ public final class CommandManager {
 
         LocalSession session = worldEdit.getSessionManager()
             .get(actor);
-        LocalConfiguration config = worldEdit.getConfiguration();
 
         CommandLocals locals = new CommandLocals();
         locals.put(Actor.class, actor);
@@ -304,6 +310,18 @@ public final class CommandManager {
                     .join(split),
                 locals,
                 new String[0]);
+        } catch (JobQueueBusyException e) {
+            // Run the command again once the edits queued before it are done
+            worldEdit.getSessionManager()
+                .getJobQueue(actor)
+                .defer(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        handleCommand(event);
+                    }
+                });
+            actor.print("The command will run once your queued edits are done (see /we jobs).");
         } catch (CommandPermissionsException e) {
             actor.printError("You are not permitted to do that. Are you in the right mode?");
         } catch (InvalidUsageException e) {
@@ -341,30 +359,80 @@ public final class CommandManager {
             EditSession editSession = locals.get(EditSession.class);
 
             if (editSession != null) {
+                worldEdit.getSessionManager()
+                    .getJobQueue(actor)
+                    .submit(actor, event.getArguments(), editSession, new CommitCompletion(actor, session, start));
+            }
+        }
+
+        event.setCancelled(true);
+    }
+
+    /**
+     * Records an edit session in the history once all of its changes have
+     * been committed to the world, or releases its history if the session
+     * has been removed in the meantime.
+     */
+    private class CommitCompletion implements EditJobQueue.Listener {
+
+        private final Actor actor;
+        private final LocalSession session;
+        private final long start;
+
+        private CommitCompletion(Actor actor, LocalSession session, long start) {
+            this.actor = actor;
+            this.session = session;
+            this.start = start;
+        }
+
+        @Override
+        public void jobFinished(EditJob job) {
+            EditSession editSession = job.getEditSession();
+            if (worldEdit.getSessionManager()
+                .getIfPresent(actor) == session) {
                 session.remember(editSession);
-                editSession.flushQueue();
-
-                if (config.profile) {
-                    long time = System.currentTimeMillis() - start;
-                    int changed = editSession.getBlockChangeCount();
-                    if (time > 0) {
-                        double throughput = changed / (time / 1000.0);
-                        actor.printDebug(
-                            (time / 1000.0) + "s elapsed (history: "
-                                + changed
-                                + " changed; "
-                                + Math.round(throughput)
-                                + " blocks/sec).");
-                    } else {
-                        actor.printDebug((time / 1000.0) + "s elapsed.");
-                    }
+            } else {
+                // The session was removed while the job was queued, so the
+                // changes can't be undone anymore
+                ChangeSet changeSet = editSession.getChangeSet();
+                if (changeSet instanceof DiskSpillingHistory) {
+                    ((DiskSpillingHistory) changeSet).close();
                 }
+            }
 
-                worldEdit.flushBlockBag(actor, editSession);
+            if (job.getState() == EditJob.State.CANCELLED) {
+                actor.print(
+                    "Job #" + job.getId() + " cancelled (" + editSession.getBlockChangeCount() + " blocks changed).");
+            } else if (job.isReportingStatus()) {
+                List<String> messages = Lists.newArrayList();
+                job.addStatusMessages(messages);
+                if (messages.isEmpty()) {
+                    actor.print("Operation completed.");
+                } else {
+                    actor.print(
+                        "Operation completed (" + Joiner.on(", ")
+                            .join(messages) + ").");
+                }
             }
-        }
 
-        event.setCancelled(true);
+            if (worldEdit.getConfiguration().profile) {
+                long time = System.currentTimeMillis() - start;
+                int changed = editSession.getBlockChangeCount();
+                if (time > 0) {
+                    double throughput = changed / (time / 1000.0);
+                    actor.printDebug(
+                        (time / 1000.0) + "s elapsed (history: "
+                            + changed
+                            + " changed; "
+                            + Math.round(throughput)
+                            + " blocks/sec).");
+                } else {
+                    actor.printDebug((time / 1000.0) + "s elapsed.");
+                }
+            }
+
+            worldEdit.flushBlockBag(actor, editSession);
+        }
     }
 
     @Subscribe
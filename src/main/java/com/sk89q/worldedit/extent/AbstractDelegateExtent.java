@@ -36,6 +36,12 @@ import com.sk89q.worldedit.world.biome.BaseBiome;
 
 /**
  * A base class for {@link Extent}s that merely passes extents onto another.
+ *
+ * <p>
+ * The int coordinate methods are passed straight to the delegate, like the
+ * {@link Vector} methods. A subclass that changes or intercepts blocks has
+ * to override both.
+ * </p>
  */
 public abstract class AbstractDelegateExtent implements Extent {
 
@@ -75,6 +81,22 @@ public abstract class AbstractDelegateExtent implements Extent {
         return extent.setBlock(location, block);
     }
 
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        return extent.getBlockState(x, y, z);
+    }
+
+    @Override
+    @Nullable
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        return extent.getNbtBlock(x, y, z);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        return extent.setBlockState(x, y, z, state);
+    }
+
     @Override
     @Nullable
     public Entity createEntity(Location location, BaseEntity entity) {
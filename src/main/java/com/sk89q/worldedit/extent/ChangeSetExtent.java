@@ -23,9 +23,12 @@ import java.util.List;
 
 import javax.annotation.Nullable;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.LazyBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.history.change.BlockChange;
@@ -56,11 +59,27 @@ public class ChangeSetExtent extends AbstractDelegateExtent {
 
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        BaseBlock previous = getBlock(location);
+        BaseBlock previous = getLazyBlock(location);
+        if (previous instanceof LazyBlock) {
+            // A lazy block would load its NBT data after the change, so the
+            // tile entity has to be saved now
+            previous = getBlock(location);
+        }
         changeSet.add(new BlockChange(location.toBlockVector(), previous, block));
         return super.setBlock(location, block);
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        BaseBlock previous = getNbtBlock(x, y, z);
+        if (previous != null) {
+            changeSet.add(new BlockChange(new BlockVector(x, y, z), previous, PackedBlock.toBlock(state)));
+        } else {
+            changeSet.addBlockChange(x, y, z, getBlockState(x, y, z), state);
+        }
+        return super.setBlockState(x, y, z, state);
+    }
+
     @Nullable
     @Override
     public Entity createEntity(Location location, BaseEntity state) {
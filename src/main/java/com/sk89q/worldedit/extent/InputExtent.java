@@ -16,9 +16,12 @@
 
 package com.sk89q.worldedit.extent;
 
+import javax.annotation.Nullable;
+
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 
@@ -82,6 +85,48 @@ public interface InputExtent {
      */
     BaseBlock getLazyBlock(Vector position);
 
+    /**
+     * Get the type and data value of the block at the given location as a
+     * state packed with {@link PackedBlock}.
+     *
+     * <p>
+     * This is the counterpart of {@link #getLazyBlock(Vector)} that works
+     * on plain coordinates. The default implementation simply calls that
+     * method, but extents should override it if they can answer without
+     * creating any objects. NBT data is available through
+     * {@link #getNbtBlock(int, int, int)}.
+     * </p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed state
+     */
+    default int getBlockState(int x, int y, int z) {
+        return PackedBlock.pack(getLazyBlock(new Vector(x, y, z)));
+    }
+
+    /**
+     * Get a snapshot of the block at the given location, but only if the
+     * block has NBT data.
+     *
+     * <p>
+     * Together with {@link #getBlockState(int, int, int)}, this lets
+     * callers skip creating a {@link BaseBlock} for the vast majority of
+     * blocks, which carry no NBT data at all.
+     * </p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the block, or null if the block has no NBT data
+     */
+    @Nullable
+    default BaseBlock getNbtBlock(int x, int y, int z) {
+        BaseBlock block = getBlock(new Vector(x, y, z));
+        return block.hasNbtData() ? block : null;
+    }
+
     /**
      * Get the biome at the given location.
      *
@@ -22,6 +22,7 @@ import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 
 /**
  * Requires that all mutating methods pass a given {@link Mask}.
@@ -66,4 +67,10 @@ public class MaskingExtent extends AbstractDelegateExtent {
         return mask.test(location) && super.setBlock(location, block);
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        // Only create a position if the mask actually needs one
+        return (mask == Masks.alwaysTrue() || mask.test(new Vector(x, y, z))) && super.setBlockState(x, y, z, state);
+    }
+
 }
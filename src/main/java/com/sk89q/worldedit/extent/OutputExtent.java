@@ -22,6 +22,7 @@ import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 
@@ -51,6 +52,28 @@ public interface OutputExtent {
      */
     boolean setBlock(Vector position, BaseBlock block) throws WorldEditException;
 
+    /**
+     * Change the block at the given location to a block without NBT data,
+     * given as a state packed with {@link PackedBlock}.
+     *
+     * <p>
+     * This is the counterpart of {@link #setBlock(Vector, BaseBlock)} that
+     * works on plain coordinates. The default implementation simply calls
+     * that method, but extents should override it if they can make the
+     * change without creating any objects.
+     * </p>
+     *
+     * @param x     the X coordinate
+     * @param y     the Y coordinate
+     * @param z     the Z coordinate
+     * @param state the packed state
+     * @return true if the block was successfully set (return value may not be accurate)
+     * @throws WorldEditException thrown on an error
+     */
+    default boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        return setBlock(new Vector(x, y, z), PackedBlock.toBlock(state));
+    }
+
     /**
      * Set the biome.
      *
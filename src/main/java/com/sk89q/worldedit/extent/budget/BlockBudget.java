@@ -0,0 +1,102 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.budget;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Counts the blocks written by a single job against the share of the
+ * server-wide block budget that it was allocated for the current tick.
+ *
+ * <p>
+ * Until a {@link BlockBudgetGovernor} allocates a share, the allowance is
+ * unlimited, so edits that are not run by a governed scheduler are never
+ * held back.
+ * </p>
+ */
+public class BlockBudget {
+
+    private double weight = 1;
+    private long allowance = Long.MAX_VALUE;
+    private long used;
+
+    /**
+     * Get the weight of this budget relative to the other active budgets.
+     *
+     * @return the weight
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Set the weight of this budget relative to the other active budgets.
+     *
+     * @param weight the weight, which must be positive
+     */
+    public void setWeight(double weight) {
+        checkArgument(weight > 0, "weight must be positive");
+        this.weight = weight;
+    }
+
+    /**
+     * Get the number of blocks that may still be written in this tick.
+     *
+     * @return the number of blocks
+     */
+    public long getAllowance() {
+        return allowance;
+    }
+
+    /**
+     * Set the number of blocks that may be written in this tick.
+     *
+     * @param allowance the number of blocks
+     */
+    public void setAllowance(long allowance) {
+        this.allowance = Math.max(0, allowance);
+    }
+
+    /**
+     * Return whether any of the allowance is left.
+     *
+     * @return true if more blocks may be written
+     */
+    public boolean hasRemaining() {
+        return allowance > 0;
+    }
+
+    /**
+     * Charge a block write against the allowance.
+     */
+    public void charge() {
+        used++;
+        if (allowance != Long.MAX_VALUE && allowance > 0) {
+            allowance--;
+        }
+    }
+
+    /**
+     * Get the total number of blocks that have been charged.
+     *
+     * @return the number of blocks
+     */
+    public long getUsed() {
+        return used;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.budget;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+
+/**
+ * Charges every block that is written to the world against a
+ * {@link BlockBudget}.
+ *
+ * <p>
+ * This extent does not hold back writes itself. Operations cannot stop in
+ * the middle of a block change, so the scheduler that runs them checks the
+ * budget between blocks instead.
+ * </p>
+ */
+public class BlockBudgetExtent extends AbstractDelegateExtent {
+
+    private final BlockBudget budget;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent
+     * @param budget the budget to charge
+     */
+    public BlockBudgetExtent(Extent extent, BlockBudget budget) {
+        super(extent);
+        checkNotNull(budget);
+        this.budget = budget;
+    }
+
+    /**
+     * Get the budget that writes are charged against.
+     *
+     * @return the budget
+     */
+    public BlockBudget getBudget() {
+        return budget;
+    }
+
+    @Override
+    public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        budget.charge();
+        return super.setBlock(location, block);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        budget.charge();
+        return super.setBlockState(x, y, z, state);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.budget;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.extension.platform.Actor;
+
+/**
+ * Shares a server-wide number of block writes per tick between all of the
+ * active jobs, in proportion to their weights.
+ *
+ * <p>
+ * The limit adapts to the measured tick time: whenever a tick takes longer
+ * than the target, the limit is cut in proportion to the overrun, and while
+ * ticks are fast enough it grows back towards the maximum in small steps.
+ * If the tick time is an average over a window of ticks, it lags behind a
+ * cut, so the limit is cut at most once per window and held in between.
+ * </p>
+ *
+ * <p>
+ * Weights are given to permission groups. An actor that has the
+ * {@code worldedit.budget.<group>} permission gets the weight of that
+ * group, or the highest weight if it has several, and otherwise a weight
+ * of 1.
+ * </p>
+ */
+public class BlockBudgetGovernor {
+
+    private static final String PERMISSION_PREFIX = "worldedit.budget.";
+
+    private final int maxBlocks;
+    private final int minBlocks;
+    private final double targetTickTime;
+    private final int window;
+    private final Map<String, Double> groupWeights = new HashMap<String, Double>();
+    private int limit;
+    private int holdoff;
+
+    /**
+     * Create a new governor that is updated with the time of single ticks.
+     *
+     * @param maxBlocks      the maximum number of blocks written per tick
+     * @param minBlocks      the number of blocks per tick that the limit never drops below
+     * @param targetTickTime the tick time to aim for, in milliseconds
+     */
+    public BlockBudgetGovernor(int maxBlocks, int minBlocks, double targetTickTime) {
+        this(maxBlocks, minBlocks, targetTickTime, 1);
+    }
+
+    /**
+     * Create a new governor.
+     *
+     * @param maxBlocks      the maximum number of blocks written per tick
+     * @param minBlocks      the number of blocks per tick that the limit never drops below
+     * @param targetTickTime the tick time to aim for, in milliseconds
+     * @param window         the number of ticks that the tick times given to
+     *                       {@link #update(double)} are averaged over
+     */
+    public BlockBudgetGovernor(int maxBlocks, int minBlocks, double targetTickTime, int window) {
+        checkArgument(maxBlocks > 0, "maxBlocks must be positive");
+        checkArgument(minBlocks > 0 && minBlocks <= maxBlocks, "minBlocks must be between 1 and maxBlocks");
+        checkArgument(targetTickTime > 0, "targetTickTime must be positive");
+        checkArgument(window > 0, "window must be positive");
+        this.maxBlocks = maxBlocks;
+        this.minBlocks = minBlocks;
+        this.targetTickTime = targetTickTime;
+        this.window = window;
+        this.limit = maxBlocks;
+    }
+
+    /**
+     * Set the weight of a permission group.
+     *
+     * @param group  the name of the group
+     * @param weight the weight, which must be positive
+     */
+    public void setGroupWeight(String group, double weight) {
+        checkNotNull(group);
+        checkArgument(weight > 0, "weight must be positive");
+        groupWeights.put(group.toLowerCase(), weight);
+    }
+
+    /**
+     * Get the weight that jobs of the given actor should have.
+     *
+     * @param actor the actor, or null
+     * @return the weight
+     */
+    public double getWeight(@Nullable Actor actor) {
+        double weight = 1;
+        if (actor != null) {
+            boolean matched = false;
+            for (Map.Entry<String, Double> entry : groupWeights.entrySet()) {
+                if ((!matched || entry.getValue() > weight) && actor.hasPermission(PERMISSION_PREFIX + entry.getKey())) {
+                    weight = entry.getValue();
+                    matched = true;
+                }
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Get the current number of blocks that may be written per tick.
+     *
+     * @return the number of blocks
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the current limit as a fraction of the maximum.
+     *
+     * @return a number between 0 and 1
+     */
+    public double getScale() {
+        return limit / (double) maxBlocks;
+    }
+
+    /**
+     * Adjust the limit to the measured tick time. This should be called
+     * once per tick.
+     *
+     * @param tickTime the tick time, averaged over the window, in milliseconds
+     */
+    public void update(double tickTime) {
+        if (holdoff > 0) {
+            holdoff--;
+        }
+
+        if (tickTime > targetTickTime) {
+            // Until the window has passed, the average still includes ticks
+            // from before the last cut
+            if (holdoff == 0) {
+                limit = Math.max(minBlocks, (int) (limit * (targetTickTime / tickTime)));
+                holdoff = window;
+            }
+        } else {
+            limit = Math.min(maxBlocks, limit + Math.max(1, maxBlocks / 20));
+        }
+    }
+
+    /**
+     * Share the current limit between the given budgets, replacing
+     * whatever allowance they had left over from the last tick.
+     *
+     * @param budgets the active budgets
+     */
+    public void allocate(Collection<BlockBudget> budgets) {
+        checkNotNull(budgets);
+
+        double totalWeight = 0;
+        for (BlockBudget budget : budgets) {
+            totalWeight += budget.getWeight();
+        }
+
+        for (BlockBudget budget : budgets) {
+            budget.setAllowance(Math.max(1, (long) (limit * (budget.getWeight() / totalWeight))));
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.mask.Mask;
@@ -102,6 +103,11 @@ public class ForgetfulExtentBuffer extends AbstractDelegateExtent implements Pat
         }
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        return setBlock(new Vector(x, y, z), PackedBlock.toBlock(state));
+    }
+
     @Override
     public BaseBlock apply(Vector pos) {
         BaseBlock block = buffer.get(pos.toBlockVector());
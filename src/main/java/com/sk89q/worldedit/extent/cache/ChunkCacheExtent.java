@@ -0,0 +1,120 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.cache;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.BlockReadCache;
+
+/**
+ * Answers block reads from a {@link BlockReadCache} created by the world,
+ * so that reading many blocks of the same chunk only looks the chunk up
+ * once.
+ *
+ * <p>
+ * Every change passed through this extent is reported to the cache, which
+ * then leaves reads near the changed block to the extents below. Changes
+ * that bypass this extent are not seen, so it should sit above any extent
+ * that queues changes instead of applying them to the world right away.
+ * </p>
+ */
+public class ChunkCacheExtent extends AbstractDelegateExtent {
+
+    private final BlockReadCache cache;
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent
+     * @param cache  the cache created by the world that the extent writes to
+     */
+    public ChunkCacheExtent(Extent extent, BlockReadCache cache) {
+        super(extent);
+        checkNotNull(cache);
+        this.cache = cache;
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        BaseBlock block = cache.getBlock(position);
+        return block != null ? block : super.getBlock(position);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        BaseBlock block = cache.getLazyBlock(position);
+        return block != null ? block : super.getLazyBlock(position);
+    }
+
+    @Override
+    public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
+        cache.invalidate(location);
+        return super.setBlock(location, block);
+    }
+
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        int state = cache.getBlockState(x, y, z);
+        return state != PackedBlock.NONE ? state : super.getBlockState(x, y, z);
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        // Blocks with NBT data are always read from the world
+        return super.getNbtBlock(x, y, z);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        cache.invalidate(x, y, z);
+        return super.setBlockState(x, y, z, state);
+    }
+
+    @Override
+    protected Operation commitBefore() {
+        return new Operation() {
+
+            @Override
+            public Operation resume(RunContext run) throws WorldEditException {
+                // Extents below flush their queues right after this, and
+                // the chunks should not be held once the edit is done
+                cache.clear();
+                return null;
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public void addStatusMessages(List<String> messages) {}
+        };
+    }
+
+}
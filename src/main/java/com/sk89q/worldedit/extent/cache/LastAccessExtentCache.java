@@ -52,6 +52,12 @@ public class LastAccessExtentCache extends AbstractDelegateExtent {
         }
     }
 
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        // A packed state is already cheap to read, so there is nothing to cache
+        return super.getBlockState(x, y, z);
+    }
+
     private static class CachedBlock {
 
         private final BlockVector position;
@@ -20,31 +20,55 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
+import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 
 /**
- * Stores block data as a multi-dimensional array of {@link BaseBlock}s and
+ * Stores block data as palette-compressed cubes of packed block states and
  * other data as lists or maps.
+ *
+ * <p>
+ * Tile entity data is kept in a separate map that only has entries for the
+ * blocks that actually carry NBT data.
+ * </p>
  */
 public class BlockArrayClipboard implements Clipboard {
 
+    /**
+     * Rough estimates of the size of a tile entity's NBT data and of an
+     * entity, in bytes.
+     */
+    private static final int NBT_SIZE = 512;
+    private static final int ENTITY_SIZE = 1024;
+
     private final Region region;
     private Vector origin = new Vector();
-    private final BaseBlock[][][] blocks;
+    private final BlockStorage blocks;
+    private final Map<Long, CompoundTag> nbtData = new HashMap<Long, CompoundTag>();
+    private final boolean cuboid;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeZ;
     private final List<ClipboardEntity> entities = new ArrayList<ClipboardEntity>();
 
     /**
@@ -57,12 +81,48 @@ public class BlockArrayClipboard implements Clipboard {
      * @param region the bounding region
      */
     public BlockArrayClipboard(Region region) {
+        this(region, createStorage(region));
+    }
+
+    /**
+     * Create a new instance that keeps its blocks in the given storage.
+     *
+     * @param region the bounding region
+     * @param blocks the storage, sized to the dimensions of the region
+     */
+    BlockArrayClipboard(Region region, BlockStorage blocks) {
         checkNotNull(region);
+        checkNotNull(blocks);
         this.region = region.clone();
         this.origin = region.getMinimumPoint();
+        this.blocks = blocks;
 
-        Vector dimensions = getDimensions();
-        blocks = new BaseBlock[dimensions.getBlockX()][dimensions.getBlockY()][dimensions.getBlockZ()];
+        Vector min = region.getMinimumPoint();
+        Vector dimensions = getDimensions(region);
+        this.cuboid = region instanceof CuboidRegion;
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.sizeX = dimensions.getBlockX();
+        this.sizeZ = dimensions.getBlockZ();
+    }
+
+    private static BlockStorage createStorage(Region region) {
+        checkNotNull(region);
+        Vector dimensions = getDimensions(region);
+        return new PaletteBlockStorage(dimensions.getBlockX(), dimensions.getBlockY(), dimensions.getBlockZ());
+    }
+
+    /**
+     * Get the dimensions of the box that holds the given region.
+     *
+     * @param region the region
+     * @return the dimensions
+     */
+    static Vector getDimensions(Region region) {
+        return region.getMaximumPoint()
+            .subtract(region.getMinimumPoint())
+            .add(1, 1, 1);
     }
 
     @Override
@@ -82,9 +142,7 @@ public class BlockArrayClipboard implements Clipboard {
 
     @Override
     public Vector getDimensions() {
-        return region.getMaximumPoint()
-            .subtract(region.getMinimumPoint())
-            .add(1, 1, 1);
+        return getDimensions(region);
     }
 
     @Override
@@ -126,10 +184,13 @@ public class BlockArrayClipboard implements Clipboard {
     @Override
     public BaseBlock getBlock(Vector position) {
         if (region.contains(position)) {
-            Vector v = position.subtract(region.getMinimumPoint());
-            BaseBlock block = blocks[v.getBlockX()][v.getBlockY()][v.getBlockZ()];
-            if (block != null) {
-                return new BaseBlock(block);
+            int x = position.getBlockX() - minX;
+            int y = position.getBlockY() - minY;
+            int z = position.getBlockZ() - minZ;
+            if (blocks.contains(x, y, z)) {
+                int state = blocks.get(x, y, z);
+                CompoundTag tag = nbtData.isEmpty() ? null : nbtData.get(getKey(x, y, z));
+                return new BaseBlock(PackedBlock.getId(state), PackedBlock.getData(state), tag);
             }
         }
 
@@ -143,15 +204,116 @@ public class BlockArrayClipboard implements Clipboard {
 
     @Override
     public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
-        if (region.contains(position)) {
-            Vector v = position.subtract(region.getMinimumPoint());
-            blocks[v.getBlockX()][v.getBlockY()][v.getBlockZ()] = new BaseBlock(block);
+        if (region.contains(position) && PackedBlock.canPack(block.getId(), block.getData())) {
+            int x = position.getBlockX() - minX;
+            int y = position.getBlockY() - minY;
+            int z = position.getBlockZ() - minZ;
+            if (blocks.contains(x, y, z)) {
+                blocks.set(x, y, z, PackedBlock.pack(block));
+                CompoundTag tag = block.getNbtData();
+                if (tag != null) {
+                    nbtData.put(getKey(x, y, z), tag);
+                } else if (!nbtData.isEmpty()) {
+                    nbtData.remove(getKey(x, y, z));
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        return contains(x, y, z) ? blocks.get(x - minX, y - minY, z - minZ) : 0;
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        if (nbtData.isEmpty() || !contains(x, y, z)) {
+            return null;
+        }
+
+        CompoundTag tag = nbtData.get(getKey(x - minX, y - minY, z - minZ));
+        if (tag == null) {
+            return null;
+        }
+        int state = blocks.get(x - minX, y - minY, z - minZ);
+        return new BaseBlock(PackedBlock.getId(state), PackedBlock.getData(state), tag);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) {
+        if (contains(x, y, z)) {
+            blocks.set(x - minX, y - minY, z - minZ, state);
+            if (!nbtData.isEmpty()) {
+                nbtData.remove(getKey(x - minX, y - minY, z - minZ));
+            }
             return true;
         } else {
             return false;
         }
     }
 
+    private boolean contains(int x, int y, int z) {
+        if (!blocks.contains(x - minX, y - minY, z - minZ)) {
+            return false;
+        }
+        return cuboid || region.contains(new Vector(x, y, z));
+    }
+
+    /**
+     * Get the key of a point in the map of NBT data.
+     *
+     * @param x the X coordinate, relative to the minimum point
+     * @param y the Y coordinate, relative to the minimum point
+     * @param z the Z coordinate, relative to the minimum point
+     * @return the key
+     */
+    private long getKey(int x, int y, int z) {
+        return ((long) y * sizeZ + z) * sizeX + x;
+    }
+
+    /**
+     * Get a rough estimate of the heap memory used by this clipboard.
+     *
+     * @return the estimated size in bytes
+     */
+    public long getMemoryUsage() {
+        return blocks.getMemoryUsage() + (long) nbtData.size() * NBT_SIZE + (long) entities.size() * ENTITY_SIZE;
+    }
+
+    /**
+     * Create a copy of this clipboard that is kept in memory.
+     *
+     * @return a new clipboard
+     */
+    public BlockArrayClipboard copy() {
+        BlockArrayClipboard copy = new BlockArrayClipboard(region);
+        copy.origin = origin;
+
+        Vector dimensions = getDimensions();
+        int sizeY = dimensions.getBlockY();
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    int state = blocks.get(x, y, z);
+                    if (state != 0) {
+                        copy.blocks.set(x, y, z, state);
+                    }
+                }
+            }
+        }
+        // Tags are immutable and can be shared
+        copy.nbtData.putAll(nbtData);
+        for (ClipboardEntity entity : entities) {
+            copy.createEntity(entity.getLocation(), entity.getState());
+        }
+
+        return copy;
+    }
+
     @Override
     public BaseBiome getBiome(Vector2D position) {
         return new BaseBiome(0);
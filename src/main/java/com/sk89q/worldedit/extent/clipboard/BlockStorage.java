@@ -0,0 +1,69 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+/**
+ * Stores a packed block state for every point of a box, with air at every
+ * point that was never set.
+ *
+ * <p>
+ * Coordinates are relative to the minimum point of the box and are
+ * expected to be checked with {@link #contains(int, int, int)} first.
+ * </p>
+ */
+interface BlockStorage {
+
+    /**
+     * Return whether the given point is inside the storage.
+     *
+     * @param x the X coordinate, relative to the minimum point
+     * @param y the Y coordinate, relative to the minimum point
+     * @param z the Z coordinate, relative to the minimum point
+     * @return true if the point is inside
+     */
+    boolean contains(int x, int y, int z);
+
+    /**
+     * Get the state at a point inside the storage.
+     *
+     * @param x the X coordinate, relative to the minimum point
+     * @param y the Y coordinate, relative to the minimum point
+     * @param z the Z coordinate, relative to the minimum point
+     * @return the state, packed with {@link PackedBlock}
+     */
+    int get(int x, int y, int z);
+
+    /**
+     * Set the state at a point inside the storage.
+     *
+     * @param x     the X coordinate, relative to the minimum point
+     * @param y     the Y coordinate, relative to the minimum point
+     * @param z     the Z coordinate, relative to the minimum point
+     * @param state the state, packed with {@link PackedBlock}
+     */
+    void set(int x, int y, int z, int state);
+
+    /**
+     * Get an estimate of the heap memory used by the stored states.
+     *
+     * @return the number of bytes
+     */
+    long getMemoryUsage();
+
+}
@@ -0,0 +1,158 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores packed block states in a memory-mapped file, so that the states
+ * take no space on the heap.
+ *
+ * <p>
+ * Each block takes four bytes of the file, in Y, Z, X order. The file is
+ * mapped in segments because a single mapping cannot be larger than 2 GB.
+ * The file starts out empty, which reads as air, and most file systems do
+ * not allocate space for parts of it that were never written.
+ * </p>
+ */
+class MappedBlockStorage implements BlockStorage, Closeable {
+
+    private static final int SEGMENT_BITS = 26;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_BITS) - 1;
+
+    private final File file;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private IntBuffer[] segments;
+
+    /**
+     * Create a new storage filled with air, backed by a new file in the
+     * given directory.
+     *
+     * @param directory the directory, which is created if it does not exist
+     * @param sizeX     the size along the X axis
+     * @param sizeY     the size along the Y axis
+     * @param sizeZ     the size along the Z axis
+     * @throws IOException thrown if the file cannot be created or mapped
+     */
+    MappedBlockStorage(File directory, int sizeX, int sizeY, int sizeZ) throws IOException {
+        checkNotNull(directory);
+        checkArgument(sizeX > 0 && sizeY > 0 && sizeZ > 0, "size must be positive");
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory.getAbsolutePath());
+        }
+        file = File.createTempFile("clipboard", ".dat", directory);
+
+        long volume = (long) sizeX * sizeY * sizeZ;
+        int count = (int) ((volume + SEGMENT_MASK) >>> SEGMENT_BITS);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(volume * 4);
+            FileChannel channel = raf.getChannel();
+            IntBuffer[] segments = new IntBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                long length = Math.min(volume - start, 1L << SEGMENT_BITS);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * 4, length * 4)
+                    .asIntBuffer();
+            }
+            this.segments = segments;
+        } catch (IOException e) {
+            delete();
+            throw e;
+        } finally {
+            // The mappings stay valid after the file is closed
+            raf.close();
+        }
+    }
+
+    /**
+     * Get the file that backs this storage.
+     *
+     * @return the file
+     */
+    File getFile() {
+        return file;
+    }
+
+    private IntBuffer[] getSegments() {
+        IntBuffer[] segments = this.segments;
+        if (segments == null) {
+            throw new IllegalStateException("This clipboard has been released");
+        }
+        return segments;
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+    }
+
+    @Override
+    public int get(int x, int y, int z) {
+        long index = ((long) y * sizeZ + z) * sizeX + x;
+        return getSegments()[(int) (index >>> SEGMENT_BITS)].get((int) index & SEGMENT_MASK);
+    }
+
+    @Override
+    public void set(int x, int y, int z, int state) {
+        long index = ((long) y * sizeZ + z) * sizeX + x;
+        getSegments()[(int) (index >>> SEGMENT_BITS)].put((int) index & SEGMENT_MASK, state);
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        // The states themselves are off the heap
+        IntBuffer[] segments = this.segments;
+        return 64 + (segments != null ? segments.length * 64L : 0);
+    }
+
+    /**
+     * Drop the mappings and delete the file.
+     *
+     * <p>
+     * The memory of the mappings is given back once they are garbage
+     * collected. Any further use of the storage fails.
+     * </p>
+     */
+    @Override
+    public void close() {
+        segments = null;
+        delete();
+    }
+
+    private void delete() {
+        // Some platforms refuse to delete a file that is still mapped
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.Region;
+
+/**
+ * A {@link BlockArrayClipboard} that keeps its blocks in a memory-mapped
+ * file instead of on the heap, for copies too large to fit in memory.
+ *
+ * <p>
+ * Tile entity data and entities are still kept in memory. The file is
+ * deleted by {@link #close()}, after which the clipboard can no longer be
+ * used.
+ * </p>
+ */
+public class MappedClipboard extends BlockArrayClipboard implements Closeable {
+
+    private static final Logger log = Logger.getLogger(MappedClipboard.class.getCanonicalName());
+
+    private final MappedBlockStorage storage;
+
+    /**
+     * Create a new instance.
+     *
+     * <p>
+     * The origin will be placed at the region's lowest minimum point.
+     * </p>
+     *
+     * @param region    the bounding region
+     * @param directory the directory to create the file in, which is
+     *                  created if it does not exist
+     * @throws IOException thrown if the file cannot be created or mapped
+     */
+    public MappedClipboard(Region region, File directory) throws IOException {
+        this(region, createStorage(region, directory));
+    }
+
+    private MappedClipboard(Region region, MappedBlockStorage storage) {
+        super(region, storage);
+        this.storage = storage;
+    }
+
+    private static MappedBlockStorage createStorage(Region region, File directory) throws IOException {
+        checkNotNull(region);
+        Vector dimensions = getDimensions(region);
+        return new MappedBlockStorage(
+            directory,
+            dimensions.getBlockX(),
+            dimensions.getBlockY(),
+            dimensions.getBlockZ());
+    }
+
+    /**
+     * Get the file that holds the blocks.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return storage.getFile();
+    }
+
+    /**
+     * Delete the clipboard files left behind in the given directory, such
+     * as when the server crashed before their clipboards were closed. This
+     * must only be called while no mapped clipboards exist.
+     *
+     * @param directory the directory that clipboards were created in
+     */
+    public static void deleteFiles(File directory) {
+        checkNotNull(directory);
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith("clipboard") && name.endsWith(".dat")) {
+                if (file.delete()) {
+                    deleted++;
+                } else {
+                    log.warning("Could not delete clipboard file " + file.getAbsolutePath());
+                }
+            }
+        }
+
+        if (deleted > 0) {
+            log.info("Deleted " + deleted + " clipboard files left over from a previous run");
+        }
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+}
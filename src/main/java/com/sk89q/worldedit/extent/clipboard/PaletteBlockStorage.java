@@ -0,0 +1,252 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+/**
+ * Stores packed block states for a box of blocks in 16x16x16 cubes, each
+ * with its own palette and an array of bit-packed palette indices.
+ *
+ * <p>
+ * The first entry of every palette is air. A cube that only holds air
+ * needs no index array at all, a cube that only holds one other state,
+ * such as one filled with stone, needs one bit per block, and most other
+ * cubes need no more than four or eight bits per block. Cubes that were
+ * never written to are not allocated and read as air.
+ * </p>
+ */
+class PaletteBlockStorage implements BlockStorage {
+
+    private static final int CUBE_BITS = 4;
+    private static final int CUBE_MASK = (1 << CUBE_BITS) - 1;
+
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int cubesX;
+    private final int cubesZ;
+    private final Cube[] cubes;
+
+    /**
+     * Create a new storage filled with air.
+     *
+     * @param sizeX the size along the X axis
+     * @param sizeY the size along the Y axis
+     * @param sizeZ the size along the Z axis
+     */
+    PaletteBlockStorage(int sizeX, int sizeY, int sizeZ) {
+        checkArgument(sizeX > 0 && sizeY > 0 && sizeZ > 0, "size must be positive");
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.cubesX = (sizeX + CUBE_MASK) >> CUBE_BITS;
+        this.cubesZ = (sizeZ + CUBE_MASK) >> CUBE_BITS;
+        int cubesY = (sizeY + CUBE_MASK) >> CUBE_BITS;
+        long count = (long) cubesX * cubesY * cubesZ;
+        checkArgument(count <= Integer.MAX_VALUE, "too many blocks");
+        this.cubes = new Cube[(int) count];
+    }
+
+    private int getCubeIndex(int x, int y, int z) {
+        return ((y >> CUBE_BITS) * cubesZ + (z >> CUBE_BITS)) * cubesX + (x >> CUBE_BITS);
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y & CUBE_MASK) << (CUBE_BITS * 2) | (z & CUBE_MASK) << CUBE_BITS | (x & CUBE_MASK);
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < sizeX && y < sizeY && z < sizeZ;
+    }
+
+    @Override
+    public int get(int x, int y, int z) {
+        Cube cube = cubes[getCubeIndex(x, y, z)];
+        return cube != null ? cube.get(getIndex(x, y, z)) : 0;
+    }
+
+    @Override
+    public void set(int x, int y, int z, int state) {
+        int cubeIndex = getCubeIndex(x, y, z);
+        Cube cube = cubes[cubeIndex];
+        if (cube == null) {
+            if (state == 0) {
+                return;
+            }
+            cube = cubes[cubeIndex] = new Cube();
+        }
+        cube.set(getIndex(x, y, z), state);
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long usage = 16 + cubes.length * 4L;
+        for (Cube cube : cubes) {
+            if (cube != null) {
+                usage += 32 + cube.palette.length * 4L + (cube.data != null ? 16 + cube.data.length * 8L : 0);
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * A 16x16x16 cube with its own palette.
+     *
+     * <p>
+     * Indices take 1, 2, 4, 8 or 16 bits, so they never straddle two
+     * {@code long}s. Without an index array, every block is air, the
+     * first state of the palette.
+     * </p>
+     *
+     * <p>
+     * States stay in the palette after the last block using them has been
+     * replaced, so a palette that runs out of 16 bit indices is compacted
+     * to the states that are still in use, of which there can be no more
+     * than 4096 besides air.
+     * </p>
+     */
+    private static class Cube {
+
+        private static final int MAX_PALETTE_SIZE = 1 << 16;
+
+        private int[] palette = new int[] { 0 };
+        private int paletteSize = 1;
+        private long[] data;
+        private int log;
+        private int lastState;
+        private int lastIndex;
+
+        private int get(int index) {
+            if (data == null) {
+                return palette[0];
+            }
+            return palette[read(data, log, index)];
+        }
+
+        private void set(int index, int state) {
+            int paletteIndex = indexOf(state);
+            if (paletteIndex < 0) {
+                paletteIndex = add(state);
+            }
+            if (data == null) {
+                if (paletteIndex == 0) {
+                    return;
+                }
+                data = new long[4096 >> 6];
+                log = 0;
+            }
+            write(data, log, index, paletteIndex);
+        }
+
+        private int indexOf(int state) {
+            // Writes usually come in runs of the same state
+            if (lastState == state && lastIndex < paletteSize) {
+                return lastIndex;
+            }
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == state) {
+                    lastState = state;
+                    lastIndex = i;
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int add(int state) {
+            if (data != null && paletteSize == MAX_PALETTE_SIZE) {
+                compact();
+            }
+            if (paletteSize == palette.length) {
+                palette = Arrays.copyOf(palette, paletteSize * 2);
+            }
+            int index = paletteSize++;
+            palette[index] = state;
+            if (data != null && paletteSize > 1 << (1 << log)) {
+                resize(log + 1);
+            }
+            lastState = state;
+            lastIndex = index;
+            return index;
+        }
+
+        private void resize(int newLog) {
+            long[] resized = new long[4096 >> (6 - newLog)];
+            for (int i = 0; i < 4096; i++) {
+                write(resized, newLog, i, read(data, log, i));
+            }
+            data = resized;
+            log = newLog;
+        }
+
+        private void compact() {
+            int[] remapped = new int[paletteSize];
+            Arrays.fill(remapped, -1);
+            remapped[0] = 0;
+            int[] compacted = new int[4096 + 1];
+            compacted[0] = palette[0];
+            int size = 1;
+
+            int[] indices = new int[4096];
+            for (int i = 0; i < 4096; i++) {
+                int paletteIndex = read(data, log, i);
+                if (remapped[paletteIndex] < 0) {
+                    remapped[paletteIndex] = size;
+                    compacted[size++] = palette[paletteIndex];
+                }
+                indices[i] = remapped[paletteIndex];
+            }
+
+            int newLog = 0;
+            while (size > 1 << (1 << newLog)) {
+                newLog++;
+            }
+            data = new long[4096 >> (6 - newLog)];
+            log = newLog;
+            for (int i = 0; i < 4096; i++) {
+                write(data, log, i, indices[i]);
+            }
+
+            palette = Arrays.copyOf(compacted, size * 2);
+            paletteSize = size;
+            lastState = palette[0];
+            lastIndex = 0;
+        }
+
+        private static int read(long[] data, int log, int index) {
+            int bits = 1 << log;
+            long word = data[index >>> (6 - log)];
+            int shift = (index & ((64 >> log) - 1)) << log;
+            return (int) (word >>> shift) & (-1 >>> (32 - bits));
+        }
+
+        private static void write(long[] data, int log, int index, int value) {
+            int bits = 1 << log;
+            int slot = index >>> (6 - log);
+            int shift = (index & ((64 >> log) - 1)) << log;
+            long mask = ((1L << bits) - 1) << shift;
+            data[slot] = data[slot] & ~mask | ((long) value << shift) & mask;
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.logging.Level;
@@ -33,19 +34,23 @@ import javax.annotation.Nullable;
 import net.minecraft.block.Block;
 import net.minecraft.item.Item;
 
+import com.google.common.collect.ImmutableSet;
+
 import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.NamedTag;
+import com.sk89q.jnbt.NBTStreamReader;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
-import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
@@ -61,6 +66,40 @@ import com.sk89q.worldedit.world.storage.NBTConversions;
 public class SchematicReader implements ClipboardReader {
 
     private static final Logger log = Logger.getLogger(SchematicReader.class.getCanonicalName());
+    private static final Set<String> SCHEMATIC_TAGS = ImmutableSet.of(
+        "Width",
+        "Height",
+        "Length",
+        "Materials",
+        "WEOriginX",
+        "WEOriginY",
+        "WEOriginZ",
+        "WEOffsetX",
+        "WEOffsetY",
+        "WEOffsetZ",
+        "BlockMapping",
+        "ItemMapping",
+        "Blocks",
+        "Data",
+        "AddBlocks",
+        "AddBlocks2",
+        "AddData",
+        "Entities",
+        SchematicWriter.BLOCKS_COMPLETE_TAG);
+    private static final Set<String> REQUIRED_BLOCK_TAGS = ImmutableSet
+        .of("Width", "Height", "Length", "Materials", "Blocks", "Data");
+    private static final Set<String> OPTIONAL_BLOCK_TAGS = ImmutableSet.of(
+        "WEOriginX",
+        "WEOriginY",
+        "WEOriginZ",
+        "WEOffsetX",
+        "WEOffsetY",
+        "WEOffsetZ",
+        "BlockMapping",
+        "ItemMapping",
+        "AddBlocks",
+        "AddBlocks2",
+        "AddData");
     private final NBTInputStream inputStream;
 
     /**
@@ -72,385 +111,494 @@ public class SchematicReader implements ClipboardReader {
         checkNotNull(inputStream);
         this.inputStream = inputStream;
     }
-
     @Override
     public Clipboard read(WorldData data) throws IOException {
         // Schematic tag
-        NamedTag rootTag = inputStream.readNamedTag();
-        if (!rootTag.getName()
+        NBTStreamReader reader = inputStream.getStreamReader();
+        if (reader.next() != NBTConstants.TYPE_COMPOUND || !reader.getName()
             .equals("Schematic")) {
             throw new IOException("Tag 'Schematic' does not exist or is not first");
         }
-        CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
 
-        // Check
-        Map<String, Tag> schematic = schematicTag.getValue();
-        if (!schematic.containsKey("Blocks")) {
-            throw new IOException("Schematic file is missing a 'Blocks' tag");
+        // Unknown tags are skipped by next() instead of being read
+        Map<String, Tag> schematic = new HashMap<String, Tag>();
+        SchematicBlocks blocks = null;
+        List<CompoundTag> tileEntities = null;
+        reader.beginCompound();
+        while (reader.next() != NBTConstants.TYPE_END) {
+            if (reader.getName()
+                .equals("TileEntities")) {
+                if (reader.getType() != NBTConstants.TYPE_LIST) {
+                    throw new IOException("TileEntities tag is not of tag type " + ListTag.class.getName());
+                }
+                if (blocks == null && hasBlocks(schematic)) {
+                    blocks = new SchematicBlocks(schematic);
+                }
+                tileEntities = readTileEntities(reader, blocks);
+            } else if (SCHEMATIC_TAGS.contains(reader.getName())) {
+                schematic.put(reader.getName(), reader.readTag());
+            }
         }
 
-        // Check type of Schematic
-        String materials = requireTag(schematic, "Materials", StringTag.class).getValue();
-        if (!materials.equals("Alpha")) {
-            throw new IOException("Schematic file is not an Alpha schematic");
+        if (tileEntities == null) {
+            throw new IOException("Schematic file is missing a \"TileEntities\" tag");
         }
 
-        // ====================================================================
-        // Metadata
-        // ====================================================================
-
-        Vector origin;
-        Region region;
-
-        // Get information
-        short width = requireTag(schematic, "Width", ShortTag.class).getValue();
-        short height = requireTag(schematic, "Height", ShortTag.class).getValue();
-        short length = requireTag(schematic, "Length", ShortTag.class).getValue();
-
-        try {
-            int originX = requireTag(schematic, "WEOriginX", IntTag.class).getValue();
-            int originY = requireTag(schematic, "WEOriginY", IntTag.class).getValue();
-            int originZ = requireTag(schematic, "WEOriginZ", IntTag.class).getValue();
-            Vector min = new Vector(originX, originY, originZ);
-
-            int offsetX = requireTag(schematic, "WEOffsetX", IntTag.class).getValue();
-            int offsetY = requireTag(schematic, "WEOffsetY", IntTag.class).getValue();
-            int offsetZ = requireTag(schematic, "WEOffsetZ", IntTag.class).getValue();
-            Vector offset = new Vector(offsetX, offsetY, offsetZ);
-
-            origin = min.subtract(offset);
-            region = new CuboidRegion(
-                min,
-                min.add(width, height, length)
-                    .subtract(Vector.ONE));
-        } catch (IOException ignored) {
-            origin = new Vector(0, 0, 0);
-            region = new CuboidRegion(
-                origin,
-                origin.add(width, height, length)
-                    .subtract(Vector.ONE));
+        // The tile entities came before the blocks, so they were kept
+        if (blocks == null) {
+            blocks = new SchematicBlocks(schematic);
+        }
+        for (CompoundTag tileEntity : tileEntities) {
+            blocks.setTileEntity(tileEntity);
         }
 
+        Clipboard clipboard = blocks.clipboard;
+
         // ====================================================================
-        // Blocks
+        // Entities
         // ====================================================================
 
-        Map<Short, Short> blockConversionMap = new HashMap<>();
-        if (schematic.containsKey("BlockMapping")) {
-            Map<String, Tag> mapping = requireTag(schematic, "BlockMapping", CompoundTag.class).getValue();
+        try {
+            List<Tag> entityTags = requireTag(schematic, "Entities", ListTag.class).getValue();
+
+            for (Tag tag : entityTags) {
+                if (tag instanceof CompoundTag) {
+                    CompoundTag compound = (CompoundTag) tag;
+                    String id = compound.getString("id");
+                    Location location = NBTConversions
+                        .toLocation(clipboard, compound.getListTag("Pos"), compound.getListTag("Rotation"));
 
-            for (String key : mapping.keySet()) {
-                short sourceId = requireTag(mapping, key, ShortTag.class).getValue();
-                Block block = Block.getBlockFromName(key);
-                blockConversionMap.put(sourceId, (short) Block.getIdFromBlock(block));
+                    if (!id.isEmpty()) {
+                        BaseEntity state = new BaseEntity(id, compound);
+                        clipboard.createEntity(location, state);
+                    }
+                }
             }
+        } catch (IOException ignored) { // No entities? No problem
         }
 
-        Map<Short, Short> itemConversionMap = new HashMap<>();
-        if (schematic.containsKey("ItemMapping")) {
-            Map<String, Tag> mapping = requireTag(schematic, "ItemMapping", CompoundTag.class).getValue();
+        return clipboard;
+    }
 
-            for (String key : mapping.keySet()) {
-                short sourceId = requireTag(mapping, key, ShortTag.class).getValue();
-                Item item = (Item) Item.itemRegistry.getObject(key);
-                itemConversionMap.put(sourceId, (short) Item.getIdFromItem(item));
-            }
+    /**
+     * Return whether no tag that describes the blocks can follow anymore.
+     *
+     * <p>
+     * That is the case once every such tag has been read, including the
+     * optional ones, or once the marker that {@link SchematicWriter} writes
+     * after them has been read. Otherwise, a tag such as AddBlocks could
+     * still follow the tile entities and change the blocks that they belong
+     * to, so they have to be kept until the end of the schematic.
+     * </p>
+     *
+     * @param schematic the tags read so far
+     * @return true if the blocks can be placed
+     */
+    private static boolean hasBlocks(Map<String, Tag> schematic) {
+        if (!schematic.keySet()
+            .containsAll(REQUIRED_BLOCK_TAGS)) {
+            return false;
         }
+        return schematic.containsKey(SchematicWriter.BLOCKS_COMPLETE_TAG) || schematic.keySet()
+            .containsAll(OPTIONAL_BLOCK_TAGS);
+    }
 
-        // Get blocks
-        byte[] blockId = requireTag(schematic, "Blocks", ByteArrayTag.class).getValue();
-        byte[] blockData = requireTag(schematic, "Data", ByteArrayTag.class).getValue();
-        byte[] addData = null;
-        if (schematic.containsKey("AddData")) {
-            addData = requireTag(schematic, "AddData", ByteArrayTag.class).getValue();
-        }
+    /**
+     * The blocks of a schematic, placed in a new clipboard.
+     */
+    private static class SchematicBlocks {
+
+        private final BlockArrayClipboard clipboard;
+        private final short width;
+        private final short height;
+        private final short length;
+        private final Vector minimumPoint;
+        private final Map<Short, Short> itemConversionMap = new HashMap<>();
+        private final Function<CompoundTag, CompoundTag> convertItems;
+        // Don't log a torrent of errors
+        private int failedBlockSets;
+
+        /**
+         * Create a clipboard and place the blocks of the schematic in it.
+         *
+         * @param schematic the tags of the schematic
+         * @throws IOException thrown if a tag is missing or invalid
+         */
+        private SchematicBlocks(Map<String, Tag> schematic) throws IOException {
+            // Check
+            if (!schematic.containsKey("Blocks")) {
+                throw new IOException("Schematic file is missing a 'Blocks' tag");
+            }
 
-        byte[] addId = new byte[0];
-        byte[] addId2 = new byte[0];
-        short[] blocks = new short[blockId.length]; // Have to later combine IDs
+            // Check type of Schematic
+            String materials = requireTag(schematic, "Materials", StringTag.class).getValue();
+            if (!materials.equals("Alpha")) {
+                throw new IOException("Schematic file is not an Alpha schematic");
+            }
 
-        // We support 4096 block IDs using the same method as vanilla Minecraft, where
-        // the highest 4 bits are stored in a separate byte array.
-        if (schematic.containsKey("AddBlocks")) {
-            addId = requireTag(schematic, "AddBlocks", ByteArrayTag.class).getValue();
-        }
+            // ====================================================================
+            // Metadata
+            // ====================================================================
+
+            Vector origin;
+            Region region;
+
+            // Get information
+            width = requireTag(schematic, "Width", ShortTag.class).getValue();
+            height = requireTag(schematic, "Height", ShortTag.class).getValue();
+            length = requireTag(schematic, "Length", ShortTag.class).getValue();
+
+            try {
+                int originX = requireTag(schematic, "WEOriginX", IntTag.class).getValue();
+                int originY = requireTag(schematic, "WEOriginY", IntTag.class).getValue();
+                int originZ = requireTag(schematic, "WEOriginZ", IntTag.class).getValue();
+                Vector min = new Vector(originX, originY, originZ);
+
+                int offsetX = requireTag(schematic, "WEOffsetX", IntTag.class).getValue();
+                int offsetY = requireTag(schematic, "WEOffsetY", IntTag.class).getValue();
+                int offsetZ = requireTag(schematic, "WEOffsetZ", IntTag.class).getValue();
+                Vector offset = new Vector(offsetX, offsetY, offsetZ);
+
+                origin = min.subtract(offset);
+                region = new CuboidRegion(
+                    min,
+                    min.add(width, height, length)
+                        .subtract(Vector.ONE));
+            } catch (IOException ignored) {
+                origin = new Vector(0, 0, 0);
+                region = new CuboidRegion(
+                    origin,
+                    origin.add(width, height, length)
+                        .subtract(Vector.ONE));
+            }
 
-        if (schematic.containsKey("AddBlocks2")) {
-            addId2 = requireTag(schematic, "AddBlocks2", ByteArrayTag.class).getValue();
-        }
+            // ====================================================================
+            // Blocks
+            // ====================================================================
 
-        // Combine the AddBlocks data with the first 8-bit block ID
-        for (int index = 0; index < blockId.length; index++) {
-            if ((index >> 1) >= addId.length) { // No corresponding AddBlocks index
-                blocks[index] = (short) (blockId[index] & 0xFF);
-            } else {
-                if ((index & 1) == 0) {
-                    blocks[index] = (short) (((addId[index >> 1] & 0x0F) << 8) + (blockId[index] & 0xFF));
-                } else {
-                    blocks[index] = (short) (((addId[index >> 1] & 0xF0) << 4) + (blockId[index] & 0xFF));
+            Map<Short, Short> blockConversionMap = new HashMap<>();
+            if (schematic.containsKey("BlockMapping")) {
+                Map<String, Tag> mapping = requireTag(schematic, "BlockMapping", CompoundTag.class).getValue();
+
+                for (String key : mapping.keySet()) {
+                    short sourceId = requireTag(mapping, key, ShortTag.class).getValue();
+                    Block block = Block.getBlockFromName(key);
+                    blockConversionMap.put(sourceId, (short) Block.getIdFromBlock(block));
                 }
             }
-        }
 
-        for (int index = 0; index < blockId.length; index++) {
-            if ((index >> 1) < addId2.length) { // No corresponding AddBlocks2 index
-                if ((index & 1) == 0) {
-                    blocks[index] = (short) (((addId2[index >> 1] & 0x0F) << 8) + (blocks[index] & 0xFFF));
-                } else {
-                    blocks[index] = (short) (((addId2[index >> 1] & 0xF0) << 4) + (blocks[index] & 0xFFF));
+            if (schematic.containsKey("ItemMapping")) {
+                Map<String, Tag> mapping = requireTag(schematic, "ItemMapping", CompoundTag.class).getValue();
+
+                for (String key : mapping.keySet()) {
+                    short sourceId = requireTag(mapping, key, ShortTag.class).getValue();
+                    Item item = (Item) Item.itemRegistry.getObject(key);
+                    itemConversionMap.put(sourceId, (short) Item.getIdFromItem(item));
                 }
             }
-        }
 
-        // Need to pull out tile entities
-        List<Tag> tileEntities = requireTag(schematic, "TileEntities", ListTag.class).getValue();
-        Map<BlockVector, Map<String, Tag>> tileEntitiesMap = new HashMap<BlockVector, Map<String, Tag>>();
+            // Get blocks
+            byte[] blockId = requireTag(schematic, "Blocks", ByteArrayTag.class).getValue();
+            byte[] blockData = requireTag(schematic, "Data", ByteArrayTag.class).getValue();
+            byte[] addData = null;
+            if (schematic.containsKey("AddData")) {
+                addData = requireTag(schematic, "AddData", ByteArrayTag.class).getValue();
+            }
 
-        for (Tag tag : tileEntities) {
-            if (!(tag instanceof CompoundTag)) continue;
-            CompoundTag t = (CompoundTag) tag;
+            byte[] addId = new byte[0];
+            byte[] addId2 = new byte[0];
 
-            int x = 0;
-            int y = 0;
-            int z = 0;
+            // We support 4096 block IDs using the same method as vanilla Minecraft, where
+            // the highest 4 bits are stored in a separate byte array.
+            if (schematic.containsKey("AddBlocks")) {
+                addId = requireTag(schematic, "AddBlocks", ByteArrayTag.class).getValue();
+            }
 
-            Map<String, Tag> values = new HashMap<String, Tag>();
+            if (schematic.containsKey("AddBlocks2")) {
+                addId2 = requireTag(schematic, "AddBlocks2", ByteArrayTag.class).getValue();
+            }
 
-            for (Map.Entry<String, Tag> entry : t.getValue()
-                .entrySet()) {
-                if (entry.getKey()
-                    .equals("x")) {
-                    if (entry.getValue() instanceof IntTag) {
-                        x = ((IntTag) entry.getValue()).getValue();
-                    }
-                } else if (entry.getKey()
-                    .equals("y")) {
-                        if (entry.getValue() instanceof IntTag) {
-                            y = ((IntTag) entry.getValue()).getValue();
+            final BiPredicate<CompoundTag, String[]> isItem = new BiPredicate<CompoundTag, String[]>() {
+
+                @Override
+                public boolean test(CompoundTag itemTag, String[] idPtr) {
+                    boolean c1 = ((idPtr[0] = "id") != null && itemTag.containsKey("id")
+                        && itemTag.containsKey("Count")
+                        && itemTag.containsKey("Damage"));
+                    boolean c2 = (((idPtr[0] = "Item") != null) && itemTag.containsKey("Item")
+                        && itemTag.containsKey("Count")
+                        && itemTag.containsKey("Meta"));
+                    boolean c3 = (((idPtr[0] = "id") != null) && itemTag.containsKey("id")
+                        && itemTag.getValue()
+                            .get("id") instanceof IntTag);
+                    return c1 || c2 || c3;
+                }
+            };
+
+            this.convertItems = new Function<CompoundTag, CompoundTag>() {
+
+                @Override
+                public CompoundTag apply(CompoundTag nbtData) {
+                    String[] idPtr = new String[1];
+                    if (isItem.test(nbtData, idPtr)) {
+                        short id;
+                        Integer id_data = null;
+                        if (nbtData.getValue()
+                            .get(idPtr[0]) instanceof IntTag) {
+                            id_data = nbtData.getInt(idPtr[0]);
+                            id = id_data.shortValue();
+                        } else {
+                            id = nbtData.getShort(idPtr[0]);
                         }
-                    } else if (entry.getKey()
-                        .equals("z")) {
-                            if (entry.getValue() instanceof IntTag) {
-                                z = ((IntTag) entry.getValue()).getValue();
-                            }
+                        HashMap<String, Tag> itemMap = new HashMap<String, Tag>(nbtData.getValue());
+                        short newId = itemConversionMap.getOrDefault(id, id);
+                        if (id_data != null) {
+                            itemMap.put(idPtr[0], new IntTag(newId + (id_data & 0xFFFF0000)));
+                        } else {
+                            itemMap.put(idPtr[0], new ShortTag(newId));
                         }
 
-                values.put(entry.getKey(), entry.getValue());
-            }
-
-            BlockVector vec = new BlockVector(x, y, z);
-            tileEntitiesMap.put(vec, values);
-        }
-
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
-        clipboard.setOrigin(origin);
-
-        // Don't log a torrent of errors
-        int failedBlockSets = 0;
+                        if (nbtData.containsKey("tag") && itemMap.get("tag") instanceof CompoundTag) {
+                            itemMap.put("tag", apply((CompoundTag) itemMap.get("tag")));
+                        }
 
-        for (int x = 0; x < width; ++x) {
-            for (int y = 0; y < height; ++y) {
-                for (int z = 0; z < length; ++z) {
-                    int index = y * width * length + z * width + x;
-                    BlockVector pt = new BlockVector(x, y, z);
+                        if (nbtData.containsKey("d") && itemMap.get("d") instanceof CompoundTag) {
+                            itemMap.put("d", apply((CompoundTag) itemMap.get("d")));
+                        }
+                        return nbtData.setValue(itemMap);
+                    } else {
+
+                        HashMap<String, Tag> nbtMap = new HashMap<String, Tag>(nbtData.getValue());
+                        if (nbtData.containsKey("id") && nbtData.getValue()
+                            .get("id") instanceof StringTag
+                            && "customDoorTileEntity".equals(
+                                ((StringTag) nbtData.getValue()
+                                    .get("id")).getValue())) {
+
+                            String key;
+
+                            if (nbtData.containsKey(key = "bottomMaterial") && nbtData.getValue()
+                                .get(key) instanceof IntTag) {
+                                IntTag itag = (IntTag) nbtData.getValue()
+                                    .get(key);
+                                int _id = itag.getValue();
+                                nbtMap.put(
+                                    key,
+                                    new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
+                            }
 
-                    if (!blockConversionMap.isEmpty()) {
-                        blocks[index] = blockConversionMap.getOrDefault(blocks[index], blocks[index]);
-                    }
+                            if (nbtData.containsKey(key = "topMaterial") && nbtData.getValue()
+                                .get(key) instanceof IntTag) {
+                                IntTag itag = (IntTag) nbtData.getValue()
+                                    .get(key);
+                                int _id = itag.getValue();
+                                nbtMap.put(
+                                    key,
+                                    new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
+                            }
 
-                    BaseBlock block = new BaseBlock(
-                        blocks[index] & 0xFFFF,
-                        (blockData[index] & 0xFF) + (addData != null ? ((addData[index] & 0xFF) << 8) : 0));
-
-                    if (tileEntitiesMap.containsKey(pt)) {
-                        final BiPredicate<CompoundTag, String[]> isItem = new BiPredicate<CompoundTag, String[]>() {
-
-                            @Override
-                            public boolean test(CompoundTag itemTag, String[] idPtr) {
-                                boolean c1 = ((idPtr[0] = "id") != null && itemTag.containsKey("id")
-                                    && itemTag.containsKey("Count")
-                                    && itemTag.containsKey("Damage"));
-                                boolean c2 = (((idPtr[0] = "Item") != null) && itemTag.containsKey("Item")
-                                    && itemTag.containsKey("Count")
-                                    && itemTag.containsKey("Meta"));
-                                boolean c3 = (((idPtr[0] = "id") != null) && itemTag.containsKey("id")
-                                    && itemTag.getValue()
-                                        .get("id") instanceof IntTag);
-                                return c1 || c2 || c3;
+                            if (nbtData.containsKey(key = "frame") && nbtData.getValue()
+                                .get(key) instanceof IntTag) {
+                                IntTag itag = (IntTag) nbtData.getValue()
+                                    .get(key);
+                                int _id = itag.getValue();
+                                nbtMap.put(
+                                    key,
+                                    new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
                             }
-                        };
-
-                        final Function<CompoundTag, CompoundTag> convertItems = new Function<CompoundTag, CompoundTag>() {
-
-                            @Override
-                            public CompoundTag apply(CompoundTag nbtData) {
-                                String[] idPtr = new String[1];
-                                if (isItem.test(nbtData, idPtr)) {
-                                    short id;
-                                    Integer id_data = null;
-                                    if (nbtData.getValue()
-                                        .get(idPtr[0]) instanceof IntTag) {
-                                        id_data = nbtData.getInt(idPtr[0]);
-                                        id = id_data.shortValue();
-                                    } else {
-                                        id = nbtData.getShort(idPtr[0]);
-                                    }
-                                    HashMap<String, Tag> itemMap = new HashMap<String, Tag>(nbtData.getValue());
-                                    short newId = itemConversionMap.getOrDefault(id, id);
-                                    if (id_data != null) {
-                                        itemMap.put(idPtr[0], new IntTag(newId + (id_data & 0xFFFF0000)));
-                                    } else {
-                                        itemMap.put(idPtr[0], new ShortTag(newId));
-                                    }
 
-                                    if (nbtData.containsKey("tag") && itemMap.get("tag") instanceof CompoundTag) {
-                                        itemMap.put("tag", apply((CompoundTag) itemMap.get("tag")));
-                                    }
+                            if (nbtData.containsKey(key = "block") && nbtData.getValue()
+                                .get(key) instanceof IntTag) {
+                                IntTag itag = (IntTag) nbtData.getValue()
+                                    .get(key);
+                                int _id = itag.getValue();
+                                nbtMap.put(
+                                    key,
+                                    new IntTag(blockConversionMap.getOrDefault((short) _id, (short) _id)));
+                            }
 
-                                    if (nbtData.containsKey("d") && itemMap.get("d") instanceof CompoundTag) {
-                                        itemMap.put("d", apply((CompoundTag) itemMap.get("d")));
-                                    }
-                                    return nbtData.setValue(itemMap);
-                                } else {
-
-                                    HashMap<String, Tag> nbtMap = new HashMap<String, Tag>(nbtData.getValue());
-                                    if (nbtData.containsKey("id") && nbtData.getValue()
-                                        .get("id") instanceof StringTag
-                                        && "customDoorTileEntity".equals(
-                                            ((StringTag) nbtData.getValue()
-                                                .get("id")).getValue())) {
-
-                                        String key;
-
-                                        if (nbtData.containsKey(key = "bottomMaterial") && nbtData.getValue()
-                                            .get(key) instanceof IntTag) {
-                                            IntTag itag = (IntTag) nbtData.getValue()
-                                                .get(key);
-                                            int _id = itag.getValue();
-                                            nbtMap.put(
-                                                key,
-                                                new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
-                                        }
-
-                                        if (nbtData.containsKey(key = "topMaterial") && nbtData.getValue()
-                                            .get(key) instanceof IntTag) {
-                                            IntTag itag = (IntTag) nbtData.getValue()
-                                                .get(key);
-                                            int _id = itag.getValue();
-                                            nbtMap.put(
-                                                key,
-                                                new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
-                                        }
-
-                                        if (nbtData.containsKey(key = "frame") && nbtData.getValue()
-                                            .get(key) instanceof IntTag) {
-                                            IntTag itag = (IntTag) nbtData.getValue()
-                                                .get(key);
-                                            int _id = itag.getValue();
-                                            nbtMap.put(
-                                                key,
-                                                new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
-                                        }
-
-                                        if (nbtData.containsKey(key = "block") && nbtData.getValue()
-                                            .get(key) instanceof IntTag) {
-                                            IntTag itag = (IntTag) nbtData.getValue()
-                                                .get(key);
-                                            int _id = itag.getValue();
-                                            nbtMap.put(
-                                                key,
-                                                new IntTag(blockConversionMap.getOrDefault((short) _id, (short) _id)));
-                                        }
-
-                                        if (nbtData.containsKey(key = "item") && nbtData.getValue()
-                                            .get(key) instanceof IntTag) {
-                                            IntTag itag = (IntTag) nbtData.getValue()
-                                                .get(key);
-                                            int _id = itag.getValue();
-                                            nbtMap.put(
-                                                key,
-                                                new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
-                                        }
-                                    }
+                            if (nbtData.containsKey(key = "item") && nbtData.getValue()
+                                .get(key) instanceof IntTag) {
+                                IntTag itag = (IntTag) nbtData.getValue()
+                                    .get(key);
+                                int _id = itag.getValue();
+                                nbtMap.put(
+                                    key,
+                                    new IntTag(itemConversionMap.getOrDefault((short) _id, (short) _id)));
+                            }
+                        }
 
-                                    for (String key : nbtMap.keySet()) {
-                                        Object v = nbtMap.get(key);
-                                        if (v instanceof ListTag) {
-                                            ListTag inventoryTag = (ListTag) v;
-                                            ArrayList<Tag> inventoryList = new ArrayList<Tag>(inventoryTag.getValue());
-                                            for (int i = 0; i < inventoryList.size(); i++) {
-                                                Tag t2 = inventoryList.get(i);
-                                                if (t2 instanceof CompoundTag) {
-                                                    inventoryList.set(i, apply((CompoundTag) t2));
-                                                }
-                                            }
-                                            nbtMap.put(key, inventoryTag.setValue(inventoryList));
-                                        } else if (v instanceof CompoundTag) {
-                                            nbtMap.put(key, apply((CompoundTag) v));
-                                        }
+                        for (String key : nbtMap.keySet()) {
+                            Object v = nbtMap.get(key);
+                            if (v instanceof ListTag) {
+                                ListTag inventoryTag = (ListTag) v;
+                                ArrayList<Tag> inventoryList = new ArrayList<Tag>(inventoryTag.getValue());
+                                for (int i = 0; i < inventoryList.size(); i++) {
+                                    Tag t2 = inventoryList.get(i);
+                                    if (t2 instanceof CompoundTag) {
+                                        inventoryList.set(i, apply((CompoundTag) t2));
                                     }
-                                    return nbtData.setValue(nbtMap);
                                 }
+                                nbtMap.put(key, inventoryTag.setValue(inventoryList));
+                            } else if (v instanceof CompoundTag) {
+                                nbtMap.put(key, apply((CompoundTag) v));
                             }
-                        };
-
-                        CompoundTag nbtData = new CompoundTag(tileEntitiesMap.get(pt));
-                        if (!itemConversionMap.isEmpty()) {
-                            nbtData = convertItems.apply(nbtData);
                         }
-                        block.setNbtData(nbtData);
+                        return nbtData.setValue(nbtMap);
                     }
-
-                    try {
-                        clipboard.setBlock(
-                            region.getMinimumPoint()
-                                .add(pt),
-                            block);
-                    } catch (WorldEditException e) {
-                        switch (failedBlockSets) {
-                            case 0:
-                                log.log(Level.WARNING, "Failed to set block on a Clipboard", e);
-                                break;
-                            case 1:
-                                log.log(
-                                    Level.WARNING,
-                                    "Failed to set block on a Clipboard (again) -- no more messages will be logged",
-                                    e);
-                                break;
-                            default:
-                                // no-op
+                }
+            };
+
+            clipboard = WorldEdit.getInstance()
+                .createClipboard(region);
+            clipboard.setOrigin(origin);
+
+            minimumPoint = region.getMinimumPoint();
+            int minX = minimumPoint.getBlockX();
+            int minY = minimumPoint.getBlockY();
+            int minZ = minimumPoint.getBlockZ();
+
+            for (int x = 0; x < width; ++x) {
+                for (int y = 0; y < height; ++y) {
+                    for (int z = 0; z < length; ++z) {
+                        int index = y * width * length + z * width + x;
+                        int id = getBlockId(blockId, addId, addId2, index);
+
+                        if (!blockConversionMap.isEmpty()) {
+                            Short converted = blockConversionMap.get((short) id);
+                            if (converted != null) {
+                                id = converted & 0xFFFF;
+                            }
                         }
 
-                        failedBlockSets++;
+                        int blockDataValue = (blockData[index] & 0xFF)
+                            + (addData != null ? ((addData[index] & 0xFF) << 8) : 0);
+
+                        // Most blocks don't need a BaseBlock
+                        if (id <= BaseBlock.MAX_ID && blockDataValue <= BaseBlock.MAX_DATA) {
+                            clipboard.setBlockState(minX + x, minY + y, minZ + z, PackedBlock.pack(id, blockDataValue));
+                        } else {
+                            setBlock(new Vector(minX + x, minY + y, minZ + z), new BaseBlock(id, blockDataValue));
+                        }
                     }
                 }
             }
         }
 
-        // ====================================================================
-        // Entities
-        // ====================================================================
+        /**
+         * Add a tile entity to the block at its position.
+         *
+         * @param tileEntity the tile entity
+         */
+        private void setTileEntity(CompoundTag tileEntity) {
+            IntTag x = getTag(tileEntity, IntTag.class, "x");
+            IntTag y = getTag(tileEntity, IntTag.class, "y");
+            IntTag z = getTag(tileEntity, IntTag.class, "z");
+            Vector offset = new Vector(
+                x != null ? x.getValue() : 0,
+                y != null ? y.getValue() : 0,
+                z != null ? z.getValue() : 0);
+
+            // Tile entities outside of the schematic are never used
+            if (getIndex(offset.getBlockX(), offset.getBlockY(), offset.getBlockZ(), width, height, length) < 0) {
+                return;
+            }
 
-        try {
-            List<Tag> entityTags = requireTag(schematic, "Entities", ListTag.class).getValue();
+            Vector position = minimumPoint.add(offset);
+            BaseBlock existing = clipboard.getBlock(position);
+            BaseBlock block = new BaseBlock(existing.getId(), existing.getData());
+            block.setNbtData(itemConversionMap.isEmpty() ? tileEntity : convertItems.apply(tileEntity));
+            setBlock(position, block);
+        }
 
-            for (Tag tag : entityTags) {
-                if (tag instanceof CompoundTag) {
-                    CompoundTag compound = (CompoundTag) tag;
-                    String id = compound.getString("id");
-                    Location location = NBTConversions
-                        .toLocation(clipboard, compound.getListTag("Pos"), compound.getListTag("Rotation"));
+        private void setBlock(Vector position, BaseBlock block) {
+            try {
+                clipboard.setBlock(position, block);
+            } catch (WorldEditException e) {
+                switch (failedBlockSets) {
+                    case 0:
+                        log.log(Level.WARNING, "Failed to set block on a Clipboard", e);
+                        break;
+                    case 1:
+                        log.log(
+                            Level.WARNING,
+                            "Failed to set block on a Clipboard (again) -- no more messages will be logged",
+                            e);
+                        break;
+                    default:
+                        // no-op
+                }
 
-                    if (!id.isEmpty()) {
-                        BaseEntity state = new BaseEntity(id, compound);
-                        clipboard.createEntity(location, state);
-                    }
+                failedBlockSets++;
+            }
+        }
+    }
+
+
+    /**
+     * Get the block ID at the given index, combining the 8-bit ID with
+     * the AddBlocks and AddBlocks2 nibbles.
+     *
+     * @param blockId the Blocks array
+     * @param addId   the AddBlocks array
+     * @param addId2  the AddBlocks2 array
+     * @param index   the index
+     * @return the block ID
+     */
+    private static int getBlockId(byte[] blockId, byte[] addId, byte[] addId2, int index) {
+        int id = blockId[index] & 0xFF;
+        int half = index >> 1;
+        if (half < addId.length) {
+            id += (index & 1) == 0 ? (addId[half] & 0x0F) << 8 : (addId[half] & 0xF0) << 4;
+        }
+        if (half < addId2.length) {
+            id = ((index & 1) == 0 ? (addId2[half] & 0x0F) << 8 : (addId2[half] & 0xF0) << 4) + (id & 0xFFF);
+        }
+        return id;
+    }
+
+    /**
+     * Read the list of tile entities one element at a time, keeping only
+     * the elements that are compound tags.
+     *
+     * <p>
+     * If the blocks have already been placed, every tile entity is added
+     * to its block as soon as it has been read, and none are kept.
+     * </p>
+     *
+     * @param reader the reader, positioned at the list
+     * @param blocks the placed blocks, or null if they have not been read yet
+     * @return the tile entities that were kept
+     * @throws IOException on I/O error
+     */
+    private static List<CompoundTag> readTileEntities(NBTStreamReader reader, @Nullable SchematicBlocks blocks)
+        throws IOException {
+        int count = reader.beginList();
+        List<CompoundTag> tileEntities = new ArrayList<CompoundTag>();
+        if (reader.getElementType() == NBTConstants.TYPE_COMPOUND) {
+            for (int i = 0; i < count; i++) {
+                CompoundTag tileEntity = (CompoundTag) reader.readTag();
+                if (blocks != null) {
+                    blocks.setTileEntity(tileEntity);
+                } else {
+                    tileEntities.add(tileEntity);
                 }
             }
-        } catch (IOException ignored) { // No entities? No problem
         }
+        reader.endList();
+        return tileEntities;
+    }
 
-        return clipboard;
+    /**
+     * Get the index of a block in the block arrays.
+     *
+     * @return the index, or -1 if the block is outside of the schematic
+     */
+    private static int getIndex(int x, int y, int z, int width, int height, int length) {
+        if (x < 0 || y < 0 || z < 0 || x >= width || y >= height || z >= length) {
+            return -1;
+        }
+        return y * width * length + z * width + x;
     }
 
     private static <T extends Tag> T requireTag(Map<String, Tag> items, String key, Class<T> expected)
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -31,6 +32,7 @@ import net.minecraft.block.Block;
 import net.minecraft.item.Item;
 
 import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.ByteTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.DoubleTag;
 import com.sk89q.jnbt.FloatTag;
@@ -54,6 +56,12 @@ import com.sk89q.worldedit.world.registry.WorldData;
  */
 public class SchematicWriter implements ClipboardWriter {
 
+    /**
+     * The name of a tag that is written after every tag that describes the
+     * blocks, so that readers know that none of them follows.
+     */
+    static final String BLOCKS_COMPLETE_TAG = "WEBlocksComplete";
+
     private static final int MAX_SIZE = Short.MAX_VALUE - Short.MIN_VALUE;
     private final NBTOutputStream outputStream;
 
@@ -91,7 +99,9 @@ public class SchematicWriter implements ClipboardWriter {
         // Metadata
         // ====================================================================
 
-        HashMap<String, Tag> schematic = new HashMap<String, Tag>();
+        // SchematicReader can place the tile entities as it reads them when
+        // they come after the marker that no block tags follow
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
         schematic.put("Width", new ShortTag((short) width));
         schematic.put("Length", new ShortTag((short) length));
         schematic.put("Height", new ShortTag((short) height));
@@ -281,8 +291,6 @@ public class SchematicWriter implements ClipboardWriter {
 
         schematic.put("Blocks", new ByteArrayTag(blocks));
         schematic.put("Data", new ByteArrayTag(blockData));
-        schematic.put("TileEntities", new ListTag(CompoundTag.class, tileEntities));
-
         if (addBlocks != null) {
             schematic.put("AddBlocks", new ByteArrayTag(addBlocks));
         }
@@ -331,6 +339,9 @@ public class SchematicWriter implements ClipboardWriter {
 
         schematic.put("BlockMapping", new CompoundTag(blockMapping));
         schematic.put("ItemMapping", new CompoundTag(itemMapping));
+        schematic.put(BLOCKS_COMPLETE_TAG, new ByteTag((byte) 1));
+        schematic.put("TileEntities", new ListTag(CompoundTag.class, tileEntities));
+
         // ====================================================================
         // Output
         // ====================================================================
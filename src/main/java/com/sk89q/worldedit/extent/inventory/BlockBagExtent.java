@@ -24,6 +24,7 @@ import javax.annotation.Nullable;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 
@@ -80,31 +81,56 @@ public class BlockBagExtent extends AbstractDelegateExtent {
     public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
         if (blockBag != null) {
             BaseBlock lazyBlock = getExtent().getLazyBlock(position);
-            int existing = lazyBlock.getType();
-            final int type = block.getType();
-
-            if (type > 0) {
-                try {
-                    blockBag.fetchPlacedBlock(type, 0);
-                } catch (UnplaceableBlockException e) {
-                    return false;
-                } catch (BlockBagException e) {
-                    if (!missingBlocks.containsKey(type)) {
-                        missingBlocks.put(type, 1);
-                    } else {
-                        missingBlocks.put(type, missingBlocks.get(type) + 1);
-                    }
-                    return false;
-                }
+            if (!exchange(block.getType(), lazyBlock.getType(), lazyBlock.getData())) {
+                return false;
             }
+        }
+
+        return super.setBlock(position, block);
+    }
 
-            if (existing > 0) {
-                try {
-                    blockBag.storeDroppedBlock(existing, lazyBlock.getData());
-                } catch (BlockBagException ignored) {}
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        if (blockBag != null) {
+            int existing = getExtent().getBlockState(x, y, z);
+            if (!exchange(PackedBlock.getId(state), PackedBlock.getId(existing), PackedBlock.getData(existing))) {
+                return false;
             }
         }
 
-        return super.setBlock(position, block);
+        return super.setBlockState(x, y, z, state);
+    }
+
+    /**
+     * Take the placed block from the block bag and give it the block that
+     * is replaced.
+     *
+     * @param type         the type of the placed block
+     * @param existing     the type of the replaced block
+     * @param existingData the data value of the replaced block
+     * @return false if the block can't be placed
+     */
+    private boolean exchange(int type, int existing, int existingData) {
+        if (type > 0) {
+            try {
+                blockBag.fetchPlacedBlock(type, 0);
+            } catch (UnplaceableBlockException e) {
+                return false;
+            } catch (BlockBagException e) {
+                if (!missingBlocks.containsKey(type)) {
+                    missingBlocks.put(type, 1);
+                } else {
+                    missingBlocks.put(type, missingBlocks.get(type) + 1);
+                }
+                return false;
+            }
+        }
+
+        if (existing > 0) {
+            try {
+                blockBag.storeDroppedBlock(existing, existingData);
+            } catch (BlockBagException ignored) {}
+        }
+        return true;
     }
 }
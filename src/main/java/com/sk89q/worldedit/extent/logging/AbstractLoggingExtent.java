@@ -19,6 +19,7 @@ package com.sk89q.worldedit.extent.logging;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 
@@ -50,4 +51,10 @@ public abstract class AbstractLoggingExtent extends AbstractDelegateExtent {
         return super.setBlock(position, block);
     }
 
+    @Override
+    public final boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        onBlockChange(new Vector(x, y, z), PackedBlock.toBlock(state));
+        return super.setBlockState(x, y, z, state);
+    }
+
 }
@@ -16,15 +16,8 @@
 
 package com.sk89q.worldedit.extent.reorder;
 
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
-import com.google.common.collect.Iterators;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.PlayerDirection;
 import com.sk89q.worldedit.Vector;
@@ -32,24 +25,29 @@ import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.function.operation.BlockMapEntryPlacer;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.OperationQueue;
 import com.sk89q.worldedit.function.operation.RunContext;
-import com.sk89q.worldedit.util.collection.TupleArrayList;
+import com.sk89q.worldedit.util.PackedPosition;
 
 /**
  * Re-orders blocks into several stages.
+ *
+ * <p>
+ * The first two stages are placed a chunk at a time. Blocks in the last
+ * stage are placed after the blocks they are attached to, in an order
+ * found by sorting the attachments topologically.
+ * </p>
  */
 public class MultiStageReorder extends AbstractDelegateExtent implements ReorderingExtent {
 
-    private TupleArrayList<BlockVector, BaseBlock> stage1 = new TupleArrayList<BlockVector, BaseBlock>();
-    private TupleArrayList<BlockVector, BaseBlock> stage2 = new TupleArrayList<BlockVector, BaseBlock>();
-    private TupleArrayList<BlockVector, BaseBlock> stage3 = new TupleArrayList<BlockVector, BaseBlock>();
+    private StageBuffer stage1 = new StageBuffer();
+    private StageBuffer stage2 = new StageBuffer();
+    private StageBuffer stage3 = new StageBuffer();
     private boolean enabled;
-
     /**
      * Create a new instance.
      *
@@ -90,128 +88,121 @@ public class MultiStageReorder extends AbstractDelegateExtent implements Reorder
 
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
-        BaseBlock lazyBlock = getLazyBlock(location);
-
         if (!enabled) {
             return super.setBlock(location, block);
         }
 
+        BaseBlock lazyBlock = getLazyBlock(location);
+
         if (BlockType.shouldPlaceLast(block.getType())) {
             // Place torches, etc. last
-            stage2.put(location.toBlockVector(), block);
+            stage2.add(location.toBlockVector(), block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         } else if (BlockType.shouldPlaceFinal(block.getType())) {
             // Place signs, reed, etc even later
-            stage3.put(location.toBlockVector(), block);
+            stage3.add(location.toBlockVector(), block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         } else if (BlockType.shouldPlaceLast(lazyBlock.getType())) {
             // Destroy torches, etc. first
             super.setBlock(location, new BaseBlock(BlockID.AIR));
             return super.setBlock(location, block);
         } else {
-            stage1.put(location.toBlockVector(), block);
+            stage1.add(location.toBlockVector(), block);
             return !(lazyBlock.getType() == block.getType() && lazyBlock.getData() == block.getData());
         }
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        if (!enabled) {
+            return super.setBlockState(x, y, z, state);
+        }
+
+        int existing = getBlockState(x, y, z);
+        int type = PackedBlock.getId(state);
+
+        if (BlockType.shouldPlaceLast(type)) {
+            // Place torches, etc. last
+            stage2.add(x, y, z, state);
+        } else if (BlockType.shouldPlaceFinal(type)) {
+            // Place signs, reed, etc even later
+            stage3.add(x, y, z, state);
+        } else if (BlockType.shouldPlaceLast(PackedBlock.getId(existing))) {
+            // Destroy torches, etc. first
+            super.setBlockState(x, y, z, PackedBlock.pack(BlockID.AIR, 0));
+            return super.setBlockState(x, y, z, state);
+        } else {
+            stage1.add(x, y, z, state);
+        }
+        return existing != state;
+    }
+
     @Override
     public Operation commitBefore() {
+        // Blocks set from now on go into new buffers
+        StageBuffer stage1 = this.stage1;
+        StageBuffer stage2 = this.stage2;
+        StageBuffer stage3 = this.stage3;
+        this.stage1 = new StageBuffer();
+        this.stage2 = new StageBuffer();
+        this.stage3 = new StageBuffer();
+
         return new OperationQueue(
-            new BlockMapEntryPlacer(getExtent(), Iterators.concat(stage1.iterator(), stage2.iterator())),
-            new Stage3Committer());
+            new StagePlacer(stage1, stage1.groupByChunk(), stage1.size()),
+            new StagePlacer(stage2, stage2.groupByChunk(), stage2.size()),
+            new Stage3Committer(stage3));
     }
 
-    private class Stage3Committer implements Operation {
+    /**
+     * Places the changes of a stage in the given order.
+     */
+    private class StagePlacer implements Operation {
+
+        private final StageBuffer stage;
+        private final int[] order;
+        private final int count;
+        private int next;
+
+        private StagePlacer(StageBuffer stage, int[] order, int count) {
+            this.stage = stage;
+            this.order = order;
+            this.count = count;
+        }
 
         @Override
         public Operation resume(RunContext run) throws WorldEditException {
-            Extent extent = getExtent();
-
-            final Set<BlockVector> blocks = new HashSet<BlockVector>();
-            final Map<BlockVector, BaseBlock> blockTypes = new HashMap<BlockVector, BaseBlock>();
-            for (Map.Entry<BlockVector, BaseBlock> entry : stage3) {
-                final BlockVector pt = entry.getKey();
-                blocks.add(pt);
-                blockTypes.put(pt, entry.getValue());
-            }
+            while (next < count) {
+                stage.apply(getExtent(), order[next++]);
 
-            while (!blocks.isEmpty()) {
-                BlockVector current = blocks.iterator()
-                    .next();
-                if (!blocks.contains(current)) {
-                    continue;
+                if (!run.shouldContinue() && next < count) {
+                    return this;
                 }
+            }
 
-                final Deque<BlockVector> walked = new LinkedList<BlockVector>();
-
-                while (true) {
-                    walked.addFirst(current);
-
-                    assert (blockTypes.containsKey(current));
-
-                    final BaseBlock baseBlock = blockTypes.get(current);
-
-                    final int type = baseBlock.getType();
-                    final int data = baseBlock.getData();
-
-                    switch (type) {
-                        case BlockID.WOODEN_DOOR:
-                        case BlockID.IRON_DOOR:
-                            if ((data & 0x8) == 0) {
-                                // Deal with lower door halves being attached to the floor AND the upper half
-                                BlockVector upperBlock = current.add(0, 1, 0)
-                                    .toBlockVector();
-                                if (blocks.contains(upperBlock) && !walked.contains(upperBlock)) {
-                                    walked.addFirst(upperBlock);
-                                }
-                            }
-                            break;
-
-                        case BlockID.MINECART_TRACKS:
-                        case BlockID.POWERED_RAIL:
-                        case BlockID.DETECTOR_RAIL:
-                        case BlockID.ACTIVATOR_RAIL:
-                            // Here, rails are hardcoded to be attached to the block below them.
-                            // They're also attached to the block they're ascending towards via BlockType.getAttachment.
-                            BlockVector lowerBlock = current.add(0, -1, 0)
-                                .toBlockVector();
-                            if (blocks.contains(lowerBlock) && !walked.contains(lowerBlock)) {
-                                walked.addFirst(lowerBlock);
-                            }
-                            break;
-                    }
+            return null;
+        }
 
-                    final PlayerDirection attachment = BlockType.getAttachment(type, data);
-                    if (attachment == null) {
-                        // Block is not attached to anything => we can place it
-                        break;
-                    }
+        @Override
+        public void cancel() {}
 
-                    current = current.add(attachment.vector())
-                        .toBlockVector();
+        @Override
+        public void addStatusMessages(List<String> messages) {}
 
-                    if (!blocks.contains(current)) {
-                        // We ran outside the remaining set => assume we can place blocks on this
-                        break;
-                    }
+    }
 
-                    if (walked.contains(current)) {
-                        // Cycle detected => This will most likely go wrong, but there's nothing we can do about it.
-                        break;
-                    }
-                }
+    private class Stage3Committer implements Operation {
 
-                for (BlockVector pt : walked) {
-                    extent.setBlock(pt, blockTypes.get(pt));
-                    blocks.remove(pt);
-                }
-            }
+        private final StageBuffer stage;
 
-            stage1.clear();
-            stage2.clear();
-            stage3.clear();
+        private Stage3Committer(StageBuffer stage) {
+            this.stage = stage;
+        }
 
-            return null;
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            int[] order = new int[stage.size()];
+            int count = sortByAttachment(stage, order);
+            return new StagePlacer(stage, order, count);
         }
 
         @Override
@@ -222,4 +213,108 @@ public class MultiStageReorder extends AbstractDelegateExtent implements Reorder
 
     }
 
+    /**
+     * Sort the changes of a stage so that every block comes after the
+     * blocks that it is attached to.
+     *
+     * <p>
+     * Only the last change to each position is kept. Blocks that are
+     * attached to each other in a cycle are placed in the order that the
+     * cycle was found in.
+     * </p>
+     *
+     * @param stage the stage
+     * @param order the array to write the sorted indices to
+     * @return the number of indices written
+     */
+    private static int sortByAttachment(StageBuffer stage, int[] order) {
+        int size = stage.size();
+        PositionIndex indices = new PositionIndex(stage);
+
+        // Each block depends on at most two others
+        int[] dependencies = new int[size * 2];
+        for (int i = 0; i < size; i++) {
+            int x, y, z;
+            if (stage.hasPackedPosition(i)) {
+                long packed = stage.getPackedPosition(i);
+                x = PackedPosition.getX(packed);
+                y = PackedPosition.getY(packed);
+                z = PackedPosition.getZ(packed);
+            } else {
+                BlockVector position = stage.getPosition(i);
+                x = position.getBlockX();
+                y = position.getBlockY();
+                z = position.getBlockZ();
+            }
+            BaseBlock block = stage.getBlock(i);
+            int type = block.getType();
+            int data = block.getData();
+            dependencies[i * 2] = -1;
+            dependencies[i * 2 + 1] = -1;
+
+            switch (type) {
+                case BlockID.WOODEN_DOOR:
+                case BlockID.IRON_DOOR:
+                    if ((data & 0x8) == 0) {
+                        // Deal with lower door halves being attached to the floor AND the upper half
+                        dependencies[i * 2 + 1] = indices.find(x, y + 1, z);
+                    }
+                    break;
+
+                case BlockID.MINECART_TRACKS:
+                case BlockID.POWERED_RAIL:
+                case BlockID.DETECTOR_RAIL:
+                case BlockID.ACTIVATOR_RAIL:
+                    // Here, rails are hardcoded to be attached to the block below them.
+                    // They're also attached to the block they're ascending towards via BlockType.getAttachment.
+                    dependencies[i * 2 + 1] = indices.find(x, y - 1, z);
+                    break;
+            }
+
+            PlayerDirection attachment = BlockType.getAttachment(type, data);
+            if (attachment != null) {
+                Vector offset = attachment.vector();
+                dependencies[i * 2] = indices.find(
+                    x + offset.getBlockX(),
+                    y + offset.getBlockY(),
+                    z + offset.getBlockZ());
+            }
+        }
+
+        // Depth first search that writes each block after its dependencies
+        byte[] state = new byte[size]; // 0 = not visited, 1 = on the stack, 2 = written
+        int[] stack = new int[size];
+        int[] progress = new int[size];
+        int count = 0;
+
+        for (int start : stage.groupByChunk()) {
+            if (state[start] != 0 || indices.findLast(start) != start) {
+                // Already written, or replaced by a later change
+                continue;
+            }
+
+            int depth = 0;
+            stack[depth++] = start;
+            state[start] = 1;
+
+            while (depth > 0) {
+                int current = stack[depth - 1];
+                if (progress[current] < 2) {
+                    int dependency = dependencies[current * 2 + progress[current]++];
+                    // A dependency that is on the stack means a cycle, so it is skipped
+                    if (dependency >= 0 && state[dependency] == 0) {
+                        state[dependency] = 1;
+                        stack[depth++] = dependency;
+                    }
+                } else {
+                    depth--;
+                    state[current] = 2;
+                    order[count++] = current;
+                }
+            }
+        }
+
+        return count;
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.util.PackedPosition;
+
+/**
+ * Finds the last change to each position of a {@link StageBuffer}.
+ *
+ * <p>
+ * Packed positions are kept in an open-addressing table of primitive
+ * arrays, so looking up a position creates no objects. Positions that
+ * cannot be packed go into a side map.
+ * </p>
+ */
+class PositionIndex {
+
+    private static final int EMPTY = -1;
+
+    private final StageBuffer stage;
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+    private final Map<BlockVector, Integer> unpacked = new HashMap<BlockVector, Integer>();
+
+    /**
+     * Index the changes of the given stage.
+     *
+     * @param stage the stage
+     */
+    PositionIndex(StageBuffer stage) {
+        this.stage = stage;
+        int size = stage.size();
+        // Keep the table at most half full
+        int capacity = Integer.highestOneBit(Math.max(size, 8) - 1) << 2;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        Arrays.fill(values, EMPTY);
+
+        for (int i = 0; i < size; i++) {
+            if (stage.hasPackedPosition(i)) {
+                put(stage.getPackedPosition(i), i);
+            } else {
+                unpacked.put(stage.getPosition(i), i);
+            }
+        }
+    }
+
+    private void put(long key, int value) {
+        int slot = slot(key);
+        while (values[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    /**
+     * Get the index of the last change to the given position.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the index, or -1 if the position was not changed
+     */
+    int find(int x, int y, int z) {
+        if (!PackedPosition.canPack(x, y, z)) {
+            Integer index = unpacked.get(new BlockVector(x, y, z));
+            return index != null ? index : EMPTY;
+        }
+
+        return find(PackedPosition.pack(x, y, z));
+    }
+
+    /**
+     * Get the index of the last change to the position of the given change.
+     *
+     * @param index the index of a change
+     * @return the index of the last change to the same position
+     */
+    int findLast(int index) {
+        if (!stage.hasPackedPosition(index)) {
+            return unpacked.get(stage.getPosition(index));
+        }
+        return find(stage.getPackedPosition(index));
+    }
+
+    private int find(long key) {
+        int slot = slot(key);
+        while (values[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    private int slot(long key) {
+        // The low bits of a packed position only hold Y and part of Z, so mix them
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+
+}
@@ -0,0 +1,198 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.util.PackedPosition;
+
+/**
+ * Buffers block changes for one stage of a {@link MultiStageReorder} in
+ * packed primitive arrays.
+ *
+ * <p>
+ * Positions are packed into a {@code long} and plain blocks into an
+ * {@code int}. Blocks of any other class, such as lazy blocks and blocks
+ * with NBT data, are kept as they are in a side map so that they are not
+ * loaded before they are placed.
+ * </p>
+ */
+class StageBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int UNPACKED = PackedBlock.NONE;
+
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private int[] states = new int[INITIAL_CAPACITY];
+    private int size;
+    private final Map<Integer, BlockVector> unpackedPositions = new HashMap<Integer, BlockVector>();
+    private final Map<Integer, BaseBlock> unpackedBlocks = new HashMap<Integer, BaseBlock>();
+
+    /**
+     * Add a block change to the end of the buffer.
+     *
+     * @param position the position
+     * @param block    the block
+     */
+    void add(BlockVector position, BaseBlock block) {
+        int id = block.getId();
+        int data = block.getData();
+        boolean plain = block.getClass() == BaseBlock.class && !block.hasNbtData();
+        if (plain && PackedBlock.canPack(id, data)) {
+            add(position.getBlockX(), position.getBlockY(), position.getBlockZ(), PackedBlock.pack(id, data));
+        } else {
+            unpackedBlocks.put(size, block);
+            add(position.getBlockX(), position.getBlockY(), position.getBlockZ(), UNPACKED);
+        }
+    }
+
+    /**
+     * Add a change to a block without NBT data to the end of the buffer.
+     *
+     * @param x     the X coordinate
+     * @param y     the Y coordinate
+     * @param z     the Z coordinate
+     * @param state the state, packed with {@link PackedBlock}
+     */
+    void add(int x, int y, int z, int state) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            states = Arrays.copyOf(states, size * 2);
+        }
+
+        if (PackedPosition.canPack(x, y, z)) {
+            positions[size] = PackedPosition.pack(x, y, z);
+        } else {
+            unpackedPositions.put(size, new BlockVector(x, y, z));
+        }
+        states[size] = state;
+        size++;
+    }
+
+    /**
+     * Get the number of buffered changes.
+     *
+     * @return the number of changes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the position of a buffered change.
+     *
+     * @param index the index of the change
+     * @return the position
+     */
+    BlockVector getPosition(int index) {
+        if (!unpackedPositions.isEmpty()) {
+            BlockVector position = unpackedPositions.get(index);
+            if (position != null) {
+                return position;
+            }
+        }
+        return PackedPosition.toVector(positions[index]);
+    }
+
+    /**
+     * Return whether the position of a buffered change is packed.
+     *
+     * @param index the index of the change
+     * @return true if {@link #getPackedPosition(int)} can be used
+     */
+    boolean hasPackedPosition(int index) {
+        return unpackedPositions.isEmpty() || !unpackedPositions.containsKey(index);
+    }
+
+    /**
+     * Get the packed position of a buffered change. The position must be
+     * one that {@link #hasPackedPosition(int)} accepts.
+     *
+     * @param index the index of the change
+     * @return the packed position
+     */
+    long getPackedPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * Get the block of a buffered change.
+     *
+     * @param index the index of the change
+     * @return the block
+     */
+    BaseBlock getBlock(int index) {
+        int packed = states[index];
+        if (packed == UNPACKED) {
+            return unpackedBlocks.get(index);
+        }
+        return PackedBlock.toBlock(packed);
+    }
+
+    /**
+     * Get the indices of all buffered changes, with changes in the same
+     * chunk next to each other. Changes within a chunk stay in the order
+     * that they were added, so later changes to a position still win.
+     *
+     * @return the indices
+     */
+    int[] groupByChunk() {
+        return PackedPosition.groupByChunk(size, new PackedPosition.ChunkKeys() {
+
+            @Override
+            public long getChunkKey(int index) {
+                if (!unpackedPositions.isEmpty()) {
+                    BlockVector position = unpackedPositions.get(index);
+                    if (position != null) {
+                        return PackedPosition.getChunkKey(position.getBlockX() >> 4, position.getBlockZ() >> 4);
+                    }
+                }
+                return PackedPosition.getChunkKeyOf(positions[index]);
+            }
+        });
+    }
+
+    /**
+     * Make a buffered change to the given extent. Changes to blocks without
+     * NBT data are made without creating any objects.
+     *
+     * @param extent the extent
+     * @param index  the index of the change
+     * @throws WorldEditException thrown on an error
+     */
+    void apply(Extent extent, int index) throws WorldEditException {
+        int state = states[index];
+        if (state != UNPACKED && hasPackedPosition(index)) {
+            long packed = positions[index];
+            extent.setBlockState(
+                PackedPosition.getX(packed),
+                PackedPosition.getY(packed),
+                PackedPosition.getZ(packed),
+                state);
+        } else {
+            extent.setBlock(getPosition(index), getBlock(index));
+        }
+    }
+
+}
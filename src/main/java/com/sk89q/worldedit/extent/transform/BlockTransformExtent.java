@@ -18,6 +18,7 @@ package com.sk89q.worldedit.extent.transform;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.annotation.Nullable;
@@ -25,6 +26,7 @@ import javax.annotation.Nullable;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.transform.Transform;
@@ -35,14 +37,31 @@ import com.sk89q.worldedit.world.registry.StateValue;
 /**
  * Transforms blocks themselves (but not their position) according to a
  * given transform.
+ *
+ * <p>
+ * The transformed ID and data value of each block type are computed the
+ * first time the type is seen, and then looked up in a table indexed by
+ * ID and data value. Only blocks with NBT data whose ID is handled by a
+ * {@link BlockTransformHook} that {@link BlockTransformHook#usesNbtData(int)
+ * uses NBT data} are transformed one by one.
+ * </p>
  */
 public class BlockTransformExtent extends AbstractDelegateExtent {
 
     private static final double RIGHT_ANGLE = Math.toRadians(90);
+    private static final int DATA_BITS = 4;
+    private static final int TABLE_SIZE = (BaseBlock.MAX_ID + 1) << DATA_BITS;
+    private static final byte UNKNOWN = 0;
+    private static final byte STATE_ONLY = 1;
+    private static final byte NBT = 2;
 
     private final Transform transform;
     private final BlockRegistry blockRegistry;
     private final BlockTransformHook transformHook;
+    private Transform inverse;
+    private int[] states;
+    private int[] inverseStates;
+    private byte[] hookTypes;
 
     /**
      * Create a new instance.
@@ -70,6 +89,78 @@ public class BlockTransformExtent extends AbstractDelegateExtent {
         return transform;
     }
 
+    private Transform getTransform(boolean reverse) {
+        if (!reverse) {
+            return transform;
+        }
+        if (inverse == null) {
+            inverse = transform.inverse();
+        }
+        return inverse;
+    }
+
+    /**
+     * Get the index of a block type in the tables.
+     *
+     * @param id   the block ID
+     * @param data the data value
+     * @return the index, or -1 if the block type has no index
+     */
+    private static int getIndex(int id, int data) {
+        if (id < 0 || id > BaseBlock.MAX_ID || data < 0 || data >= 1 << DATA_BITS) {
+            return -1;
+        }
+        return id << DATA_BITS | data;
+    }
+
+    /**
+     * Get the transformed state of a block type, computing it if this
+     * is the first time the block type is seen.
+     *
+     * @param index   the index of the block type
+     * @param reverse true to transform in the opposite direction
+     * @return the transformed packed state
+     */
+    private int getTransformedState(int index, boolean reverse) {
+        int[] table = reverse ? inverseStates : states;
+        if (table == null) {
+            table = new int[TABLE_SIZE];
+            Arrays.fill(table, PackedBlock.NONE);
+            if (reverse) {
+                inverseStates = table;
+            } else {
+                states = table;
+            }
+        }
+
+        int state = table[index];
+        if (state == PackedBlock.NONE) {
+            BaseBlock block = new BaseBlock(index >>> DATA_BITS, index & ((1 << DATA_BITS) - 1));
+            state = table[index] = PackedBlock.pack(transformAll(block, reverse));
+        }
+        return state;
+    }
+
+    /**
+     * Return whether the transform hook may change blocks of the given ID
+     * depending on their NBT data.
+     *
+     * @param id the block ID
+     * @return true if the block must be transformed one by one
+     */
+    private boolean usesNbtData(int id) {
+        if (id < 0 || id > BaseBlock.MAX_ID) {
+            return true;
+        }
+        if (hookTypes == null) {
+            hookTypes = new byte[BaseBlock.MAX_ID + 1];
+        }
+        if (hookTypes[id] == UNKNOWN) {
+            hookTypes[id] = transformHook.usesNbtData(id) ? NBT : STATE_ONLY;
+        }
+        return hookTypes[id] == NBT;
+    }
+
     /**
      * Transform a block without making a copy.
      *
@@ -78,11 +169,44 @@ public class BlockTransformExtent extends AbstractDelegateExtent {
      * @return the same block
      */
     private BaseBlock transformBlock(BaseBlock block, boolean reverse) {
-        Transform useTransform = reverse ? transform.inverse() : transform;
+        int index = getIndex(block.getId(), block.getData());
+        if (index < 0 || block.hasNbtData() && usesNbtData(block.getId())) {
+            return transformAll(block, reverse);
+        }
+        int state = getTransformedState(index, reverse);
+        block.setIdAndData(PackedBlock.getId(state), PackedBlock.getData(state));
+        return block;
+    }
+
+    /**
+     * Transform a block through the block registry and the transform hook,
+     * without making a copy.
+     *
+     * @param block   the block
+     * @param reverse true to transform in the opposite direction
+     * @return the transformed block
+     */
+    private BaseBlock transformAll(BaseBlock block, boolean reverse) {
+        Transform useTransform = getTransform(reverse);
         block = transform(block, useTransform, blockRegistry);
         return transformHook.transformBlock(block, useTransform);
     }
 
+    /**
+     * Transform a packed state.
+     *
+     * @param state   the packed state
+     * @param reverse true to transform in the opposite direction
+     * @return the transformed packed state
+     */
+    private int transformState(int state, boolean reverse) {
+        int index = getIndex(PackedBlock.getId(state), PackedBlock.getData(state));
+        if (index < 0) {
+            return PackedBlock.pack(transformAll(PackedBlock.toBlock(state), reverse));
+        }
+        return getTransformedState(index, reverse);
+    }
+
     @Override
     public BaseBlock getBlock(Vector position) {
         return transformBlock(super.getBlock(position), false);
@@ -98,6 +222,23 @@ public class BlockTransformExtent extends AbstractDelegateExtent {
         return super.setBlock(location, transformBlock(new BaseBlock(block), true));
     }
 
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        return transformState(super.getBlockState(x, y, z), false);
+    }
+
+    @Override
+    @Nullable
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        BaseBlock block = super.getNbtBlock(x, y, z);
+        return block != null ? transformBlock(block, false) : null;
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        return super.setBlockState(x, y, z, transformState(state, true));
+    }
+
     /**
      * Transform the given block using the given transform.
      *
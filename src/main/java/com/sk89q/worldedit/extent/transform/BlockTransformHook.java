@@ -6,4 +6,22 @@ import com.sk89q.worldedit.math.transform.Transform;
 public interface BlockTransformHook {
 
     BaseBlock transformBlock(BaseBlock block, Transform transform);
+
+    /**
+     * Return whether this hook may transform blocks with the given ID
+     * differently depending on their NBT data.
+     *
+     * <p>
+     * For blocks without NBT data, the result of a hook must only depend on
+     * the ID and data value, so that it can be looked up in a table once it
+     * has been computed. Hooks that return false here promise the same for
+     * blocks with NBT data.
+     * </p>
+     *
+     * @param id the block ID
+     * @return true if the NBT data of the block can change the result
+     */
+    default boolean usesNbtData(int id) {
+        return true;
+    }
 }
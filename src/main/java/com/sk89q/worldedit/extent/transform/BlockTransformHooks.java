@@ -21,4 +21,14 @@ public class BlockTransformHooks implements BlockTransformHook {
         }
         return block;
     }
+
+    @Override
+    public boolean usesNbtData(int id) {
+        for (BlockTransformHook hook : hooks) {
+            if (hook.usesNbtData(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -83,4 +83,15 @@ public class BlockChangeLimiter extends AbstractDelegateExtent {
         }
         return super.setBlock(location, block);
     }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        if (limit >= 0) {
+            if (count >= limit) {
+                throw new MaxChangedBlocksException(limit);
+            }
+            count++;
+        }
+        return super.setBlockState(x, y, z, state);
+    }
 }
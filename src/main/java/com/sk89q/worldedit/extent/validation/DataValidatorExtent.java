@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.world.World;
@@ -64,6 +65,21 @@ public class DataValidatorExtent extends AbstractDelegateExtent {
         return super.setBlock(location, block);
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        if (y < 0 || y > world.getMaxY()) {
+            return false;
+        }
+
+        // No invalid blocks
+        if (!world.isValidBlockType(PackedBlock.getId(state))) {
+            return false;
+        }
+
+        // Packed states can't have a negative data value
+        return super.setBlockState(x, y, z, state);
+    }
+
     private static class SevereValidationException extends WorldEditException {
 
         private SevereValidationException(String message) {
@@ -23,6 +23,7 @@ import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.world.World;
@@ -61,4 +62,17 @@ public class BlockQuirkExtent extends AbstractDelegateExtent {
         return super.setBlock(position, block);
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        int existing = PackedBlock.getId(getExtent().getBlockState(x, y, z));
+
+        if (BlockType.isContainerBlock(existing)) {
+            world.clearContainerBlockContents(new Vector(x, y, z)); // Clear the container block so that it doesn't drop items
+        } else if (existing == BlockID.ICE) {
+            world.setBlockState(x, y, z, PackedBlock.pack(BlockID.AIR, 0)); // Ice turns until water so this has to be done first
+        }
+
+        return super.setBlockState(x, y, z, state);
+    }
+
 }
@@ -32,6 +32,9 @@ public class ChunkLoadingExtent extends AbstractDelegateExtent {
 
     private final World world;
     private boolean enabled;
+    private boolean checked;
+    private int lastChunkX;
+    private int lastChunkZ;
 
     /**
      * Create a new instance.
@@ -62,4 +65,16 @@ public class ChunkLoadingExtent extends AbstractDelegateExtent {
         world.checkLoadedChunk(location);
         return super.setBlock(location, block);
     }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        // Checking the same chunk again would not change anything
+        if (!checked || x >> 4 != lastChunkX || z >> 4 != lastChunkZ) {
+            world.checkLoadedChunk(new Vector(x, y, z));
+            lastChunkX = x >> 4;
+            lastChunkZ = z >> 4;
+            checked = true;
+        }
+        return super.setBlockState(x, y, z, state);
+    }
 }
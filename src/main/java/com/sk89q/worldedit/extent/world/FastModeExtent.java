@@ -22,22 +22,40 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.BulkBlockWriter;
 import com.sk89q.worldedit.world.World;
 
 /**
  * Implements "fast mode" which may skip physics, lighting, etc.
+ *
+ * <p>
+ * If the world supports it, changes made in fast mode are queued in a
+ * {@link BulkBlockWriter} and written a chunk section at a time.
+ * </p>
  */
 public class FastModeExtent extends AbstractDelegateExtent {
 
+    /**
+     * The number of chunk sections that may have queued changes before
+     * they are written to the world.
+     */
+    private static final int MAX_QUEUED_SECTIONS = 512;
+
     private final World world;
+    private final @Nullable BulkBlockWriter writer;
     private final Set<BlockVector2D> dirtyChunks = new HashSet<BlockVector2D>();
+    private int lastDirtyX;
+    private int lastDirtyZ;
     private boolean enabled = true;
 
     /**
@@ -59,6 +77,7 @@ public class FastModeExtent extends AbstractDelegateExtent {
         super(world);
         checkNotNull(world);
         this.world = world;
+        this.writer = world.createBulkWriter();
         this.enabled = enabled;
     }
 
@@ -80,22 +99,129 @@ public class FastModeExtent extends AbstractDelegateExtent {
         this.enabled = enabled;
     }
 
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        if (writer != null) {
+            BaseBlock queued = writer.getBlock(position);
+            if (queued != null) {
+                return queued;
+            }
+        }
+        return super.getBlock(position);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        if (writer != null) {
+            BaseBlock queued = writer.getBlock(position);
+            if (queued != null) {
+                return queued;
+            }
+        }
+        return super.getLazyBlock(position);
+    }
+
     @Override
     public boolean setBlock(Vector location, BaseBlock block) throws WorldEditException {
         if (enabled) {
-            dirtyChunks.add(new BlockVector2D(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+            if (writer != null) {
+                // Like the world, count a write that changes nothing as
+                // failed, unless it brings tile entity data
+                if (!block.hasNbtData() && PackedBlock.canPack(block.getId(), block.getData())
+                    && getBlockState(location.getBlockX(), location.getBlockY(), location.getBlockZ())
+                        == PackedBlock.pack(block)) {
+                    return false;
+                }
+                markDirty(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+                writer.setBlock(location, block);
+                if (writer.getSectionCount() >= MAX_QUEUED_SECTIONS) {
+                    writer.flush();
+                }
+                return true;
+            }
+
+            markDirty(location.getBlockX() >> 4, location.getBlockZ() >> 4);
             return world.setBlock(location, block, false);
         } else {
+            // Fast mode may have been turned off with changes still queued
+            if (writer != null && writer.getSectionCount() > 0) {
+                writer.flush();
+            }
             return world.setBlock(location, block, true);
         }
     }
 
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        if (writer != null) {
+            int queued = writer.getBlockState(x, y, z);
+            if (queued != PackedBlock.NONE) {
+                return queued;
+            }
+        }
+        return super.getBlockState(x, y, z);
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        if (writer != null && writer.getBlockState(x, y, z) != PackedBlock.NONE) {
+            BaseBlock queued = writer.getBlock(new Vector(x, y, z));
+            return queued != null && queued.hasNbtData() ? queued : null;
+        }
+        return super.getNbtBlock(x, y, z);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        if (enabled) {
+            if (writer != null) {
+                if (getBlockState(x, y, z) == state) {
+                    return false;
+                }
+                markDirty(x >> 4, z >> 4);
+                writer.setBlockState(x, y, z, state);
+                if (writer.getSectionCount() >= MAX_QUEUED_SECTIONS) {
+                    writer.flush();
+                }
+                return true;
+            }
+
+            markDirty(x >> 4, z >> 4);
+            return world.setBlockState(x, y, z, state, false);
+        } else {
+            // Fast mode may have been turned off with changes still queued
+            if (writer != null && writer.getSectionCount() > 0) {
+                writer.flush();
+            }
+            return world.setBlockState(x, y, z, state, true);
+        }
+    }
+
+    /**
+     * Remember that a chunk has to be fixed once the changes are done.
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     */
+    private void markDirty(int chunkX, int chunkZ) {
+        // Edits usually change many blocks of a chunk in a row
+        if (dirtyChunks.isEmpty() || chunkX != lastDirtyX || chunkZ != lastDirtyZ) {
+            dirtyChunks.add(new BlockVector2D(chunkX, chunkZ));
+            lastDirtyX = chunkX;
+            lastDirtyZ = chunkZ;
+        }
+    }
+
     @Override
     protected Operation commitBefore() {
         return new Operation() {
 
             @Override
             public Operation resume(RunContext run) throws WorldEditException {
+                if (writer != null) {
+                    writer.flush();
+                }
                 if (!dirtyChunks.isEmpty()) {
                     world.fixAfterFastMode(dirtyChunks);
                 }
@@ -22,6 +22,7 @@ import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.world.World;
@@ -90,4 +91,14 @@ public class SurvivalModeExtent extends AbstractDelegateExtent {
         }
     }
 
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        if (toolUse && PackedBlock.getId(state) == BlockID.AIR) {
+            world.simulateBlockMine(new Vector(x, y, z));
+            return true;
+        } else {
+            return super.setBlockState(x, y, z, state);
+        }
+    }
+
 }
@@ -0,0 +1,252 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.LazyBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.world.BlockReadCache;
+
+import cpw.mods.fml.common.Loader;
+
+/**
+ * Reads blocks straight from the section arrays of recently used chunks.
+ *
+ * <p>
+ * The last chunk that was read is checked first, then a small number of
+ * other recently used chunks, and only then is the chunk looked up in the
+ * world. Blocks that have been invalidated are left to the world, since
+ * their changes may still be queued somewhere. They are tracked with a
+ * bit per block, which is only allocated for sections that are written
+ * to.
+ * </p>
+ */
+class ForgeBlockReadCache implements BlockReadCache {
+
+    private static final boolean EXTENDED_IDS = Loader.isModLoaded("neid");
+    private static final int MAX_CHUNKS = 16;
+
+    private final ForgeWorld world;
+    private final Map<Long, CachedChunk> chunks = new LinkedHashMap<Long, CachedChunk>(MAX_CHUNKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedChunk> eldest) {
+            return size() > MAX_CHUNKS;
+        }
+    };
+    private final Map<Long, long[][]> dirtyBlocks = new HashMap<Long, long[][]>();
+    private @Nullable CachedChunk lastChunk;
+
+    /**
+     * Create a new cache.
+     *
+     * @param world the world to read from
+     */
+    ForgeBlockReadCache(ForgeWorld world) {
+        checkNotNull(world);
+        this.world = world;
+    }
+
+    private static long getKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    @Nullable
+    private CachedChunk getChunk(int chunkX, int chunkZ) {
+        CachedChunk chunk = lastChunk;
+        if (chunk != null && chunk.x == chunkX && chunk.z == chunkZ && chunk.chunk.isChunkLoaded) {
+            return chunk;
+        }
+
+        long key = getKey(chunkX, chunkZ);
+        chunk = chunks.get(key);
+        if (chunk == null || !chunk.chunk.isChunkLoaded) {
+            World mcWorld = world.getWorld();
+            Chunk mcChunk = mcWorld != null ? mcWorld.getChunkFromChunkCoords(chunkX, chunkZ) : null;
+            if (mcChunk == null) {
+                return null;
+            }
+            chunk = new CachedChunk(chunkX, chunkZ, mcChunk, dirtyBlocks.get(key));
+            chunks.put(key, chunk);
+        }
+
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        if (y < 0 || y > 255) {
+            return 0;
+        }
+
+        CachedChunk chunk = getChunk(x >> 4, z >> 4);
+        if (chunk == null || chunk.dirty != null && isDirty(chunk.dirty[y >> 4], x, y, z)) {
+            return PackedBlock.NONE;
+        }
+
+        ExtendedBlockStorage storage = chunk.storage[y >> 4];
+        if (storage == null) {
+            return 0;
+        }
+
+        int id;
+        int data;
+        if (EXTENDED_IDS) {
+            id = Block.getIdFromBlock(storage.getBlockByExtId(x & 15, y & 15, z & 15));
+            data = storage.getExtBlockMetadata(x & 15, y & 15, z & 15);
+        } else {
+            id = storage.getBlockLSBArray()[getIndex(x, y, z)] & 255;
+            NibbleArray msb = storage.getBlockMSBArray();
+            if (msb != null) {
+                id |= msb.get(x & 15, y & 15, z & 15) << 8;
+            }
+            data = storage.getMetadataArray()
+                .get(x & 15, y & 15, z & 15);
+        }
+        return PackedBlock.pack(id, data);
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    private static boolean isDirty(@Nullable long[] section, int x, int y, int z) {
+        if (section == null) {
+            return false;
+        }
+        int index = getIndex(x, y, z);
+        return (section[index >> 6] & 1L << index) != 0;
+    }
+
+    @Nullable
+    private BaseBlock read(Vector position, boolean lazy) {
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        int state = getBlockState(x, y, z);
+        if (state == PackedBlock.NONE) {
+            return null;
+        }
+
+        int id = PackedBlock.getId(state);
+        int data = PackedBlock.getData(state);
+        Block block = Block.getBlockById(id);
+        if (block == null || !block.hasTileEntity(data)) {
+            return new BaseBlock(id, data);
+        } else if (lazy) {
+            return new LazyBlock(id, data, world, position);
+        } else {
+            TileEntity tile = world.getWorld()
+                .getTileEntity(x, y, z);
+            return tile != null ? new TileEntityBaseBlock(id, data, tile) : new BaseBlock(id, data);
+        }
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        return read(position, false);
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        return read(position, true);
+    }
+
+    @Override
+    public void invalidate(Vector position) {
+        invalidate(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+    }
+
+    @Override
+    public void invalidate(int x, int y, int z) {
+        if (y < 0 || y > 255) {
+            return;
+        }
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        long[][] dirty;
+        CachedChunk chunk = lastChunk;
+        if (chunk != null && chunk.x == chunkX && chunk.z == chunkZ && chunk.dirty != null) {
+            dirty = chunk.dirty;
+        } else {
+            long key = getKey(chunkX, chunkZ);
+            dirty = dirtyBlocks.get(key);
+            if (dirty == null) {
+                dirty = new long[16][];
+                dirtyBlocks.put(key, dirty);
+                chunk = chunks.get(key);
+                if (chunk != null) {
+                    chunk.dirty = dirty;
+                }
+            }
+        }
+
+        long[] section = dirty[y >> 4];
+        if (section == null) {
+            section = dirty[y >> 4] = new long[4096 / 64];
+        }
+        int index = getIndex(x, y, z);
+        section[index >> 6] |= 1L << index;
+    }
+
+    @Override
+    public void clear() {
+        chunks.clear();
+        dirtyBlocks.clear();
+        lastChunk = null;
+    }
+
+    /**
+     * A chunk with a reference to its section array.
+     */
+    private static class CachedChunk {
+
+        private final int x;
+        private final int z;
+        private final Chunk chunk;
+        private final ExtendedBlockStorage[] storage;
+        private @Nullable long[][] dirty;
+
+        private CachedChunk(int x, int z, Chunk chunk, @Nullable long[][] dirty) {
+            this.x = x;
+            this.z = z;
+            this.chunk = chunk;
+            this.storage = chunk.getBlockStorageArray();
+            this.dirty = dirty;
+        }
+    }
+
+}
@@ -0,0 +1,377 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.world.BulkBlockWriter;
+
+import cpw.mods.fml.common.Loader;
+
+/**
+ * Writes queued block changes straight into the arrays of each
+ * {@link ExtendedBlockStorage}, then fixes up block counts, height maps
+ * and tile entities once per section or chunk.
+ *
+ * <p>
+ * Blocks that have a tile entity, or that replace one, are set through
+ * {@link Chunk} instead, so that {@code breakBlock()} and
+ * {@code onBlockAdded()} are called and tile entities are created and
+ * removed like they are for any other block change.
+ * </p>
+ *
+ * <p>
+ * When NotEnoughIds is installed, the vanilla block and metadata arrays
+ * are no longer used, so blocks are written through the section's own
+ * setters instead, which NotEnoughIds redirects to its extended arrays.
+ * This still skips the per-block work done by {@link Chunk}.
+ * </p>
+ */
+class ForgeBulkBlockWriter implements BulkBlockWriter {
+
+    private static final boolean EXTENDED_IDS = Loader.isModLoaded("neid");
+
+    private final ForgeWorld world;
+    private final Map<Long, ChunkBuffer> chunks = new LinkedHashMap<Long, ChunkBuffer>();
+    private @Nullable ChunkBuffer lastChunk;
+    private int sectionCount;
+
+    /**
+     * Create a new writer.
+     *
+     * @param world the world to write to
+     */
+    ForgeBulkBlockWriter(ForgeWorld world) {
+        checkNotNull(world);
+        this.world = world;
+    }
+
+    private static long getKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+    }
+
+    @Nullable
+    private ChunkBuffer getChunk(int chunkX, int chunkZ, boolean create) {
+        ChunkBuffer chunk = lastChunk;
+        if (chunk != null && chunk.x == chunkX && chunk.z == chunkZ) {
+            return chunk;
+        }
+
+        long key = getKey(chunkX, chunkZ);
+        chunk = chunks.get(key);
+        if (chunk == null) {
+            if (!create) {
+                return null;
+            }
+            chunk = new ChunkBuffer(chunkX, chunkZ);
+            chunks.put(key, chunk);
+        }
+
+        lastChunk = chunk;
+        return chunk;
+    }
+
+    @Nullable
+    private SectionBuffer getSection(int x, int y, int z, boolean create) {
+        if (y < 0 || y > 255) {
+            return null;
+        }
+
+        ChunkBuffer chunk = getChunk(x >> 4, z >> 4, create);
+        if (chunk == null) {
+            return null;
+        }
+
+        SectionBuffer section = chunk.sections[y >> 4];
+        if (section == null && create) {
+            section = chunk.sections[y >> 4] = new SectionBuffer();
+            sectionCount++;
+        }
+        return section;
+    }
+
+    @Override
+    public void setBlock(Vector position, BaseBlock block) {
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        SectionBuffer section = getSection(x, y, z, true);
+        if (section != null) {
+            section.set(getIndex(x, y, z), block);
+        }
+    }
+
+    @Override
+    public void setBlockState(int x, int y, int z, int state) {
+        SectionBuffer section = getSection(x, y, z, true);
+        if (section != null) {
+            section.set(getIndex(x, y, z), PackedBlock.getId(state), PackedBlock.getData(state));
+        }
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        SectionBuffer section = getSection(x, y, z, false);
+        return section != null ? section.get(getIndex(x, y, z)) : null;
+    }
+
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        SectionBuffer section = getSection(x, y, z, false);
+        return section != null ? section.getState(getIndex(x, y, z)) : PackedBlock.NONE;
+    }
+
+    @Override
+    public int getSectionCount() {
+        return sectionCount;
+    }
+
+    @Override
+    public void flush() throws WorldEditException {
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        World world = this.world.getWorldChecked();
+        List<Integer> fallback = new ArrayList<Integer>();
+
+        for (ChunkBuffer buffer : chunks.values()) {
+            Chunk chunk = world.getChunkFromChunkCoords(buffer.x, buffer.z);
+            ExtendedBlockStorage[] storage = chunk.getBlockStorageArray();
+
+            for (int i = 0; i < buffer.sections.length; i++) {
+                SectionBuffer section = buffer.sections[i];
+                if (section == null) {
+                    continue;
+                }
+
+                if (storage[i] == null) {
+                    if (section.isAllAir()) {
+                        continue;
+                    }
+                    storage[i] = new ExtendedBlockStorage(i << 4, !world.provider.hasNoSky);
+                }
+
+                fallback.clear();
+                write(storage[i], section, fallback);
+
+                for (int index : fallback) {
+                    chunk.func_150807_a(
+                        index & 15,
+                        i << 4 | index >> 8,
+                        index >> 4 & 15,
+                        Block.getBlockById(section.ids[index] - 1),
+                        section.data[index]);
+                }
+            }
+
+            chunk.generateSkylightMap();
+            chunk.setChunkModified();
+
+            // Tile entities can only be created once their blocks are in place
+            for (int i = 0; i < buffer.sections.length; i++) {
+                SectionBuffer section = buffer.sections[i];
+                if (section != null && section.tiles != null) {
+                    for (Map.Entry<Integer, BaseBlock> entry : section.tiles.entrySet()) {
+                        int index = entry.getKey();
+                        Vector position = new Vector(
+                            buffer.x << 4 | index & 15,
+                            i << 4 | index >> 8,
+                            buffer.z << 4 | index >> 4 & 15);
+                        BaseBlock block = entry.getValue();
+                        NBTTagCompound nativeTag = TileEntityBaseBlock.toNativeNbtData(block);
+                        if (nativeTag != null) {
+                            nativeTag.setString("id", block.getNbtId());
+                            TileEntityUtils.setTileEntity(world, position, nativeTag);
+                        }
+                    }
+                }
+            }
+        }
+
+        chunks.clear();
+        lastChunk = null;
+        sectionCount = 0;
+    }
+
+    /**
+     * Write the queued changes of one section.
+     *
+     * <p>
+     * Changes that involve a tile entity are not written, but their
+     * indices are added to {@code fallback} so that they can be set
+     * through the chunk.
+     * </p>
+     *
+     * @param storage  the section
+     * @param section  the queued changes
+     * @param fallback the list to add the skipped indices to
+     */
+    private static void write(ExtendedBlockStorage storage, SectionBuffer section, List<Integer> fallback) {
+        byte[] lsb = EXTENDED_IDS ? null : storage.getBlockLSBArray();
+        NibbleArray msb = EXTENDED_IDS ? null : storage.getBlockMSBArray();
+        NibbleArray metadata = EXTENDED_IDS ? null : storage.getMetadataArray();
+
+        for (int i = 0; i < 4096; i++) {
+            char stored = section.ids[i];
+            if (stored == 0) {
+                continue;
+            }
+
+            int x = i & 15;
+            int y = i >> 8;
+            int z = i >> 4 & 15;
+            Block block = Block.getBlockById(stored - 1);
+            int data = section.data[i];
+
+            Block previous = storage.getBlockByExtId(x, y, z);
+            if (previous.hasTileEntity(storage.getExtBlockMetadata(x, y, z)) || block.hasTileEntity(data)) {
+                fallback.add(i);
+                continue;
+            }
+
+            if (EXTENDED_IDS) {
+                storage.func_150818_a(x, y, z, block);
+                storage.setExtBlockMetadata(x, y, z, data);
+            } else {
+                int id = Block.getIdFromBlock(block);
+                lsb[i] = (byte) id;
+                int high = id >> 8 & 15;
+                if (high != 0) {
+                    if (msb == null) {
+                        msb = storage.createBlockMSBArray();
+                    }
+                    msb.set(x, y, z, high);
+                } else if (msb != null) {
+                    msb.set(x, y, z, 0);
+                }
+                metadata.set(x, y, z, data & 15);
+            }
+        }
+
+        if (!EXTENDED_IDS) {
+            // The arrays were written directly, so the block counts are stale
+            storage.removeInvalidBlocks();
+        }
+    }
+
+    /**
+     * The queued changes of a chunk.
+     */
+    private static class ChunkBuffer {
+
+        private final int x;
+        private final int z;
+        private final SectionBuffer[] sections = new SectionBuffer[16];
+
+        private ChunkBuffer(int x, int z) {
+            this.x = x;
+            this.z = z;
+        }
+    }
+
+    /**
+     * The queued changes of a 16x16x16 chunk section, indexed in the same
+     * order as {@link ExtendedBlockStorage}.
+     */
+    private static class SectionBuffer {
+
+        /**
+         * Block IDs plus one, so that zero means that nothing is queued.
+         */
+        private final char[] ids = new char[4096];
+        private final char[] data = new char[4096];
+        private @Nullable Map<Integer, BaseBlock> tiles;
+
+        private void set(int index, BaseBlock block) {
+            set(index, block.getId(), block.getData());
+
+            if (block.hasNbtData()) {
+                if (tiles == null) {
+                    tiles = new HashMap<Integer, BaseBlock>();
+                }
+                tiles.put(index, new BaseBlock(block));
+            }
+        }
+
+        private void set(int index, int id, int data) {
+            ids[index] = (char) (id + 1);
+            this.data[index] = (char) data;
+
+            if (tiles != null) {
+                tiles.remove(index);
+            }
+        }
+
+        @Nullable
+        private BaseBlock get(int index) {
+            char stored = ids[index];
+            if (stored == 0) {
+                return null;
+            }
+
+            BaseBlock tile = tiles != null ? tiles.get(index) : null;
+            if (tile != null) {
+                return new BaseBlock(tile);
+            }
+
+            return new BaseBlock(stored - 1, data[index]);
+        }
+
+        private int getState(int index) {
+            char stored = ids[index];
+            return stored != 0 ? PackedBlock.pack(stored - 1, data[index]) : PackedBlock.NONE;
+        }
+
+        private boolean isAllAir() {
+            for (char stored : ids) {
+                if (stored > 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
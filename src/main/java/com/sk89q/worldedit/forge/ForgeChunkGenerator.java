@@ -0,0 +1,288 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.LongHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.ChunkPosition;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.gen.ChunkProviderServer;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.world.ChunkGenerator;
+import com.sk89q.worldedit.world.GeneratedChunk;
+
+import cpw.mods.fml.common.registry.GameRegistry;
+
+/**
+ * Generates and populates chunks with the chunk provider that a
+ * {@link ChunkProviderServer} uses for new chunks.
+ *
+ * <p>
+ * That provider returns a new {@link Chunk} that is not added to the
+ * world, so the chunks that are loaded are left alone. Population, such
+ * as trees, ores, lakes and structures, places blocks through the world
+ * instead, into the chunk and its neighbours at +X and +Z. While a chunk
+ * is populated, the generated chunks around it briefly take the place of
+ * the loaded ones, so that population writes into them, and chunks that
+ * are not loaded are not loaded or generated for it.
+ * </p>
+ *
+ * <p>
+ * Every chunk is generated and populated at most once. Generated chunks
+ * are kept until the chunks are asked for two columns further along X,
+ * in the order of {@link ChunkGenerator#generate(int, int)}.
+ * </p>
+ */
+class ForgeChunkGenerator implements ChunkGenerator {
+
+    private final WorldServer world;
+    private final ChunkProviderServer server;
+    private final LongHashMap loadedChunks;
+    private final IChunkProvider provider;
+    private final int height;
+    private final Map<ChunkCoordIntPair, Chunk> chunks = new HashMap<ChunkCoordIntPair, Chunk>();
+    private final Set<ChunkCoordIntPair> populated = new HashSet<ChunkCoordIntPair>();
+    private int column = Integer.MIN_VALUE;
+
+    /**
+     * Create a new generator.
+     *
+     * @param world        the world
+     * @param server       the chunk provider of the world
+     * @param loadedChunks the map of loaded chunks of the chunk provider
+     * @param provider     the chunk provider that generates new chunks
+     * @param height       the height of the world
+     */
+    ForgeChunkGenerator(WorldServer world, ChunkProviderServer server, LongHashMap loadedChunks,
+        IChunkProvider provider, int height) {
+        checkNotNull(world);
+        checkNotNull(server);
+        checkNotNull(loadedChunks);
+        checkNotNull(provider);
+        checkArgument(height > 0 && (height & 15) == 0, "height must be a positive multiple of 16");
+        this.world = world;
+        this.server = server;
+        this.loadedChunks = loadedChunks;
+        this.provider = provider;
+        this.height = height;
+    }
+
+    @Override
+    public GeneratedChunk generate(int chunkX, int chunkZ) {
+        if (chunkX != column) {
+            column = chunkX;
+            forget(chunkX - 2);
+        }
+
+        // The chunk is finished once the chunk and its neighbours at -X and
+        // -Z have been populated
+        for (int x = chunkX - 1; x <= chunkX; x++) {
+            for (int z = chunkZ - 1; z <= chunkZ; z++) {
+                populate(x, z);
+            }
+        }
+
+        return toGeneratedChunk(getChunk(chunkX, chunkZ), world.getChunkFromChunkCoords(chunkX, chunkZ));
+    }
+
+    /**
+     * Drop the chunks that no chunk at or after the given column needs.
+     *
+     * @param minX the lowest X coordinate of the chunks to keep
+     */
+    private void forget(int minX) {
+        Iterator<ChunkCoordIntPair> it = chunks.keySet()
+            .iterator();
+        while (it.hasNext()) {
+            if (it.next().chunkXPos < minX) {
+                it.remove();
+            }
+        }
+        it = populated.iterator();
+        while (it.hasNext()) {
+            if (it.next().chunkXPos < minX) {
+                it.remove();
+            }
+        }
+    }
+
+    private Chunk getChunk(int chunkX, int chunkZ) {
+        ChunkCoordIntPair coord = new ChunkCoordIntPair(chunkX, chunkZ);
+        Chunk chunk = chunks.get(coord);
+        if (chunk == null) {
+            chunk = provider.provideChunk(chunkX, chunkZ);
+            chunks.put(coord, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Populate a chunk, unless that has already been done.
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     */
+    private void populate(int chunkX, int chunkZ) {
+        if (!populated.add(new ChunkCoordIntPair(chunkX, chunkZ))) {
+            return;
+        }
+
+        // Population writes into this chunk and the next ones along X and Z,
+        // and light spreads up to a chunk further
+        List<Long> keys = new ArrayList<Long>(16);
+        List<Object> loaded = new ArrayList<Object>(16);
+        for (int x = chunkX - 1; x <= chunkX + 2; x++) {
+            for (int z = chunkZ - 1; z <= chunkZ + 2; z++) {
+                Chunk chunk = getChunk(x, z);
+                long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+                keys.add(key);
+                loaded.add(loadedChunks.remove(key));
+                loadedChunks.add(key, chunk);
+            }
+        }
+
+        boolean loadOnRequest = server.loadChunkOnProvideRequest;
+        int entities = world.loadedEntityList.size();
+        int tileEntities = world.loadedTileEntityList.size();
+        try {
+            server.loadChunkOnProvideRequest = false;
+            getChunk(chunkX, chunkZ).isTerrainPopulated = true;
+            provider.populate(provider, chunkX, chunkZ);
+            // Like Chunk.populateChunk, run the world generators of mods
+            GameRegistry.generateWorld(chunkX, chunkZ, world, provider, server);
+        } finally {
+            server.loadChunkOnProvideRequest = loadOnRequest;
+            for (int i = 0; i < keys.size(); i++) {
+                long key = keys.get(i);
+                loadedChunks.remove(key);
+                if (loaded.get(i) != null) {
+                    loadedChunks.add(key, loaded.get(i));
+                }
+            }
+
+            // Animals and tile entities that were added to the generated
+            // chunks must not live on in the world
+            List<?> addedEntities = new ArrayList<Object>(
+                world.loadedEntityList.subList(entities, world.loadedEntityList.size()));
+            for (Object entity : addedEntities) {
+                world.removeEntity((Entity) entity);
+            }
+            if (world.loadedTileEntityList.size() > tileEntities) {
+                world.loadedTileEntityList.subList(tileEntities, world.loadedTileEntityList.size())
+                    .clear();
+            }
+        }
+    }
+
+    /**
+     * Read the blocks and tile entities of a generated chunk.
+     *
+     * @param chunk    the generated chunk
+     * @param existing the chunk in the world
+     * @return the generated chunk
+     */
+    private GeneratedChunk toGeneratedChunk(Chunk chunk, Chunk existing) {
+        int[] states = new int[height << 8];
+        Map<Integer, BaseBlock> tileEntities = new HashMap<Integer, BaseBlock>();
+        ExtendedBlockStorage[] sections = chunk.getBlockStorageArray();
+
+        for (int i = 0; i < sections.length && i << 4 < height; i++) {
+            ExtendedBlockStorage section = sections[i];
+            if (section == null || section.isEmpty()) {
+                continue; // Air, which packs to 0
+            }
+
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        Block block = section.getBlockByExtId(x, y, z);
+                        int id = Block.getIdFromBlock(block);
+                        int data = section.getExtBlockMetadata(x, y, z);
+                        int index = (i << 4 | y) << 8 | z << 4 | x;
+                        states[index] = PackedBlock.pack(id, data);
+
+                        if (block.hasTileEntity(data)) {
+                            TileEntity tile = getTileEntity(chunk, block, data, x, i << 4 | y, z);
+                            if (tile != null) {
+                                tileEntities.put(index, new TileEntityBaseBlock(id, data, tile));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        BitSet existingTileEntities = new BitSet();
+        for (Object key : existing.chunkTileEntityMap.keySet()) {
+            ChunkPosition position = (ChunkPosition) key;
+            if (position.chunkPosY >= 0 && position.chunkPosY < height) {
+                existingTileEntities.set(position.chunkPosY << 8 | position.chunkPosZ << 4 | position.chunkPosX);
+            }
+        }
+
+        return new GeneratedChunk(states, tileEntities, existingTileEntities);
+    }
+
+    /**
+     * Get the tile entity of a block of a generated chunk.
+     *
+     * <p>
+     * Blocks that the chunk provider placed directly have no tile entity
+     * yet, so a new one is created for them without adding it to the
+     * world. That way a generated chest still replaces the items of a
+     * chest that is in the world now.
+     * </p>
+     *
+     * @return the tile entity, or null if the block did not create one
+     */
+    @Nullable
+    private TileEntity getTileEntity(Chunk chunk, Block block, int data, int x, int y, int z) {
+        TileEntity tile = (TileEntity) chunk.chunkTileEntityMap.get(new ChunkPosition(x, y, z));
+        if (tile == null) {
+            tile = block.createTileEntity(world, data);
+            if (tile != null) {
+                tile.xCoord = chunk.xPosition << 4 | x;
+                tile.yCoord = y;
+                tile.zCoord = chunk.zPosition << 4 | z;
+            }
+        }
+        return tile;
+    }
+
+}
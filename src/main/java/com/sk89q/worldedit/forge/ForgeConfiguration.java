@@ -17,6 +17,8 @@
 package com.sk89q.worldedit.forge;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.sk89q.worldedit.util.PropertiesConfiguration;
 
@@ -24,6 +26,11 @@ public class ForgeConfiguration extends PropertiesConfiguration {
 
     public boolean creativeEnable = false;
     public boolean cheatMode = false;
+    public int operationTickBudget = 10;
+    public int budgetMaxBlocksPerTick = 10000;
+    public int budgetMinBlocksPerTick = 500;
+    public double budgetTargetTickTime = 45;
+    public Map<String, Double> budgetGroupWeights = new HashMap<String, Double>();
 
     public ForgeConfiguration(ForgeWorldEdit mod) {
         super(new File(mod.getWorkingDir() + File.separator + "worldedit.properties"));
@@ -33,6 +40,30 @@ public class ForgeConfiguration extends PropertiesConfiguration {
     protected void loadExtra() {
         creativeEnable = getBool("use-in-creative", false);
         cheatMode = getBool("cheat-mode", false);
+        operationTickBudget = Math.max(1, getInt("operation-tick-budget-ms", operationTickBudget));
+        budgetMaxBlocksPerTick = Math.max(1, getInt("budget-max-blocks-per-tick", budgetMaxBlocksPerTick));
+        budgetMinBlocksPerTick = Math.max(
+            1,
+            Math.min(budgetMaxBlocksPerTick, getInt("budget-min-blocks-per-tick", budgetMinBlocksPerTick)));
+        budgetTargetTickTime = getDouble("budget-target-mspt", budgetTargetTickTime);
+        if (budgetTargetTickTime <= 0) {
+            budgetTargetTickTime = 45;
+        }
+
+        // Written as group:weight pairs, such as "admin:4,builder:2"
+        budgetGroupWeights.clear();
+        for (String entry : getString("budget-group-weights", "").split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                double weight = Double.parseDouble(parts[1].trim());
+                if (weight > 0) {
+                    budgetGroupWeights.put(parts[0].trim(), weight);
+                }
+            } catch (NumberFormatException ignored) {}
+        }
     }
 
     @Override
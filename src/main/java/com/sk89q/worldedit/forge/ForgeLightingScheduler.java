@@ -34,6 +34,12 @@ import cpw.mods.fml.common.gameevent.TickEvent;
 
 /**
  * A lighting scheduler that batches work across server ticks.
+ *
+ * <p>
+ * Only one fix requested by a player may be pending at a time, but fixes
+ * scheduled without a player, such as those that follow fast mode edits,
+ * are always queued.
+ * </p>
  */
 public class ForgeLightingScheduler implements LightingScheduler {
 
@@ -55,7 +61,7 @@ public class ForgeLightingScheduler implements LightingScheduler {
         checkNotNull(world);
         checkNotNull(chunks);
 
-        LightingTask task = new LightingTask(world, chunks, completion);
+        LightingTask task = new LightingTask(world, chunks, player != null, completion);
         if (task.isEmpty()) {
             if (completion != null) {
                 completion.run();
@@ -64,7 +70,7 @@ public class ForgeLightingScheduler implements LightingScheduler {
         }
 
         synchronized (lock) {
-            if (currentTask != null || !queue.isEmpty()) {
+            if (task.isRequested() && hasRequestedTask()) {
                 return false;
             }
 
@@ -83,6 +89,18 @@ public class ForgeLightingScheduler implements LightingScheduler {
         }
     }
 
+    private boolean hasRequestedTask() {
+        if (currentTask != null && currentTask.isRequested()) {
+            return true;
+        }
+        for (LightingTask task : queue) {
+            if (task.isRequested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void register() {
         if (!registered) {
             FMLCommonHandler.instance()
@@ -149,10 +167,12 @@ public class ForgeLightingScheduler implements LightingScheduler {
 
         private final World world;
         private final Deque<BlockVector2D> remaining = new ArrayDeque<BlockVector2D>();
+        private final boolean requested;
         private final Runnable completion;
 
-        private LightingTask(World world, Iterable<BlockVector2D> chunks, Runnable completion) {
+        private LightingTask(World world, Iterable<BlockVector2D> chunks, boolean requested, Runnable completion) {
             this.world = world;
+            this.requested = requested;
             this.completion = completion;
             for (BlockVector2D chunk : chunks) {
                 remaining.offer(chunk);
@@ -163,6 +183,10 @@ public class ForgeLightingScheduler implements LightingScheduler {
             return world;
         }
 
+        private boolean isRequested() {
+            return requested;
+        }
+
         private Runnable getCompletion() {
             return completion;
         }
@@ -0,0 +1,273 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.server.MinecraftServer;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.extent.budget.BlockBudget;
+import com.sk89q.worldedit.extent.budget.BlockBudgetGovernor;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.OperationScheduler;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.function.operation.TimedRunContext;
+import com.sk89q.worldedit.session.EditJob;
+
+import cpw.mods.fml.common.FMLCommonHandler;
+import cpw.mods.fml.common.eventhandler.SubscribeEvent;
+import cpw.mods.fml.common.gameevent.TickEvent;
+
+/**
+ * An operation scheduler that spreads operations across server ticks,
+ * spending at most a fixed amount of time on them every tick.
+ *
+ * <p>
+ * All scheduled operations make progress every tick. The time and the
+ * blocks allowed by the {@link BlockBudgetGovernor} are shared between
+ * them by weight, and the operation that goes first is rotated every tick
+ * so that no one is always left with what remains.
+ * </p>
+ */
+public class ForgeOperationScheduler implements OperationScheduler {
+
+    /**
+     * The number of ticks that the server averages its tick time over.
+     */
+    static final int TICK_TIME_WINDOW = 100;
+
+    private static final long MIN_TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Object lock = new Object();
+    private final List<OperationJob> jobs = new ArrayList<OperationJob>();
+    private final long tickBudget;
+    private final BlockBudgetGovernor governor;
+    private boolean registered;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param tickBudget the number of milliseconds that may be spent per tick
+     * @param governor   the governor that shares the block budget
+     */
+    public ForgeOperationScheduler(long tickBudget, BlockBudgetGovernor governor) {
+        checkArgument(tickBudget > 0, "tickBudget must be positive");
+        checkNotNull(governor);
+        this.tickBudget = TimeUnit.MILLISECONDS.toNanos(tickBudget);
+        this.governor = governor;
+        register();
+    }
+
+    @Override
+    public void schedule(Operation operation, @Nullable Actor actor, @Nullable Runnable completion) {
+        checkNotNull(operation);
+
+        BlockBudget budget = operation instanceof EditJob ? ((EditJob) operation).getEditSession()
+            .getBlockBudget() : new BlockBudget();
+        budget.setWeight(governor.getWeight(actor));
+
+        synchronized (lock) {
+            jobs.add(new OperationJob(operation, actor, completion, budget));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        unregister();
+
+        OperationJob job;
+        while ((job = poll()) != null) {
+            job.cancel();
+        }
+    }
+
+    private OperationJob poll() {
+        synchronized (lock) {
+            return jobs.isEmpty() ? null : jobs.remove(0);
+        }
+    }
+
+    private void register() {
+        if (!registered) {
+            FMLCommonHandler.instance()
+                .bus()
+                .register(this);
+            registered = true;
+        }
+    }
+
+    private void unregister() {
+        if (registered) {
+            FMLCommonHandler.instance()
+                .bus()
+                .unregister(this);
+            registered = false;
+        }
+    }
+
+    /**
+     * Get the average time taken by the last hundred ticks.
+     *
+     * @return the time in milliseconds
+     */
+    private static double getAverageTickTime() {
+        long[] times = MinecraftServer.getServer().tickTimeArray;
+        long total = 0;
+        for (long time : times) {
+            total += time;
+        }
+        return total / (double) times.length / 1.0E6;
+    }
+
+    @SubscribeEvent
+    public void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase != TickEvent.Phase.END) {
+            return;
+        }
+
+        List<OperationJob> active;
+        synchronized (lock) {
+            if (jobs.isEmpty()) {
+                return;
+            }
+            active = new ArrayList<OperationJob>(jobs);
+        }
+
+        governor.update(getAverageTickTime());
+
+        List<BlockBudget> budgets = new ArrayList<BlockBudget>(active.size());
+        double remainingWeight = 0;
+        for (OperationJob job : active) {
+            budgets.add(job.budget);
+            remainingWeight += job.budget.getWeight();
+        }
+        governor.allocate(budgets);
+
+        long deadline = System.nanoTime() + Math.max(MIN_TICK_BUDGET, (long) (tickBudget * governor.getScale()));
+
+        for (OperationJob job : active) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                break;
+            }
+
+            // Time left unused by earlier jobs is handed on to later ones
+            double weight = job.budget.getWeight();
+            long slice = (long) (left * (weight / remainingWeight));
+            remainingWeight -= weight;
+
+            if (job.resume(new BudgetedRunContext(new TimedRunContext(slice, TimeUnit.NANOSECONDS), job.budget))) {
+                synchronized (lock) {
+                    jobs.remove(job);
+                }
+                job.complete();
+            }
+        }
+
+        synchronized (lock) {
+            OperationJob first = active.get(0);
+            if (jobs.remove(first)) {
+                jobs.add(first);
+            }
+        }
+    }
+
+    /**
+     * A run context that stops once either the time slice or the block
+     * allowance of a job has run out.
+     */
+    private static class BudgetedRunContext extends RunContext {
+
+        private final TimedRunContext timer;
+        private final BlockBudget budget;
+
+        private BudgetedRunContext(TimedRunContext timer, BlockBudget budget) {
+            this.timer = timer;
+            this.budget = budget;
+        }
+
+        @Override
+        public boolean shouldContinue() {
+            return budget.hasRemaining() && timer.shouldContinue();
+        }
+    }
+
+    private static class OperationJob {
+
+        private @Nullable Operation operation;
+        private final @Nullable Actor actor;
+        private final @Nullable Runnable completion;
+        private final BlockBudget budget;
+
+        private OperationJob(Operation operation, @Nullable Actor actor, @Nullable Runnable completion,
+            BlockBudget budget) {
+            this.operation = operation;
+            this.actor = actor;
+            this.completion = completion;
+            this.budget = budget;
+        }
+
+        /**
+         * Resume the operation.
+         *
+         * @param run the run context
+         * @return true if the operation has stopped
+         */
+        private boolean resume(RunContext run) {
+            try {
+                operation = operation.resume(run);
+            } catch (WorldEditException e) {
+                Operations.report(e, actor);
+                operation.cancel();
+                operation = null;
+            } catch (RuntimeException e) {
+                ForgeWorldEdit.logger.error("An unexpected error occurred while completing an operation", e);
+                if (actor != null) {
+                    actor.printError("Please report this error: [See console]");
+                }
+                operation.cancel();
+                operation = null;
+            }
+
+            return operation == null;
+        }
+
+        private void cancel() {
+            if (operation != null) {
+                operation.cancel();
+                operation = null;
+            }
+            complete();
+        }
+
+        private void complete() {
+            if (completion != null) {
+                completion.run();
+            }
+        }
+    }
+}
@@ -21,9 +21,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,18 +32,24 @@ import javax.annotation.Nullable;
 import net.minecraft.block.Block;
 import net.minecraft.entity.EntityList;
 import net.minecraft.entity.item.EntityItem;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.inventory.IInventory;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.network.play.server.S26PacketMapChunkBulk;
+import net.minecraft.server.management.PlayerManager;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.LongHashMap;
-import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.EnumSkyBlock;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.world.gen.feature.WorldGenBigMushroom;
 import net.minecraft.world.gen.feature.WorldGenBigTree;
@@ -65,22 +71,29 @@ import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BaseItem;
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.blocks.LazyBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.operation.ChunkRegenerator;
 import com.sk89q.worldedit.internal.Constants;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Direction;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
 import com.sk89q.worldedit.world.AbstractWorld;
+import com.sk89q.worldedit.world.BlockReadCache;
+import com.sk89q.worldedit.world.BulkBlockWriter;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
 
+import cpw.mods.fml.common.Loader;
+
 /**
  * An adapter to Minecraft worlds for WorldEdit.
  */
@@ -88,6 +101,7 @@ public class ForgeWorld extends AbstractWorld {
 
     private static final Logger logger = Logger.getLogger(ForgeWorld.class.getCanonicalName());
     private static final Random random = new Random();
+    private static final boolean EXTENDED_IDS = Loader.isModLoaded("neid");
     private final WeakReference<World> worldRef;
 
     /**
@@ -159,10 +173,37 @@ public class ForgeWorld extends AbstractWorld {
         checkNotNull(position);
         checkNotNull(block);
 
+        return setBlock(
+            position.getBlockX(),
+            position.getBlockY(),
+            position.getBlockZ(),
+            block.getId(),
+            block.getData(),
+            block,
+            notifyAndLight);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state, boolean notifyAndLight) throws WorldEditException {
+        return setBlock(x, y, z, PackedBlock.getId(state), PackedBlock.getData(state), null, notifyAndLight);
+    }
+
+    /**
+     * Set a block and create its tile entity.
+     *
+     * @param x              the X coordinate
+     * @param y              the Y coordinate
+     * @param z              the Z coordinate
+     * @param id             the block ID
+     * @param data           the data value
+     * @param tileBlock      the block to take tile entity data from, or null if there is none
+     * @param notifyAndLight true to to notify and light
+     * @return true if the block was successfully set
+     * @throws WorldEditException thrown if the world is no longer loaded
+     */
+    private boolean setBlock(int x, int y, int z, int id, int data, @Nullable BaseBlock tileBlock,
+        boolean notifyAndLight) throws WorldEditException {
         World world = getWorldChecked();
-        int x = position.getBlockX();
-        int y = position.getBlockY();
-        int z = position.getBlockZ();
 
         // First set the block
         Chunk chunk = world.getChunkFromChunkCoords(x >> 4, z >> 4);
@@ -172,15 +213,14 @@ public class ForgeWorld extends AbstractWorld {
             previousId = Block.getIdFromBlock(chunk.getBlock(x & 15, y, z & 15));
         }
 
-        boolean successful = chunk.func_150807_a(x & 15, y, z & 15, Block.getBlockById(block.getId()), block.getData());
+        boolean successful = chunk.func_150807_a(x & 15, y, z & 15, Block.getBlockById(id), data);
 
         // Create the TileEntity
-        if (successful) {
-            CompoundTag tag = block.getNbtData();
-            if (tag != null) {
-                NBTTagCompound nativeTag = NBTConverter.toNative(tag);
-                nativeTag.setString("id", block.getNbtId());
-                TileEntityUtils.setTileEntity(getWorld(), position, nativeTag);
+        if (successful && tileBlock != null) {
+            NBTTagCompound nativeTag = TileEntityBaseBlock.toNativeNbtData(tileBlock);
+            if (nativeTag != null) {
+                nativeTag.setString("id", tileBlock.getNbtId());
+                TileEntityUtils.setTileEntity(world, new Vector(x, y, z), nativeTag);
             }
         }
 
@@ -191,13 +231,84 @@ public class ForgeWorld extends AbstractWorld {
 
             Block mcBlock = Block.getBlockById(previousId);
             if (mcBlock != null && mcBlock.hasComparatorInputOverride()) {
-                world.func_147453_f(x, y, z, Block.getBlockById(block.getId()));
+                world.func_147453_f(x, y, z, Block.getBlockById(id));
             }
         }
 
         return successful;
     }
 
+    @Override
+    public BulkBlockWriter createBulkWriter() {
+        return new ForgeBulkBlockWriter(this);
+    }
+
+    @Override
+    public BlockReadCache createReadCache() {
+        return new ForgeBlockReadCache(this);
+    }
+
+    @Override
+    public boolean copyChunkSection(int chunkX, int sectionY, int chunkZ, byte[] blocks, byte[] add, byte[] data) {
+        if (sectionY < 0 || sectionY >= 16) {
+            return false;
+        }
+
+        ExtendedBlockStorage storage = getWorld().getChunkFromChunkCoords(chunkX, chunkZ)
+            .getBlockStorageArray()[sectionY];
+        if (storage == null) {
+            Arrays.fill(blocks, (byte) 0);
+            Arrays.fill(add, (byte) 0);
+            Arrays.fill(data, (byte) 0);
+            return true;
+        }
+
+        if (EXTENDED_IDS) {
+            return copyExtendedSection(storage, blocks, add, data);
+        }
+
+        System.arraycopy(storage.getBlockLSBArray(), 0, blocks, 0, blocks.length);
+        NibbleArray msb = storage.getBlockMSBArray();
+        if (msb != null) {
+            System.arraycopy(msb.data, 0, add, 0, add.length);
+        } else {
+            Arrays.fill(add, (byte) 0);
+        }
+        System.arraycopy(storage.getMetadataArray().data, 0, data, 0, data.length);
+        return true;
+    }
+
+    /**
+     * Copy a section whose blocks are stored by NotEnoughIds, which
+     * replaces the Anvil arrays but keeps the accessors working.
+     *
+     * @return false if a block doesn't fit into the Anvil arrays
+     */
+    private static boolean copyExtendedSection(ExtendedBlockStorage storage, byte[] blocks, byte[] add, byte[] data) {
+        Arrays.fill(add, (byte) 0);
+        Arrays.fill(data, (byte) 0);
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    int id = Block.getIdFromBlock(storage.getBlockByExtId(x, y, z));
+                    int meta = storage.getExtBlockMetadata(x, y, z);
+                    // Blocks like these can't be in a snapshot either, so the
+                    // section is left to be compared block by block
+                    if (id > 0xFFF || meta > 0xF) {
+                        return false;
+                    }
+
+                    int index = y << 8 | z << 4 | x;
+                    int shift = (index & 1) << 2;
+                    blocks[index] = (byte) id;
+                    add[index >> 1] |= (id >> 8) << shift;
+                    data[index >> 1] |= meta << shift;
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public int getBlockLightLevel(Vector position) {
         checkNotNull(position);
@@ -292,99 +403,49 @@ public class ForgeWorld extends AbstractWorld {
 
     @Override
     public boolean regenerate(Region region, EditSession editSession) {
-        BaseBlock[] history = new BaseBlock[256 * (getMaxY() + 1)];
-
-        for (Vector2D chunk : region.getChunks()) {
-            Vector min = new Vector(chunk.getBlockX() * 16, 0, chunk.getBlockZ() * 16);
+        IChunkProvider provider = getWorld().getChunkProvider();
+        if (!(provider instanceof ChunkProviderServer)) {
+            return false;
+        }
 
-            for (int x = 0; x < 16; x++) {
-                for (int y = 0; y < getMaxY() + 1; y++) {
-                    for (int z = 0; z < 16; z++) {
-                        Vector pt = min.add(x, y, z);
-                        int index = y * 16 * 16 + z * 16 + x;
-                        history[index] = editSession.getBlock(pt);
-                    }
-                }
-            }
+        IChunkProvider generator;
+        LongHashMap loadedChunks;
+        try {
+            Field p;
             try {
-                Set<Vector2D> chunks = region.getChunks();
-                IChunkProvider provider = getWorld().getChunkProvider();
-                if (!(provider instanceof ChunkProviderServer)) {
-                    return false;
-                }
-                ChunkProviderServer chunkServer = (ChunkProviderServer) provider;
-                Field u;
-                try {
-                    u = ChunkProviderServer.class.getDeclaredField("field_73248_b"); // chunksToUnload
-                } catch (NoSuchFieldException e) {
-                    u = ChunkProviderServer.class.getDeclaredField("chunksToUnload");
-                }
-                u.setAccessible(true);
-                Set<?> unloadQueue = (Set<?>) u.get(chunkServer);
-                Field m;
-                try {
-                    m = ChunkProviderServer.class.getDeclaredField("field_73244_f"); // loadedChunkHashMap
-                } catch (NoSuchFieldException e) {
-                    m = ChunkProviderServer.class.getDeclaredField("loadedChunkHashMap");
-                }
-                m.setAccessible(true);
-                LongHashMap loadedMap = (LongHashMap) m.get(chunkServer);
-                Field lc;
-                try {
-                    lc = ChunkProviderServer.class.getDeclaredField("field_73245_g"); // loadedChunkHashMap
-                } catch (NoSuchFieldException e) {
-                    lc = ChunkProviderServer.class.getDeclaredField("loadedChunks");
-                }
-                lc.setAccessible(true);
-                @SuppressWarnings("unchecked")
-                List<Chunk> loaded = (List<Chunk>) lc.get(chunkServer);
-                Field p;
-                try {
-                    p = ChunkProviderServer.class.getDeclaredField("field_73246_d"); // currentChunkProvider
-                } catch (NoSuchFieldException e) {
-                    p = ChunkProviderServer.class.getDeclaredField("currentChunkProvider");
-                }
-                p.setAccessible(true);
-                IChunkProvider chunkProvider = (IChunkProvider) p.get(chunkServer);
-
-                for (Vector2D coord : chunks) {
-                    long pos = ChunkCoordIntPair.chunkXZ2Int(coord.getBlockX(), coord.getBlockZ());
-                    Chunk mcChunk;
-                    if (chunkServer.chunkExists(coord.getBlockX(), coord.getBlockZ())) {
-                        mcChunk = chunkServer.loadChunk(coord.getBlockX(), coord.getBlockZ());
-                        mcChunk.onChunkUnload();
-                    }
-                    unloadQueue.remove(pos);
-                    loadedMap.remove(pos);
-                    mcChunk = chunkProvider.provideChunk(coord.getBlockX(), coord.getBlockZ());
-                    loadedMap.add(pos, mcChunk);
-                    loaded.add(mcChunk);
-                    if (mcChunk != null) {
-                        mcChunk.onChunkLoad();
-                        mcChunk.populateChunk(chunkProvider, chunkProvider, coord.getBlockX(), coord.getBlockZ());
-                    }
-                }
-            } catch (Throwable t) {
-                logger.log(Level.WARNING, "Failed to generate chunk", t);
-                return false;
+                p = ChunkProviderServer.class.getDeclaredField("field_73246_d"); // currentChunkProvider
+            } catch (NoSuchFieldException e) {
+                p = ChunkProviderServer.class.getDeclaredField("currentChunkProvider");
             }
-
-            for (int x = 0; x < 16; x++) {
-                for (int y = 0; y < getMaxY() + 1; y++) {
-                    for (int z = 0; z < 16; z++) {
-                        Vector pt = min.add(x, y, z);
-                        int index = y * 16 * 16 + z * 16 + x;
-
-                        if (!region.contains(pt)) editSession.smartSetBlock(pt, history[index]);
-                        else {
-                            editSession.rememberChange(pt, history[index], editSession.rawGetBlock(pt));
-                        }
-                    }
-                }
+            p.setAccessible(true);
+            generator = (IChunkProvider) p.get(provider);
+            Field m;
+            try {
+                m = ChunkProviderServer.class.getDeclaredField("field_73244_f"); // loadedChunkHashMap
+            } catch (NoSuchFieldException e) {
+                m = ChunkProviderServer.class.getDeclaredField("loadedChunkHashMap");
             }
+            m.setAccessible(true);
+            loadedChunks = (LongHashMap) m.get(provider);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to get the chunk generator", e);
+            return false;
         }
 
-        return false;
+        // Like the chunks that used to be swapped in, regenerated blocks skip
+        // the per-block update logic and are relit once the edit is committed
+        editSession.setFastMode(true);
+        editSession.enqueue(
+            new ChunkRegenerator(
+                region,
+                editSession,
+                new ForgeChunkGenerator(
+                    (WorldServer) getWorld(),
+                    (ChunkProviderServer) provider,
+                    loadedChunks,
+                    generator,
+                    getMaxY() + 1)));
+        return true;
     }
 
     @Nullable
@@ -452,9 +513,19 @@ public class ForgeWorld extends AbstractWorld {
     @Override
     public BaseBlock getBlock(Vector position) {
         World world = getWorld();
-        int id = Block.getIdFromBlock(world.getBlock(position.getBlockX(), position.getBlockY(), position.getBlockZ()));
-        int data = world.getBlockMetadata(position.getBlockX(), position.getBlockY(), position.getBlockZ());
-        TileEntity tile = getWorld().getTileEntity(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        if (y < 0 || y > 255) {
+            return new BaseBlock(0);
+        }
+
+        // Look the chunk up once instead of once for the block, the data and the tile entity
+        Chunk chunk = world.getChunkFromChunkCoords(x >> 4, z >> 4);
+        Block block = chunk.getBlock(x & 15, y, z & 15);
+        int id = Block.getIdFromBlock(block);
+        int data = chunk.getBlockMetadata(x & 15, y, z & 15);
+        TileEntity tile = block.hasTileEntity(data) ? world.getTileEntity(x, y, z) : null;
 
         if (tile != null) {
             return new TileEntityBaseBlock(id, data, tile);
@@ -466,9 +537,54 @@ public class ForgeWorld extends AbstractWorld {
     @Override
     public BaseBlock getLazyBlock(Vector position) {
         World world = getWorld();
-        int id = Block.getIdFromBlock(world.getBlock(position.getBlockX(), position.getBlockY(), position.getBlockZ()));
-        int data = world.getBlockMetadata(position.getBlockX(), position.getBlockY(), position.getBlockZ());
-        return new LazyBlock(id, data, this, position);
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        if (y < 0 || y > 255) {
+            return new BaseBlock(0);
+        }
+
+        Chunk chunk = world.getChunkFromChunkCoords(x >> 4, z >> 4);
+        Block block = chunk.getBlock(x & 15, y, z & 15);
+        int id = Block.getIdFromBlock(block);
+        int data = chunk.getBlockMetadata(x & 15, y, z & 15);
+
+        // Only blocks that can have a tile entity have anything to load later
+        if (block.hasTileEntity(data)) {
+            return new LazyBlock(id, data, this, position);
+        } else {
+            return new BaseBlock(id, data);
+        }
+    }
+
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        if (y < 0 || y > 255) {
+            return 0;
+        }
+
+        Chunk chunk = getWorld().getChunkFromChunkCoords(x >> 4, z >> 4);
+        int id = Block.getIdFromBlock(chunk.getBlock(x & 15, y, z & 15));
+        return PackedBlock.pack(id, chunk.getBlockMetadata(x & 15, y, z & 15));
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        if (y < 0 || y > 255) {
+            return null;
+        }
+
+        World world = getWorld();
+        Chunk chunk = world.getChunkFromChunkCoords(x >> 4, z >> 4);
+        Block block = chunk.getBlock(x & 15, y, z & 15);
+        int data = chunk.getBlockMetadata(x & 15, y, z & 15);
+        if (!block.hasTileEntity(data)) {
+            return null;
+        }
+
+        TileEntity tile = world.getTileEntity(x, y, z);
+        return tile != null ? new TileEntityBaseBlock(Block.getIdFromBlock(block), data, tile) : null;
     }
 
     @Override
@@ -533,6 +649,88 @@ public class ForgeWorld extends AbstractWorld {
             world.markBlockRangeForRenderUpdate(bx, 0, bz, bx + 15, topY - 1, bz + 15);
             mcChunk.setChunkModified();
         }
+
+        resendChunks(world, chunks);
+    }
+
+    @Override
+    public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {
+        World world = getWorld();
+        IChunkProvider provider = world.getChunkProvider();
+
+        List<BlockVector2D> loaded = new ArrayList<BlockVector2D>();
+        for (BlockVector2D chunk : chunks) {
+            if (provider.chunkExists(chunk.getBlockX(), chunk.getBlockZ())) {
+                world.getChunkFromChunkCoords(chunk.getBlockX(), chunk.getBlockZ())
+                    .generateSkylightMap();
+                loaded.add(chunk);
+            }
+        }
+
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        // Let players see the new blocks right away; the chunks are sent
+        // again by fixLighting() once block light has been recalculated
+        resendChunks(world, loaded);
+
+        WorldEdit.getInstance()
+            .getLightingScheduler()
+            .schedule(this, loaded, null, null);
+    }
+
+    /**
+     * Send whole chunks again to every player that is watching them, in as
+     * few packets as possible.
+     *
+     * @param world  the world
+     * @param chunks the chunks to send
+     */
+    private static void resendChunks(World world, Iterable<BlockVector2D> chunks) {
+        if (!(world instanceof WorldServer)) {
+            return;
+        }
+
+        PlayerManager playerManager = ((WorldServer) world).getPlayerManager();
+        int maxPerPacket = S26PacketMapChunkBulk.func_149258_c();
+
+        for (Object entity : world.playerEntities) {
+            EntityPlayerMP player = (EntityPlayerMP) entity;
+            List<Chunk> batch = new ArrayList<Chunk>(maxPerPacket);
+
+            for (BlockVector2D chunk : chunks) {
+                if (playerManager.isPlayerWatchingChunk(player, chunk.getBlockX(), chunk.getBlockZ())) {
+                    batch.add(world.getChunkFromChunkCoords(chunk.getBlockX(), chunk.getBlockZ()));
+                    if (batch.size() >= maxPerPacket) {
+                        sendChunks(player, batch);
+                        batch = new ArrayList<Chunk>(maxPerPacket);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                sendChunks(player, batch);
+            }
+        }
+    }
+
+    private static void sendChunks(EntityPlayerMP player, List<Chunk> chunks) {
+        if (chunks.size() == 1) {
+            player.playerNetServerHandler.sendPacket(new S21PacketChunkData(chunks.get(0), true, 0xFFFF));
+        } else {
+            player.playerNetServerHandler.sendPacket(new S26PacketMapChunkBulk(chunks));
+        }
+
+        // Tile entities are not part of the chunk data
+        for (Chunk chunk : chunks) {
+            for (Object tile : chunk.chunkTileEntityMap.values()) {
+                Packet packet = ((TileEntity) tile).getDescriptionPacket();
+                if (packet != null) {
+                    player.playerNetServerHandler.sendPacket(packet);
+                }
+            }
+        }
     }
 
     @Override
@@ -42,6 +42,7 @@ import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.event.platform.PlatformReadyEvent;
 import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extent.budget.BlockBudgetGovernor;
 import com.sk89q.worldedit.forge.compat.ArchitectureCraftBlockTransformHook;
 import com.sk89q.worldedit.forge.compat.CarpentersBlocksBlockTransformHook;
 import com.sk89q.worldedit.forge.compat.ForgeMultipartCompat;
@@ -49,6 +50,7 @@ import com.sk89q.worldedit.forge.compat.ForgeMultipartExistsCompat;
 import com.sk89q.worldedit.forge.compat.ModRotationBlockTransformHook;
 import com.sk89q.worldedit.forge.compat.NoForgeMultipartCompat;
 import com.sk89q.worldedit.forge.compat.rotation.RotationMappings;
+import com.sk89q.worldedit.function.operation.OperationScheduler;
 import com.sk89q.worldedit.internal.LocalWorldAdapter;
 import com.sk89q.worldedit.util.lighting.LightingScheduler;
 
@@ -99,6 +101,8 @@ public class ForgeWorldEdit {
     private ModRotationBlockTransformHook modRotationHook;
     private ForgeLightingScheduler lightingScheduler;
     private LightingScheduler previousLightingScheduler;
+    private ForgeOperationScheduler operationScheduler;
+    private OperationScheduler previousOperationScheduler;
 
     @EventHandler
     public void preInit(FMLPreInitializationEvent event) {
@@ -171,6 +175,20 @@ public class ForgeWorldEdit {
         lightingScheduler = new ForgeLightingScheduler();
         WorldEdit.getInstance()
             .setLightingScheduler(lightingScheduler);
+
+        previousOperationScheduler = WorldEdit.getInstance()
+            .getOperationScheduler();
+        BlockBudgetGovernor governor = new BlockBudgetGovernor(
+            config.budgetMaxBlocksPerTick,
+            config.budgetMinBlocksPerTick,
+            config.budgetTargetTickTime,
+            ForgeOperationScheduler.TICK_TIME_WINDOW);
+        for (Map.Entry<String, Double> entry : config.budgetGroupWeights.entrySet()) {
+            governor.setGroupWeight(entry.getKey(), entry.getValue());
+        }
+        operationScheduler = new ForgeOperationScheduler(config.operationTickBudget, governor);
+        WorldEdit.getInstance()
+            .setOperationScheduler(operationScheduler);
     }
 
     @EventHandler
@@ -186,6 +204,17 @@ public class ForgeWorldEdit {
             previousLightingScheduler = null;
         }
 
+        if (operationScheduler != null) {
+            operationScheduler.shutdown();
+            operationScheduler = null;
+        }
+
+        if (previousOperationScheduler != null) {
+            WorldEdit.getInstance()
+                .setOperationScheduler(previousOperationScheduler);
+            previousOperationScheduler = null;
+        }
+
         WorldEdit.getInstance()
             .getPlatformManager()
             .unregister(platform);
@@ -16,17 +16,32 @@
 
 package com.sk89q.worldedit.forge;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
 
+import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.TileEntityBlock;
 
+/**
+ * A block with the data of a tile entity in the world.
+ *
+ * <p>
+ * The tile entity is saved when the block is created, but the saved data is
+ * only converted to JNBT once {@link #getNbtData()} is called. Blocks that
+ * are only placed back into a world, such as those kept for undo, never
+ * need to be converted at all.
+ * </p>
+ */
 public class TileEntityBaseBlock extends BaseBlock implements TileEntityBlock {
 
+    private @Nullable NBTTagCompound nativeData;
+
     public TileEntityBaseBlock(int type, int data, TileEntity tile) {
         super(type, data);
-        setNbtData(NBTConverter.fromNative(copyNbtData(tile)));
+        this.nativeData = copyNbtData(tile);
     }
 
     private static NBTTagCompound copyNbtData(TileEntity tile) {
@@ -35,4 +50,51 @@ public class TileEntityBaseBlock extends BaseBlock implements TileEntityBlock {
         return tag;
     }
 
+    @Override
+    public boolean hasNbtData() {
+        return nativeData != null || super.hasNbtData();
+    }
+
+    @Override
+    public String getNbtId() {
+        NBTTagCompound nativeData = this.nativeData;
+        return nativeData != null ? nativeData.getString("id") : super.getNbtId();
+    }
+
+    @Nullable
+    @Override
+    public CompoundTag getNbtData() {
+        NBTTagCompound nativeData = this.nativeData;
+        if (nativeData != null) {
+            this.nativeData = null;
+            super.setNbtData(NBTConverter.fromNative(nativeData));
+        }
+        return super.getNbtData();
+    }
+
+    @Override
+    public void setNbtData(@Nullable CompoundTag nbtData) {
+        this.nativeData = null;
+        super.setNbtData(nbtData);
+    }
+
+    /**
+     * Get the tile entity data of a block as a new native tag, without
+     * converting it to JNBT and back if it has not been converted yet.
+     *
+     * @param block the block
+     * @return a new tag, or null if the block has no tile entity data
+     */
+    @Nullable
+    static NBTTagCompound toNativeNbtData(BaseBlock block) {
+        if (block instanceof TileEntityBaseBlock) {
+            NBTTagCompound nativeData = ((TileEntityBaseBlock) block).nativeData;
+            if (nativeData != null) {
+                return (NBTTagCompound) nativeData.copy();
+            }
+        }
+        CompoundTag tag = block.getNbtData();
+        return tag != null ? NBTConverter.toNative(tag) : null;
+    }
+
 }
@@ -62,4 +62,9 @@ public class ModRotationBlockTransformHook implements BlockTransformHook {
         block.setData(data);
         return block;
     }
+
+    @Override
+    public boolean usesNbtData(int id) {
+        return false;
+    }
 }
@@ -87,4 +87,16 @@ public class CombinedRegionFunction implements RegionFunction {
         return ret;
     }
 
+    @Override
+    public boolean apply(int x, int y, int z) throws WorldEditException {
+        boolean ret = false;
+        for (int i = 0; i < functions.size(); i++) {
+            if (functions.get(i)
+                .apply(x, y, z)) {
+                ret = true;
+            }
+        }
+        return ret;
+    }
+
 }
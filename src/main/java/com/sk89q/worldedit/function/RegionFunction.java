@@ -33,4 +33,22 @@ public interface RegionFunction {
      */
     public boolean apply(Vector position) throws WorldEditException;
 
+    /**
+     * Apply the function to the given position.
+     *
+     * <p>
+     * Functions that can do their work without creating a {@link Vector}
+     * should override this method.
+     * </p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if something was changed
+     * @throws WorldEditException thrown on an error
+     */
+    default boolean apply(int x, int y, int z) throws WorldEditException {
+        return apply(new Vector(x, y, z));
+    }
+
 }
@@ -21,6 +21,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Masks;
 
 /**
  * Passes calls to {@link #apply(com.sk89q.worldedit.Vector)} to the
@@ -50,4 +51,10 @@ public class RegionMaskingFilter implements RegionFunction {
         return mask.test(position) && function.apply(position);
     }
 
+    @Override
+    public boolean apply(int x, int y, int z) throws WorldEditException {
+        // Only create a position if the mask actually needs one
+        return (mask == Masks.alwaysTrue() || mask.test(new Vector(x, y, z))) && function.apply(x, y, z);
+    }
+
 }
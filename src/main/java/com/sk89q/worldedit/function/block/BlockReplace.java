@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.pattern.Pattern;
@@ -50,4 +51,13 @@ public class BlockReplace implements RegionFunction {
         return extent.setBlock(position, pattern.apply(position));
     }
 
+    @Override
+    public boolean apply(int x, int y, int z) throws WorldEditException {
+        int state = pattern.applyState(x, y, z);
+        if (state != PackedBlock.NONE) {
+            return extent.setBlockState(x, y, z, state);
+        }
+        return apply(new Vector(x, y, z));
+    }
+
 }
@@ -35,6 +35,10 @@ public class ExtentBlockCopy implements RegionFunction {
     private final Vector from;
     private final Vector to;
     private final Transform transform;
+    private final boolean offsetOnly;
+    private final int offsetX;
+    private final int offsetY;
+    private final int offsetZ;
 
     /**
      * Make a new copy.
@@ -56,6 +60,10 @@ public class ExtentBlockCopy implements RegionFunction {
         this.destination = destination;
         this.to = to;
         this.transform = transform;
+        this.offsetOnly = transform.isIdentity() && isBlockPosition(from) && isBlockPosition(to);
+        this.offsetX = to.getBlockX() - from.getBlockX();
+        this.offsetY = to.getBlockY() - from.getBlockY();
+        this.offsetZ = to.getBlockZ() - from.getBlockZ();
     }
 
     @Override
@@ -66,4 +74,22 @@ public class ExtentBlockCopy implements RegionFunction {
         return destination.setBlock(transformed.add(to), block);
     }
 
+    @Override
+    public boolean apply(int x, int y, int z) throws WorldEditException {
+        if (!offsetOnly) {
+            return apply(new Vector(x, y, z));
+        }
+
+        BaseBlock block = source.getNbtBlock(x, y, z);
+        if (block != null) {
+            return destination.setBlock(new Vector(x + offsetX, y + offsetY, z + offsetZ), block);
+        }
+        return destination.setBlockState(x + offsetX, y + offsetY, z + offsetZ, source.getBlockState(x, y, z));
+    }
+
+    private static boolean isBlockPosition(Vector vector) {
+        return vector.getX() == vector.getBlockX() && vector.getY() == vector.getBlockY()
+            && vector.getZ() == vector.getBlockZ();
+    }
+
 }
@@ -29,7 +29,7 @@ import com.sk89q.worldedit.history.changeset.ChangeSet;
 /**
  * Performs an undo or redo from a given {@link ChangeSet}.
  */
-public class ChangeSetExecutor implements Operation {
+public class ChangeSetExecutor implements ProgressiveOperation {
 
     public enum Type {
         UNDO,
@@ -39,6 +39,8 @@ public class ChangeSetExecutor implements Operation {
     private final Iterator<Change> iterator;
     private final Type type;
     private final UndoContext context;
+    private final int total;
+    private long completed;
 
     /**
      * Create a new instance.
@@ -54,6 +56,7 @@ public class ChangeSetExecutor implements Operation {
 
         this.type = type;
         this.context = context;
+        this.total = changeSet.size();
 
         if (type == Type.UNDO) {
             iterator = changeSet.backwardIterator();
@@ -66,16 +69,31 @@ public class ChangeSetExecutor implements Operation {
     public Operation resume(RunContext run) throws WorldEditException {
         while (iterator.hasNext()) {
             Change change = iterator.next();
+            completed++;
             if (type == Type.UNDO) {
                 change.undo(context);
             } else {
                 change.redo(context);
             }
+
+            if (!run.shouldContinue() && iterator.hasNext()) {
+                return this;
+            }
         }
 
         return null;
     }
 
+    @Override
+    public long getCompleted() {
+        return completed;
+    }
+
+    @Override
+    public long getTotal() {
+        return total;
+    }
+
     @Override
     public void cancel() {}
 
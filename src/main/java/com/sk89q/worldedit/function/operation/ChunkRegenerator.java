@@ -0,0 +1,213 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.ChunkGenerator;
+import com.sk89q.worldedit.world.GeneratedChunk;
+
+/**
+ * Regenerates the blocks of a region one chunk at a time.
+ *
+ * <p>
+ * Every chunk that the region touches is generated exactly once, without
+ * being added to the world, in order of X and then Z. The blocks of the generated chunk that are
+ * inside the region and differ from the blocks of the destination are
+ * then written to the destination as packed states, or with their tile
+ * entity data if they have any. Blocks that have a tile entity in the
+ * world are always replaced. Blocks outside of the region are never
+ * touched.
+ * </p>
+ */
+public class ChunkRegenerator implements ProgressiveOperation {
+
+    private static final int AIR = PackedBlock.pack(BlockID.AIR, 0);
+
+    private final Region region;
+    private final Extent destination;
+    private final ChunkGenerator generator;
+    private final Iterator<Vector2D> chunks;
+    private final boolean cuboid;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final long total;
+    private long completed;
+    private int generated;
+    private int affected;
+
+    /**
+     * Create a new instance.
+     *
+     * @param region      the region to regenerate
+     * @param destination the extent to write the regenerated blocks to
+     * @param generator   the generator
+     */
+    public ChunkRegenerator(Region region, Extent destination, ChunkGenerator generator) {
+        checkNotNull(region);
+        checkNotNull(destination);
+        checkNotNull(generator);
+        this.region = region;
+        this.destination = destination;
+        this.generator = generator;
+        List<Vector2D> sorted = new ArrayList<Vector2D>(region.getChunks());
+        Collections.sort(sorted, new Comparator<Vector2D>() {
+
+            @Override
+            public int compare(Vector2D a, Vector2D b) {
+                int x = Integer.compare(a.getBlockX(), b.getBlockX());
+                return x != 0 ? x : Integer.compare(a.getBlockZ(), b.getBlockZ());
+            }
+        });
+        this.chunks = sorted.iterator();
+        this.cuboid = region instanceof CuboidRegion;
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.maxX = max.getBlockX();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
+        if (cuboid) {
+            // getArea() is an int, which a large selection overflows
+            this.total = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+        } else {
+            this.total = region.getArea();
+        }
+    }
+
+    /**
+     * Get the number of chunks that have been generated so far.
+     *
+     * @return the number of chunks
+     */
+    public int getGenerated() {
+        return generated;
+    }
+
+    /**
+     * Get the number of blocks that were changed.
+     *
+     * @return the number of blocks
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        while (chunks.hasNext()) {
+            Vector2D chunk = chunks.next();
+            regenerate(chunk.getBlockX(), chunk.getBlockZ());
+
+            if (!run.shouldContinue() && chunks.hasNext()) {
+                return this;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generate a chunk and copy the blocks of the region that differ.
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     * @throws WorldEditException thrown by the destination
+     */
+    private void regenerate(int chunkX, int chunkZ) throws WorldEditException {
+        GeneratedChunk chunk = generator.generate(chunkX, chunkZ);
+        int[] states = chunk.getStates();
+        generated++;
+
+        int fromX = Math.max(minX, chunkX << 4);
+        int toX = Math.min(maxX, (chunkX << 4) + 15);
+        int fromZ = Math.max(minZ, chunkZ << 4);
+        int toZ = Math.min(maxZ, (chunkZ << 4) + 15);
+        int fromY = Math.max(minY, 0);
+        int toY = Math.min(maxY, (states.length >> 8) - 1);
+
+        for (int y = fromY; y <= toY; y++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int x = fromX; x <= toX; x++) {
+                    if (!cuboid && !region.contains(new Vector(x, y, z))) {
+                        continue;
+                    }
+
+                    completed++;
+                    int index = y << 8 | (z & 15) << 4 | (x & 15);
+                    int state = states[index];
+                    if (destination.getBlockState(x, y, z) == state) {
+                        if (!chunk.hasExistingTileEntity(index)) {
+                            continue;
+                        }
+                        // Setting a block to the state it has keeps its tile entity
+                        destination.setBlockState(x, y, z, AIR);
+                    }
+
+                    BaseBlock tileBlock = chunk.getTileEntity(index);
+                    boolean changed = tileBlock != null
+                        ? destination.setBlock(new Vector(x, y, z), tileBlock)
+                        : destination.setBlockState(x, y, z, state);
+                    if (changed) {
+                        affected++;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getCompleted() {
+        return completed;
+    }
+
+    @Override
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public void cancel() {}
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        messages.add(generated + " chunks regenerated");
+        messages.add(affected + " blocks affected");
+    }
+
+}
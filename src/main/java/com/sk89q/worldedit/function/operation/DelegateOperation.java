@@ -26,7 +26,7 @@ import com.sk89q.worldedit.WorldEditException;
  * Executes a delegete operation, but returns to another operation upon
  * completing the delegate.
  */
-public class DelegateOperation implements Operation {
+public class DelegateOperation implements ProgressiveOperation {
 
     private final Operation original;
     private Operation delegate;
@@ -50,6 +50,16 @@ public class DelegateOperation implements Operation {
         return delegate != null ? this : original;
     }
 
+    @Override
+    public long getCompleted() {
+        return original instanceof ProgressiveOperation ? ((ProgressiveOperation) original).getCompleted() : 0;
+    }
+
+    @Override
+    public long getTotal() {
+        return original instanceof ProgressiveOperation ? ((ProgressiveOperation) original).getTotal() : -1;
+    }
+
     @Override
     public void cancel() {
         delegate.cancel();
@@ -0,0 +1,53 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
+
+/**
+ * A scheduler that completes operations immediately on the calling thread.
+ */
+public class DirectOperationScheduler implements OperationScheduler {
+
+    @Override
+    public void schedule(Operation operation, @Nullable Actor actor, @Nullable Runnable completion) {
+        checkNotNull(operation);
+
+        // The operation that failed is cancelled, so that it releases what it holds
+        Operation current = operation;
+        try {
+            while (current != null) {
+                current = current.resume(new RunContext());
+            }
+        } catch (WorldEditException e) {
+            Operations.report(e, actor);
+            current.cancel();
+        } catch (RuntimeException e) {
+            current.cancel();
+            throw e;
+        } finally {
+            if (completion != null) {
+                completion.run();
+            }
+        }
+    }
+}
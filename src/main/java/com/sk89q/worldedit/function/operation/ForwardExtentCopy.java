@@ -47,7 +47,7 @@ import com.sk89q.worldedit.regions.Region;
  * source. Therefore, interpolation will not occur to fill in the gaps.
  * </p>
  */
-public class ForwardExtentCopy implements Operation {
+public class ForwardExtentCopy implements ProgressiveOperation {
 
     private final Extent source;
     private final Extent destination;
@@ -61,7 +61,9 @@ public class ForwardExtentCopy implements Operation {
     private Transform transform = new Identity();
     private Transform currentTransform = null;
     private RegionVisitor lastVisitor;
+    private boolean cancelled;
     private int affected;
+    private int completedRepetitions;
 
     /**
      * Create a new copy using the region's lowest minimum point as the
@@ -215,8 +217,13 @@ public class ForwardExtentCopy implements Operation {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
+        if (cancelled) {
+            return null;
+        }
+
         if (lastVisitor != null) {
             affected += lastVisitor.getAffected();
+            completedRepetitions++;
             lastVisitor = null;
         }
 
@@ -247,9 +254,38 @@ public class ForwardExtentCopy implements Operation {
     }
 
     @Override
-    public void cancel() {}
+    public long getCompleted() {
+        long completed = (long) completedRepetitions * region.getArea();
+        if (lastVisitor != null) {
+            completed += lastVisitor.getCompleted();
+        }
+        return completed;
+    }
+
+    @Override
+    public long getTotal() {
+        return (long) (completedRepetitions + repetitions + (lastVisitor != null ? 1 : 0)) * region.getArea();
+    }
 
     @Override
-    public void addStatusMessages(List<String> messages) {}
+    public void cancel() {
+        cancelled = true;
+        repetitions = 0;
+        if (lastVisitor != null) {
+            // Keep the count of blocks that the visitor had already copied
+            affected += lastVisitor.getAffected();
+            lastVisitor.cancel();
+            lastVisitor = null;
+        }
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        int total = affected;
+        if (lastVisitor != null) {
+            total += lastVisitor.getAffected();
+        }
+        messages.add(total + " blocks affected");
+    }
 
 }
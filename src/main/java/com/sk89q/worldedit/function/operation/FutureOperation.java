@@ -0,0 +1,97 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.FutureCallback;
+
+/**
+ * Waits for a task that runs in the background, then passes its result to
+ * a callback from the thread that completes operations.
+ *
+ * <p>
+ * Scheduling this operation with an {@link OperationScheduler} hands the
+ * result of a worker thread back to the server thread on the first tick
+ * after the task is done, without blocking any tick while it runs.
+ * </p>
+ *
+ * @param <V> the type of result
+ */
+public class FutureOperation<V> implements Operation {
+
+    private final Future<V> future;
+    private final FutureCallback<? super V> callback;
+    private final String description;
+
+    /**
+     * Create a new operation.
+     *
+     * @param future      the task to wait for
+     * @param callback    the callback to pass the result to
+     * @param description a description of the task for status messages
+     */
+    public FutureOperation(Future<V> future, FutureCallback<? super V> callback, String description) {
+        checkNotNull(future);
+        checkNotNull(callback);
+        checkNotNull(description);
+        this.future = future;
+        this.callback = callback;
+        this.description = description;
+    }
+
+    @Override
+    public Operation resume(RunContext run) {
+        if (!future.isDone()) {
+            return this;
+        }
+
+        V result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            callback.onFailure(e.getCause());
+            return null;
+        } catch (CancellationException e) {
+            callback.onFailure(e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            callback.onFailure(e);
+            return null;
+        }
+        callback.onSuccess(result);
+        return null;
+    }
+
+    @Override
+    public void cancel() {
+        future.cancel(false);
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        messages.add(description + (future.isDone() ? " (done)" : " (in progress)"));
+    }
+
+}
@@ -29,7 +29,7 @@ import com.sk89q.worldedit.WorldEditException;
 /**
  * Executes multiple queues in order.
  */
-public class OperationQueue implements Operation {
+public class OperationQueue implements ProgressiveOperation {
 
     private final List<Operation> operations = Lists.newArrayList();
     private final Deque<Operation> queue = new ArrayDeque<Operation>();
@@ -50,7 +50,6 @@ public class OperationQueue implements Operation {
         for (Operation operation : operations) {
             offer(operation);
         }
-        this.operations.addAll(operations);
     }
 
     /**
@@ -73,6 +72,7 @@ public class OperationQueue implements Operation {
     public void offer(Operation operation) {
         checkNotNull(operation);
         queue.offer(operation);
+        operations.add(operation);
     }
 
     @Override
@@ -81,19 +81,55 @@ public class OperationQueue implements Operation {
             current = queue.poll();
         }
 
-        if (current != null) {
+        while (current != null) {
             current = current.resume(run);
 
             if (current == null) {
                 current = queue.poll();
             }
+
+            if (!run.shouldContinue()) {
+                break;
+            }
         }
 
         return current != null ? this : null;
     }
 
+    @Override
+    public long getCompleted() {
+        long completed = 0;
+        for (Operation operation : operations) {
+            if (operation instanceof ProgressiveOperation) {
+                completed += ((ProgressiveOperation) operation).getCompleted();
+            }
+        }
+        return completed;
+    }
+
+    @Override
+    public long getTotal() {
+        long total = 0;
+        boolean known = false;
+        for (Operation operation : operations) {
+            if (operation instanceof ProgressiveOperation) {
+                long operationTotal = ((ProgressiveOperation) operation).getTotal();
+                if (operationTotal < 0) {
+                    return -1;
+                }
+                total += operationTotal;
+                known = true;
+            }
+        }
+        return known ? total : -1;
+    }
+
     @Override
     public void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
         for (Operation operation : queue) {
             operation.cancel();
         }
@@ -0,0 +1,47 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.extension.platform.Actor;
+
+/**
+ * Schedules operations to be completed, possibly over several server ticks.
+ */
+public interface OperationScheduler {
+
+    /**
+     * Schedule an operation to be completed.
+     *
+     * <p>
+     * Errors raised by the operation are reported to the actor, if any.
+     * The completion callback is run once the operation has stopped,
+     * whether it finished, failed or was cancelled.
+     * </p>
+     *
+     * @param operation  the operation to complete
+     * @param actor      the actor who initiated the operation (may be {@code null})
+     * @param completion a callback to run once the operation stops (may be {@code null})
+     */
+    void schedule(Operation operation, @Nullable Actor actor, @Nullable Runnable completion);
+
+    /**
+     * Shutdown the scheduler.
+     */
+    default void shutdown() {}
+}
@@ -16,14 +16,22 @@
 
 package com.sk89q.worldedit.function.operation;
 
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
 
 /**
  * Operation helper methods.
  */
 public final class Operations {
 
+    private static final Logger log = Logger.getLogger(Operations.class.getCanonicalName());
+
     private Operations() {}
 
     /**
@@ -74,4 +82,29 @@ public final class Operations {
         }
     }
 
+    /**
+     * Report an error raised by an operation that was completed outside of
+     * a command handler, such as by an {@link OperationScheduler}.
+     *
+     * @param e     the error
+     * @param actor the actor to report to (may be {@code null})
+     */
+    public static void report(WorldEditException e, @Nullable Actor actor) {
+        String message;
+        if (e instanceof MaxChangedBlocksException) {
+            message = "Max blocks changed in an operation reached ("
+                + ((MaxChangedBlocksException) e).getBlockLimit()
+                + ").";
+        } else if (e.getMessage() != null) {
+            message = e.getMessage();
+        } else {
+            message = "An unknown error has occurred! Please see console.";
+            log.log(Level.SEVERE, "An unknown error occurred while completing an operation", e);
+        }
+
+        if (actor != null) {
+            actor.printError(message);
+        }
+    }
+
 }
@@ -0,0 +1,43 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+/**
+ * An operation that can report how much of its work has been done.
+ *
+ * <p>
+ * Work is measured in blocks visited, which is not necessarily the same
+ * as the number of blocks changed.
+ * </p>
+ */
+public interface ProgressiveOperation extends Operation {
+
+    /**
+     * Get the number of blocks that have been visited so far.
+     *
+     * @return the number of visited blocks
+     */
+    long getCompleted();
+
+    /**
+     * Get the total number of blocks that will be visited.
+     *
+     * @return the total number of blocks, or -1 if it is not known in advance
+     */
+    long getTotal();
+
+}
@@ -0,0 +1,78 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RunContext} that asks operations to stop once a time budget
+ * has been used up.
+ *
+ * <p>
+ * The clock is only sampled every few calls to {@link #shouldContinue()}
+ * because the method is called once per block by most operations.
+ * </p>
+ */
+public class TimedRunContext extends RunContext {
+
+    private static final int CHECK_INTERVAL = 16;
+
+    private final long deadline;
+    private int calls;
+    private boolean expired;
+
+    /**
+     * Create a new context whose budget starts counting down immediately.
+     *
+     * @param budget the time budget
+     * @param unit   the unit of the budget
+     */
+    public TimedRunContext(long budget, TimeUnit unit) {
+        checkArgument(budget >= 0, "budget must be non-negative");
+        checkNotNull(unit);
+        this.deadline = System.nanoTime() + unit.toNanos(budget);
+    }
+
+    /**
+     * Return whether the time budget has been used up.
+     *
+     * @return true if expired
+     */
+    public boolean isExpired() {
+        if (!expired && System.nanoTime() - deadline >= 0) {
+            expired = true;
+        }
+        return expired;
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        if (expired) {
+            return false;
+        }
+
+        if (++calls % CHECK_INTERVAL != 0) {
+            return true;
+        }
+
+        return !isExpired();
+    }
+
+}
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 
 /**
  * A pattern that returns the same {@link BaseBlock} each time.
@@ -61,4 +62,12 @@ public class BlockPattern extends AbstractPattern {
         return block;
     }
 
+    @Override
+    public int applyState(int x, int y, int z) {
+        if (block.hasNbtData() || !PackedBlock.canPack(block.getId(), block.getData())) {
+            return PackedBlock.NONE;
+        }
+        return PackedBlock.pack(block);
+    }
+
 }
@@ -18,6 +18,7 @@ package com.sk89q.worldedit.function.pattern;
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 
 /**
  * Returns a {@link BaseBlock} for a given position.
@@ -32,4 +33,27 @@ public interface Pattern {
      */
     BaseBlock apply(Vector position);
 
+    /**
+     * Return the block for the given position as a state packed with
+     * {@link PackedBlock}, if the block has no NBT data.
+     *
+     * <p>
+     * Patterns that can answer without creating any objects should
+     * override this method.
+     * </p>
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed state, or {@link PackedBlock#NONE} if the block
+     *         has to be obtained from {@link #apply(Vector)}
+     */
+    default int applyState(int x, int y, int z) {
+        BaseBlock block = apply(new Vector(x, y, z));
+        if (block.hasNbtData() || !PackedBlock.canPack(block.getId(), block.getData())) {
+            return PackedBlock.NONE;
+        }
+        return PackedBlock.pack(block);
+    }
+
 }
@@ -24,15 +24,44 @@ import java.util.Random;
 
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 
 /**
  * Uses a random pattern of a weighted list of patterns.
+ *
+ * <p>
+ * If {@link #applyState(int, int, int)} chooses a pattern that can't
+ * answer with a packed state, the same pattern is used by the call to
+ * {@link #apply(Vector)} that follows for that position, so that only one
+ * choice is made per position.
+ * </p>
  */
 public class RandomPattern extends AbstractPattern {
 
-    private final Random random = new Random();
+    private final Random random;
     private List<Chance> patterns = new ArrayList<Chance>();
     private double max = 0;
+    private Pattern pending;
+    private int pendingX;
+    private int pendingY;
+    private int pendingZ;
+
+    /**
+     * Create a new instance.
+     */
+    public RandomPattern() {
+        this(new Random());
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param random the source of random numbers
+     */
+    public RandomPattern(Random random) {
+        checkNotNull(random);
+        this.random = random;
+    }
 
     /**
      * Add a pattern to the weight list of patterns.
@@ -53,13 +82,44 @@ public class RandomPattern extends AbstractPattern {
 
     @Override
     public BaseBlock apply(Vector position) {
+        Pattern pattern = pending;
+        pending = null;
+        if (pattern == null || position.getBlockX() != pendingX
+            || position.getBlockY() != pendingY
+            || position.getBlockZ() != pendingZ) {
+            pattern = choose();
+        }
+        return pattern.apply(position);
+    }
+
+    @Override
+    public int applyState(int x, int y, int z) {
+        Pattern pattern = choose();
+        int state = pattern.applyState(x, y, z);
+        if (state == PackedBlock.NONE) {
+            pending = pattern;
+            pendingX = x;
+            pendingY = y;
+            pendingZ = z;
+        } else {
+            pending = null;
+        }
+        return state;
+    }
+
+    /**
+     * Pick one of the patterns at random.
+     *
+     * @return the pattern
+     */
+    private Pattern choose() {
         double r = random.nextDouble();
         double offset = 0;
 
-        for (Chance chance : patterns) {
+        for (int i = 0; i < patterns.size(); i++) {
+            Chance chance = patterns.get(i);
             if (r <= (offset + chance.getChance()) / max) {
-                return chance.getPattern()
-                    .apply(position);
+                return chance.getPattern();
             }
             offset += chance.getChance();
         }
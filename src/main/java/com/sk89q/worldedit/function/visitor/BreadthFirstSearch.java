@@ -178,13 +178,19 @@ public abstract class BreadthFirstSearch implements Operation {
             for (Vector dir : directions) {
                 visit(position, position.add(dir));
             }
+
+            if (!run.shouldContinue() && !queue.isEmpty()) {
+                return this;
+            }
         }
 
         return null;
     }
 
     @Override
-    public void cancel() {}
+    public void cancel() {
+        queue.clear();
+    }
 
     @Override
     public void addStatusMessages(List<String> messages) {
@@ -16,23 +16,31 @@
 
 package com.sk89q.worldedit.function.visitor;
 
+import java.util.Iterator;
 import java.util.List;
 
+import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.function.RegionFunction;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.ProgressiveOperation;
 import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.iterator.ChunkOrderedRegionIterator;
 
 /**
  * Utility class to apply region functions to {@link com.sk89q.worldedit.regions.Region}.
  */
-public class RegionVisitor implements Operation {
+public class RegionVisitor implements ProgressiveOperation {
 
     private final Region region;
     private final RegionFunction function;
+    private Iterator<BlockVector> iterator;
     private int affected = 0;
+    private long visited = 0;
+    private boolean cancelled;
 
     public RegionVisitor(Region region, RegionFunction function) {
         this.region = region;
@@ -50,17 +58,72 @@ public class RegionVisitor implements Operation {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (Vector pt : region) {
-            if (function.apply(pt)) {
+        if (cancelled) {
+            return null;
+        }
+
+        if (iterator == null) {
+            iterator = region.iterator();
+        }
+
+        if (iterator instanceof ChunkOrderedRegionIterator) {
+            // Visit the points without creating a BlockVector for each of them
+            ChunkOrderedRegionIterator points = (ChunkOrderedRegionIterator) iterator;
+            while (points.hasNext()) {
+                visited++;
+                int x = points.getX();
+                int y = points.getY();
+                int z = points.getZ();
+                points.advance();
+                if (function.apply(x, y, z)) {
+                    affected++;
+                }
+
+                if (!run.shouldContinue() && points.hasNext()) {
+                    return this;
+                }
+            }
+
+            return null;
+        }
+
+        while (iterator.hasNext()) {
+            visited++;
+            if (function.apply(iterator.next())) {
                 affected++;
             }
+
+            if (!run.shouldContinue() && iterator.hasNext()) {
+                return this;
+            }
         }
 
         return null;
     }
 
     @Override
-    public void cancel() {}
+    public long getCompleted() {
+        return visited;
+    }
+
+    @Override
+    public long getTotal() {
+        if (region instanceof CuboidRegion) {
+            // getArea() is an int, which a large selection overflows
+            Vector min = region.getMinimumPoint();
+            Vector max = region.getMaximumPoint();
+            return (long) (max.getBlockX() - min.getBlockX() + 1) * (max.getBlockY() - min.getBlockY() + 1)
+                * (max.getBlockZ() - min.getBlockZ() + 1);
+        }
+        return region.getArea();
+    }
+
+    @Override
+    public void cancel() {
+        // Don't start over from the first point if resumed after all
+        cancelled = true;
+        iterator = null;
+    }
 
     @Override
     public void addStatusMessages(List<String> messages) {
@@ -28,7 +28,13 @@ import com.sk89q.worldedit.history.change.Change;
 /**
  * Stores all {@link Change}s in an {@link ArrayList}.
  */
-public class ArrayListHistory implements ChangeSet {
+public class ArrayListHistory implements MemoryAwareChangeSet {
+
+    /**
+     * A rough estimate of the size of a change and the objects that it
+     * refers to, in bytes.
+     */
+    static final int CHANGE_SIZE = 128;
 
     private final List<Change> changes = new ArrayList<Change>();
 
@@ -54,4 +60,14 @@ public class ArrayListHistory implements ChangeSet {
         return changes.size();
     }
 
+    @Override
+    public long getMemoryUsage() {
+        return (long) changes.size() * CHANGE_SIZE;
+    }
+
+    @Override
+    public boolean compact() {
+        return false;
+    }
+
 }
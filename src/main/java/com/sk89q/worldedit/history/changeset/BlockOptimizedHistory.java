@@ -17,33 +17,58 @@
 package com.sk89q.worldedit.history.changeset;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.Map.Entry;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
-import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
 import com.sk89q.worldedit.BlockVector;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.history.change.BlockChange;
 import com.sk89q.worldedit.history.change.Change;
-import com.sk89q.worldedit.util.collection.TupleArrayList;
+import com.sk89q.worldedit.util.PackedPosition;
 
 /**
  * An extension of {@link ArrayListHistory} that stores {@link BlockChange}s
- * separately in two {@link ArrayList}s.
+ * separately in packed primitive arrays.
  *
  * <p>
- * Whether this is a good idea or not is highly questionable, but this class
- * exists because this is how history was implemented in WorldEdit for
- * many years.
+ * Each block change takes a {@code long} for the position and an
+ * {@code int} each for the previous and current block, or about 16 bytes
+ * in total. Blocks that carry NBT data, or whose ID or data value does not
+ * fit in 16 bits, are kept as they are in a side map.
+ * </p>
+ *
+ * <p>
+ * The arrays are allocated in segments so that large edits never have to
+ * copy everything recorded so far when they grow.
  * </p>
  */
 public class BlockOptimizedHistory extends ArrayListHistory {
 
-    private final TupleArrayList<BlockVector, BaseBlock> previous = new TupleArrayList<BlockVector, BaseBlock>();
-    private final TupleArrayList<BlockVector, BaseBlock> current = new TupleArrayList<BlockVector, BaseBlock>();
+    private static final int SEGMENT_BITS = 14;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The packed state of a block that is stored in a side map instead.
+     */
+    private static final int UNPACKED = PackedBlock.NONE;
+
+    private long[][] positions = new long[0][];
+    private int[][] previous = new int[0][];
+    private int[][] current = new int[0][];
+    private int blockCount;
+    private long capacity;
+
+    private final Map<Integer, BlockVector> unpackedPositions = new HashMap<Integer, BlockVector>();
+    private final Map<Integer, BaseBlock> unpackedPrevious = new HashMap<Integer, BaseBlock>();
+    private final Map<Integer, BaseBlock> unpackedCurrent = new HashMap<Integer, BaseBlock>();
 
     @Override
     public void add(Change change) {
@@ -51,44 +76,246 @@ public class BlockOptimizedHistory extends ArrayListHistory {
 
         if (change instanceof BlockChange) {
             BlockChange blockChange = (BlockChange) change;
+            int index = blockCount;
+            int segment = index >> SEGMENT_BITS;
+            int offset = index & SEGMENT_MASK;
+            ensureCapacity(segment, offset);
+
             BlockVector position = blockChange.getPosition();
-            previous.put(position, blockChange.getPrevious());
-            current.put(position, blockChange.getCurrent());
+            int x = position.getBlockX();
+            int y = position.getBlockY();
+            int z = position.getBlockZ();
+            if (PackedPosition.canPack(x, y, z)) {
+                positions[segment][offset] = PackedPosition.pack(x, y, z);
+            } else {
+                unpackedPositions.put(index, position);
+            }
+            previous[segment][offset] = pack(blockChange.getPrevious(), index, unpackedPrevious);
+            current[segment][offset] = pack(blockChange.getCurrent(), index, unpackedCurrent);
+            blockCount++;
         } else {
             super.add(change);
         }
     }
 
+    @Override
+    public void addBlockChange(int x, int y, int z, int previous, int current) {
+        if (!PackedPosition.canPack(x, y, z)) {
+            super.addBlockChange(x, y, z, previous, current);
+            return;
+        }
+
+        int index = blockCount;
+        int segment = index >> SEGMENT_BITS;
+        int offset = index & SEGMENT_MASK;
+        ensureCapacity(segment, offset);
+        positions[segment][offset] = PackedPosition.pack(x, y, z);
+        this.previous[segment][offset] = previous;
+        this.current[segment][offset] = current;
+        blockCount++;
+    }
+
+    /**
+     * Make sure that the given slot exists in all arrays.
+     *
+     * @param segment the segment index
+     * @param offset  the offset within the segment
+     */
+    private void ensureCapacity(int segment, int offset) {
+        if (segment == positions.length) {
+            positions = Arrays.copyOf(positions, segment + 1);
+            previous = Arrays.copyOf(previous, segment + 1);
+            current = Arrays.copyOf(current, segment + 1);
+            // Only the first segment starts out small, later ones are always full sized
+            int size = segment == 0 ? INITIAL_CAPACITY : SEGMENT_SIZE;
+            positions[segment] = new long[size];
+            previous[segment] = new int[size];
+            current[segment] = new int[size];
+            capacity += size;
+        } else if (offset == positions[segment].length) {
+            int size = Math.min(SEGMENT_SIZE, offset * 2);
+            capacity += size - offset;
+            positions[segment] = Arrays.copyOf(positions[segment], size);
+            previous[segment] = Arrays.copyOf(previous[segment], size);
+            current[segment] = Arrays.copyOf(current[segment], size);
+        }
+    }
+
+    private static int pack(BaseBlock block, int index, Map<Integer, BaseBlock> unpacked) {
+        int id = block.getId();
+        int data = block.getData();
+        if (block.hasNbtData() || !PackedBlock.canPack(id, data)) {
+            unpacked.put(index, block);
+            return UNPACKED;
+        }
+        return PackedBlock.pack(id, data);
+    }
+
+    /**
+     * Get the position of a recorded block change.
+     *
+     * @param index the index of the change, in the order that it was added
+     * @return the position
+     */
+    BlockVector getPosition(int index) {
+        if (!unpackedPositions.isEmpty()) {
+            BlockVector position = unpackedPositions.get(index);
+            if (position != null) {
+                return position;
+            }
+        }
+        return PackedPosition.toVector(positions[index >> SEGMENT_BITS][index & SEGMENT_MASK]);
+    }
+
+    /**
+     * Get a key that identifies the chunk of a recorded block change.
+     *
+     * @param index the index of the change, in the order that it was added
+     * @return the key, as returned by {@link PackedPosition#getChunkKey(int, int)}
+     */
+    long getChunkKey(int index) {
+        if (!unpackedPositions.isEmpty()) {
+            BlockVector position = unpackedPositions.get(index);
+            if (position != null) {
+                return PackedPosition.getChunkKey(position.getBlockX() >> 4, position.getBlockZ() >> 4);
+            }
+        }
+        return PackedPosition.getChunkKeyOf(positions[index >> SEGMENT_BITS][index & SEGMENT_MASK]);
+    }
+
+    private static BaseBlock getBlock(int[][] states, Map<Integer, BaseBlock> unpacked, int index) {
+        int packed = states[index >> SEGMENT_BITS][index & SEGMENT_MASK];
+        if (packed == UNPACKED) {
+            return unpacked.get(index);
+        }
+        return PackedBlock.toBlock(packed);
+    }
+
+    /**
+     * Get the number of recorded block changes.
+     *
+     * @return the number of block changes
+     */
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Get whether the position and both blocks of a recorded block change
+     * are stored in the packed arrays rather than in the side maps.
+     *
+     * @param index the index of the change, in the order that it was added
+     * @return true if the change is packed
+     */
+    boolean isPacked(int index) {
+        int segment = index >> SEGMENT_BITS;
+        int offset = index & SEGMENT_MASK;
+        return previous[segment][offset] != UNPACKED && current[segment][offset] != UNPACKED
+            && (unpackedPositions.isEmpty() || !unpackedPositions.containsKey(index));
+    }
+
+    /**
+     * Get the packed position of a recorded block change.
+     *
+     * @param index the index of a change for which {@link #isPacked(int)} is true
+     * @return the position, as returned by {@link PackedPosition#pack(int, int, int)}
+     */
+    long getPackedPosition(int index) {
+        return positions[index >> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    /**
+     * Get the packed previous block of a recorded block change.
+     *
+     * @param index the index of a change for which {@link #isPacked(int)} is true
+     * @return the block, as returned by {@link PackedBlock#pack(int, int)}
+     */
+    int getPackedPrevious(int index) {
+        return previous[index >> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    /**
+     * Get the packed current block of a recorded block change.
+     *
+     * @param index the index of a change for which {@link #isPacked(int)} is true
+     * @return the block, as returned by {@link PackedBlock#pack(int, int)}
+     */
+    int getPackedCurrent(int index) {
+        return current[index >> SEGMENT_BITS][index & SEGMENT_MASK];
+    }
+
+    /**
+     * Get a recorded block change.
+     *
+     * @param index the index of the change, in the order that it was added
+     * @return the block change
+     */
+    BlockChange getBlockChange(int index) {
+        return new BlockChange(
+            getPosition(index),
+            getBlock(previous, unpackedPrevious, index),
+            getBlock(current, unpackedCurrent, index));
+    }
+
     @Override
     public Iterator<Change> forwardIterator() {
-        return Iterators.concat(super.forwardIterator(), Iterators.transform(current.iterator(), createTransform()));
+        return Iterators.concat(super.forwardIterator(), new BlockChangeIterator(current, unpackedCurrent, false));
     }
 
     @Override
     public Iterator<Change> backwardIterator() {
-        return Iterators
-            .concat(super.backwardIterator(), Iterators.transform(previous.iterator(true), createTransform()));
+        return Iterators.concat(super.backwardIterator(), new BlockChangeIterator(previous, unpackedPrevious, true));
     }
 
     @Override
     public int size() {
-        return super.size() + previous.size();
+        return super.size() + blockCount;
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        int unpacked = unpackedPositions.size() + unpackedPrevious.size() + unpackedCurrent.size();
+        return super.getMemoryUsage() + capacity * 16 + (long) unpacked * CHANGE_SIZE;
     }
 
     /**
-     * Create a function that transforms each entry from the double array lists' iterator
-     * into an {@link Change}.
-     *
-     * @return a function
+     * Iterates over the recorded block changes, creating a {@link BlockChange}
+     * that sets each position to the block from one of the state arrays.
      */
-    private Function<Entry<BlockVector, BaseBlock>, Change> createTransform() {
-        return new Function<Entry<BlockVector, BaseBlock>, Change>() {
+    private class BlockChangeIterator implements Iterator<Change> {
+
+        private final int[][] states;
+        private final Map<Integer, BaseBlock> unpacked;
+        private final boolean reverse;
+        private final int count = blockCount;
+        private int next;
+
+        private BlockChangeIterator(int[][] states, Map<Integer, BaseBlock> unpacked, boolean reverse) {
+            this.states = states;
+            this.unpacked = unpacked;
+            this.reverse = reverse;
+            this.next = reverse ? count - 1 : 0;
+        }
 
-            @Override
-            public Change apply(Entry<BlockVector, BaseBlock> entry) {
-                return new BlockChange(entry.getKey(), entry.getValue(), entry.getValue());
+        @Override
+        public boolean hasNext() {
+            return reverse ? next >= 0 : next < count;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
-        };
+            int index = reverse ? next-- : next++;
+            BaseBlock block = getBlock(states, unpacked, index);
+            return new BlockChange(getPosition(index), block, block);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported");
+        }
     }
 
 }
@@ -18,6 +18,9 @@ package com.sk89q.worldedit.history.changeset;
 
 import java.util.Iterator;
 
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
 import com.sk89q.worldedit.history.change.Change;
 
 /**
@@ -33,6 +36,24 @@ public interface ChangeSet {
      */
     void add(Change change);
 
+    /**
+     * Add a change between two blocks without NBT data to the history.
+     *
+     * <p>
+     * This is the same as adding a {@link BlockChange}, but lets change
+     * sets that store blocks in a packed form skip creating one.
+     * </p>
+     *
+     * @param x        the X coordinate
+     * @param y        the Y coordinate
+     * @param z        the Z coordinate
+     * @param previous the previous state, packed with {@link PackedBlock}
+     * @param current  the current state, packed with {@link PackedBlock}
+     */
+    default void addBlockChange(int x, int y, int z, int previous, int current) {
+        add(new BlockChange(new BlockVector(x, y, z), PackedBlock.toBlock(previous), PackedBlock.toBlock(current)));
+    }
+
     /**
      * Get a backward directed iterator that can be used for undo.
      *
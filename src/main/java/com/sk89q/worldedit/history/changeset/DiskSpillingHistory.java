@@ -0,0 +1,528 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.util.PackedPosition;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
+import com.sk89q.worldedit.util.io.Closer;
+
+/**
+ * Stores block changes in a {@link BlockOptimizedHistory} until a
+ * threshold is reached, then hands them to a background writer that writes
+ * them out to a compressed segment file, and starts over.
+ *
+ * <p>
+ * Within a segment, changes are grouped by chunk, keeping the order of
+ * changes within each chunk. Segments are read back one at a time during
+ * undo and redo, so at most one segment and the in-memory buffer are held
+ * at once. Changes other than block changes are always kept in memory.
+ * </p>
+ *
+ * <p>
+ * Undo and redo wait for a segment to be written before reading it
+ * back. The segment files are deleted by {@link #close()}. If a segment
+ * cannot be written, the change set logs a warning and keeps that segment
+ * and everything after it in memory. If a segment cannot be read back,
+ * the iterators throw a {@link ChangeSetReadException} wrapped in a
+ * {@link RuntimeException}.
+ * </p>
+ */
+public class DiskSpillingHistory implements MemoryAwareChangeSet, Closeable {
+
+    private static final Logger log = Logger.getLogger(DiskSpillingHistory.class.getCanonicalName());
+    private static final ExecutorService writer = EvenMoreExecutors.newBoundedCachedThreadPool(0, 1, 4);
+
+    private final File directory;
+    private final int threshold;
+    private final ExecutorService executor;
+    private final ArrayListHistory changes = new ArrayListHistory();
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private BlockOptimizedHistory buffer = new BlockOptimizedHistory();
+    private volatile boolean spilling = true;
+    private int spilledCount;
+
+    /**
+     * Create a new change set.
+     *
+     * @param directory the directory to write segment files to, which is
+     *                  created if it does not exist
+     * @param threshold the number of block changes to keep in memory
+     *                  before they are written to disk
+     */
+    public DiskSpillingHistory(File directory, int threshold) {
+        this(directory, threshold, writer);
+    }
+
+    /**
+     * Create a new change set.
+     *
+     * @param directory the directory to write segment files to, which is
+     *                  created if it does not exist
+     * @param threshold the number of block changes to keep in memory
+     *                  before they are written to disk
+     * @param executor  the executor to write segments on
+     */
+    public DiskSpillingHistory(File directory, int threshold, ExecutorService executor) {
+        checkNotNull(directory);
+        checkArgument(threshold > 0, "threshold > 0 required");
+        checkNotNull(executor);
+        this.directory = directory;
+        this.threshold = threshold;
+        this.executor = executor;
+    }
+
+    @Override
+    public void add(Change change) {
+        checkNotNull(change);
+
+        if (change instanceof BlockChange) {
+            buffer.add(change);
+            if (spilling && buffer.getBlockCount() >= threshold) {
+                spill();
+            }
+        } else {
+            changes.add(change);
+        }
+    }
+
+    @Override
+    public void addBlockChange(int x, int y, int z, int previous, int current) {
+        buffer.addBlockChange(x, y, z, previous, current);
+        if (spilling && buffer.getBlockCount() >= threshold) {
+            spill();
+        }
+    }
+
+    /**
+     * Delete the segment files that change sets left behind in the
+     * subdirectories of the given directory, such as when the server
+     * crashed. Segment files can't be read again once their change set is
+     * gone, so this must only be called while no change sets exist.
+     *
+     * @param directory the directory that holds the history directories
+     */
+    public static void deleteSegments(File directory) {
+        checkNotNull(directory);
+
+        File[] dirs = directory.listFiles();
+        if (dirs == null) {
+            return;
+        }
+
+        int deleted = 0;
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith("history") && name.endsWith(".dat")) {
+                    if (file.delete()) {
+                        deleted++;
+                    } else {
+                        log.warning("Could not delete history file " + file.getAbsolutePath());
+                    }
+                }
+            }
+            String[] remaining = dir.list();
+            if (remaining != null && remaining.length == 0) {
+                dir.delete();
+            }
+        }
+
+        if (deleted > 0) {
+            log.info("Deleted " + deleted + " history files left over from a previous run");
+        }
+    }
+
+    /**
+     * Hand the buffer to the writer and start a new one.
+     */
+    private void spill() {
+        final Segment segment = new Segment(buffer);
+        segments.add(segment);
+        spilledCount += buffer.getBlockCount();
+        buffer = new BlockOptimizedHistory();
+
+        try {
+            segment.write = executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    write(segment);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The writer is behind, so write the segment here rather than
+            // keeping more of them in memory
+            write(segment);
+        }
+    }
+
+    /**
+     * Write the changes of a segment to a new file. Once the file is
+     * written, the changes are dropped from memory.
+     *
+     * @param segment the segment
+     */
+    private void write(Segment segment) {
+        File file = null;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        Closer closer = Closer.create();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory.getAbsolutePath());
+            }
+            file = File.createTempFile("history", ".dat", directory);
+
+            FileOutputStream fos = closer.register(new FileOutputStream(file));
+            DeflaterOutputStream dos = closer.register(new DeflaterOutputStream(fos, deflater));
+            DataOutputStream out = closer.register(new DataOutputStream(new BufferedOutputStream(dos)));
+            writeSegment(out, segment.changes);
+            out.flush();
+            dos.finish();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to write history to disk, keeping it in memory instead", e);
+            spilling = false;
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+            return;
+        } finally {
+            try {
+                closer.close();
+            } catch (IOException ignored) {}
+            deflater.end();
+        }
+
+        segment.file = file;
+        segment.changes = null;
+    }
+
+    /**
+     * Wait until every segment that has been handed to the writer is
+     * written, or has failed to be written.
+     */
+    public void awaitSegments() {
+        for (Segment segment : segments) {
+            segment.await();
+        }
+    }
+
+    /**
+     * Write the changes of the given buffer, grouped by chunk.
+     *
+     * <p>
+     * Changes are written straight from the packed arrays of the buffer.
+     * Only the few changes that the buffer keeps unpacked, such as blocks
+     * with NBT data, are written as blocks.
+     * </p>
+     *
+     * @param out    the stream to write to
+     * @param buffer the buffer
+     * @throws IOException on I/O error
+     */
+    private static void writeSegment(DataOutputStream out, BlockOptimizedHistory buffer) throws IOException {
+        int count = buffer.getBlockCount();
+        int[] order = groupByChunk(buffer);
+        NBTOutputStream nbtOut = new NBTOutputStream(out);
+
+        out.writeInt(count);
+        for (int index : order) {
+            if (buffer.isPacked(index)) {
+                out.writeBoolean(true);
+                out.writeLong(buffer.getPackedPosition(index));
+                out.writeInt(buffer.getPackedPrevious(index));
+                out.writeInt(buffer.getPackedCurrent(index));
+            } else {
+                BlockChange change = buffer.getBlockChange(index);
+                BlockVector position = change.getPosition();
+                out.writeBoolean(false);
+                out.writeInt(position.getBlockX());
+                out.writeInt(position.getBlockY());
+                out.writeInt(position.getBlockZ());
+                writeBlock(out, nbtOut, change.getPrevious());
+                writeBlock(out, nbtOut, change.getCurrent());
+            }
+        }
+    }
+
+    /**
+     * Sort the indices of the changes in the buffer so that changes to the
+     * same chunk are next to each other, keeping their relative order.
+     *
+     * @param buffer the buffer
+     * @return the sorted indices
+     */
+    private static int[] groupByChunk(final BlockOptimizedHistory buffer) {
+        return PackedPosition.groupByChunk(buffer.getBlockCount(), new PackedPosition.ChunkKeys() {
+
+            @Override
+            public long getChunkKey(int index) {
+                return buffer.getChunkKey(index);
+            }
+        });
+    }
+
+    private static void writeBlock(DataOutputStream out, NBTOutputStream nbtOut, BaseBlock block) throws IOException {
+        out.writeInt(block.getId());
+        out.writeInt(block.getData());
+        CompoundTag nbt = block.getNbtData();
+        out.writeBoolean(nbt != null);
+        if (nbt != null) {
+            nbtOut.writeNamedTag("", nbt);
+        }
+    }
+
+    private static BaseBlock readBlock(DataInputStream in, NBTInputStream nbtIn) throws IOException {
+        int id = in.readInt();
+        int data = in.readInt();
+        if (in.readBoolean()) {
+            return new BaseBlock(id, data, (CompoundTag) nbtIn.readNamedTag().getTag());
+        } else {
+            return new BaseBlock(id, data);
+        }
+    }
+
+    /**
+     * Read a segment file back into a new buffer.
+     *
+     * <p>
+     * If the file can't be read, the error is thrown as a
+     * {@link ChangeSetReadException} wrapped in a {@link RuntimeException}.
+     * The segment is kept, so that reading it can be tried again.
+     * </p>
+     *
+     * @param file the segment file
+     * @return the changes of the segment
+     */
+    private static BlockOptimizedHistory readSegment(File file) {
+        Closer closer = Closer.create();
+        try {
+            FileInputStream fis = closer.register(new FileInputStream(file));
+            InflaterInputStream iis = closer.register(new InflaterInputStream(fis));
+            DataInputStream in = closer.register(new DataInputStream(new BufferedInputStream(iis)));
+            NBTInputStream nbtIn = new NBTInputStream(in);
+
+            BlockOptimizedHistory history = new BlockOptimizedHistory();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                if (in.readBoolean()) {
+                    long position = in.readLong();
+                    int previous = in.readInt();
+                    int current = in.readInt();
+                    history.addBlockChange(
+                        PackedPosition.getX(position),
+                        PackedPosition.getY(position),
+                        PackedPosition.getZ(position),
+                        previous,
+                        current);
+                } else {
+                    BlockVector position = new BlockVector(in.readInt(), in.readInt(), in.readInt());
+                    BaseBlock previous = readBlock(in, nbtIn);
+                    BaseBlock current = readBlock(in, nbtIn);
+                    history.add(new BlockChange(position, previous, current));
+                }
+            }
+            return history;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to read history from " + file.getAbsolutePath(), e);
+            throw new RuntimeException(
+                new ChangeSetReadException("Failed to read the history of this edit from disk (see console)", e));
+        } finally {
+            try {
+                closer.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        Iterator<Iterator<Change>> spilled = Iterators.transform(
+            Lists.reverse(new ArrayList<Segment>(segments))
+                .iterator(),
+            new Function<Segment, Iterator<Change>>() {
+
+                @Override
+                public Iterator<Change> apply(Segment segment) {
+                    return segment.read()
+                        .backwardIterator();
+                }
+            });
+        return Iterators
+            .concat(changes.backwardIterator(), buffer.backwardIterator(), Iterators.concat(spilled));
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        Iterator<Iterator<Change>> spilled = Iterators
+            .transform(new ArrayList<Segment>(segments).iterator(), new Function<Segment, Iterator<Change>>() {
+
+                @Override
+                public Iterator<Change> apply(Segment segment) {
+                    return segment.read()
+                        .forwardIterator();
+                }
+            });
+        return Iterators.concat(changes.forwardIterator(), Iterators.concat(spilled), buffer.forwardIterator());
+    }
+
+    @Override
+    public int size() {
+        return changes.size() + spilledCount + buffer.size();
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        long usage = changes.getMemoryUsage() + buffer.getMemoryUsage();
+        for (Segment segment : segments) {
+            BlockOptimizedHistory pending = segment.changes;
+            if (pending != null) {
+                usage += pending.getMemoryUsage();
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * Write the changes that are still in memory to disk, even if there are
+     * fewer of them than the threshold, and wait until they are written.
+     *
+     * @return true if less memory is used afterwards
+     */
+    @Override
+    public boolean compact() {
+        if (!spilling) {
+            return false;
+        }
+        long before = getMemoryUsage();
+        if (buffer.getBlockCount() > 0) {
+            spill();
+        }
+        awaitSegments();
+        return getMemoryUsage() < before;
+    }
+
+    /**
+     * Delete all segment files that have been written so far.
+     *
+     * <p>
+     * The change set must not be used afterwards.
+     * </p>
+     */
+    @Override
+    public void close() {
+        awaitSegments();
+        for (Segment segment : segments) {
+            File file = segment.file;
+            if (file != null && file.exists() && !file.delete()) {
+                log.warning("Could not delete history file " + file.getAbsolutePath());
+            }
+        }
+        segments.clear();
+        spilledCount = 0;
+        buffer = new BlockOptimizedHistory();
+
+        // Remove the directory once the last change set using it is gone
+        String[] remaining = directory.list();
+        if (remaining != null && remaining.length == 0) {
+            directory.delete();
+        }
+    }
+
+    /**
+     * A buffer of block changes that has been handed to the writer.
+     */
+    private static class Segment {
+
+        private volatile @Nullable BlockOptimizedHistory changes;
+        private volatile @Nullable File file;
+        private @Nullable Future<?> write;
+
+        private Segment(BlockOptimizedHistory changes) {
+            this.changes = changes;
+        }
+
+        /**
+         * Wait until the segment is written, or has failed to be written.
+         */
+        private void await() {
+            Future<?> write = this.write;
+            if (write != null) {
+                try {
+                    Uninterruptibles.getUninterruptibly(write);
+                } catch (ExecutionException e) {
+                    // The changes are still in memory
+                    log.log(Level.WARNING, "Failed to write history to disk, keeping it in memory instead", e);
+                }
+                this.write = null;
+            }
+        }
+
+        /**
+         * Get the changes of the segment, waiting for it to be written and
+         * reading it back if it was.
+         *
+         * @return the changes
+         */
+        private BlockOptimizedHistory read() {
+            await();
+            BlockOptimizedHistory changes = this.changes;
+            return changes != null ? changes : readSegment(file);
+        }
+    }
+
+}
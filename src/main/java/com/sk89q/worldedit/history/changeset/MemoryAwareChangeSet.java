@@ -0,0 +1,40 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+/**
+ * A {@link ChangeSet} that can estimate how much heap memory it uses, and
+ * that may be able to reduce it without losing any changes.
+ */
+public interface MemoryAwareChangeSet extends ChangeSet {
+
+    /**
+     * Get a rough estimate of the heap memory used by the stored changes.
+     *
+     * @return the estimated size in bytes
+     */
+    long getMemoryUsage();
+
+    /**
+     * Try to reduce the heap memory used by the stored changes, for example
+     * by moving them to disk.
+     *
+     * @return true if any memory was freed
+     */
+    boolean compact();
+
+}
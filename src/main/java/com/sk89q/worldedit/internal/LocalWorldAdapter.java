@@ -38,6 +38,8 @@ import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.TreeGenerator.TreeType;
+import com.sk89q.worldedit.world.BlockReadCache;
+import com.sk89q.worldedit.world.BulkBlockWriter;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.biome.BaseBiome;
 import com.sk89q.worldedit.world.registry.WorldData;
@@ -198,6 +200,23 @@ public class LocalWorldAdapter extends LocalWorld {
         world.checkLoadedChunk(position);
     }
 
+    @Nullable
+    @Override
+    public BulkBlockWriter createBulkWriter() {
+        return world.createBulkWriter();
+    }
+
+    @Nullable
+    @Override
+    public BlockReadCache createReadCache() {
+        return world.createReadCache();
+    }
+
+    @Override
+    public boolean copyChunkSection(int chunkX, int sectionY, int chunkZ, byte[] blocks, byte[] add, byte[] data) {
+        return world.copyChunkSection(chunkX, sectionY, chunkZ, blocks, add, data);
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {
         world.fixAfterFastMode(chunks);
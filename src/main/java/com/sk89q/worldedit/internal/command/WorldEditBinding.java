@@ -90,10 +90,16 @@ public class WorldEditBinding extends BindingHelper {
      * @param context the context
      * @return an edit session
      * @throws ParameterException on other error
+     * @throws JobQueueBusyException if the command has to wait for queued jobs
      */
     @BindingMatch(type = EditSession.class, behavior = BindingBehavior.PROVIDES)
-    public EditSession getEditSession(ArgumentStack context) throws ParameterException {
+    public EditSession getEditSession(ArgumentStack context) throws ParameterException, JobQueueBusyException {
         Player sender = getPlayer(context);
+        if (worldEdit.getSessionManager()
+            .getJobQueue(sender)
+            .isBusy()) {
+            throw new JobQueueBusyException();
+        }
         LocalSession session = worldEdit.getSessionManager()
             .get(sender);
         EditSession editSession = session.createEditSession(sender);
@@ -27,7 +27,7 @@ import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.LocalWorld;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
-import com.sk89q.worldedit.regions.iterator.RegionIterator;
+import com.sk89q.worldedit.regions.iterator.ChunkOrderedRegionIterator;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 
@@ -52,7 +52,7 @@ public abstract class AbstractRegion implements Region {
      */
     @Override
     public Iterator<BlockVector> iterator() {
-        return new RegionIterator(this);
+        return new ChunkOrderedRegionIterator(this);
     }
 
     @Override
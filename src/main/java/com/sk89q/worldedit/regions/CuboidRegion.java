@@ -28,6 +28,7 @@ import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.LocalWorld;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.regions.iterator.ChunkOrderedRegionIterator;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 
@@ -351,40 +352,7 @@ public class CuboidRegion extends AbstractRegion implements FlatRegion {
 
     @Override
     public Iterator<BlockVector> iterator() {
-        return new Iterator<BlockVector>() {
-
-            private Vector min = getMinimumPoint();
-            private Vector max = getMaximumPoint();
-            private int nextX = min.getBlockX();
-            private int nextY = min.getBlockY();
-            private int nextZ = min.getBlockZ();
-
-            @Override
-            public boolean hasNext() {
-                return (nextX != Integer.MIN_VALUE);
-            }
-
-            @Override
-            public BlockVector next() {
-                if (!hasNext()) throw new java.util.NoSuchElementException();
-                BlockVector answer = new BlockVector(nextX, nextY, nextZ);
-                if (++nextX > max.getBlockX()) {
-                    nextX = min.getBlockX();
-                    if (++nextY > max.getBlockY()) {
-                        nextY = min.getBlockY();
-                        if (++nextZ > max.getBlockZ()) {
-                            nextX = Integer.MIN_VALUE;
-                        }
-                    }
-                }
-                return answer;
-            }
-
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
-        };
+        return new ChunkOrderedRegionIterator(this);
     }
 
     @Override
@@ -28,7 +28,7 @@ import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.geom.Polygons;
-import com.sk89q.worldedit.regions.iterator.FlatRegion3DIterator;
+import com.sk89q.worldedit.regions.iterator.ChunkOrderedRegionIterator;
 import com.sk89q.worldedit.regions.iterator.FlatRegionIterator;
 import com.sk89q.worldedit.world.World;
 
@@ -345,7 +345,7 @@ public class CylinderRegion extends AbstractRegion implements FlatRegion {
 
     @Override
     public Iterator<BlockVector> iterator() {
-        return new FlatRegion3DIterator(this);
+        return new ChunkOrderedRegionIterator(this);
     }
 
     @Override
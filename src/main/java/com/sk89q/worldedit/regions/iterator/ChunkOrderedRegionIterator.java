@@ -0,0 +1,242 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.FlatRegion;
+import com.sk89q.worldedit.regions.Region;
+
+/**
+ * Iterates over the points of a region one chunk column at a time.
+ *
+ * <p>
+ * Within a chunk column, points are returned by Y, then Z, then X, which
+ * is the order of the block arrays of a chunk section, so every section
+ * is finished before the next one is started. Compared to
+ * {@link RegionIterator}, which sweeps X across the whole region for every
+ * Y and Z, this keeps consecutive points in the same chunk and section.
+ * </p>
+ *
+ * <p>
+ * Cuboids are iterated without calling {@link Region#contains(Vector)},
+ * and for flat regions the columns of each chunk are only tested once.
+ * </p>
+ */
+public class ChunkOrderedRegionIterator implements Iterator<BlockVector> {
+
+    private final Region region;
+    private final boolean cuboid;
+    private final boolean flat;
+    private final boolean[] columns = new boolean[256];
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int maxChunkX;
+    private final int maxChunkZ;
+
+    private int chunkX;
+    private int chunkZ;
+    private int chunkMinX;
+    private int chunkMaxX;
+    private int chunkMinZ;
+    private int chunkMaxZ;
+
+    private int nextX;
+    private int nextY;
+    private int nextZ;
+    private boolean hasNext;
+
+    public ChunkOrderedRegionIterator(Region region) {
+        checkNotNull(region);
+
+        this.region = region;
+        this.cuboid = region instanceof CuboidRegion;
+        this.flat = !cuboid && region instanceof FlatRegion;
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.maxX = max.getBlockX();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
+        this.maxChunkX = maxX >> 4;
+        this.maxChunkZ = maxZ >> 4;
+
+        this.chunkX = minX >> 4;
+        this.chunkZ = minZ >> 4;
+        this.hasNext = minX <= maxX && minY <= maxY && minZ <= maxZ && (enterChunk() || nextChunk());
+        if (hasNext && !accept()) {
+            forward();
+        }
+    }
+
+    /**
+     * Start at the first point of the current chunk.
+     *
+     * @return false if no column of the chunk is in the region
+     */
+    private boolean enterChunk() {
+        chunkMinX = Math.max(minX, chunkX << 4);
+        chunkMaxX = Math.min(maxX, (chunkX << 4) + 15);
+        chunkMinZ = Math.max(minZ, chunkZ << 4);
+        chunkMaxZ = Math.min(maxZ, (chunkZ << 4) + 15);
+        nextX = chunkMinX;
+        nextY = minY;
+        nextZ = chunkMinZ;
+
+        if (flat) {
+            boolean any = false;
+            for (int z = chunkMinZ; z <= chunkMaxZ; z++) {
+                for (int x = chunkMinX; x <= chunkMaxX; x++) {
+                    boolean inside = region.contains(new Vector(x, minY, z));
+                    columns[(z & 15) << 4 | (x & 15)] = inside;
+                    any |= inside;
+                }
+            }
+            return any;
+        }
+
+        return true;
+    }
+
+    /**
+     * Move on to the next chunk that has any column in the region.
+     *
+     * @return false if there are no chunks left
+     */
+    private boolean nextChunk() {
+        do {
+            if (++chunkX > maxChunkX) {
+                chunkX = minX >> 4;
+                if (++chunkZ > maxChunkZ) {
+                    return false;
+                }
+            }
+        } while (!enterChunk());
+        return true;
+    }
+
+    private boolean accept() {
+        if (cuboid) {
+            return true;
+        } else if (flat) {
+            return columns[(nextZ & 15) << 4 | (nextX & 15)];
+        } else {
+            return region.contains(new Vector(nextX, nextY, nextZ));
+        }
+    }
+
+    private boolean forwardOne() {
+        if (++nextX <= chunkMaxX) {
+            return true;
+        }
+        nextX = chunkMinX;
+
+        if (++nextZ <= chunkMaxZ) {
+            return true;
+        }
+        nextZ = chunkMinZ;
+
+        if (++nextY <= maxY) {
+            return true;
+        }
+
+        return nextChunk();
+    }
+
+    private void forward() {
+        do {
+            if (!forwardOne()) {
+                hasNext = false;
+                return;
+            }
+        } while (!accept());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Get the X coordinate of the point that {@link #next()} would return.
+     *
+     * @return the X coordinate
+     */
+    public int getX() {
+        return nextX;
+    }
+
+    /**
+     * Get the Y coordinate of the point that {@link #next()} would return.
+     *
+     * @return the Y coordinate
+     */
+    public int getY() {
+        return nextY;
+    }
+
+    /**
+     * Get the Z coordinate of the point that {@link #next()} would return.
+     *
+     * @return the Z coordinate
+     */
+    public int getZ() {
+        return nextZ;
+    }
+
+    /**
+     * Move past the next point, like {@link #next()} does, but without
+     * creating a {@link BlockVector} for it.
+     */
+    public void advance() {
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+
+        forward();
+    }
+
+    @Override
+    public BlockVector next() {
+        if (!hasNext) {
+            throw new NoSuchElementException();
+        }
+
+        BlockVector answer = new BlockVector(nextX, nextY, nextZ);
+        forward();
+        return answer;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -17,6 +17,10 @@
 package com.sk89q.worldedit.session;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
 
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
@@ -26,12 +30,20 @@ import com.sk89q.worldedit.world.registry.WorldData;
 
 /**
  * Holds the clipboard and the current transform on the clipboard.
+ *
+ * <p>
+ * If the clipboard holds resources, such as a memory-mapped file, they are
+ * released once the holder and every operation created from it by
+ * {@link #createPaste(Extent, WorldData)} are done with it. The holder
+ * starts out with one reference, which belongs to whoever created it.
+ * </p>
  */
 public class ClipboardHolder {
 
     private final WorldData worldData;
     private final Clipboard clipboard;
     private Transform transform = new Identity();
+    private int references = 1;
 
     /**
      * Create a new instance with the given clipboard.
@@ -86,9 +98,41 @@ public class ClipboardHolder {
         return transform;
     }
 
+    /**
+     * Take a reference to the clipboard, which keeps its resources open
+     * until {@link #release()} is called.
+     */
+    public synchronized void retain() {
+        checkState(references > 0, "The clipboard has already been released");
+        references++;
+    }
+
+    /**
+     * Give up a reference to the clipboard. Once the last reference is
+     * given up, the clipboard is closed if it holds resources.
+     */
+    public void release() {
+        synchronized (this) {
+            checkState(references > 0, "The clipboard has already been released");
+            if (--references > 0) {
+                return;
+            }
+        }
+        if (clipboard instanceof Closeable) {
+            try {
+                ((Closeable) clipboard).close();
+            } catch (IOException ignored) {}
+        }
+    }
+
     /**
      * Create a builder for an operation to paste this clipboard.
      *
+     * <p>
+     * The operation that is built keeps the clipboard open until it
+     * completes or is cancelled.
+     * </p>
+     *
      * @return a builder
      */
     public PasteBuilder createPaste(Extent targetExtent, WorldData targetWorldData) {
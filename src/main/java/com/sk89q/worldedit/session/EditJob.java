@@ -0,0 +1,389 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.ProgressiveOperation;
+import com.sk89q.worldedit.function.operation.RunContext;
+
+/**
+ * Commits the changes of an {@link EditSession} on behalf of an actor.
+ *
+ * <p>
+ * Jobs are queued per actor in an {@link EditJobQueue} and completed by
+ * the platform's {@link com.sk89q.worldedit.function.operation.OperationScheduler}.
+ * A job can be paused, in which case it stops returning itself from
+ * {@link #resume(RunContext)} until it is resubmitted, or cancelled, in
+ * which case the remaining queued operations are abandoned but blocks that
+ * were already buffered by the edit session are still flushed.
+ * </p>
+ */
+public class EditJob implements Operation {
+
+    /**
+     * The state of a job.
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        PAUSED,
+        CANCELLED,
+        COMPLETED
+    }
+
+    private final int id;
+    private final Actor actor;
+    private final String description;
+    private final EditSession editSession;
+    private final @Nullable EditJobQueue.Listener listener;
+    private final @Nullable ProgressiveOperation tracked;
+    private final boolean reportStatus;
+    private @Nullable Operation operation;
+    private State state = State.QUEUED;
+    private boolean pauseRequested;
+    private boolean cancelRequested;
+    private boolean flushing;
+    private long startTime;
+    private long activeTime;
+    private long resumedAt;
+    private long lastReport;
+
+    /**
+     * Create a new job.
+     *
+     * @param id          the ID of the job, unique to its queue
+     * @param actor       the actor who owns the job
+     * @param description a description of the job, such as the command used
+     * @param editSession the edit session to commit
+     * @param listener    a listener to notify when the job stops, or null
+     */
+    EditJob(int id, Actor actor, String description, EditSession editSession,
+        @Nullable EditJobQueue.Listener listener) {
+        checkNotNull(actor);
+        checkNotNull(description);
+        checkNotNull(editSession);
+        this.id = id;
+        this.actor = actor;
+        this.description = description;
+        this.editSession = editSession;
+        this.listener = listener;
+        this.reportStatus = editSession.hasQueuedOperations();
+        this.operation = editSession.commit();
+        this.tracked = operation instanceof ProgressiveOperation ? (ProgressiveOperation) operation : null;
+        if (operation == null) {
+            state = State.COMPLETED;
+        }
+    }
+
+    /**
+     * Get the ID of the job.
+     *
+     * @return the ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the actor who owns the job.
+     *
+     * @return the actor
+     */
+    public Actor getActor() {
+        return actor;
+    }
+
+    /**
+     * Get a description of the job.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Get the edit session whose changes are being committed.
+     *
+     * @return the edit session
+     */
+    public EditSession getEditSession() {
+        return editSession;
+    }
+
+    /**
+     * Get the listener to notify when the job stops.
+     *
+     * @return the listener, or null
+     */
+    @Nullable
+    EditJobQueue.Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Get the current state of the job.
+     *
+     * @return the state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Return whether the job has stopped for good.
+     *
+     * @return true if cancelled or completed
+     */
+    public boolean isDone() {
+        return state == State.CANCELLED || state == State.COMPLETED;
+    }
+
+    /**
+     * Return whether the job has been asked to pause.
+     *
+     * @return true if a pause was requested or the job is paused
+     */
+    public boolean isPauseRequested() {
+        return pauseRequested || state == State.PAUSED;
+    }
+
+    /**
+     * Return whether the job should report the status of its operations
+     * when it completes.
+     *
+     * @return true to report status
+     */
+    public boolean isReportingStatus() {
+        return reportStatus;
+    }
+
+    /**
+     * Ask the job to pause the next time that it is resumed.
+     */
+    void requestPause() {
+        if (!isDone()) {
+            pauseRequested = true;
+        }
+    }
+
+    /**
+     * Clear a pause request, returning whether the job had actually paused
+     * and so needs to be submitted again.
+     *
+     * @return true if the job had paused
+     */
+    boolean unpause() {
+        pauseRequested = false;
+        return state == State.PAUSED;
+    }
+
+    /**
+     * Ask the job to cancel the next time that it is resumed.
+     */
+    void requestCancel() {
+        if (!isDone()) {
+            cancelRequested = true;
+            pauseRequested = false;
+        }
+    }
+
+    /**
+     * Get the number of blocks that have been visited.
+     *
+     * @return the number of blocks
+     */
+    public long getCompleted() {
+        return tracked != null ? tracked.getCompleted() : 0;
+    }
+
+    /**
+     * Get the total number of blocks that the job will visit.
+     *
+     * @return the number of blocks, or -1 if not known
+     */
+    public long getTotal() {
+        return tracked != null ? tracked.getTotal() : -1;
+    }
+
+    /**
+     * Get the number of milliseconds for which the job has been running,
+     * not counting time spent paused or waiting for other jobs.
+     *
+     * @return the time in milliseconds
+     */
+    public long getActiveTime() {
+        if (state == State.RUNNING) {
+            return activeTime + (System.currentTimeMillis() - resumedAt);
+        }
+        return activeTime;
+    }
+
+    /**
+     * Get the time at which the job first started running.
+     *
+     * @return the time in milliseconds, or 0 if it has not started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Describe the progress of the job in a single line.
+     *
+     * @return the progress line
+     */
+    public String describeProgress() {
+        long completed = getCompleted();
+        long total = getTotal();
+        long time = getActiveTime();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("#")
+            .append(id)
+            .append(" ")
+            .append(description)
+            .append(" [")
+            .append(state.name()
+                .toLowerCase())
+            .append("]: ")
+            .append(completed);
+        if (total >= 0) {
+            builder.append("/")
+                .append(total);
+        }
+        builder.append(" blocks");
+
+        if (time > 0 && completed > 0) {
+            double throughput = completed / (time / 1000.0);
+            builder.append(", ")
+                .append(Math.round(throughput))
+                .append(" blocks/sec");
+            if (total > completed && state != State.PAUSED) {
+                long eta = Math.round((total - completed) / throughput);
+                builder.append(", ETA ")
+                    .append(eta)
+                    .append("s");
+            }
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        long now = System.currentTimeMillis();
+        if (state == State.QUEUED) {
+            startTime = now;
+            lastReport = now;
+        }
+        if (state != State.RUNNING) {
+            state = State.RUNNING;
+            resumedAt = now;
+        }
+
+        if (cancelRequested && !flushing) {
+            startFlush();
+        } else if (pauseRequested && !flushing) {
+            pauseRequested = false;
+            stop(State.PAUSED);
+            return null;
+        }
+
+        if (operation != null) {
+            try {
+                operation = operation.resume(run);
+            } catch (WorldEditException e) {
+                Operations.report(e, actor);
+                cancelRequested = true;
+                startFlush();
+            }
+        }
+
+        if (operation == null) {
+            stop(cancelRequested ? State.CANCELLED : State.COMPLETED);
+            return null;
+        }
+
+        reportProgress();
+        return this;
+    }
+
+    /**
+     * Abandon the remaining queued operations and flush what the edit
+     * session has buffered so far.
+     */
+    private void startFlush() {
+        if (operation != null) {
+            operation.cancel();
+        }
+        operation = editSession.commit();
+        flushing = true;
+    }
+
+    private void stop(State state) {
+        activeTime += System.currentTimeMillis() - resumedAt;
+        this.state = state;
+    }
+
+    private void reportProgress() {
+        int interval = WorldEdit.getInstance()
+            .getConfiguration().jobProgressInterval;
+        if (interval <= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastReport >= interval * 1000L) {
+            lastReport = now;
+            actor.printDebug(describeProgress());
+        }
+    }
+
+    @Override
+    public void cancel() {
+        if (operation != null) {
+            operation.cancel();
+            operation = null;
+        }
+        cancelRequested = true;
+        if (state == State.RUNNING) {
+            stop(State.CANCELLED);
+        } else {
+            state = State.CANCELLED;
+        }
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        if (tracked != null) {
+            tracked.addStatusMessages(messages);
+        }
+    }
+
+}
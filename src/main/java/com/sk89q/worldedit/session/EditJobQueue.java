@@ -0,0 +1,361 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Actor;
+
+/**
+ * Holds the edit jobs of a single session owner and submits them to the
+ * operation scheduler one at a time, in the order that they were queued.
+ *
+ * <p>
+ * If the job at the head of the queue is paused, the jobs behind it wait
+ * until it is resumed or cancelled, because later edits usually depend on
+ * the result of earlier ones.
+ * </p>
+ *
+ * <p>
+ * For the same reason, commands that edit the world, including undo and
+ * redo, must not run while jobs are queued. Such commands are
+ * {@link #defer(Runnable) deferred} and run one by one, in order, once
+ * the jobs ahead of them are done.
+ * </p>
+ */
+public class EditJobQueue {
+
+    private final Deque<EditJob> jobs = new ArrayDeque<EditJob>();
+    private final Deque<Runnable> deferred = new ArrayDeque<Runnable>();
+    private final @Nullable Runnable drainCallback;
+    private boolean runningDeferred;
+    private int nextId = 1;
+
+    /**
+     * Create a new queue.
+     */
+    public EditJobQueue() {
+        this(null);
+    }
+
+    /**
+     * Create a new queue.
+     *
+     * @param drainCallback a callback to run whenever the last job or
+     *                      deferred command is done, or null
+     */
+    public EditJobQueue(@Nullable Runnable drainCallback) {
+        this.drainCallback = drainCallback;
+    }
+
+    /**
+     * Queue the changes of an edit session to be committed.
+     *
+     * <p>
+     * If the edit session has nothing left to commit, the listener is
+     * notified immediately and the job is not queued.
+     * </p>
+     *
+     * @param actor       the actor who owns the job
+     * @param description a description of the job, such as the command used
+     * @param editSession the edit session
+     * @param listener    a listener to notify when the job stops, or null
+     * @return the job
+     */
+    public EditJob submit(Actor actor, String description, EditSession editSession, @Nullable Listener listener) {
+        EditJob job;
+        boolean start;
+
+        synchronized (this) {
+            job = new EditJob(nextId++, actor, description, editSession, listener);
+            if (job.isDone()) {
+                start = false;
+            } else {
+                jobs.offer(job);
+                start = jobs.size() == 1;
+            }
+        }
+
+        if (job.isDone()) {
+            notifyListener(job);
+            checkDrained();
+        } else if (start) {
+            schedule(job);
+        }
+
+        return job;
+    }
+
+    /**
+     * Get a copy of the list of jobs, with the running job first.
+     *
+     * @return a list of jobs
+     */
+    public synchronized List<EditJob> getJobs() {
+        return new ArrayList<EditJob>(jobs);
+    }
+
+    /**
+     * Get the job with the given ID.
+     *
+     * @param id the ID
+     * @return the job, or null if it is not queued
+     */
+    @Nullable
+    public synchronized EditJob getJob(int id) {
+        for (EditJob job : jobs) {
+            if (job.getId() == id) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get whether there are no queued jobs and no deferred commands.
+     *
+     * @return true if there are no jobs
+     */
+    public synchronized boolean isEmpty() {
+        return jobs.isEmpty() && deferred.isEmpty() && !runningDeferred;
+    }
+
+    /**
+     * Get whether a command that edits the world has to be
+     * {@link #defer(Runnable) deferred} rather than run now, because there
+     * are jobs or other deferred commands ahead of it.
+     *
+     * <p>
+     * This is false for the deferred command that is being run.
+     * </p>
+     *
+     * @return true if the queue is busy
+     */
+    public synchronized boolean isBusy() {
+        return !jobs.isEmpty() || (!deferred.isEmpty() && !runningDeferred);
+    }
+
+    /**
+     * Get the number of deferred commands that are waiting to be run.
+     *
+     * @return the number of commands
+     */
+    public synchronized int getDeferredCount() {
+        return deferred.size();
+    }
+
+    /**
+     * Run a command once all the jobs and deferred commands that are queued
+     * at the moment are done.
+     *
+     * <p>
+     * Deferred commands are run on the thread that completes the last job.
+     * If a command queues a new job, the remaining commands wait for that
+     * job as well.
+     * </p>
+     *
+     * @param command the command
+     */
+    public void defer(Runnable command) {
+        checkNotNull(command);
+
+        synchronized (this) {
+            deferred.offer(command);
+        }
+
+        runDeferred();
+    }
+
+    /**
+     * Pause the given job, or resume it if it was already paused.
+     *
+     * @param job the job
+     * @return true if the job is now paused, false if it was resumed
+     */
+    public boolean togglePause(EditJob job) {
+        checkNotNull(job);
+
+        boolean resume;
+
+        synchronized (this) {
+            if (!job.isPauseRequested()) {
+                job.requestPause();
+                return true;
+            }
+
+            resume = job.unpause() && jobs.peek() == job;
+        }
+
+        if (resume) {
+            schedule(job);
+        }
+
+        return false;
+    }
+
+    /**
+     * Cancel the given job.
+     *
+     * <p>
+     * Changes that the job had already made are kept and still recorded
+     * in the session's history, so they can be undone.
+     * </p>
+     *
+     * @param job the job
+     */
+    public void cancel(EditJob job) {
+        checkNotNull(job);
+
+        boolean resume;
+
+        synchronized (this) {
+            job.requestCancel();
+            resume = job.unpause() && jobs.peek() == job;
+        }
+
+        if (resume) {
+            schedule(job);
+        }
+    }
+
+    /**
+     * Cancel every queued job, and drop the deferred commands that were
+     * waiting for them.
+     *
+     * @return the number of jobs and commands that were cancelled
+     */
+    public int cancelAll() {
+        int dropped;
+        synchronized (this) {
+            dropped = deferred.size();
+            deferred.clear();
+        }
+
+        List<EditJob> copy = getJobs();
+        for (EditJob job : copy) {
+            cancel(job);
+        }
+        return copy.size() + dropped;
+    }
+
+    private void schedule(final EditJob job) {
+        WorldEdit.getInstance()
+            .getOperationScheduler()
+            .schedule(job, job.getActor(), new Runnable() {
+
+                @Override
+                public void run() {
+                    finished(job);
+                }
+            });
+    }
+
+    /**
+     * Called by the scheduler whenever the job stops running, which is
+     * either because it was paused or because it is done.
+     *
+     * @param job the job
+     */
+    private void finished(EditJob job) {
+        EditJob next = null;
+
+        synchronized (this) {
+            if (job.getState() == EditJob.State.PAUSED) {
+                return;
+            }
+
+            if (!job.isDone()) {
+                // Stopped by the scheduler without being told to
+                job.cancel();
+            }
+
+            jobs.remove(job);
+            next = jobs.peek();
+        }
+
+        notifyListener(job);
+
+        if (next != null) {
+            schedule(next);
+        } else {
+            runDeferred();
+            checkDrained();
+        }
+    }
+
+    private void checkDrained() {
+        if (drainCallback != null && isEmpty()) {
+            drainCallback.run();
+        }
+    }
+
+    /**
+     * Run the deferred commands in order until one of them queues a job.
+     */
+    private void runDeferred() {
+        while (true) {
+            Runnable command;
+
+            synchronized (this) {
+                if (runningDeferred || !jobs.isEmpty() || deferred.isEmpty()) {
+                    return;
+                }
+                command = deferred.poll();
+                runningDeferred = true;
+            }
+
+            try {
+                command.run();
+            } finally {
+                synchronized (this) {
+                    runningDeferred = false;
+                }
+            }
+        }
+    }
+
+    private void notifyListener(EditJob job) {
+        Listener listener = job.getListener();
+        if (listener != null) {
+            listener.jobFinished(job);
+        }
+    }
+
+    /**
+     * Notified when a job has been completed or cancelled.
+     */
+    public interface Listener {
+
+        /**
+         * Called once the job has stopped for good.
+         *
+         * @param job the job
+         */
+        void jobFinished(EditJob job);
+
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.MemoryAwareChangeSet;
+
+/**
+ * Keeps the memory used by the undo history of all sessions within a
+ * server-wide budget and a budget per session.
+ *
+ * <p>
+ * Every remembered {@link EditSession} is tracked in least recently used
+ * order, where undoing or redoing an edit counts as a use. When a budget is
+ * exceeded, the oldest entries are compacted first, which keeps them
+ * available for undo, and evicted from their session's history if that is
+ * not enough. The actor of an evicted edit is told that it can no longer
+ * be undone.
+ * </p>
+ */
+public class HistoryMemoryManager {
+
+    private static final Logger log = Logger.getLogger(HistoryMemoryManager.class.getCanonicalName());
+
+    private final Map<EditSession, LocalSession> entries = new LinkedHashMap<EditSession, LocalSession>(
+        16,
+        0.75f,
+        true);
+    private long limit = -1;
+    private long sessionLimit = -1;
+
+    /**
+     * Set the memory budgets.
+     *
+     * @param limit        the budget for all sessions in bytes, or -1 for no limit
+     * @param sessionLimit the budget for each session in bytes, or -1 for no limit
+     */
+    public synchronized void setLimits(long limit, long sessionLimit) {
+        this.limit = limit;
+        this.sessionLimit = sessionLimit;
+    }
+
+    /**
+     * Get the budget for all sessions.
+     *
+     * @return the budget in bytes, or -1 if there is no limit
+     */
+    public synchronized long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get the budget for each session.
+     *
+     * @return the budget in bytes, or -1 if there is no limit
+     */
+    public synchronized long getSessionLimit() {
+        return sessionLimit;
+    }
+
+    /**
+     * Start tracking an edit session that was added to the history of a
+     * session, then enforce the budgets.
+     *
+     * @param session     the session
+     * @param editSession the edit session
+     */
+    public synchronized void track(LocalSession session, EditSession editSession) {
+        checkNotNull(session);
+        checkNotNull(editSession);
+        entries.put(editSession, session);
+        enforce();
+    }
+
+    /**
+     * Mark an edit session as used, which moves it to the back of the
+     * eviction order.
+     *
+     * @param editSession the edit session
+     */
+    public synchronized void touch(EditSession editSession) {
+        entries.get(editSession);
+    }
+
+    /**
+     * Stop tracking an edit session that was removed from a history.
+     *
+     * @param editSession the edit session
+     */
+    public synchronized void untrack(EditSession editSession) {
+        entries.remove(editSession);
+    }
+
+    /**
+     * Get the estimated memory used by the history of a session.
+     *
+     * @param session the session
+     * @return the size in bytes
+     */
+    public synchronized long getFootprint(LocalSession session) {
+        long total = 0;
+        for (Map.Entry<EditSession, LocalSession> entry : entries.entrySet()) {
+            if (entry.getValue() == session) {
+                total += getMemoryUsage(entry.getKey());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the estimated memory used by the history of all sessions.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getFootprint() {
+        long total = 0;
+        for (EditSession editSession : entries.keySet()) {
+            total += getMemoryUsage(editSession);
+        }
+        return total;
+    }
+
+    /**
+     * Compact or evict history until all budgets are met.
+     */
+    public synchronized void enforce() {
+        if (sessionLimit >= 0) {
+            Map<LocalSession, Long> usage = new HashMap<LocalSession, Long>();
+            for (Map.Entry<EditSession, LocalSession> entry : entries.entrySet()) {
+                Long used = usage.get(entry.getValue());
+                usage.put(entry.getValue(), (used != null ? used : 0) + getMemoryUsage(entry.getKey()));
+            }
+            for (Map.Entry<LocalSession, Long> entry : usage.entrySet()) {
+                if (entry.getValue() > sessionLimit) {
+                    shrink(entry.getKey(), entry.getValue() - sessionLimit);
+                }
+            }
+        }
+
+        if (limit >= 0) {
+            long used = getFootprint();
+            if (used > limit) {
+                shrink(null, used - limit);
+            }
+        }
+    }
+
+    /**
+     * Free at least the given amount of memory from the oldest entries.
+     *
+     * @param session the session to free memory from, or null for all sessions
+     * @param excess  the amount of memory to free in bytes
+     */
+    private void shrink(@Nullable LocalSession session, long excess) {
+        List<EditSession> candidates = new ArrayList<EditSession>();
+        for (Map.Entry<EditSession, LocalSession> entry : entries.entrySet()) {
+            if (session == null || entry.getValue() == session) {
+                candidates.add(entry.getKey());
+            }
+        }
+
+        // Compacting keeps the history around, so try that first
+        for (EditSession editSession : candidates) {
+            if (excess <= 0) {
+                return;
+            }
+            ChangeSet changeSet = editSession.getChangeSet();
+            if (changeSet instanceof MemoryAwareChangeSet) {
+                long before = getMemoryUsage(editSession);
+                if (((MemoryAwareChangeSet) changeSet).compact()) {
+                    excess -= before - getMemoryUsage(editSession);
+                }
+            }
+        }
+
+        for (EditSession editSession : candidates) {
+            if (excess <= 0) {
+                return;
+            }
+            long used = getMemoryUsage(editSession);
+            LocalSession owner = entries.get(editSession);
+            if (owner == null) {
+                continue;
+            }
+            if (owner.discard(editSession)) {
+                entries.remove(editSession);
+                excess -= used;
+                log.info(
+                    "Evicted " + editSession.size() + " changes from history to stay within the history memory budget");
+                notifyEvicted(editSession);
+            }
+        }
+    }
+
+    /**
+     * Tell the actor of an evicted edit session that it can no longer be
+     * undone.
+     *
+     * @param editSession the edit session
+     */
+    private static void notifyEvicted(EditSession editSession) {
+        Actor actor = editSession.getActor();
+        if (actor != null) {
+            actor.printError(
+                "An older edit (" + editSession.size()
+                    + " changes) was removed from your history to save memory and can no longer be undone.");
+        }
+    }
+
+    private static long getMemoryUsage(EditSession editSession) {
+        ChangeSet changeSet = editSession.getChangeSet();
+        if (changeSet instanceof MemoryAwareChangeSet) {
+            return ((MemoryAwareChangeSet) changeSet).getMemoryUsage();
+        } else {
+            return 0;
+        }
+    }
+
+}
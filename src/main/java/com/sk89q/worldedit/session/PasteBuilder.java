@@ -18,13 +18,18 @@ package com.sk89q.worldedit.session;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.List;
+
 import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.ProgressiveOperation;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.world.registry.WorldData;
 
@@ -33,6 +38,7 @@ import com.sk89q.worldedit.world.registry.WorldData;
  */
 public class PasteBuilder {
 
+    private final ClipboardHolder holder;
     private final Clipboard clipboard;
     private final WorldData worldData;
     private final Transform transform;
@@ -53,6 +59,7 @@ public class PasteBuilder {
         checkNotNull(holder);
         checkNotNull(targetExtent);
         checkNotNull(targetWorldData);
+        this.holder = holder;
         this.clipboard = holder.getClipboard();
         this.worldData = holder.getWorldData();
         this.transform = holder.getTransform();
@@ -84,6 +91,11 @@ public class PasteBuilder {
     /**
      * Build the operation.
      *
+     * <p>
+     * The clipboard is kept open until the operation completes or is
+     * cancelled, even if it is replaced in the session in the meantime.
+     * </p>
+     *
      * @return the operation
      */
     public Operation build() {
@@ -102,7 +114,71 @@ public class PasteBuilder {
         if (ignoreAirBlocks) {
             copy.setSourceMask(new ExistingBlockMask(clipboard));
         }
-        return copy;
+        holder.retain();
+        return new ClipboardPaste(holder, copy);
+    }
+
+    /**
+     * Runs a paste and gives up its reference to the clipboard when done.
+     */
+    private static class ClipboardPaste implements ProgressiveOperation {
+
+        private final ClipboardHolder holder;
+        private final ForwardExtentCopy copy;
+        private Operation current;
+        private boolean released;
+
+        private ClipboardPaste(ClipboardHolder holder, ForwardExtentCopy copy) {
+            this.holder = holder;
+            this.copy = copy;
+            this.current = copy;
+        }
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            // An operation that throws is not resumed again
+            boolean finished = true;
+            try {
+                current = current.resume(run);
+                finished = current == null;
+            } finally {
+                if (finished) {
+                    release();
+                }
+            }
+            return finished ? null : this;
+        }
+
+        @Override
+        public void cancel() {
+            if (current != null) {
+                current.cancel();
+            }
+            release();
+        }
+
+        private void release() {
+            if (!released) {
+                released = true;
+                holder.release();
+            }
+        }
+
+        @Override
+        public long getCompleted() {
+            return copy.getCompleted();
+        }
+
+        @Override
+        public long getTotal() {
+            return copy.getTotal();
+        }
+
+        @Override
+        public void addStatusMessages(List<String> messages) {
+            copy.addStatusMessages(messages);
+        }
+
     }
 
 }
@@ -0,0 +1,328 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.util.io.Closer;
+import com.sk89q.worldedit.world.registry.WorldData;
+
+/**
+ * Keeps loaded schematics in memory so that loading the same file again
+ * shares the clipboard instead of reading the file another time.
+ *
+ * <p>
+ * Entries are keyed by the canonical path of the file and are only used
+ * while the file's modification time is unchanged. Each load hands out a
+ * new {@link Clipboard} that reads from the shared copy and makes a copy
+ * of its own on the first write, so edits never leak to other holders.
+ * </p>
+ *
+ * <p>
+ * Entries are reference counted. When the memory budget is exceeded, the
+ * least recently loaded entries that are not held by any clipboard are
+ * evicted first. Entries that are still held are kept, since evicting them
+ * would not free any memory.
+ * </p>
+ *
+ * <p>
+ * The clipboard of an entry that is evicted, invalidated or replaced is
+ * closed once no clipboard holds it anymore, which releases the file of a
+ * memory-mapped clipboard.
+ * </p>
+ */
+public class SchematicCache {
+
+    private static final Logger log = Logger.getLogger(SchematicCache.class.getCanonicalName());
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final List<Entry> dropped = new ArrayList<Entry>();
+    private long limit = -1;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Set the memory budget.
+     *
+     * @param limit the budget in bytes, or -1 for no limit
+     */
+    public synchronized void setLimit(long limit) {
+        this.limit = limit;
+        enforce();
+    }
+
+    /**
+     * Get the memory budget.
+     *
+     * @return the budget in bytes, or -1 if there is no limit
+     */
+    public synchronized long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Load a schematic, reading the file only if it is not cached.
+     *
+     * <p>
+     * The returned clipboard should be closed once it is no longer used,
+     * which happens when it is replaced in a {@code LocalSession}.
+     * </p>
+     *
+     * @param file      the file
+     * @param format    the format of the file
+     * @param worldData the world data to read the file with
+     * @return a clipboard
+     * @throws IOException thrown if the file cannot be read
+     */
+    public Clipboard load(File file, ClipboardFormat format, WorldData worldData) throws IOException {
+        checkNotNull(file);
+        checkNotNull(format);
+        checkNotNull(worldData);
+
+        String path = file.getCanonicalPath();
+        long lastModified = file.lastModified();
+
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.matches(format, lastModified)) {
+                hits++;
+                return acquire(entry);
+            }
+            misses++;
+        }
+
+        // Read without holding the lock, so other loads are not held up
+        Clipboard clipboard = read(file, format, worldData);
+        if (!(clipboard instanceof BlockArrayClipboard)) {
+            return clipboard;
+        }
+
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry == null || !entry.matches(format, lastModified)) {
+                entry = new Entry(format, lastModified, (BlockArrayClipboard) clipboard);
+                Entry replaced = entries.put(path, entry);
+                if (replaced != null) {
+                    drop(replaced);
+                }
+            } else {
+                // Another load of the same file got here first
+                closeClipboard(clipboard);
+            }
+            SharedClipboard shared = acquire(entry);
+            enforce();
+            return shared;
+        }
+    }
+
+    private static Clipboard read(File file, ClipboardFormat format, WorldData worldData) throws IOException {
+        Closer closer = Closer.create();
+        try {
+            FileInputStream fis = closer.register(new FileInputStream(file));
+            BufferedInputStream bis = closer.register(new BufferedInputStream(fis));
+            ClipboardReader reader = format.getReader(bis);
+            return reader.read(worldData);
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * Remove the entry for a file, if there is one. Clipboards that were
+     * already handed out are not affected.
+     *
+     * @param file the file
+     * @throws IOException thrown if the canonical path cannot be resolved
+     */
+    public synchronized void invalidate(File file) throws IOException {
+        checkNotNull(file);
+        Entry entry = entries.remove(file.getCanonicalPath());
+        if (entry != null) {
+            drop(entry);
+        }
+    }
+
+    /**
+     * Close the clipboard of an entry that was removed, or wait for the
+     * last reference to it to be released if it is still held.
+     *
+     * @param entry the removed entry
+     */
+    private void drop(Entry entry) {
+        if (entry.references <= 0) {
+            closeClipboard(entry.clipboard);
+        } else {
+            dropped.add(entry);
+        }
+    }
+
+    private static void closeClipboard(Clipboard clipboard) {
+        if (clipboard instanceof Closeable) {
+            try {
+                ((Closeable) clipboard).close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to close a cached schematic", e);
+            }
+        }
+    }
+
+    private SharedClipboard acquire(Entry entry) {
+        entry.references++;
+        return new SharedClipboard(this, entry.clipboard);
+    }
+
+    /**
+     * Drop a reference to the shared copy of a clipboard.
+     *
+     * @param clipboard the shared copy
+     */
+    synchronized void release(BlockArrayClipboard clipboard) {
+        for (Entry entry : entries.values()) {
+            if (entry.clipboard == clipboard) {
+                entry.references--;
+                enforce();
+                return;
+            }
+        }
+
+        Iterator<Entry> it = dropped.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.clipboard == clipboard) {
+                if (--entry.references <= 0) {
+                    it.remove();
+                    closeClipboard(entry.clipboard);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Evict unreferenced entries until the budget is met.
+     */
+    private void enforce() {
+        if (limit < 0) {
+            return;
+        }
+
+        long used = getMemoryUsage();
+        Iterator<Entry> it = entries.values()
+            .iterator();
+        while (used > limit && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.references <= 0) {
+                it.remove();
+                used -= entry.size;
+                evictions++;
+                closeClipboard(entry.clipboard);
+            }
+        }
+    }
+
+    /**
+     * Get the estimated memory used by the cached schematics.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.size;
+        }
+        return total;
+    }
+
+    /**
+     * Get the number of cached schematics.
+     *
+     * @return the number of schematics
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of loads that were served from the cache.
+     *
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of loads that had to read the file.
+     *
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of schematics that were evicted to stay within the
+     * memory budget.
+     *
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * A cached schematic.
+     */
+    private static class Entry {
+
+        private final ClipboardFormat format;
+        private final long lastModified;
+        private final BlockArrayClipboard clipboard;
+        private final long size;
+        private int references;
+
+        private Entry(ClipboardFormat format, long lastModified, BlockArrayClipboard clipboard) {
+            this.format = format;
+            this.lastModified = lastModified;
+            this.clipboard = clipboard;
+            this.size = clipboard.getMemoryUsage();
+        }
+
+        private boolean matches(ClipboardFormat format, long lastModified) {
+            return this.format == format && this.lastModified == lastModified;
+        }
+    }
+
+}
@@ -20,11 +20,14 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
@@ -41,6 +44,11 @@ import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.entity.Player;
 import com.sk89q.worldedit.event.platform.ConfigurationLoadEvent;
+import com.sk89q.worldedit.event.platform.PlatformInitializeEvent;
+import com.sk89q.worldedit.extent.clipboard.MappedClipboard;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.history.changeset.DiskSpillingHistory;
 import com.sk89q.worldedit.session.storage.JsonFileSessionStore;
 import com.sk89q.worldedit.session.storage.SessionStore;
 import com.sk89q.worldedit.session.storage.VoidStore;
@@ -68,6 +76,9 @@ public class SessionManager {
     private final Timer timer = new Timer();
     private final WorldEdit worldEdit;
     private final Map<UUID, SessionHolder> sessions = new HashMap<UUID, SessionHolder>();
+    private final Map<UUID, EditJobQueue> jobQueues = new HashMap<UUID, EditJobQueue>();
+    private final HistoryMemoryManager historyManager = new HistoryMemoryManager();
+    private final SchematicCache schematicCache = new SchematicCache();
     private SessionStore store = new VoidStore();
 
     /**
@@ -261,6 +272,84 @@ public class SessionManager {
         }
     }
 
+    /**
+     * Get the queue of edit jobs for the given owner, creating it if
+     * necessary.
+     *
+     * <p>
+     * Job queues are kept separately from sessions so that jobs carry on
+     * if the session itself is removed or expires. The queue of an owner
+     * without a session is dropped once it has drained.
+     * </p>
+     *
+     * @param owner the owner
+     * @return the job queue
+     */
+    public synchronized EditJobQueue getJobQueue(SessionOwner owner) {
+        checkNotNull(owner);
+        final UUID key = getKey(owner);
+        EditJobQueue queue = jobQueues.get(key);
+        if (queue == null) {
+            queue = new EditJobQueue(new Runnable() {
+
+                @Override
+                public void run() {
+                    pruneJobQueue(key);
+                }
+            });
+            jobQueues.put(key, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Drop the job queue for the given key if it is empty and there is no
+     * session for the key anymore.
+     *
+     * @param key the key
+     */
+    private synchronized void pruneJobQueue(UUID key) {
+        EditJobQueue queue = jobQueues.get(key);
+        if (queue != null && queue.isEmpty() && !sessions.containsKey(key)) {
+            jobQueues.remove(key);
+        }
+    }
+
+    /**
+     * Get the manager that keeps the history of all sessions within its
+     * memory budget.
+     *
+     * @return the history memory manager
+     */
+    public HistoryMemoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    /**
+     * Get the cache of loaded schematics that are shared between sessions.
+     *
+     * @return the schematic cache
+     */
+    public SchematicCache getSchematicCache() {
+        return schematicCache;
+    }
+
+    /**
+     * Get the estimated memory used by the history of each session, by the
+     * name of the session's owner.
+     *
+     * @return a map of names to sizes in bytes
+     */
+    public synchronized Map<String, Long> getHistoryFootprints() {
+        Map<String, Long> footprints = new TreeMap<String, Long>();
+        for (SessionHolder holder : sessions.values()) {
+            String name = holder.key.getName();
+            footprints.put(name != null ? name : holder.key.getUniqueId().toString(),
+                historyManager.getFootprint(holder.session));
+        }
+        return footprints;
+    }
+
     /**
      * Remove the session for the given owner if one exists.
      *
@@ -268,14 +357,64 @@ public class SessionManager {
      */
     public synchronized void remove(SessionOwner owner) {
         checkNotNull(owner);
-        sessions.remove(getKey(owner));
+        UUID key = getKey(owner);
+        SessionHolder holder = sessions.remove(key);
+        if (holder != null) {
+            dispose(holder.session);
+        }
+        pruneJobQueue(key);
     }
 
     /**
      * Remove all sessions.
      */
     public synchronized void clear() {
+        for (SessionHolder holder : sessions.values()) {
+            dispose(holder.session);
+        }
         sessions.clear();
+
+        for (UUID key : new ArrayList<UUID>(jobQueues.keySet())) {
+            pruneJobQueue(key);
+        }
+    }
+
+    /**
+     * Release the history, the clipboard and the tools of a session that
+     * was removed.
+     *
+     * <p>
+     * This is done by the operation scheduler rather than right away, so
+     * that the history is not changed or deleted while an undo or a job on
+     * the server thread is still using it.
+     * </p>
+     *
+     * @param session the session
+     */
+    private void dispose(final LocalSession session) {
+        worldEdit.getOperationScheduler()
+            .schedule(new Operation() {
+
+                @Override
+                public Operation resume(RunContext run) {
+                    release();
+                    return null;
+                }
+
+                @Override
+                public void cancel() {
+                    release();
+                }
+
+                @Override
+                public void addStatusMessages(List<String> messages) {}
+
+                private void release() {
+                    session.clearHistory();
+                    session.setClipboard(null);
+                    session.clearTools();
+                }
+            }, null, null);
     }
 
     @Subscribe
@@ -283,6 +422,20 @@ public class SessionManager {
         LocalConfiguration config = event.getConfiguration();
         File dir = new File(config.getWorkingDirectory(), "sessions");
         store = new JsonFileSessionStore(dir);
+        historyManager.setLimits(toBytes(config.historyMemoryLimit), toBytes(config.historyMemoryPerSession));
+        schematicCache.setLimit(toBytes(config.schematicCacheLimit));
+    }
+
+    @Subscribe
+    public void onPlatformInitialize(PlatformInitializeEvent event) {
+        // History spilled to disk before a crash can't be undone anymore
+        DiskSpillingHistory.deleteSegments(worldEdit.getWorkingDirectoryFile("history"));
+        // Memory-mapped clipboard files are useless without their clipboard
+        MappedClipboard.deleteFiles(worldEdit.getWorkingDirectoryFile("clipboards"));
+    }
+
+    private static long toBytes(int megabytes) {
+        return megabytes >= 0 ? megabytes * 1024L * 1024L : -1;
     }
 
     /**
@@ -329,6 +482,8 @@ public class SessionManager {
                             }
 
                             it.remove();
+                            dispose(stored.session);
+                            pruneJobQueue(getKey(stored.key));
                         }
                     }
                 }
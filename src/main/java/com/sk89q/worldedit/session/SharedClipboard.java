@@ -0,0 +1,186 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import java.io.Closeable;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.biome.BaseBiome;
+
+/**
+ * A clipboard that reads from a copy shared through a
+ * {@link SchematicCache} until it is first written to, at which point it
+ * makes a copy of its own.
+ *
+ * <p>
+ * The origin is kept per clipboard, so setting it never causes a copy.
+ * </p>
+ */
+class SharedClipboard implements Clipboard, Closeable {
+
+    private final SchematicCache cache;
+    private final BlockArrayClipboard shared;
+    private Clipboard clipboard;
+    private Vector origin;
+    private boolean referenced = true;
+
+    /**
+     * Create a new instance that holds a reference to the shared copy.
+     *
+     * @param cache  the cache that counts the references
+     * @param shared the shared copy
+     */
+    SharedClipboard(SchematicCache cache, BlockArrayClipboard shared) {
+        this.cache = cache;
+        this.shared = shared;
+        this.clipboard = shared;
+        this.origin = shared.getOrigin();
+    }
+
+    /**
+     * Get a clipboard that can be written to, copying the shared copy if
+     * that has not happened yet.
+     *
+     * @return the clipboard
+     */
+    private Clipboard getWritable() {
+        if (clipboard == shared) {
+            clipboard = shared.copy();
+            close();
+        }
+        return clipboard;
+    }
+
+    @Override
+    public Region getRegion() {
+        return clipboard.getRegion();
+    }
+
+    @Override
+    public Vector getDimensions() {
+        return clipboard.getDimensions();
+    }
+
+    @Override
+    public Vector getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void setOrigin(Vector origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public Vector getMinimumPoint() {
+        return clipboard.getMinimumPoint();
+    }
+
+    @Override
+    public Vector getMaximumPoint() {
+        return clipboard.getMaximumPoint();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities(Region region) {
+        return clipboard.getEntities(region);
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return clipboard.getEntities();
+    }
+
+    @Nullable
+    @Override
+    public Entity createEntity(Location location, BaseEntity entity) {
+        return getWritable().createEntity(location, entity);
+    }
+
+    @Override
+    public BaseBlock getBlock(Vector position) {
+        return clipboard.getBlock(position);
+    }
+
+    @Override
+    public BaseBlock getLazyBlock(Vector position) {
+        return clipboard.getLazyBlock(position);
+    }
+
+    @Override
+    public int getBlockState(int x, int y, int z) {
+        return clipboard.getBlockState(x, y, z);
+    }
+
+    @Nullable
+    @Override
+    public BaseBlock getNbtBlock(int x, int y, int z) {
+        return clipboard.getNbtBlock(x, y, z);
+    }
+
+    @Override
+    public BaseBiome getBiome(Vector2D position) {
+        return clipboard.getBiome(position);
+    }
+
+    @Override
+    public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+        return getWritable().setBlock(position, block);
+    }
+
+    @Override
+    public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        return getWritable().setBlockState(x, y, z, state);
+    }
+
+    @Override
+    public boolean setBiome(Vector2D position, BaseBiome biome) {
+        return getWritable().setBiome(position, biome);
+    }
+
+    @Nullable
+    @Override
+    public Operation commit() {
+        return clipboard.commit();
+    }
+
+    /**
+     * Drop the reference to the shared copy. The clipboard can still be
+     * used afterwards.
+     */
+    @Override
+    public void close() {
+        if (referenced) {
+            referenced = false;
+            cache.release(shared);
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sk89q.worldedit.BlockVector;
+
+/**
+ * Packs block positions into a single {@code long}, and groups packed
+ * changes by chunk.
+ *
+ * <p>
+ * X and Z take 26 bits each and Y takes 12 bits, which covers the whole
+ * world border and more than the build height. Positions outside of that
+ * cannot be packed and have to be stored some other way.
+ * </p>
+ */
+public final class PackedPosition {
+
+    private PackedPosition() {}
+
+    /**
+     * Return whether the given position can be packed.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position can be packed
+     */
+    public static boolean canPack(int x, int y, int z) {
+        return x >= -(1 << 25) && x < 1 << 25 && z >= -(1 << 25) && z < 1 << 25 && y >= -(1 << 11) && y < 1 << 11;
+    }
+
+    /**
+     * Pack the given position. The position must be one that
+     * {@link #canPack(int, int, int)} accepts.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed position
+     */
+    public static long pack(int x, int y, int z) {
+        return (long) x << 38 | (z & 0x3FFFFFFL) << 12 | y & 0xFFFL;
+    }
+
+    /**
+     * Get the X coordinate of a packed position.
+     *
+     * @param packed the packed position
+     * @return the X coordinate
+     */
+    public static int getX(long packed) {
+        // Shift each field to the top of the long and back down to restore the sign
+        return (int) (packed >> 38);
+    }
+
+    /**
+     * Get the Y coordinate of a packed position.
+     *
+     * @param packed the packed position
+     * @return the Y coordinate
+     */
+    public static int getY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    /**
+     * Get the Z coordinate of a packed position.
+     *
+     * @param packed the packed position
+     * @return the Z coordinate
+     */
+    public static int getZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    /**
+     * Unpack a packed position.
+     *
+     * @param packed the packed position
+     * @return the position
+     */
+    public static BlockVector toVector(long packed) {
+        return new BlockVector(getX(packed), getY(packed), getZ(packed));
+    }
+
+    /**
+     * Get a key that identifies the chunk at the given chunk coordinates.
+     *
+     * @param chunkX the chunk X coordinate
+     * @param chunkZ the chunk Z coordinate
+     * @return the key
+     */
+    public static long getChunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Get a key that identifies the chunk of a packed position.
+     *
+     * @param packed the packed position
+     * @return the key, as returned by {@link #getChunkKey(int, int)}
+     */
+    public static long getChunkKeyOf(long packed) {
+        return getChunkKey(getX(packed) >> 4, getZ(packed) >> 4);
+    }
+
+    /**
+     * Get the indices {@code 0} to {@code size - 1} of a list of changes,
+     * with changes in the same chunk next to each other. Changes within a
+     * chunk stay in the order that they were added, so later changes to a
+     * position still win.
+     *
+     * @param size the number of changes
+     * @param keys the chunk keys of the changes
+     * @return the indices
+     */
+    public static int[] groupByChunk(int size, ChunkKeys keys) {
+        Map<Long, Integer> chunkIndices = new HashMap<Long, Integer>();
+        int[] chunkOf = new int[size];
+        int[] chunkSizes = new int[16];
+        int chunkCount = 0;
+        long lastKey = 0;
+        int lastChunk = -1;
+
+        for (int i = 0; i < size; i++) {
+            long key = keys.getChunkKey(i);
+            // Changes usually come in runs within the same chunk
+            if (lastChunk < 0 || key != lastKey) {
+                Integer chunk = chunkIndices.get(key);
+                if (chunk == null) {
+                    chunk = chunkCount++;
+                    chunkIndices.put(key, chunk);
+                    if (chunk == chunkSizes.length) {
+                        chunkSizes = Arrays.copyOf(chunkSizes, chunk * 2);
+                    }
+                }
+                lastKey = key;
+                lastChunk = chunk;
+            }
+            chunkOf[i] = lastChunk;
+            chunkSizes[lastChunk]++;
+        }
+
+        int[] starts = new int[chunkCount];
+        for (int c = 1; c < chunkCount; c++) {
+            starts[c] = starts[c - 1] + chunkSizes[c - 1];
+        }
+
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[starts[chunkOf[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Provides the chunk key of each change for
+     * {@link #groupByChunk(int, ChunkKeys)}.
+     */
+    public interface ChunkKeys {
+
+        /**
+         * Get the chunk key of a change.
+         *
+         * @param index the index of the change
+         * @return the key, as returned by {@link #getChunkKey(int, int)}
+         */
+        long getChunkKey(int index);
+    }
+
+}
@@ -103,16 +103,24 @@ public class PropertiesConfiguration extends LocalConfiguration {
         navigationUseGlass = getBool("nav-use-glass", navigationUseGlass);
         scriptTimeout = getInt("scripting-timeout", scriptTimeout);
         saveDir = getString("schematic-save-dir", saveDir);
+        mappedClipboardThreshold = getInt("clipboard-mapped-threshold", mappedClipboardThreshold);
+        schematicCacheLimit = getInt("schematic-cache-limit", schematicCacheLimit);
         scriptsDir = getString("craftscript-dir", scriptsDir);
         butcherDefaultRadius = getInt("butcher-default-radius", butcherDefaultRadius);
         butcherMaxRadius = getInt("butcher-max-radius", butcherMaxRadius);
         allowSymlinks = getBool("allow-symbolic-links", allowSymlinks);
+        jobProgressInterval = getInt("job-progress-interval", jobProgressInterval);
 
         LocalSession.MAX_HISTORY_SIZE = Math.max(15, getInt("history-size", 15));
+        historySpillThreshold = getInt("history-spill-threshold", historySpillThreshold);
+        historyMemoryLimit = getInt("history-memory-limit", historyMemoryLimit);
+        historyMemoryPerSession = getInt("history-memory-per-session", historyMemoryPerSession);
 
         String snapshotsDir = getString("snapshots-dir", "");
         if (!snapshotsDir.isEmpty()) {
-            snapshotRepo = new SnapshotRepository(snapshotsDir);
+            snapshotRepo = new SnapshotRepository(
+                new File(snapshotsDir),
+                new File(getWorkingDirectory(), "snapshots.json"));
         }
 
         OutputStream output = null;
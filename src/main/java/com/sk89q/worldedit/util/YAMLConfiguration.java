@@ -16,6 +16,7 @@
 
 package com.sk89q.worldedit.util;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.logging.Level;
@@ -95,16 +96,25 @@ public class YAMLConfiguration extends LocalConfiguration {
         scriptsDir = config.getString("scripting.dir", scriptsDir);
 
         saveDir = config.getString("saving.dir", saveDir);
+        mappedClipboardThreshold = config.getInt("clipboard.mapped-threshold", mappedClipboardThreshold);
+        schematicCacheLimit = config.getInt("saving.cache-limit", schematicCacheLimit);
 
         allowSymlinks = config.getBoolean("files.allow-symbolic-links", false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, config.getInt("history.size", 15));
         SessionManager.EXPIRATION_GRACE = config.getInt("history.expiration", 10) * 60 * 1000;
+        historySpillThreshold = config.getInt("history.spill-threshold", historySpillThreshold);
+        historyMemoryLimit = config.getInt("history.memory-limit", historyMemoryLimit);
+        historyMemoryPerSession = config.getInt("history.memory-per-session", historyMemoryPerSession);
+
+        jobProgressInterval = config.getInt("jobs.progress-interval", jobProgressInterval);
 
         showHelpInfo = config.getBoolean("show-help-on-first-use", true);
 
         String snapshotsDir = config.getString("snapshots.directory", "");
         if (!snapshotsDir.isEmpty()) {
-            snapshotRepo = new SnapshotRepository(snapshotsDir);
+            snapshotRepo = new SnapshotRepository(
+                new File(snapshotsDir),
+                new File(getWorkingDirectory(), "snapshots.json"));
         }
 
         String type = config.getString("shell-save-type", "")
@@ -80,6 +80,11 @@ public abstract class AbstractWorld implements World {
         return setBlock(pt, block, true);
     }
 
+    @Override
+    public final boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+        return setBlockState(x, y, z, state, true);
+    }
+
     @Override
     public int getMaxY() {
         return getMaximumPoint().getBlockY();
@@ -172,6 +177,23 @@ public abstract class AbstractWorld implements World {
     @Override
     public void checkLoadedChunk(Vector pt) {}
 
+    @Nullable
+    @Override
+    public BulkBlockWriter createBulkWriter() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public BlockReadCache createReadCache() {
+        return null;
+    }
+
+    @Override
+    public boolean copyChunkSection(int chunkX, int sectionY, int chunkZ, byte[] blocks, byte[] add, byte[] data) {
+        return false;
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2D> chunks) {}
 
@@ -0,0 +1,96 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+/**
+ * Reads blocks from a world while holding on to the chunks that were read
+ * most recently, so that reads that stay within a chunk do not have to
+ * look the chunk up again every time.
+ *
+ * <p>
+ * A cache only sees the changes that are reported to it with
+ * {@link #invalidate(Vector)}. Once a position has been invalidated, the
+ * cache declines to answer for it by returning null, in which case the
+ * caller should read the block from the world itself. Implementations may
+ * decline to answer for nearby positions as well.
+ * </p>
+ */
+public interface BlockReadCache {
+
+    /**
+     * Get a block, including any tile entity data.
+     *
+     * @param position the position
+     * @return the block, or null if the cache cannot answer for the position
+     */
+    @Nullable
+    BaseBlock getBlock(Vector position);
+
+    /**
+     * Get a block whose tile entity data may be loaded on demand.
+     *
+     * @param position the position
+     * @return the block, or null if the cache cannot answer for the position
+     */
+    @Nullable
+    BaseBlock getLazyBlock(Vector position);
+
+    /**
+     * Get the type and data value of a block.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the state, packed with {@link PackedBlock}, or
+     *         {@link PackedBlock#NONE} if the cache cannot answer for the
+     *         position
+     */
+    int getBlockState(int x, int y, int z);
+
+    /**
+     * Report that the block at the given position is being changed.
+     *
+     * @param position the position
+     */
+    void invalidate(Vector position);
+
+    /**
+     * Report that the block at the given position is being changed.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     */
+    void invalidate(int x, int y, int z);
+
+    /**
+     * Release all cached chunks and forget about invalidated positions.
+     *
+     * <p>
+     * This should only be called once all reported changes are visible
+     * in the world.
+     * </p>
+     */
+    void clear();
+
+}
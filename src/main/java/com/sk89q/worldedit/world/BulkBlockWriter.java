@@ -0,0 +1,98 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+/**
+ * Collects block changes so that a world can write them in bulk, a chunk
+ * section at a time, instead of going through the full block change logic
+ * of the game for every block.
+ *
+ * <p>
+ * Changes made through a writer skip neighbour notifications and
+ * lighting, just like {@link World#setBlock(Vector, BaseBlock, boolean)}
+ * with {@code false}, so callers should finish with
+ * {@link World#fixAfterFastMode(Iterable)}.
+ * </p>
+ */
+public interface BulkBlockWriter {
+
+    /**
+     * Queue a block change.
+     *
+     * @param position the position
+     * @param block    the block
+     */
+    void setBlock(Vector position, BaseBlock block);
+
+    /**
+     * Get the block that is queued for the given position.
+     *
+     * @param position the position
+     * @return the queued block, or null if there is no change queued there
+     */
+    @Nullable
+    BaseBlock getBlock(Vector position);
+
+    /**
+     * Queue a change to a block without NBT data.
+     *
+     * @param x     the X coordinate
+     * @param y     the Y coordinate
+     * @param z     the Z coordinate
+     * @param state the state, packed with {@link PackedBlock}
+     */
+    default void setBlockState(int x, int y, int z, int state) {
+        setBlock(new Vector(x, y, z), PackedBlock.toBlock(state));
+    }
+
+    /**
+     * Get the packed state of the block that is queued for the given
+     * position.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the packed state, or {@link PackedBlock#NONE} if there is no
+     *         change queued there
+     */
+    default int getBlockState(int x, int y, int z) {
+        BaseBlock block = getBlock(new Vector(x, y, z));
+        return block != null ? PackedBlock.pack(block) : PackedBlock.NONE;
+    }
+
+    /**
+     * Get the number of chunk sections that have changes queued.
+     *
+     * @return the number of sections
+     */
+    int getSectionCount();
+
+    /**
+     * Write all queued changes to the world and clear the queue.
+     *
+     * @throws WorldEditException thrown if the changes could not be written
+     */
+    void flush() throws WorldEditException;
+
+}
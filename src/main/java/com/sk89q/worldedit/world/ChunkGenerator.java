@@ -0,0 +1,50 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import com.sk89q.worldedit.WorldEditException;
+
+/**
+ * Generates chunks the way a world would, but without adding them to the
+ * world, so that their blocks can be compared with the blocks that are
+ * there now.
+ */
+public interface ChunkGenerator {
+
+    /**
+     * Generate a chunk.
+     *
+     * <p>
+     * The returned chunk holds the states and the tile entity data of the
+     * generated blocks, and tells which blocks of the chunk in the world
+     * have tile entities now.
+     * </p>
+     *
+     * <p>
+     * {@link com.sk89q.worldedit.function.operation.ChunkRegenerator} asks
+     * for chunks in order of X and then Z, so a generator that needs the
+     * neighbours of a chunk may drop the ones it no longer needs.
+     * </p>
+     *
+     * @param chunkX the X coordinate of the chunk
+     * @param chunkZ the Z coordinate of the chunk
+     * @return the generated chunk
+     * @throws WorldEditException if the chunk could not be generated
+     */
+    GeneratedChunk generate(int chunkX, int chunkZ) throws WorldEditException;
+
+}
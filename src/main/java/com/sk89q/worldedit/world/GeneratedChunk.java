@@ -0,0 +1,102 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+/**
+ * A chunk made by a {@link ChunkGenerator}.
+ *
+ * <p>
+ * Blocks are addressed by the index {@code y << 8 | z << 4 | x}, where
+ * {@code x} and {@code z} are relative to the chunk.
+ * </p>
+ */
+public class GeneratedChunk {
+
+    private final int[] states;
+    private final Map<Integer, BaseBlock> tileEntities;
+    private final BitSet existingTileEntities;
+
+    /**
+     * Create a chunk without tile entities.
+     *
+     * @param states the packed states
+     */
+    public GeneratedChunk(int[] states) {
+        this(states, Collections.<Integer, BaseBlock>emptyMap(), new BitSet());
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param states               the packed states
+     * @param tileEntities         the generated blocks that have tile entity data, by index
+     * @param existingTileEntities the indices of the blocks that have a tile
+     *                             entity in the world now
+     */
+    public GeneratedChunk(int[] states, Map<Integer, BaseBlock> tileEntities, BitSet existingTileEntities) {
+        checkNotNull(states);
+        checkNotNull(tileEntities);
+        checkNotNull(existingTileEntities);
+        this.states = states;
+        this.tileEntities = tileEntities;
+        this.existingTileEntities = existingTileEntities;
+    }
+
+    /**
+     * Get the states of the blocks, packed with {@link PackedBlock}. The
+     * length of the array is 256 times the height of the world.
+     *
+     * @return the packed states
+     */
+    public int[] getStates() {
+        return states;
+    }
+
+    /**
+     * Get the generated block at the given index if it has tile entity data.
+     *
+     * @param index the index of the block
+     * @return the block, or null if it has no tile entity data
+     */
+    @Nullable
+    public BaseBlock getTileEntity(int index) {
+        return tileEntities.isEmpty() ? null : tileEntities.get(index);
+    }
+
+    /**
+     * Return whether the block at the given index has a tile entity in
+     * the world now.
+     *
+     * @param index the index of the block
+     * @return true if there is a tile entity
+     */
+    public boolean hasExistingTileEntity(int index) {
+        return existingTileEntities.get(index);
+    }
+
+}
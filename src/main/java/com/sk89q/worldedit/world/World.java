@@ -16,12 +16,15 @@
 
 package com.sk89q.worldedit.world;
 
+import javax.annotation.Nullable;
+
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
 import com.sk89q.worldedit.blocks.BaseItem;
 import com.sk89q.worldedit.blocks.BaseItemStack;
 import com.sk89q.worldedit.extension.platform.Platform;
@@ -126,6 +129,62 @@ public interface World extends Extent {
      */
     boolean setBlock(Vector position, BaseBlock block, boolean notifyAndLight) throws WorldEditException;
 
+    /**
+     * Similar to {@link Extent#setBlockState(int, int, int, int)} but a
+     * {@code notifyAndLight} parameter works like it does for
+     * {@link #setBlock(Vector, BaseBlock, boolean)}.
+     *
+     * @param x              the X coordinate
+     * @param y              the Y coordinate
+     * @param z              the Z coordinate
+     * @param state          the state, packed with {@link PackedBlock}
+     * @param notifyAndLight true to to notify and light
+     * @return true if the block was successfully set (return value may not be accurate)
+     */
+    default boolean setBlockState(int x, int y, int z, int state, boolean notifyAndLight)
+        throws WorldEditException {
+        return setBlock(new Vector(x, y, z), PackedBlock.toBlock(state), notifyAndLight);
+    }
+
+    /**
+     * Create a writer that applies many block changes to this world in bulk,
+     * as if they were set with {@code notifyAndLight} set to false.
+     *
+     * @return a new writer, or null if this world does not support it
+     */
+    @Nullable
+    BulkBlockWriter createBulkWriter();
+
+    /**
+     * Create a cache that speeds up reading many blocks from this world.
+     *
+     * @return a new cache, or null if this world does not support it
+     */
+    @Nullable
+    BlockReadCache createReadCache();
+
+    /**
+     * Copy the block arrays of a 16x16x16 section of a chunk, loading the
+     * chunk if it isn't loaded.
+     *
+     * <p>
+     * The arrays are laid out like the sections of Anvil chunks: the
+     * lowest eight bits of each block ID, indexed by
+     * {@code y << 8 | z << 4 | x}, then the highest four bits of the IDs
+     * and the data values, two blocks to a byte starting with the lowest
+     * nibble.
+     * </p>
+     *
+     * @param chunkX   the X coordinate of the chunk
+     * @param sectionY the index of the section, counting from the bottom of the world
+     * @param chunkZ   the Z coordinate of the chunk
+     * @param blocks   an array of 4096 bytes for the lowest bits of the block IDs
+     * @param add      an array of 2048 bytes for the highest bits of the block IDs
+     * @param data     an array of 2048 bytes for the data values
+     * @return true if the arrays were filled, false if this world does not support it
+     */
+    boolean copyChunkSection(int chunkX, int sectionY, int chunkZ, byte[] blocks, byte[] add, byte[] data);
+
     /**
      * @deprecated Use {@link #setBlock(Vector, BaseBlock)}
      */
@@ -16,6 +16,7 @@
 
 package com.sk89q.worldedit.world.chunk;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +28,8 @@ import com.sk89q.jnbt.ByteTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTConstants;
+import com.sk89q.jnbt.NBTStreamReader;
 import com.sk89q.jnbt.NBTUtils;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.BlockVector;
@@ -39,6 +42,9 @@ import com.sk89q.worldedit.world.storage.InvalidFormatException;
 
 public class AnvilChunk implements Chunk {
 
+    private static final byte[] EMPTY_BLOCKS = new byte[16 * 16 * 16];
+    private static final byte[] EMPTY_NIBBLES = new byte[16 * 16 * 8];
+
     private CompoundTag rootTag;
     private byte[][] blocks;
     private byte[][] blocksAdd;
@@ -66,9 +72,9 @@ public class AnvilChunk implements Chunk {
         rootZ = NBTUtils.getChildTag(rootTag.getValue(), "zPos", IntTag.class)
             .getValue();
 
-        blocks = new byte[16][16 * 16 * 16];
-        blocksAdd = new byte[16][16 * 16 * 8];
-        data = new byte[16][16 * 16 * 8];
+        blocks = new byte[16][];
+        blocksAdd = new byte[16][];
+        data = new byte[16][];
 
         List<Tag> sections = NBTUtils.getChildTag(rootTag.getValue(), "Sections", ListTag.class)
             .getValue();
@@ -78,28 +84,152 @@ public class AnvilChunk implements Chunk {
                 continue;
             }
 
-            CompoundTag sectionTag = (CompoundTag) rawSectionTag;
-            if (!sectionTag.getValue()
-                .containsKey("Y")) {
-                continue; // Empty section.
+            readSection(((CompoundTag) rawSectionTag).getValue());
+        }
+
+        checkSections();
+    }
+
+    private AnvilChunk(World world) {
+        this.world = world;
+
+        blocks = new byte[16][];
+        blocksAdd = new byte[16][];
+        data = new byte[16][];
+    }
+
+    /**
+     * Read a chunk from a stream reader that has just read the header of
+     * the chunk's compound tag.
+     *
+     * <p>
+     * Only the tags that are needed are read. Light, height maps, entities
+     * and everything else are skipped. Chunks without sections are in the
+     * format that came before Anvil, and are returned as an {@link OldChunk}.
+     * </p>
+     *
+     * @param world  the world to construct the chunk for
+     * @param reader the reader
+     * @return the chunk
+     * @throws DataException on a data error
+     * @throws IOException   on an I/O error
+     */
+    public static Chunk read(World world, NBTStreamReader reader) throws DataException, IOException {
+        AnvilChunk chunk = new AnvilChunk(world);
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        boolean hasSections = false;
+
+        reader.beginCompound();
+        while (reader.next() != NBTConstants.TYPE_END) {
+            String name = reader.getName();
+            if (name.equals("Sections")) {
+                if (reader.getType() != NBTConstants.TYPE_LIST) {
+                    throw new InvalidFormatException("Sections tag is not of tag type " + ListTag.class.getName());
+                }
+                chunk.readSections(reader);
+                hasSections = true;
+            } else if (name.equals("xPos") || name.equals("zPos") || name.equals("TileEntities")) {
+                values.put(name, reader.readTag());
+            } else if (name.equals("Blocks") || name.equals("Data")) {
+                // Only chunks from before Anvil have these
+                values.put(name, reader.readTag());
             }
+        }
 
-            int y = NBTUtils.getChildTag(sectionTag.getValue(), "Y", ByteTag.class)
-                .getValue();
-            if (y < 0 || y >= 16) {
-                continue;
+        if (!hasSections) {
+            return new OldChunk(world, new CompoundTag(values));
+        }
+
+        values.remove("Blocks");
+        values.remove("Data");
+        chunk.rootTag = new CompoundTag(values);
+        chunk.rootX = NBTUtils.getChildTag(values, "xPos", IntTag.class)
+            .getValue();
+        chunk.rootZ = NBTUtils.getChildTag(values, "zPos", IntTag.class)
+            .getValue();
+
+        chunk.checkSections();
+
+        // Index the tile entities now, so that a chunk decoded on another
+        // thread needs no more decoding when its blocks are read
+        if (values.containsKey("TileEntities")) {
+            chunk.populateTileEntities();
+        } else {
+            chunk.tileEntities = new HashMap<BlockVector, Map<String, Tag>>();
+        }
+        return chunk;
+    }
+
+    /**
+     * Read the sections of a chunk, keeping only the block arrays.
+     *
+     * @param reader the reader, positioned at the list of sections
+     * @throws DataException on a data error
+     * @throws IOException   on an I/O error
+     */
+    private void readSections(NBTStreamReader reader) throws DataException, IOException {
+        int count = reader.beginList();
+        if (reader.getElementType() == NBTConstants.TYPE_COMPOUND) {
+            for (int i = 0; i < count; i++) {
+                Map<String, Tag> section = new HashMap<String, Tag>();
+                reader.beginCompound();
+                while (reader.next() != NBTConstants.TYPE_END) {
+                    String name = reader.getName();
+                    if (name.equals("Y") || name.equals("Blocks") || name.equals("Data") || name.equals("Add")) {
+                        section.put(name, reader.readTag());
+                    }
+                }
+                readSection(section);
             }
+        }
+        reader.endList();
+    }
 
-            blocks[y] = NBTUtils.getChildTag(sectionTag.getValue(), "Blocks", ByteArrayTag.class)
-                .getValue();
-            data[y] = NBTUtils.getChildTag(sectionTag.getValue(), "Data", ByteArrayTag.class)
+    /**
+     * Store the block arrays of a section.
+     *
+     * @param section the tags of the section
+     * @throws DataException on a data error
+     */
+    private void readSection(Map<String, Tag> section) throws DataException {
+        if (!section.containsKey("Y")) {
+            return; // Empty section.
+        }
+
+        int y = NBTUtils.getChildTag(section, "Y", ByteTag.class)
+            .getValue();
+        if (y < 0 || y >= 16) {
+            return;
+        }
+
+        blocks[y] = NBTUtils.getChildTag(section, "Blocks", ByteArrayTag.class)
+            .getValue();
+        data[y] = NBTUtils.getChildTag(section, "Data", ByteArrayTag.class)
+            .getValue();
+
+        // 4096 ID block support
+        if (section.containsKey("Add")) {
+            blocksAdd[y] = NBTUtils.getChildTag(section, "Add", ByteArrayTag.class)
                 .getValue();
+        }
+    }
 
-            // 4096 ID block support
-            if (sectionTag.getValue()
-                .containsKey("Add")) {
-                blocksAdd[y] = NBTUtils.getChildTag(sectionTag.getValue(), "Add", ByteArrayTag.class)
-                    .getValue();
+    /**
+     * Fill in missing sections and check the size of the arrays.
+     *
+     * @throws DataException if an array has the wrong size
+     */
+    private void checkSections() throws DataException {
+        // Chunks are never written to, so missing sections can share one array
+        for (int y = 0; y < 16; y++) {
+            if (blocks[y] == null) {
+                blocks[y] = EMPTY_BLOCKS;
+            }
+            if (blocksAdd[y] == null) {
+                blocksAdd[y] = EMPTY_NIBBLES;
+            }
+            if (data[y] == null) {
+                data[y] = EMPTY_NIBBLES;
             }
         }
 
@@ -119,6 +249,77 @@ public class AnvilChunk implements Chunk {
         }
     }
 
+    /**
+     * Get the array with the lowest eight bits of the block IDs of a
+     * section, indexed by {@code y << 8 | z << 4 | x}. The array must not
+     * be modified.
+     *
+     * @param section the index of the section, from 0 to 15
+     * @return the array, which has 4096 entries
+     */
+    public byte[] getSectionBlocks(int section) {
+        return blocks[section];
+    }
+
+    /**
+     * Get the array with the highest four bits of the block IDs of a
+     * section, two blocks to a byte, starting with the lowest nibble. The
+     * array must not be modified.
+     *
+     * @param section the index of the section, from 0 to 15
+     * @return the array, which has 2048 entries
+     */
+    public byte[] getSectionAdd(int section) {
+        return blocksAdd[section];
+    }
+
+    /**
+     * Get the array with the data values of the blocks of a section, two
+     * blocks to a byte, starting with the lowest nibble. The array must
+     * not be modified.
+     *
+     * @param section the index of the section, from 0 to 15
+     * @return the array, which has 2048 entries
+     */
+    public byte[] getSectionData(int section) {
+        return data[section];
+    }
+
+    /**
+     * Return whether a section has any blocks with tile entity data.
+     *
+     * @param section the index of the section, from 0 to 15
+     * @return true if there are tile entities
+     * @throws DataException thrown if there is a data error
+     */
+    public boolean hasTileEntities(int section) throws DataException {
+        if (tileEntities == null) {
+            populateTileEntities();
+        }
+
+        for (BlockVector position : tileEntities.keySet()) {
+            if (position.getBlockY() >> 4 == section) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return whether a block has tile entity data.
+     *
+     * @param position the position of the block
+     * @return true if there is a tile entity
+     * @throws DataException thrown if there is a data error
+     */
+    public boolean hasTileEntity(Vector position) throws DataException {
+        if (tileEntities == null) {
+            populateTileEntities();
+        }
+
+        return tileEntities.containsKey(position.toBlockVector());
+    }
+
     @Override
     public int getBlockID(Vector position) throws DataException {
         int x = position.getBlockX() - rootX * 16;
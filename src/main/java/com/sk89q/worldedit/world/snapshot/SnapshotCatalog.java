@@ -0,0 +1,560 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.snapshot;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.sk89q.worldedit.util.gson.GsonUtil;
+import com.sk89q.worldedit.util.io.Closer;
+import com.sk89q.worldedit.world.storage.MissingWorldException;
+
+/**
+ * Keeps track of the snapshots in a {@link SnapshotRepository}, so that
+ * archives don't have to be opened and dates don't have to be parsed every
+ * time snapshots are listed.
+ *
+ * <p>
+ * Every snapshot is scanned once and then again only when its modification
+ * time or size changes. The catalog can be saved to a file so that the scan
+ * also survives restarts. The snapshots of a world are kept sorted by date,
+ * so finding the snapshot closest to a date is a binary search. Snapshots
+ * without a date come first, sorted by name, and are never picked by date.
+ * </p>
+ */
+public class SnapshotCatalog {
+
+    private static final Logger log = Logger.getLogger(SnapshotCatalog.class.getCanonicalName());
+    private static final int VERSION = 1;
+    private static final Pattern REGION_FILE = Pattern.compile("(?i)r\\.-?[0-9]+\\.-?[0-9]+\\.mc[ra]");
+    private static final Comparator<Entry> DATE_ORDER = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            if (o1.date == null || o2.date == null) {
+                if (o1.date != null || o2.date != null) {
+                    return o1.date == null ? -1 : 1;
+                }
+            } else if (!o1.date.equals(o2.date)) {
+                return o1.date < o2.date ? -1 : 1;
+            }
+            return o1.name.compareTo(o2.name);
+        }
+    };
+
+    /**
+     * The container a snapshot is stored in.
+     */
+    public enum Container {
+        DIRECTORY,
+        ZIP,
+        TAR
+    }
+
+    /**
+     * The format of the chunks in a snapshot.
+     */
+    public enum Format {
+        MCREGION,
+        LEGACY
+    }
+
+    private final SnapshotRepository repository;
+    @Nullable
+    private final File file;
+    private final Gson gson = GsonUtil.createBuilder()
+        .create();
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private final Map<String, List<Entry>> worlds = new HashMap<String, List<Entry>>();
+    private boolean loaded;
+
+    /**
+     * Create a new catalog.
+     *
+     * @param repository the repository
+     * @param file the file to save the catalog to, or null to only keep it in memory
+     */
+    public SnapshotCatalog(SnapshotRepository repository, @Nullable File file) {
+        checkNotNull(repository);
+        this.repository = repository;
+        this.file = file;
+    }
+
+    /**
+     * Get the snapshots of a world, oldest first.
+     *
+     * <p>
+     * The snapshot directory is checked for new, changed and removed
+     * snapshots first.
+     * </p>
+     *
+     * @param worldName the world name
+     * @return an unmodifiable list of entries
+     * @throws MissingWorldException if the snapshot directory can't be listed
+     */
+    public synchronized List<Entry> getEntries(String worldName) throws MissingWorldException {
+        checkNotNull(worldName);
+
+        if (refresh(worldName)) {
+            worlds.clear();
+            save();
+        }
+
+        List<Entry> list = worlds.get(worldName);
+        if (list == null) {
+            list = new ArrayList<Entry>();
+            for (Entry entry : entries.values()) {
+                if (entry.belongsTo(worldName)) {
+                    list.add(entry);
+                }
+            }
+            Collections.sort(list, DATE_ORDER);
+            list = Collections.unmodifiableList(list);
+            worlds.put(worldName, list);
+        }
+
+        return list;
+    }
+
+    /**
+     * Get the oldest snapshot of a world taken at or after the given time.
+     *
+     * @param worldName the world name
+     * @param time the time, in milliseconds since the epoch
+     * @return an entry or null
+     * @throws MissingWorldException if the snapshot directory can't be listed
+     */
+    @Nullable
+    public synchronized Entry getEntryAfter(String worldName, long time) throws MissingWorldException {
+        List<Entry> list = getEntries(worldName);
+        int index = search(list, time, false);
+        return index < list.size() ? list.get(index) : null;
+    }
+
+    /**
+     * Get the newest snapshot of a world taken at or before the given time.
+     *
+     * @param worldName the world name
+     * @param time the time, in milliseconds since the epoch
+     * @return an entry or null
+     * @throws MissingWorldException if the snapshot directory can't be listed
+     */
+    @Nullable
+    public synchronized Entry getEntryBefore(String worldName, long time) throws MissingWorldException {
+        List<Entry> list = getEntries(worldName);
+        int index = search(list, time, true);
+        return index > 0 && list.get(index - 1).date != null ? list.get(index - 1) : null;
+    }
+
+    /**
+     * Find the first entry that was taken after the given time, or at or
+     * after it if {@code inclusive} is false. Entries without a date are
+     * sorted first, so they are always before the index that is returned.
+     */
+    private static int search(List<Entry> list, long time, boolean inclusive) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Long date = list.get(mid).date;
+            if (date == null || date < time || (inclusive && date == time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Bring the entries for the top level of the snapshot directory and
+     * for the world's own directory up to date.
+     *
+     * @return true if anything changed
+     */
+    private boolean refresh(String worldName) throws MissingWorldException {
+        load();
+
+        File dir = repository.getDirectory();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new MissingWorldException(worldName);
+        }
+
+        boolean changed = false;
+        Set<String> seen = new HashSet<String>();
+        for (File f : files) {
+            if (repository.isValidSnapshot(f)) {
+                seen.add(f.getName());
+                changed |= update(f.getName(), f, null);
+            } else if (f.isDirectory() && f.getName()
+                .equalsIgnoreCase(worldName)) {
+                    String[] names = f.list();
+                    if (names == null) {
+                        continue;
+                    }
+                    for (String name : names) {
+                        File child = new File(f, name);
+                        if (repository.isValidSnapshot(child)) {
+                            String key = f.getName() + "/" + name;
+                            seen.add(key);
+                            changed |= update(key, child, f.getName());
+                        }
+                    }
+                }
+        }
+
+        for (Iterator<Entry> it = entries.values()
+            .iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            boolean inScope = entry.parent == null || entry.parent.equalsIgnoreCase(worldName);
+            if (inScope && !seen.contains(entry.name)) {
+                it.remove();
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Scan the given snapshot again if it changed since it was last scanned.
+     *
+     * @return true if the entry changed
+     */
+    private boolean update(String name, File f, @Nullable String parent) {
+        long lastModified = getLastModified(f);
+        long length = f.isFile() ? f.length() : 0;
+
+        Entry entry = entries.get(name);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            return false;
+        }
+
+        entry = scan(name, f, parent);
+        if (entry == null) {
+            // Could not be read, so try again next time
+            return entries.remove(name) != null;
+        }
+        entry.lastModified = lastModified;
+        entry.length = length;
+        entries.put(name, entry);
+        return true;
+    }
+
+    /**
+     * Get the modification time of a snapshot. For directories, the region
+     * directory is included because region files are usually replaced in
+     * place.
+     */
+    private static long getLastModified(File f) {
+        long lastModified = f.lastModified();
+        if (f.isDirectory()) {
+            lastModified = Math.max(lastModified, new File(f, "region").lastModified());
+        }
+        return lastModified;
+    }
+
+    @Nullable
+    private Entry scan(String name, File f, @Nullable String parent) {
+        Entry entry = new Entry();
+        entry.name = name;
+        entry.parent = parent;
+
+        Snapshot snapshot = new Snapshot(repository, name);
+        repository.detectDate(snapshot);
+        Calendar date = snapshot.getDate();
+        entry.date = date != null ? date.getTimeInMillis() : null;
+
+        String lowerName = f.getName()
+            .toLowerCase();
+        try {
+            if (f.isDirectory()) {
+                entry.container = Container.DIRECTORY;
+                entry.worlds.add(f.getName());
+                String[] regions = new File(f, "region").list();
+                if (regions != null) {
+                    for (String region : regions) {
+                        if (REGION_FILE.matcher(region)
+                            .matches()) {
+                            entry.regions.add("region/" + region);
+                        }
+                    }
+                }
+            } else if (lowerName.endsWith(".zip")) {
+                entry.container = Container.ZIP;
+                ZipFile zip = new ZipFile(f);
+                try {
+                    for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                        entry.addArchiveEntry(
+                            e.nextElement()
+                                .getName());
+                    }
+                } finally {
+                    zip.close();
+                }
+            } else {
+                entry.container = Container.TAR;
+                try {
+                    de.schlichtherle.util.zip.ZipFile zip = new de.schlichtherle.util.zip.ZipFile(f);
+                    try {
+                        for (Enumeration<? extends de.schlichtherle.util.zip.ZipEntry> e = zip.entries(); e
+                            .hasMoreElements();) {
+                            entry.addArchiveEntry(
+                                e.nextElement()
+                                    .getName());
+                        }
+                    } finally {
+                        zip.close();
+                    }
+                } catch (NoClassDefFoundError e) {
+                    // No truezip, so tar files are not supported
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            log.info("Could not load snapshot: " + f.getPath());
+            return null;
+        }
+
+        entry.format = entry.regions.isEmpty() ? Format.LEGACY : Format.MCREGION;
+        return entry;
+    }
+
+    /**
+     * Load the catalog from its file, once.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+
+        if (file == null) {
+            return;
+        }
+
+        Closer closer = Closer.create();
+        try {
+            FileReader fr = closer.register(new FileReader(file));
+            BufferedReader br = closer.register(new BufferedReader(fr));
+            Index index = gson.fromJson(br, Index.class);
+            if (index != null && index.version == VERSION && index.entries != null) {
+                for (Entry entry : index.entries) {
+                    if (entry != null && entry.isComplete()) {
+                        entries.put(entry.name, entry);
+                    }
+                }
+            }
+        } catch (FileNotFoundException ignored) {} catch (JsonParseException e) {
+            log.log(Level.WARNING, "Failed to read the snapshot catalog at " + file.getPath() + "; rebuilding it", e);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to read the snapshot catalog at " + file.getPath(), e);
+        } finally {
+            try {
+                closer.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Save the catalog to its file, if it has one.
+     */
+    private void save() {
+        if (file == null) {
+            return;
+        }
+
+        Index index = new Index();
+        index.version = VERSION;
+        index.entries = new ArrayList<Entry>(entries.values());
+        Collections.sort(index.entries, DATE_ORDER);
+
+        File parentDir = file.getAbsoluteFile()
+            .getParentFile();
+        if (parentDir != null && !parentDir.isDirectory()) {
+            parentDir.mkdirs();
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        Closer closer = Closer.create();
+        try {
+            FileWriter fw = closer.register(new FileWriter(tempFile));
+            BufferedWriter bw = closer.register(new BufferedWriter(fw));
+            gson.toJson(index, bw);
+        } catch (JsonIOException e) {
+            log.log(Level.WARNING, "Failed to write the snapshot catalog to " + tempFile.getPath(), e);
+            return;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to write the snapshot catalog to " + tempFile.getPath(), e);
+            return;
+        } finally {
+            try {
+                closer.close();
+            } catch (IOException ignored) {}
+        }
+
+        if (file.exists() && !file.delete()) {
+            log.log(Level.WARNING, "Failed to delete " + file.getPath() + " so the .tmp file can replace it");
+        }
+        if (!tempFile.renameTo(file)) {
+            log.log(Level.WARNING, "Failed to rename temporary snapshot catalog to " + file.getPath());
+        }
+    }
+
+    /**
+     * The contents of the catalog file.
+     */
+    private static class Index {
+
+        private int version;
+        private List<Entry> entries;
+    }
+
+    /**
+     * What is known about a single snapshot.
+     */
+    public static class Entry {
+
+        private String name;
+        @Nullable
+        private String parent;
+        private long lastModified;
+        private long length;
+        @Nullable
+        private Long date;
+        private Container container;
+        private Format format;
+        private Set<String> worlds = new LinkedHashSet<String>();
+        private List<String> regions = new ArrayList<String>();
+
+        private Entry() {}
+
+        private void addArchiveEntry(String entryName) {
+            String path = entryName.endsWith("/") ? entryName.substring(0, entryName.length() - 1) : entryName;
+            if (path.endsWith("/level.dat")) {
+                worlds.add(path.substring(0, path.length() - "/level.dat".length()));
+            } else if (!path.isEmpty() && path.indexOf('/') < 0) {
+                worlds.add(path);
+            }
+            int slash = path.lastIndexOf('/');
+            if (REGION_FILE.matcher(path.substring(slash + 1))
+                .matches()) {
+                regions.add(path);
+            }
+        }
+
+        private boolean isComplete() {
+            return name != null && container != null && format != null && worlds != null && regions != null;
+        }
+
+        private boolean belongsTo(String worldName) {
+            if (parent != null) {
+                return parent.equalsIgnoreCase(worldName);
+            } else if (container == Container.DIRECTORY) {
+                return name.equalsIgnoreCase(worldName);
+            } else {
+                return worlds.contains(worldName);
+            }
+        }
+
+        /**
+         * Get the name of the snapshot, relative to the snapshot directory.
+         *
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the date of the snapshot.
+         *
+         * @return the date, in milliseconds since the epoch, or null if no date could be detected
+         */
+        @Nullable
+        public Long getDate() {
+            return date;
+        }
+
+        /**
+         * Get the container the snapshot is stored in.
+         *
+         * @return the container
+         */
+        public Container getContainer() {
+            return container;
+        }
+
+        /**
+         * Get the format of the chunks in the snapshot.
+         *
+         * @return the format
+         */
+        public Format getFormat() {
+            return format;
+        }
+
+        /**
+         * Get the names of the worlds in the snapshot.
+         *
+         * @return an unmodifiable set of world names
+         */
+        public Set<String> getWorlds() {
+            return Collections.unmodifiableSet(worlds);
+        }
+
+        /**
+         * Get the paths of the region files in the snapshot.
+         *
+         * @return an unmodifiable list of paths
+         */
+        public List<String> getRegions() {
+            return Collections.unmodifiableList(regions);
+        }
+    }
+
+}
@@ -19,10 +19,10 @@
 package com.sk89q.worldedit.world.snapshot;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.GregorianCalendar;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -36,14 +36,27 @@ public class SnapshotRepository {
 
     protected File dir;
     protected List<SnapshotDateParser> dateParsers = new ArrayList<SnapshotDateParser>();
+    protected SnapshotCatalog catalog;
 
     /**
-     * Create a new instance of a repository.
+     * Create a new instance of a repository that keeps its catalog of
+     * snapshots in memory only.
      *
      * @param dir the directory
      */
     public SnapshotRepository(File dir) {
+        this(dir, null);
+    }
+
+    /**
+     * Create a new instance of a repository.
+     *
+     * @param dir         the directory
+     * @param catalogFile the file to save the catalog of snapshots to, or null to keep it in memory only
+     */
+    public SnapshotRepository(File dir, @Nullable File catalogFile) {
         this.dir = dir;
+        this.catalog = new SnapshotCatalog(this, catalogFile);
 
         // If folder doesn't exist, make it
         dir.mkdirs();
@@ -69,42 +82,15 @@ public class SnapshotRepository {
      * @return a list of snapshots
      */
     public List<Snapshot> getSnapshots(boolean newestFirst, String worldName) throws MissingWorldException {
-        FilenameFilter filter = new FilenameFilter() {
+        List<SnapshotCatalog.Entry> entries = catalog.getEntries(worldName);
+        List<Snapshot> list = new ArrayList<Snapshot>(entries.size());
 
-            @Override
-            public boolean accept(File dir, String name) {
-                File f = new File(dir, name);
-                return isValidSnapshot(f);
-            }
-        };
-
-        File[] snapshotFiles = dir.listFiles();
-        if (snapshotFiles == null) {
-            throw new MissingWorldException(worldName);
-        }
-        List<Snapshot> list = new ArrayList<Snapshot>(snapshotFiles.length);
-
-        for (File file : snapshotFiles) {
-            if (isValidSnapshot(file)) {
-                Snapshot snapshot = new Snapshot(this, file.getName());
-                if (snapshot.containsWorld(worldName)) {
-                    detectDate(snapshot);
-                    list.add(snapshot);
-                }
-            } else if (file.isDirectory() && file.getName()
-                .equalsIgnoreCase(worldName)) {
-                    for (String name : file.list(filter)) {
-                        Snapshot snapshot = new Snapshot(this, file.getName() + "/" + name);
-                        detectDate(snapshot);
-                        list.add(snapshot);
-                    }
-                }
+        for (SnapshotCatalog.Entry entry : entries) {
+            list.add(createSnapshot(entry));
         }
 
         if (newestFirst) {
-            Collections.sort(list, Collections.reverseOrder());
-        } else {
-            Collections.sort(list);
+            Collections.reverse(list);
         }
 
         return list;
@@ -118,19 +104,8 @@ public class SnapshotRepository {
      */
     @Nullable
     public Snapshot getSnapshotAfter(Calendar date, String world) throws MissingWorldException {
-        List<Snapshot> snapshots = getSnapshots(true, world);
-        Snapshot last = null;
-
-        for (Snapshot snapshot : snapshots) {
-            if (snapshot.getDate() != null && snapshot.getDate()
-                .before(date)) {
-                return last;
-            }
-
-            last = snapshot;
-        }
-
-        return last;
+        SnapshotCatalog.Entry entry = catalog.getEntryAfter(world, date.getTimeInMillis());
+        return entry != null ? createSnapshot(entry) : null;
     }
 
     /**
@@ -141,19 +116,24 @@ public class SnapshotRepository {
      */
     @Nullable
     public Snapshot getSnapshotBefore(Calendar date, String world) throws MissingWorldException {
-        List<Snapshot> snapshots = getSnapshots(false, world);
-        Snapshot last = null;
-
-        for (Snapshot snapshot : snapshots) {
-            if (snapshot.getDate()
-                .after(date)) {
-                return last;
-            }
+        SnapshotCatalog.Entry entry = catalog.getEntryBefore(world, date.getTimeInMillis());
+        return entry != null ? createSnapshot(entry) : null;
+    }
 
-            last = snapshot;
+    /**
+     * Create a snapshot from its catalog entry.
+     *
+     * @param entry the entry
+     * @return a snapshot
+     */
+    private Snapshot createSnapshot(SnapshotCatalog.Entry entry) {
+        Snapshot snapshot = new Snapshot(this, entry.getName());
+        if (entry.getDate() != null) {
+            Calendar date = new GregorianCalendar();
+            date.setTimeInMillis(entry.getDate());
+            snapshot.setDate(date);
         }
-
-        return last;
+        return snapshot;
     }
 
     /**
@@ -181,13 +161,13 @@ public class SnapshotRepository {
      */
     @Nullable
     public Snapshot getDefaultSnapshot(String world) throws MissingWorldException {
-        List<Snapshot> snapshots = getSnapshots(true, world);
+        List<SnapshotCatalog.Entry> entries = catalog.getEntries(world);
 
-        if (snapshots.isEmpty()) {
+        if (entries.isEmpty()) {
             return null;
         }
 
-        return snapshots.get(0);
+        return createSnapshot(entries.get(entries.size() - 1));
     }
 
     /**
@@ -241,6 +221,15 @@ public class SnapshotRepository {
         return new Snapshot(this, name);
     }
 
+    /**
+     * Get the catalog of snapshots in this repository.
+     *
+     * @return the catalog
+     */
+    public SnapshotCatalog getCatalog() {
+        return catalog;
+    }
+
     /**
      * Get the snapshot directory.
      *
@@ -17,40 +17,98 @@
 package com.sk89q.worldedit.world.snapshot;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.annotation.Nullable;
+
+import com.google.common.base.Throwables;
+import com.sk89q.jnbt.NBTUtils;
 import com.sk89q.worldedit.BlockVector2D;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.ProgressiveOperation;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
 import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.chunk.AnvilChunk;
 import com.sk89q.worldedit.world.chunk.Chunk;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 import com.sk89q.worldedit.world.storage.MissingChunkException;
-import com.sk89q.worldedit.world.storage.MissingWorldException;
 
 /**
  * A snapshot restore operation.
+ *
+ * <p>
+ * Chunks are read and decoded by a pool of worker threads, a few chunks
+ * ahead of the chunk whose blocks are being restored, so that the thread
+ * that completes the operation only has to copy decoded blocks into the
+ * edit session. As an operation, the restore never waits for a chunk to
+ * be decoded, and it stops after each chunk if the run context asks it to.
+ * </p>
  */
-public class SnapshotRestore {
+public class SnapshotRestore implements ProgressiveOperation {
+
+    private static final int DECODE_THREADS = Math.max(
+        1,
+        Math.min(
+            4,
+            Runtime.getRuntime()
+                .availableProcessors() - 1));
+    private static final int PREFETCH = DECODE_THREADS * 4;
+    private static final ExecutorService decoder = EvenMoreExecutors
+        .newBoundedCachedThreadPool(DECODE_THREADS, DECODE_THREADS, 64);
 
-    private final Map<BlockVector2D, ArrayList<Vector>> neededChunks = new LinkedHashMap<BlockVector2D, ArrayList<Vector>>();
+    private final List<BlockVector2D> neededChunks = new ArrayList<BlockVector2D>();
     private final ChunkStore chunkStore;
     private final EditSession editSession;
-    private ArrayList<Vector2D> missingChunks;
-    private ArrayList<Vector2D> errorChunks;
+    private final Region region;
+    private final boolean cuboid;
+    private final int minY;
+    private final int maxY;
+    private final Iterator<BlockVector2D> chunks;
+    private final Deque<PendingChunk> pending = new ArrayDeque<PendingChunk>();
+    private final ArrayList<Vector2D> missingChunks = new ArrayList<Vector2D>();
+    private final ArrayList<Vector2D> errorChunks = new ArrayList<Vector2D>();
     private String lastErrorMessage;
+    private long total;
+    private long completed;
+    private int restored;
+    private int skipped;
+    private boolean differential;
+    private long differing;
+    private byte[] liveBlocks;
+    private byte[] liveAdd;
+    private byte[] liveData;
 
     /**
      * Construct the snapshot restore operation.
      *
+     * <p>
+     * Only the chunks that the bounding box of the region touches are
+     * listed here. The blocks of each chunk are worked out as runs of
+     * blocks along the Y axis when the chunk is decoded, and the mask of
+     * the edit session is tested as the blocks are restored.
+     * </p>
+     *
      * @param chunkStore  The {@link ChunkStore} to restore from
      * @param editSession The {@link EditSession} to restore to
      * @param region      The {@link Region} to restore to
@@ -58,113 +116,421 @@ public class SnapshotRestore {
     public SnapshotRestore(ChunkStore chunkStore, EditSession editSession, Region region) {
         this.chunkStore = chunkStore;
         this.editSession = editSession;
+        // The selection may change while the restore runs
+        this.region = region.clone();
+        this.cuboid = region instanceof CuboidRegion;
+
+        Vector min = region.getMinimumPoint();
+        Vector max = region.getMaximumPoint();
+        this.minY = Math.max(0, min.getBlockY());
+        this.maxY = Math.min(
+            Math.min(
+                editSession.getWorld()
+                    .getMaxY(),
+                255),
+            max.getBlockY());
+
+        findNeededChunks(min, max);
+        this.chunks = neededChunks.iterator();
+    }
+
+    /**
+     * Find the chunks in the axis-aligned bounding box of the region.
+     *
+     * @param min the minimum point of the region
+     * @param max the maximum point of the region
+     */
+    private void findNeededChunks(Vector min, Vector max) {
+        if (maxY < minY) {
+            return;
+        }
+
+        int maxChunkX = max.getBlockX() >> ChunkStore.CHUNK_SHIFTS;
+        int maxChunkZ = max.getBlockZ() >> ChunkStore.CHUNK_SHIFTS;
+        for (int x = min.getBlockX() >> ChunkStore.CHUNK_SHIFTS; x <= maxChunkX; ++x) {
+            for (int z = min.getBlockZ() >> ChunkStore.CHUNK_SHIFTS; z <= maxChunkZ; ++z) {
+                neededChunks.add(new BlockVector2D(x, z));
+            }
+        }
 
-        if (region instanceof CuboidRegion) {
-            findNeededCuboidChunks(region);
+        if (cuboid) {
+            total = (long) (max.getBlockX() - min.getBlockX() + 1) * (max.getBlockZ() - min.getBlockZ() + 1)
+                * (maxY - minY + 1);
         } else {
-            findNeededChunks(region);
+            total = region.getArea();
         }
     }
 
     /**
-     * Find needed chunks in the axis-aligned bounding box of the region.
+     * Work out the blocks of the region in a chunk.
      *
-     * @param region The {@link Region} to iterate
+     * @param region   the region, which is only used by this thread
+     * @param position the position of the chunk
+     * @return the plan, which has no spans if the chunk has no blocks
      */
-    private void findNeededCuboidChunks(Region region) {
+    private ChunkPlan plan(Region region, BlockVector2D position) {
         Vector min = region.getMinimumPoint();
         Vector max = region.getMaximumPoint();
+        int baseX = position.getBlockX() << ChunkStore.CHUNK_SHIFTS;
+        int baseZ = position.getBlockZ() << ChunkStore.CHUNK_SHIFTS;
+        int fromX = Math.max(min.getBlockX(), baseX);
+        int toX = Math.min(max.getBlockX(), baseX + 15);
+        int fromZ = Math.max(min.getBlockZ(), baseZ);
+        int toZ = Math.min(max.getBlockZ(), baseZ + 15);
 
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                    Vector pos = new Vector(x, y, z);
-                    checkAndAddBlock(pos);
+        ChunkPlan plan = new ChunkPlan();
+        for (int z = fromZ; z <= toZ; z++) {
+            for (int x = fromX; x <= toX; x++) {
+                if (cuboid) {
+                    plan.add(x, z, minY, maxY);
+                    continue;
+                }
+
+                int start = -1;
+                for (int y = minY; y <= maxY; y++) {
+                    if (region.contains(new Vector(x, y, z))) {
+                        if (start < 0) {
+                            start = y;
+                        }
+                    } else if (start >= 0) {
+                        plan.add(x, z, start, y - 1);
+                        start = -1;
+                    }
+                }
+                if (start >= 0) {
+                    plan.add(x, z, start, maxY);
                 }
             }
         }
+        return plan;
+    }
+
+    /**
+     * Get the number of chunks that are needed.
+     *
+     * <p>
+     * For regions that aren't cuboids, this is the number of chunks in
+     * the bounding box of the region, some of which may turn out to hold
+     * no blocks of the region.
+     * </p>
+     *
+     * @return a number of chunks
+     */
+    public int getChunksAffected() {
+        return neededChunks.size();
+    }
+
+    /**
+     * Set whether only the blocks that differ from the snapshot are
+     * written. If false, which is the default, every block is written.
+     *
+     * <p>
+     * Sections of the world that match the snapshot exactly are skipped
+     * without looking at their blocks.
+     * </p>
+     *
+     * @param differential true to only write differing blocks
+     */
+    public void setDifferential(boolean differential) {
+        this.differential = differential;
+    }
+
+    /**
+     * Get the number of blocks that differed from the snapshot, when only
+     * differing blocks are written.
+     *
+     * @return the number of blocks
+     */
+    public long getDifferingBlocks() {
+        return differing;
     }
 
     /**
-     * Find needed chunks in the region.
+     * Restores to world, waiting for every chunk to be decoded.
      *
-     * @param region The {@link Region} to iterate
+     * @throws MaxChangedBlocksException
      */
-    private void findNeededChunks(Region region) {
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (Vector pos : region) {
-            checkAndAddBlock(pos);
+    public void restore() throws MaxChangedBlocksException {
+        try {
+            prefetch();
+            while (!pending.isEmpty()) {
+                apply(pending.poll());
+                prefetch();
+            }
+        } finally {
+            cancel();
         }
     }
 
-    private void checkAndAddBlock(Vector pos) {
-        if (editSession.getMask() != null && !editSession.getMask()
-            .test(pos)) return;
+    @Override
+    public Operation resume(RunContext run) throws MaxChangedBlocksException {
+        try {
+            prefetch();
+            while (!pending.isEmpty()) {
+                // Never block the thread that completes operations
+                if (!pending.peek().future.isDone()) {
+                    return this;
+                }
 
-        BlockVector2D chunkPos = ChunkStore.toChunk(pos);
+                apply(pending.poll());
+                prefetch();
 
-        // Unidentified chunk
-        if (!neededChunks.containsKey(chunkPos)) {
-            neededChunks.put(chunkPos, new ArrayList<Vector>());
+                if (!run.shouldContinue() && !pending.isEmpty()) {
+                    return this;
+                }
+            }
+            return null;
+        } catch (MaxChangedBlocksException e) {
+            cancel();
+            throw e;
         }
+    }
 
-        neededChunks.get(chunkPos)
-            .add(pos);
+    /**
+     * Start decoding chunks until enough of them are pending.
+     */
+    private void prefetch() {
+        while (pending.size() < PREFETCH && chunks.hasNext()) {
+            BlockVector2D position = chunks.next();
+            pending.offer(new PendingChunk(position, decode(position)));
+        }
     }
 
     /**
-     * Get the number of chunks that are needed.
+     * Plan, read and decode a chunk on a worker thread.
      *
-     * @return a number of chunks
+     * @param position the position of the chunk
+     * @return the plan for the chunk, with the decoded chunk
      */
-    public int getChunksAffected() {
-        return neededChunks.size();
+    private Future<ChunkPlan> decode(final BlockVector2D position) {
+        final World world = editSession.getWorld();
+        // Regions may cache state while testing blocks, so each task gets its own copy
+        final Region region = cuboid ? this.region : this.region.clone();
+        Callable<ChunkPlan> task = new Callable<ChunkPlan>() {
+
+            @Override
+            public ChunkPlan call() {
+                ChunkPlan plan = plan(region, position);
+                if (plan.count > 0) {
+                    try {
+                        plan.chunk = chunkStore.getChunk(position, world);
+                    } catch (DataException e) {
+                        plan.failure = e;
+                    } catch (IOException e) {
+                        plan.failure = e;
+                    }
+                }
+                return plan;
+            }
+        };
+
+        try {
+            return decoder.submit(task);
+        } catch (RejectedExecutionException e) {
+            // Other restores are keeping the workers busy, so decode it here
+            FutureTask<ChunkPlan> future = new FutureTask<ChunkPlan>(task);
+            future.run();
+            return future;
+        }
     }
 
     /**
-     * Restores to world.
+     * Copy the blocks of a chunk to the edit session, waiting for the
+     * chunk to be decoded if it isn't yet.
      *
+     * @param pending the chunk
      * @throws MaxChangedBlocksException
      */
-    public void restore() throws MaxChangedBlocksException {
+    private void apply(PendingChunk pending) throws MaxChangedBlocksException {
+        ChunkPlan plan;
+        try {
+            plan = pending.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            fail(pending.position, "Interrupted while reading the snapshot");
+            return;
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
 
-        missingChunks = new ArrayList<Vector2D>();
-        errorChunks = new ArrayList<Vector2D>();
+        if (plan.count == 0) {
+            skipped++;
+            return;
+        }
 
-        // Now let's start restoring!
-        for (Map.Entry<BlockVector2D, ArrayList<Vector>> entry : neededChunks.entrySet()) {
-            BlockVector2D chunkPos = entry.getKey();
-            Chunk chunk;
+        if (plan.failure != null) {
+            if (plan.failure instanceof MissingChunkException) {
+                missingChunks.add(pending.position);
+            } else {
+                fail(pending.position, plan.failure.getMessage());
+            }
+            completed += plan.getBlocks();
+            return;
+        }
 
-            try {
-                chunk = chunkStore.getChunk(chunkPos, editSession.getWorld());
-                // Good, the chunk could be at least loaded
+        Mask mask = editSession.getMask();
+        if (differential) {
+            applyDifferences(pending.position, plan, mask);
+        } else {
+            int baseX = pending.position.getBlockX() << ChunkStore.CHUNK_SHIFTS;
+            int baseZ = pending.position.getBlockZ() << ChunkStore.CHUNK_SHIFTS;
+            for (int i = 0; i < plan.count; i++) {
+                int span = plan.spans[i];
+                int x = baseX + (span >>> 16 & 15);
+                int z = baseZ + (span >>> 20 & 15);
+                int to = span & 0xFF;
+                for (int y = span >>> 8 & 0xFF; y <= to; y++) {
+                    Vector pos = new Vector(x, y, z);
+                    completed++;
+                    if (mask != null && !mask.test(pos)) {
+                        continue;
+                    }
 
-                // Now just copy blocks!
-                for (Vector pos : entry.getValue()) {
                     try {
-                        BaseBlock block = chunk.getBlock(pos);
+                        BaseBlock block = plan.chunk.getBlock(pos);
                         editSession.setBlock(pos, block);
                     } catch (DataException e) {
                         // this is a workaround: just ignore for now
                     }
                 }
-            } catch (MissingChunkException me) {
-                missingChunks.add(chunkPos);
-            } catch (MissingWorldException me) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = me.getMessage();
-            } catch (DataException de) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = de.getMessage();
-            } catch (IOException ioe) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = ioe.getMessage();
             }
         }
+        restored++;
+    }
+
+    /**
+     * Copy only the blocks of a chunk that differ from the world, one
+     * section at a time.
+     *
+     * @param position the position of the chunk
+     * @param plan     the plan, with the decoded chunk
+     * @param mask     the mask of the edit session, or null
+     * @throws MaxChangedBlocksException
+     */
+    private void applyDifferences(BlockVector2D position, ChunkPlan plan, @Nullable Mask mask)
+        throws MaxChangedBlocksException {
+        int baseX = position.getBlockX() << ChunkStore.CHUNK_SHIFTS;
+        int baseZ = position.getBlockZ() << ChunkStore.CHUNK_SHIFTS;
+        AnvilChunk anvil = plan.chunk instanceof AnvilChunk ? (AnvilChunk) plan.chunk : null;
+
+        for (int section = minY >> 4; section <= maxY >> 4; section++) {
+            int fromY = Math.max(minY, section << 4);
+            int toY = Math.min(maxY, section << 4 | 15);
+
+            boolean live = false;
+            try {
+                live = anvil != null && copyLiveSection(position, section);
+                if (live && isSameSection(anvil, section)) {
+                    completed += plan.getBlocks(fromY, toY);
+                    continue;
+                }
+            } catch (DataException e) {
+                // Compare the blocks one at a time instead
+                live = false;
+            }
+
+            for (int i = 0; i < plan.count; i++) {
+                int span = plan.spans[i];
+                int x = baseX + (span >>> 16 & 15);
+                int z = baseZ + (span >>> 20 & 15);
+                int to = Math.min(toY, span & 0xFF);
+                for (int y = Math.max(fromY, span >>> 8 & 0xFF); y <= to; y++) {
+                    Vector pos = new Vector(x, y, z);
+                    completed++;
+                    if (mask != null && !mask.test(pos)) {
+                        continue;
+                    }
+
+                    try {
+                        if (live ? differsFromLive(anvil, pos) : differs(plan.chunk, pos)) {
+                            differing++;
+                            editSession.setBlock(pos, plan.chunk.getBlock(pos));
+                        }
+                    } catch (DataException e) {
+                        // this is a workaround: just ignore for now
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the arrays of a section of the world.
+     *
+     * @param position the position of the chunk
+     * @param section  the index of the section
+     * @return true if the world could copy the section
+     */
+    private boolean copyLiveSection(BlockVector2D position, int section) {
+        if (liveBlocks == null) {
+            liveBlocks = new byte[4096];
+            liveAdd = new byte[2048];
+            liveData = new byte[2048];
+        }
+        return editSession.getWorld()
+            .copyChunkSection(position.getBlockX(), section, position.getBlockZ(), liveBlocks, liveAdd, liveData);
+    }
+
+    /**
+     * Return whether a section of the snapshot matches the section of the
+     * world that was last copied.
+     *
+     * @param chunk   the snapshot chunk
+     * @param section the index of the section
+     * @return true if every block is the same
+     * @throws DataException on a data error
+     */
+    private boolean isSameSection(AnvilChunk chunk, int section) throws DataException {
+        // Tile entity data isn't part of the arrays
+        return !chunk.hasTileEntities(section) && Arrays.equals(chunk.getSectionBlocks(section), liveBlocks)
+            && Arrays.equals(chunk.getSectionAdd(section), liveAdd)
+            && Arrays.equals(chunk.getSectionData(section), liveData);
+    }
+
+    /**
+     * Return whether a block of the snapshot differs from the block in the
+     * section of the world that was last copied.
+     *
+     * @param chunk the snapshot chunk
+     * @param pos   the position of the block
+     * @return true if the block differs
+     * @throws DataException on a data error
+     */
+    private boolean differsFromLive(AnvilChunk chunk, Vector pos) throws DataException {
+        int section = pos.getBlockY() >> 4;
+        int index = (pos.getBlockY() & 15) << 8 | (pos.getBlockZ() & 15) << 4 | (pos.getBlockX() & 15);
+        if (chunk.getSectionBlocks(section)[index] != liveBlocks[index]
+            || getNibble(chunk.getSectionAdd(section), index) != getNibble(liveAdd, index)
+            || getNibble(chunk.getSectionData(section), index) != getNibble(liveData, index)) {
+            return true;
+        }
+        return chunk.hasTileEntity(pos) && differs(chunk, pos);
+    }
+
+    /**
+     * Return whether a block of the snapshot differs from the block in the
+     * edit session, including its tile entity data.
+     *
+     * @param chunk the snapshot chunk
+     * @param pos   the position of the block
+     * @return true if the block differs
+     * @throws DataException on a data error
+     */
+    private boolean differs(Chunk chunk, Vector pos) throws DataException {
+        BaseBlock snapshot = chunk.getBlock(pos);
+        BaseBlock current = editSession.getBlock(pos);
+        return snapshot.getId() != current.getId() || snapshot.getData() != current.getData()
+            || !NBTUtils.equals(snapshot.getNbtData(), current.getNbtData());
+    }
+
+    private static int getNibble(byte[] array, int index) {
+        return (index & 1) == 0 ? array[index >> 1] & 0x0F : array[index >> 1] >> 4 & 0x0F;
+    }
+
+    private void fail(BlockVector2D position, String message) {
+        errorChunks.add(position);
+        lastErrorMessage = message;
     }
 
     /**
@@ -194,7 +560,7 @@ public class SnapshotRestore {
      * @return true if there was total failure
      */
     public boolean hadTotalFailure() {
-        return missingChunks.size() + errorChunks.size() == getChunksAffected();
+        return missingChunks.size() + errorChunks.size() == getChunksAffected() - skipped;
     }
 
     /**
@@ -206,4 +572,90 @@ public class SnapshotRestore {
         return lastErrorMessage;
     }
 
+    @Override
+    public long getCompleted() {
+        return completed;
+    }
+
+    @Override
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public void cancel() {
+        for (PendingChunk chunk : pending) {
+            chunk.future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    @Override
+    public void addStatusMessages(List<String> messages) {
+        messages.add(restored + " chunks restored");
+        if (differential) {
+            messages.add(differing + " blocks differed");
+        }
+        if (!missingChunks.isEmpty()) {
+            messages.add(missingChunks.size() + " missing chunks");
+        }
+        if (!errorChunks.isEmpty()) {
+            messages.add(errorChunks.size() + " chunks with errors (last error: " + lastErrorMessage + ")");
+        }
+    }
+
+    /**
+     * A chunk that is being planned and decoded.
+     */
+    private static final class PendingChunk {
+
+        private final BlockVector2D position;
+        private final Future<ChunkPlan> future;
+
+        private PendingChunk(BlockVector2D position, Future<ChunkPlan> future) {
+            this.position = position;
+            this.future = future;
+        }
+    }
+
+    /**
+     * The blocks of the region in one chunk, as runs of blocks along the Y
+     * axis, with the decoded chunk to restore them from.
+     *
+     * <p>
+     * Each span is packed as {@code z << 20 | x << 16 | fromY << 8 | toY},
+     * with coordinates relative to the chunk.
+     * </p>
+     */
+    private static final class ChunkPlan {
+
+        private int[] spans = new int[256];
+        private int count;
+        private Chunk chunk;
+        private Exception failure;
+
+        private void add(int x, int z, int fromY, int toY) {
+            if (count == spans.length) {
+                spans = Arrays.copyOf(spans, count * 2);
+            }
+            spans[count++] = (z & 15) << 20 | (x & 15) << 16 | fromY << 8 | toY;
+        }
+
+        private long getBlocks() {
+            return getBlocks(0, 255);
+        }
+
+        private long getBlocks(int fromY, int toY) {
+            long blocks = 0;
+            for (int i = 0; i < count; i++) {
+                int from = Math.max(fromY, spans[i] >>> 8 & 0xFF);
+                int to = Math.min(toY, spans[i] & 0xFF);
+                if (to >= from) {
+                    blocks += to - from + 1;
+                }
+            }
+            return blocks;
+        }
+    }
+
 }
@@ -21,13 +21,19 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import com.sk89q.worldedit.world.DataException;
 
 public class FileMcRegionChunkStore extends McRegionChunkStore {
 
+    private static final Pattern REGION_FILE = Pattern.compile(".*\\.mc[ra]$"); // both extensions work the same
+
     private File path;
+    private Map<String, File> regionFiles;
 
     /**
      * Create an instance. The passed path is the folder to read the
@@ -39,28 +45,59 @@ public class FileMcRegionChunkStore extends McRegionChunkStore {
         this.path = path;
     }
 
-    @Override
-    protected InputStream getInputStream(String name, String world) throws IOException, DataException {
-        Pattern ext = Pattern.compile(".*\\.mc[ra]$"); // allow either file extension, both work the same
-        File file = null;
-        File[] files = new File(path, "region").listFiles();
+    /**
+     * Get the region file with the given name, listing the region folder
+     * the first time it is needed.
+     *
+     * @param name the name of the region file, ending in .mca
+     * @return the file, or null if there is none
+     * @throws IOException if the region folder can't be listed
+     */
+    private synchronized File getRegionFile(String name) throws IOException {
+        if (regionFiles == null) {
+            File[] files = new File(path, "region").listFiles();
+            if (files == null) {
+                throw new FileNotFoundException();
+            }
 
-        if (files == null) {
-            throw new FileNotFoundException();
+            Map<String, File> index = new HashMap<String, File>();
+            for (File f : files) {
+                if (REGION_FILE.matcher(f.getName())
+                    .matches()) {
+                    String key = f.getName()
+                        .replaceFirst("mcr$", "mca")
+                        .toLowerCase(Locale.ROOT);
+                    // Prefer .mca files over old .mcr files with the same name
+                    if (!index.containsKey(key) || f.getName()
+                        .endsWith("mca")) {
+                        index.put(key, f);
+                    }
+                }
+            }
+            regionFiles = index;
         }
 
-        for (File f : files) {
-            String tempName = f.getName()
-                .replaceFirst("mcr$", "mca"); // matcher only does one at a time
-            if (ext.matcher(f.getName())
-                .matches() && name.equalsIgnoreCase(tempName)) {
-                // get full original path now
-                file = new File(path + File.separator + "region" + File.separator + f.getName());
-                break;
-            }
+        return regionFiles.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    protected McRegionReader openReader(String name, String worldName) throws DataException, IOException {
+        File file;
+        try {
+            file = getRegionFile(name);
+        } catch (FileNotFoundException e) {
+            throw new MissingChunkException();
         }
+        if (file == null) {
+            throw new MissingChunkException();
+        }
+        return new MappedMcRegionReader(file);
+    }
 
+    @Override
+    protected InputStream getInputStream(String name, String world) throws IOException, DataException {
         try {
+            File file = getRegionFile(name);
             if (file == null) throw new FileNotFoundException();
             return new FileInputStream(file);
         } catch (FileNotFoundException e) {
@@ -0,0 +1,125 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.world.DataException;
+
+/**
+ * Reads chunks from a region file that is mapped into memory.
+ *
+ * <p>
+ * Unlike {@link McRegionReader}, chunks can be read in any order, and
+ * from several threads at once, so one reader can be kept open and
+ * reused for every chunk of the region.
+ * </p>
+ */
+public class MappedMcRegionReader extends McRegionReader {
+
+    private final String name;
+    private volatile ByteBuffer buffer;
+
+    /**
+     * Map a region file and read its header.
+     *
+     * @param file the region file
+     * @throws DataException if the file has no header
+     * @throws IOException if the file can't be mapped
+     */
+    public MappedMcRegionReader(File file) throws DataException, IOException {
+        checkNotNull(file);
+        this.name = file.getName();
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        ByteBuffer buffer;
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after the file is closed
+            raf.close();
+        }
+
+        if (buffer.capacity() < SECTOR_BYTES) {
+            throw new DataException("MCRegion file " + name + " is missing its header");
+        }
+
+        offsets = new int[SECTOR_INTS];
+        buffer.asIntBuffer()
+            .get(offsets);
+        this.buffer = buffer;
+    }
+
+    @Override
+    public InputStream getChunkInputStream(Vector2D position) throws IOException, DataException {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IOException("MCRegion file " + name + " has been closed");
+        }
+
+        int x = position.getBlockX() & 31;
+        int z = position.getBlockZ() & 31;
+        int offset = getOffset(x, z);
+
+        // The chunk hasn't been generated
+        if (offset == 0) {
+            throw new DataException("The chunk at " + x + "," + z + " is not generated");
+        }
+
+        long start = (long) (offset >>> 8) * SECTOR_BYTES;
+        int numSectors = offset & 0xFF;
+
+        if (start + CHUNK_HEADER_SIZE > buffer.capacity()) {
+            throw new DataException("MCRegion file " + name + " does not contain " + x + "," + z);
+        }
+
+        int length = buffer.getInt((int) start);
+        if (length < 1 || length > SECTOR_BYTES * numSectors) {
+            throw new DataException("MCRegion chunk at " + x + "," + z + " has an invalid length of " + length);
+        }
+        if (start + 4 + length > buffer.capacity()) {
+            throw new DataException("MCRegion file " + name + " does not contain " + x + "," + z + " in full");
+        }
+
+        byte version = buffer.get((int) start + 4);
+        byte[] data = new byte[length - 1];
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) start + CHUNK_HEADER_SIZE);
+        view.get(data);
+
+        return createChunkInputStream(x, z, version, data);
+    }
+
+    /**
+     * Release the mapping. The memory is unmapped once the buffer is
+     * garbage collected.
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+}
@@ -21,16 +21,19 @@ import java.io.InputStream;
 import java.util.Map;
 
 import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTStreamReader;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.Vector2D;
 import com.sk89q.worldedit.world.DataException;
 import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.chunk.AnvilChunk;
+import com.sk89q.worldedit.world.chunk.Chunk;
 
 public abstract class McRegionChunkStore extends ChunkStore {
 
-    protected String curFilename = null;
-    protected McRegionReader cachedReader = null;
+    private final RegionFileCache readers = new RegionFileCache(RegionFileCache.DEFAULT_CAPACITY);
 
     /**
      * Get the filename of a region file.
@@ -45,28 +48,77 @@ public abstract class McRegionChunkStore extends ChunkStore {
         return "r." + (x >> 5) + "." + (z >> 5) + ".mca";
     }
 
-    protected McRegionReader getReader(Vector2D pos, String worldname) throws DataException, IOException {
-        String filename = getFilename(pos);
-        if (curFilename != null) {
-            if (curFilename.equals(filename)) {
-                return cachedReader;
-            } else {
-                try {
-                    cachedReader.close();
-                } catch (IOException ignored) {}
+    /**
+     * Get a reader for the region file that contains a chunk. The reader
+     * must be given back with {@link #releaseReader(McRegionReader)}.
+     *
+     * <p>
+     * Readers that can read chunks in any order are shared between threads
+     * and kept open while they are in the cache. Other readers are opened
+     * again for every chunk.
+     * </p>
+     *
+     * @param pos       chunk position
+     * @param worldname the world name
+     * @return a reader
+     * @throws DataException
+     * @throws IOException
+     */
+    protected McRegionReader getReader(Vector2D pos, final String worldname) throws DataException, IOException {
+        final String filename = getFilename(pos);
+        return readers.acquire(worldname + "/" + filename, new RegionFileCache.Opener() {
+
+            @Override
+            public McRegionReader open() throws DataException, IOException {
+                return openReader(filename, worldname);
             }
+        });
+    }
+
+    /**
+     * Give back a reader returned by {@link #getReader(Vector2D, String)}.
+     *
+     * @param reader the reader
+     */
+    protected void releaseReader(McRegionReader reader) {
+        readers.release(reader);
+    }
+
+    /**
+     * Open a reader for a region file.
+     *
+     * @param name      the name of the region file
+     * @param worldName the world name
+     * @return a reader
+     * @throws DataException
+     * @throws IOException
+     */
+    protected McRegionReader openReader(String name, String worldName) throws DataException, IOException {
+        return new McRegionReader(getInputStream(name, worldName));
+    }
+
+    /**
+     * Get the uncompressed data input stream for a chunk, which holds a
+     * copy of the chunk's data, so the reader can be released right away.
+     *
+     * @param position chunk position
+     * @param world    the world
+     * @return an input stream
+     * @throws DataException
+     * @throws IOException
+     */
+    private InputStream getChunkInputStream(Vector2D position, World world) throws DataException, IOException {
+        McRegionReader reader = getReader(position, world.getName());
+        try {
+            return reader.getChunkInputStream(position);
+        } finally {
+            releaseReader(reader);
         }
-        InputStream stream = getInputStream(filename, worldname);
-        cachedReader = new McRegionReader(stream);
-        // curFilename = filename;
-        return cachedReader;
     }
 
     @Override
     public CompoundTag getChunkTag(Vector2D position, World world) throws DataException, IOException {
-        McRegionReader reader = getReader(position, world.getName());
-
-        InputStream stream = reader.getChunkInputStream(position);
+        InputStream stream = getChunkInputStream(position, world);
         NBTInputStream nbt = new NBTInputStream(stream);
         Tag tag;
 
@@ -108,6 +160,37 @@ public abstract class McRegionChunkStore extends ChunkStore {
         }
     }
 
+    @Override
+    public Chunk getChunk(Vector2D position, World world) throws DataException, IOException {
+        InputStream stream = getChunkInputStream(position, world);
+        NBTInputStream nbt = new NBTInputStream(stream);
+
+        try {
+            // Read the chunk while it is streamed, skipping everything but the Level tag
+            NBTStreamReader nbtReader = nbt.getStreamReader();
+            int type = nbtReader.next();
+            if (type != NBTConstants.TYPE_COMPOUND) {
+                throw new ChunkStoreException("CompoundTag expected for chunk; got tag type " + type);
+            }
+
+            nbtReader.beginCompound();
+            while (nbtReader.next() != NBTConstants.TYPE_END) {
+                if (nbtReader.getName()
+                    .equals("Level")) {
+                    if (nbtReader.getType() != NBTConstants.TYPE_COMPOUND) {
+                        throw new ChunkStoreException(
+                            "CompoundTag expected for 'Level'; got tag type " + nbtReader.getType());
+                    }
+                    return AnvilChunk.read(world, nbtReader);
+                }
+            }
+
+            throw new ChunkStoreException("Missing root 'Level' tag");
+        } finally {
+            nbt.close();
+        }
+    }
+
     /**
      * Get the input stream for a chunk file.
      *
@@ -120,9 +203,7 @@ public abstract class McRegionChunkStore extends ChunkStore {
 
     @Override
     public void close() throws IOException {
-        if (cachedReader != null) {
-            cachedReader.close();
-        }
+        readers.close();
     }
 
 }
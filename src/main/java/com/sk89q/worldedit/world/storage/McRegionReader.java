@@ -46,6 +46,7 @@ package com.sk89q.worldedit.world.storage;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
@@ -72,6 +73,13 @@ public class McRegionReader {
 
     protected int[] offsets;
 
+    /**
+     * Construct a reader that reads the region file some other way.
+     * Subclasses have to read the header into {@link #offsets} and
+     * override {@link #getChunkInputStream(Vector2D)} and {@link #close()}.
+     */
+    protected McRegionReader() {}
+
     /**
      * Construct the reader.
      *
@@ -135,18 +143,31 @@ public class McRegionReader {
         }
 
         byte version = dataStream.readByte();
+        byte[] data = new byte[length - 1];
+        try {
+            dataStream.readFully(data);
+        } catch (EOFException e) {
+            throw new DataException("MCRegion file does not contain " + x + "," + z + " in full");
+        }
+        return createChunkInputStream(x, z, version, data);
+    }
 
+    /**
+     * Get the uncompressed data input stream for the data of a chunk.
+     *
+     * @param x       the X coordinate of the chunk in the region
+     * @param z       the Z coordinate of the chunk in the region
+     * @param version the compression of the data
+     * @param data    the compressed data
+     * @return an input stream
+     * @throws IOException
+     * @throws DataException if the compression is not supported
+     */
+    protected InputStream createChunkInputStream(int x, int z, byte version, byte[] data)
+        throws IOException, DataException {
         if (version == VERSION_GZIP) {
-            byte[] data = new byte[length - 1];
-            if (dataStream.read(data) < length - 1) {
-                throw new DataException("MCRegion file does not contain " + x + "," + z + " in full");
-            }
             return new GZIPInputStream(new ByteArrayInputStream(data));
         } else if (version == VERSION_DEFLATE) {
-            byte[] data = new byte[length - 1];
-            if (dataStream.read(data) < length - 1) {
-                throw new DataException("MCRegion file does not contain " + x + "," + z + " in full");
-            }
             return new InflaterInputStream(new ByteArrayInputStream(data));
         } else {
             throw new DataException("MCRegion chunk at " + x + "," + z + " has an unsupported version of " + version);
@@ -160,7 +181,7 @@ public class McRegionReader {
      * @param z the Z coordinate
      * @return the offset
      */
-    private int getOffset(int x, int z) {
+    protected int getOffset(int x, int z) {
         return offsets[x + z * 32];
     }
 
@@ -0,0 +1,206 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.sk89q.worldedit.world.DataException;
+
+/**
+ * Keeps a bounded number of region file readers open, closing the least
+ * recently used reader when a new one is added to a full cache.
+ *
+ * <p>
+ * Readers are counted while they are in use, so that a reader that has
+ * been pushed out of the cache is only closed once the last thread that
+ * reads from it releases it.
+ * </p>
+ */
+class RegionFileCache implements Closeable {
+
+    /**
+     * The number of region files kept open by a chunk store.
+     */
+    static final int DEFAULT_CAPACITY = 16;
+
+    private final int capacity;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private final Map<McRegionReader, Entry> held = new IdentityHashMap<McRegionReader, Entry>();
+
+    /**
+     * Create a new cache.
+     *
+     * @param capacity the maximum number of open readers
+     */
+    RegionFileCache(int capacity) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Get the reader for a region file, opening it if it isn't open, and
+     * hold it until {@link #release(McRegionReader)} is called.
+     *
+     * <p>
+     * Readers that can read chunks in any order are kept open for other
+     * callers. Other readers are only used by the caller, and are closed
+     * when they are released.
+     * </p>
+     *
+     * @param name   the name of the region file
+     * @param opener opens the reader if it isn't open
+     * @return the reader
+     * @throws DataException thrown if the reader can't be opened
+     * @throws IOException   thrown if the reader can't be opened
+     */
+    synchronized McRegionReader acquire(String name, Opener opener) throws DataException, IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry(opener.open());
+            if (entry.reader instanceof MappedMcRegionReader) {
+                entries.put(name, entry);
+                evict();
+            } else {
+                entry.evicted = true;
+            }
+        }
+
+        if (entry.holders++ == 0) {
+            held.put(entry.reader, entry);
+        }
+        return entry.reader;
+    }
+
+    /**
+     * Stop holding a reader that was returned by
+     * {@link #acquire(String, Opener)}, closing it if it is no longer kept
+     * open.
+     *
+     * @param reader the reader
+     */
+    void release(McRegionReader reader) {
+        synchronized (this) {
+            Entry entry = held.get(reader);
+            checkState(entry != null, "The reader is not held");
+            if (--entry.holders > 0) {
+                return;
+            }
+            held.remove(reader);
+            if (!entry.evicted) {
+                return;
+            }
+        }
+        closeQuietly(reader);
+    }
+
+    /**
+     * Remove the least recently used readers while the cache is over
+     * capacity, closing those that aren't held.
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values()
+            .iterator();
+        while (entries.size() > capacity && it.hasNext()) {
+            Entry entry = it.next();
+            it.remove();
+            entry.evicted = true;
+            if (entry.holders == 0) {
+                closeQuietly(entry.reader);
+            }
+        }
+    }
+
+    /**
+     * Get the number of readers that are kept open.
+     *
+     * @return the number of readers
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Close every open reader, including those that are still held.
+     */
+    @Override
+    public void close() throws IOException {
+        Set<McRegionReader> open = Collections.newSetFromMap(new IdentityHashMap<McRegionReader, Boolean>());
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                open.add(entry.reader);
+            }
+            open.addAll(held.keySet());
+            entries.clear();
+            held.clear();
+        }
+
+        IOException failure = null;
+        for (McRegionReader reader : open) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void closeQuietly(McRegionReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Opens the reader for a region file.
+     */
+    interface Opener {
+
+        /**
+         * Open the reader.
+         *
+         * @return the reader
+         * @throws DataException thrown if the reader can't be opened
+         * @throws IOException   thrown if the reader can't be opened
+         */
+        McRegionReader open() throws DataException, IOException;
+    }
+
+    private static class Entry {
+
+        private final McRegionReader reader;
+        private int holders;
+        private boolean evicted;
+
+        private Entry(McRegionReader reader) {
+            this.reader = reader;
+        }
+    }
+
+}
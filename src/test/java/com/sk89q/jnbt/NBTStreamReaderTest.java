@@ -0,0 +1,112 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.jnbt;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class NBTStreamReaderTest {
+
+    private static byte[] write(String name, Tag tag) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NBTOutputStream nbt = new NBTOutputStream(out);
+        nbt.writeNamedTag(name, tag);
+        nbt.close();
+        return out.toByteArray();
+    }
+
+    private static CompoundTag createChunk() {
+        Map<String, Tag> skipped = new HashMap<String, Tag>();
+        skipped.put("Light", new ByteArrayTag(new byte[2048]));
+        skipped.put("Heights", new IntArrayTag(new int[256]));
+        skipped.put(
+            "Entities",
+            new ListTag(CompoundTag.class, Arrays.asList(new CompoundTag(new HashMap<String, Tag>()))));
+
+        Map<String, Tag> level = new HashMap<String, Tag>();
+        level.put("Skipped", new CompoundTag(skipped));
+        level.put("Name", new StringTag("chunk"));
+        level.put("Blocks", new ByteArrayTag(new byte[] { 1, 2, 3 }));
+        level.put(
+            "Values",
+            new ListTag(IntTag.class, Arrays.asList(new IntTag(4), new IntTag(5), new IntTag(6))));
+        return new CompoundTag(level);
+    }
+
+    @Test
+    public void testReadTag() throws IOException {
+        CompoundTag chunk = createChunk();
+        NBTInputStream nbt = new NBTInputStream(new ByteArrayInputStream(write("Level", chunk)));
+        NamedTag tag = nbt.readNamedTag();
+        nbt.close();
+
+        assertEquals("Level", tag.getName());
+        assertEquals(
+            chunk.toString(),
+            tag.getTag()
+                .toString());
+    }
+
+    @Test
+    public void testSkipAndStream() throws IOException {
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(write("Level", createChunk())));
+        assertEquals(NBTConstants.TYPE_COMPOUND, reader.next());
+        assertEquals("Level", reader.getName());
+
+        byte[] blocks = null;
+        int sum = 0;
+        String name = null;
+        reader.beginCompound();
+        while (reader.next() != NBTConstants.TYPE_END) {
+            if (reader.getName()
+                .equals("Blocks")) {
+                blocks = reader.readByteArray();
+            } else if (reader.getName()
+                .equals("Values")) {
+                int length = reader.beginList();
+                for (int i = 0; i < length - 1; i++) {
+                    sum += reader.readInt();
+                }
+                reader.endList();
+            } else if (reader.getName()
+                .equals("Name")) {
+                name = reader.readString();
+            }
+        }
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, blocks);
+        assertEquals(9, sum);
+        assertEquals("chunk", name);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongType() throws IOException {
+        NBTStreamReader reader = new NBTStreamReader(new ByteArrayInputStream(write("Value", new IntTag(1))));
+        reader.next();
+        reader.readShort();
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.blocks;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.extent.Extent;
+
+public class LazyBlockTest {
+
+    @Test
+    public void testDataIsLoadedOnce() {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("Text1", new StringTag("hello"));
+        Vector position = new Vector(1, 2, 3);
+        Extent extent = mock(Extent.class);
+        when(extent.getBlock(position)).thenReturn(new BaseBlock(BlockID.SIGN_POST, 4, new CompoundTag(values)));
+
+        LazyBlock block = new LazyBlock(BlockID.SIGN_POST, 4, extent, position);
+        verify(extent, never()).getBlock(any(Vector.class));
+
+        assertEquals("hello", block.getNbtData().getString("Text1"));
+        assertEquals("hello", block.getNbtData().getString("Text1"));
+        verify(extent, times(1)).getBlock(position);
+    }
+
+}
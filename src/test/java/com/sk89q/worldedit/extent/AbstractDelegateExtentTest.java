@@ -0,0 +1,83 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.buffer.ForgetfulExtentBuffer;
+
+public class AbstractDelegateExtentTest {
+
+    private static class CountingExtent extends NullExtent {
+
+        private int blocks;
+        private int states;
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+            blocks++;
+            return true;
+        }
+
+        @Override
+        public boolean setBlockState(int x, int y, int z, int state) throws WorldEditException {
+            states++;
+            return true;
+        }
+    }
+
+    private static class PassingExtent extends AbstractDelegateExtent {
+
+        private PassingExtent(Extent extent) {
+            super(extent);
+        }
+    }
+
+    @Test
+    public void testStatesArePassedOn() throws WorldEditException {
+        CountingExtent target = new CountingExtent();
+        PassingExtent extent = new PassingExtent(new PassingExtent(target));
+
+        extent.setBlockState(1, 2, 3, PackedBlock.pack(BlockID.STONE, 0));
+
+        assertEquals(0, target.blocks);
+        assertEquals(1, target.states);
+    }
+
+    @Test
+    public void testForgetfulBufferKeepsStates() throws WorldEditException {
+        CountingExtent target = new CountingExtent();
+        ForgetfulExtentBuffer buffer = new ForgetfulExtentBuffer(target);
+
+        buffer.setBlockState(1, 2, 3, PackedBlock.pack(BlockID.STONE, 0));
+
+        assertEquals(0, target.blocks);
+        assertEquals(0, target.states);
+        assertEquals(
+            BlockID.STONE,
+            buffer.apply(new Vector(1, 2, 3))
+                .getId());
+    }
+
+}
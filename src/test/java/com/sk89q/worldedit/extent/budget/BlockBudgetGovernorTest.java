@@ -0,0 +1,90 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.budget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BlockBudgetGovernorTest {
+
+    @Test
+    public void testAllocatesByWeight() {
+        BlockBudgetGovernor governor = new BlockBudgetGovernor(900, 100, 50);
+        BlockBudget light = new BlockBudget();
+        BlockBudget heavy = new BlockBudget();
+        heavy.setWeight(2);
+
+        governor.allocate(Arrays.asList(light, heavy));
+        assertEquals(300, light.getAllowance());
+        assertEquals(600, heavy.getAllowance());
+    }
+
+    @Test
+    public void testChargeUsesAllowance() {
+        BlockBudget budget = new BlockBudget();
+        assertTrue(budget.hasRemaining());
+        budget.setAllowance(2);
+        budget.charge();
+        budget.charge();
+        assertFalse(budget.hasRemaining());
+        assertEquals(2, budget.getUsed());
+    }
+
+    @Test
+    public void testLimitFollowsTickTime() {
+        BlockBudgetGovernor governor = new BlockBudgetGovernor(1000, 100, 50);
+        governor.update(100);
+        assertEquals(500, governor.getLimit());
+        governor.update(1000);
+        assertEquals(100, governor.getLimit());
+        governor.update(20);
+        assertEquals(150, governor.getLimit());
+        for (int i = 0; i < 100; i++) {
+            governor.update(20);
+        }
+        assertEquals(1000, governor.getLimit());
+    }
+
+    @Test
+    public void testLaggingAverageCutsOncePerWindow() {
+        int window = 100;
+        BlockBudgetGovernor governor = new BlockBudgetGovernor(1000, 100, 50, window);
+        double[] times = new double[window];
+        Arrays.fill(times, 40);
+        double total = 40 * window;
+
+        // A stretch of slow ticks keeps the average above the target for
+        // about a window after it is over
+        int lowest = governor.getLimit();
+        for (int tick = 0; tick < 300; tick++) {
+            double time = tick < 20 ? 150 : 40;
+            total += time - times[tick % window];
+            times[tick % window] = time;
+            governor.update(total / window);
+            lowest = Math.min(lowest, governor.getLimit());
+        }
+
+        assertTrue(lowest > 900);
+        assertEquals(1000, governor.getLimit());
+    }
+
+}
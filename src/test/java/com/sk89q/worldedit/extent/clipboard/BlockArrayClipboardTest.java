@@ -0,0 +1,50 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.regions.CuboidRegion;
+
+public class BlockArrayClipboardTest {
+
+    @Test
+    public void testPackedStates() throws WorldEditException {
+        CuboidRegion region = new CuboidRegion(new Vector(-2, 0, 3), new Vector(2, 4, 7));
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        int wool = PackedBlock.pack(BlockID.CLOTH, 14);
+
+        clipboard.setBlockState(-2, 4, 5, wool);
+        clipboard.setBlockState(2, 4, 5, wool);
+
+        assertEquals(wool, clipboard.getBlockState(-2, 4, 5));
+        assertEquals(new BaseBlock(BlockID.CLOTH, 14), clipboard.getBlock(new Vector(2, 4, 5)));
+        assertEquals(0, clipboard.getBlockState(0, 0, 3));
+        assertNull(clipboard.getNbtBlock(-2, 4, 5));
+        assertFalse(clipboard.setBlockState(3, 4, 5, wool));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.regions.CuboidRegion;
+
+public class MappedClipboardTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBlocks() throws IOException, WorldEditException {
+        CuboidRegion region = new CuboidRegion(new Vector(-10, 0, -10), new Vector(10, 20, 10));
+        MappedClipboard clipboard = new MappedClipboard(region, folder.getRoot());
+        int stone = PackedBlock.pack(BlockID.STONE, 0);
+        BaseBlock chest = new BaseBlock(BlockID.CHEST, 2, new CompoundTag(new HashMap<String, Tag>()));
+
+        clipboard.setBlockState(10, 20, 10, stone);
+        clipboard.setBlock(new Vector(-10, 0, -10), chest);
+
+        assertEquals(stone, clipboard.getBlockState(10, 20, 10));
+        assertEquals(0, clipboard.getBlockState(0, 5, 0));
+        assertEquals(chest, clipboard.getNbtBlock(-10, 0, -10));
+        assertTrue(clipboard.getFile().isFile());
+
+        clipboard.close();
+        assertFalse(clipboard.getFile().exists());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws IOException {
+        CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(3, 3, 3));
+        MappedClipboard clipboard = new MappedClipboard(region, folder.getRoot());
+        clipboard.close();
+        clipboard.getBlockState(1, 1, 1);
+    }
+
+}
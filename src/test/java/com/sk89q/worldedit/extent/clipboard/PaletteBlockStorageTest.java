@@ -0,0 +1,80 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+public class PaletteBlockStorageTest {
+
+    @Test
+    public void testPaletteGrowth() {
+        PaletteBlockStorage storage = new PaletteBlockStorage(16, 16, 16);
+        // More than 256 states forces the widest indices
+        for (int i = 0; i < 4096; i++) {
+            storage.set(i & 15, i >> 8, (i >> 4) & 15, PackedBlock.pack(1 + i % 300, i % 7));
+        }
+        for (int i = 0; i < 4096; i++) {
+            assertEquals(PackedBlock.pack(1 + i % 300, i % 7), storage.get(i & 15, i >> 8, (i >> 4) & 15));
+        }
+    }
+
+    @Test
+    public void testTwoStateCubes() {
+        PaletteBlockStorage storage = new PaletteBlockStorage(64, 64, 64);
+        long empty = storage.getMemoryUsage();
+        int stone = PackedBlock.pack(1, 0);
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 64; z++) {
+                for (int x = 0; x < 64; x++) {
+                    storage.set(x, y, z, stone);
+                }
+            }
+        }
+        storage.set(5, 40, 5, 0);
+
+        assertEquals(stone, storage.get(63, 15, 63));
+        assertEquals(0, storage.get(5, 40, 5));
+        assertEquals(0, storage.get(0, 16, 0));
+        // Sixteen cubes of stone and air need a bit per block
+        assertTrue(storage.getMemoryUsage() - empty < 16 * 4096 / 4);
+    }
+
+    @Test
+    public void testMoreStatesThanSixteenBitIndices() {
+        PaletteBlockStorage storage = new PaletteBlockStorage(16, 16, 16);
+        int count = 70000;
+        // Every write replaces a block with a state the cube has not seen yet
+        for (int i = 0; i < count; i++) {
+            int index = i % 4096;
+            storage.set(index & 15, index >> 8, (index >> 4) & 15, PackedBlock.pack(1 + i / 1000, i % 1000));
+        }
+        for (int i = count - 4096; i < count; i++) {
+            int index = i % 4096;
+            assertEquals(
+                PackedBlock.pack(1 + i / 1000, i % 1000),
+                storage.get(index & 15, index >> 8, (index >> 4) & 15));
+        }
+        // States that are no longer used have been dropped from the palette
+        assertTrue(storage.getMemoryUsage() < 65536 * 4);
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.ByteTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+
+public class SchematicReaderTest {
+
+    private static CompoundTag createTileEntity(int x, int y, int z, String id) {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag(id));
+        values.put("x", new IntTag(x));
+        values.put("y", new IntTag(y));
+        values.put("z", new IntTag(z));
+        return new CompoundTag(values);
+    }
+
+    private static Clipboard read(Map<String, Tag> schematic) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NBTOutputStream out = new NBTOutputStream(bytes);
+        out.writeNamedTag("Schematic", new CompoundTag(schematic));
+        out.close();
+
+        NBTInputStream in = new NBTInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        try {
+            return new SchematicReader(in).read(LegacyWorldData.getInstance());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void putBlocks(Map<String, Tag> schematic) {
+        // 2 x 2 x 2, indexed by y * 4 + z * 2 + x
+        byte[] blocks = new byte[8];
+        blocks[7] = BlockID.CHEST;
+        blocks[1] = BlockID.FURNACE;
+        schematic.put("Width", new ShortTag((short) 2));
+        schematic.put("Height", new ShortTag((short) 2));
+        schematic.put("Length", new ShortTag((short) 2));
+        schematic.put("Materials", new StringTag("Alpha"));
+        schematic.put("Blocks", new ByteArrayTag(blocks));
+        schematic.put("Data", new ByteArrayTag(new byte[8]));
+        schematic.put("Entities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+    }
+
+    private static ListTag createTileEntities() {
+        List<Tag> tileEntities = new ArrayList<Tag>();
+        tileEntities.add(createTileEntity(1, 1, 1, "Chest"));
+        tileEntities.add(createTileEntity(1, 0, 2, "Furnace"));
+        return new ListTag(CompoundTag.class, tileEntities);
+    }
+
+    private static void assertTileEntities(Clipboard clipboard, Vector min) {
+        BaseBlock chest = clipboard.getBlock(min.add(1, 1, 1));
+        assertEquals(BlockID.CHEST, chest.getId());
+        assertTrue(chest.hasNbtData());
+        assertEquals(
+            "Chest",
+            chest.getNbtData()
+                .getString("id"));
+
+        // The furnace's tile entity is outside of the schematic
+        BaseBlock furnace = clipboard.getBlock(min.add(1, 0, 0));
+        assertEquals(BlockID.FURNACE, furnace.getId());
+        assertFalse(furnace.hasNbtData());
+    }
+
+    @Test
+    public void testTileEntities() throws IOException {
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
+        schematic.put("TileEntities", createTileEntities());
+        putBlocks(schematic);
+
+        assertTileEntities(read(schematic), new Vector(0, 0, 0));
+    }
+
+    @Test
+    public void testTileEntitiesAfterBlocks() throws IOException {
+        // The order of SchematicWriter, where the tile entities are placed as they are read
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
+        putBlocks(schematic);
+        schematic.put("WEOriginX", new IntTag(10));
+        schematic.put("WEOriginY", new IntTag(64));
+        schematic.put("WEOriginZ", new IntTag(-5));
+        schematic.put("WEOffsetX", new IntTag(0));
+        schematic.put("WEOffsetY", new IntTag(0));
+        schematic.put("WEOffsetZ", new IntTag(0));
+        schematic.put("BlockMapping", new CompoundTag(new HashMap<String, Tag>()));
+        schematic.put("ItemMapping", new CompoundTag(new HashMap<String, Tag>()));
+        schematic.put(SchematicWriter.BLOCKS_COMPLETE_TAG, new ByteTag((byte) 1));
+        schematic.put("TileEntities", createTileEntities());
+
+        assertTileEntities(read(schematic), new Vector(10, 64, -5));
+    }
+
+    @Test
+    public void testAddBlocksAfterTileEntities() throws IOException {
+        Map<String, Tag> schematic = new LinkedHashMap<String, Tag>();
+        putBlocks(schematic);
+        schematic.put("BlockMapping", new CompoundTag(new HashMap<String, Tag>()));
+        schematic.put("ItemMapping", new CompoundTag(new HashMap<String, Tag>()));
+        schematic.put("TileEntities", createTileEntities());
+        // The high nibble of the chest at index 7
+        byte[] addBlocks = new byte[5];
+        addBlocks[3] = 0x10;
+        schematic.put("AddBlocks", new ByteArrayTag(addBlocks));
+
+        BaseBlock block = read(schematic).getBlock(new Vector(1, 1, 1));
+        assertEquals(BlockID.CHEST + 256, block.getId());
+        assertTrue(block.hasNbtData());
+    }
+
+}
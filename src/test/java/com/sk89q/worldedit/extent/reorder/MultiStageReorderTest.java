@@ -0,0 +1,101 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+
+public class MultiStageReorderTest {
+
+    private static class RecordingExtent extends NullExtent {
+
+        private final List<BlockVector> positions = new ArrayList<BlockVector>();
+        private final List<BaseBlock> blocks = new ArrayList<BaseBlock>();
+
+        @Override
+        public boolean setBlock(Vector position, BaseBlock block) throws WorldEditException {
+            positions.add(position.toBlockVector());
+            blocks.add(block);
+            return true;
+        }
+    }
+
+    @Test
+    public void testAttachedBlocksComeAfterSupport() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+
+        // A tall column of reeds set from the top down
+        int height = 5000;
+        for (int y = height - 1; y >= 0; y--) {
+            reorder.setBlock(new Vector(0, y, 0), new BaseBlock(BlockID.REED));
+        }
+        reorder.setBlock(new Vector(5, 0, 5), new BaseBlock(BlockID.STONE));
+        Operations.complete(reorder.commit());
+
+        assertEquals(height + 1, recorder.positions.size());
+        assertEquals(new BlockVector(5, 0, 5), recorder.positions.get(0));
+        for (int y = 0; y < height; y++) {
+            assertEquals(new BlockVector(0, y, 0), recorder.positions.get(y + 1));
+        }
+    }
+
+    @Test
+    public void testLastChangeWins() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder);
+
+        reorder.setBlock(new Vector(0, 0, 0), new BaseBlock(BlockID.CACTUS));
+        reorder.setBlock(new Vector(0, 0, 0), new BaseBlock(BlockID.REED));
+        reorder.setBlock(new Vector(40, 0, 0), new BaseBlock(BlockID.STONE));
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.DIRT));
+        reorder.setBlock(new Vector(0, 1, 0), new BaseBlock(BlockID.GLASS));
+        Operations.complete(reorder.commit());
+
+        BaseBlock last = null;
+        for (int i = 0; i < recorder.positions.size(); i++) {
+            if (recorder.positions.get(i)
+                .equals(new BlockVector(0, 1, 0))) {
+                last = recorder.blocks.get(i);
+            }
+        }
+        assertEquals(new BaseBlock(BlockID.GLASS), last);
+        assertEquals(4, recorder.positions.size());
+        assertEquals(new BaseBlock(BlockID.REED), recorder.blocks.get(3));
+    }
+
+    @Test
+    public void testDisabledPassesThrough() throws WorldEditException {
+        RecordingExtent recorder = new RecordingExtent();
+        MultiStageReorder reorder = new MultiStageReorder(recorder, false);
+        reorder.setBlock(new Vector(0, 0, 0), new BaseBlock(BlockID.REED));
+        assertEquals(1, recorder.positions.size());
+    }
+
+}
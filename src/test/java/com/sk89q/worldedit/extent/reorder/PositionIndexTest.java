@@ -0,0 +1,49 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.reorder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+public class PositionIndexTest {
+
+    private static final int REED = PackedBlock.pack(BlockID.REED, 0);
+
+    @Test
+    public void testFindsLastChange() {
+        StageBuffer stage = new StageBuffer();
+        for (int i = 0; i < 1000; i++) {
+            stage.add(i % 10, i / 100, i / 10 % 10, REED);
+        }
+        stage.add(3, 4, 5, REED);
+        stage.add(0, 1 << 20, 0, REED);
+        PositionIndex index = new PositionIndex(stage);
+
+        assertEquals(0, index.find(0, 0, 0));
+        assertEquals(1000, index.find(3, 4, 5));
+        assertEquals(1000, index.findLast(453));
+        assertEquals(1001, index.find(0, 1 << 20, 0));
+        assertEquals(1001, index.findLast(1001));
+        assertEquals(-1, index.find(10, 0, 0));
+        assertEquals(-1, index.find(0, 1 << 20, 1));
+    }
+
+}
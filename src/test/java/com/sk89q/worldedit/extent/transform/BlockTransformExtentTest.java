@@ -25,11 +25,15 @@ import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sk89q.worldedit.Vector;
 import com.sk89q.worldedit.blocks.BaseBlock;
 import com.sk89q.worldedit.blocks.BlockData;
 import com.sk89q.worldedit.blocks.BlockType;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.registry.BlockRegistry;
 import com.sk89q.worldedit.world.registry.LegacyBlockRegistry;
 
@@ -88,4 +92,31 @@ public class BlockTransformExtentTest {
             }
         }
     }
+
+    @Test
+    public void testTable() throws Exception {
+        BlockRegistry blockRegistry = new LegacyBlockRegistry();
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(Vector.ZERO, Vector.ZERO));
+        BlockTransformExtent extent = new BlockTransformExtent(
+            clipboard,
+            ROTATE_90,
+            blockRegistry,
+            new BlockTransformHooks());
+        for (BlockType type : BlockType.values()) {
+            for (int data = 0; data < 16; data++) {
+                BaseBlock block = new BaseBlock(type.getID(), data);
+                BaseBlock reference = BlockTransformExtent.transform(new BaseBlock(block), ROTATE_90, blockRegistry);
+
+                clipboard.setBlock(Vector.ZERO, block);
+                assertThat(type + ":" + data, extent.getBlock(Vector.ZERO), equalTo(reference));
+                assertThat(type + ":" + data, extent.getBlockState(0, 0, 0), equalTo(PackedBlock.pack(reference)));
+
+                // Writing through the extent uses the inverse transform
+                BaseBlock written = BlockTransformExtent
+                    .transform(new BaseBlock(reference), ROTATE_90.inverse(), blockRegistry);
+                extent.setBlockState(0, 0, 0, PackedBlock.pack(reference));
+                assertThat(type + ":" + data, clipboard.getBlockState(0, 0, 0), equalTo(PackedBlock.pack(written)));
+            }
+        }
+    }
 }
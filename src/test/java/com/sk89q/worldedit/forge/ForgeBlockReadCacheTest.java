@@ -0,0 +1,147 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.cache.ChunkCacheExtent;
+import com.sk89q.worldedit.function.operation.Operations;
+
+import cpw.mods.fml.common.Loader;
+
+public class ForgeBlockReadCacheTest {
+
+    private static final int STONE = PackedBlock.pack(1, 0);
+    private static final int DIRT = PackedBlock.pack(3, 0);
+
+    private MockedStatic<Loader> loader;
+    private World world;
+    private byte[] lsb;
+    private Extent below;
+    private ChunkCacheExtent extent;
+
+    @Before
+    public void setUp() {
+        // NotEnoughIds is not loaded, so the vanilla arrays are read
+        loader = mockStatic(Loader.class);
+
+        lsb = new byte[4096];
+        ExtendedBlockStorage storage = mock(ExtendedBlockStorage.class);
+        when(storage.getBlockLSBArray()).thenReturn(lsb);
+        when(storage.getMetadataArray()).thenReturn(new NibbleArray(4096, 4));
+        ExtendedBlockStorage[] storageArray = new ExtendedBlockStorage[16];
+        storageArray[4] = storage;
+
+        world = mock(World.class);
+        Chunk chunk = createChunk(storageArray);
+        when(world.getChunkFromChunkCoords(0, 0)).thenReturn(chunk);
+        for (int x = 1; x <= 16; x++) {
+            Chunk other = createChunk(new ExtendedBlockStorage[16]);
+            when(world.getChunkFromChunkCoords(x, 0)).thenReturn(other);
+        }
+        ForgeWorld forgeWorld = mock(ForgeWorld.class);
+        when(forgeWorld.getWorld()).thenReturn(world);
+
+        below = mock(Extent.class);
+        extent = new ChunkCacheExtent(below, new ForgeBlockReadCache(forgeWorld));
+    }
+
+    @After
+    public void tearDown() {
+        loader.close();
+    }
+
+    private static Chunk createChunk(ExtendedBlockStorage[] storageArray) {
+        Chunk chunk = mock(Chunk.class);
+        chunk.isChunkLoaded = true;
+        when(chunk.getBlockStorageArray()).thenReturn(storageArray);
+        return chunk;
+    }
+
+    private void setInWorld(int x, int y, int z, int state) {
+        lsb[(y & 15) << 8 | z << 4 | x] = (byte) PackedBlock.getId(state);
+    }
+
+    @Test
+    public void testWrittenBlocksAreReadBelow() throws WorldEditException {
+        setInWorld(3, 70, 5, STONE);
+        setInWorld(4, 70, 5, STONE);
+        assertEquals(STONE, extent.getBlockState(3, 70, 5));
+
+        // The write may still be queued below, so the world is out of date
+        when(below.getBlockState(3, 70, 5)).thenReturn(DIRT);
+        extent.setBlockState(3, 70, 5, DIRT);
+        verify(below).setBlockState(3, 70, 5, DIRT);
+
+        assertEquals(DIRT, extent.getBlockState(3, 70, 5));
+        assertEquals(STONE, extent.getBlockState(4, 70, 5));
+        verify(below, times(1)).getBlockState(3, 70, 5);
+        verify(world, times(1)).getChunkFromChunkCoords(0, 0);
+    }
+
+    @Test
+    public void testEvictedChunkIsLookedUpAgain() throws WorldEditException {
+        setInWorld(4, 70, 5, STONE);
+        when(below.getBlockState(3, 70, 5)).thenReturn(DIRT);
+        extent.setBlockState(3, 70, 5, DIRT);
+        assertEquals(STONE, extent.getBlockState(4, 70, 5));
+
+        // Reading 16 other chunks pushes the first one out
+        for (int x = 1; x <= 16; x++) {
+            assertEquals(0, extent.getBlockState(x << 4, 70, 0));
+        }
+        assertEquals(STONE, extent.getBlockState(4, 70, 5));
+        verify(world, times(2)).getChunkFromChunkCoords(0, 0);
+
+        // Written blocks are remembered across evictions
+        assertEquals(DIRT, extent.getBlockState(3, 70, 5));
+    }
+
+    @Test
+    public void testCommitClearsTheCache() throws WorldEditException {
+        when(below.getBlockState(3, 70, 5)).thenReturn(DIRT);
+        extent.setBlockState(3, 70, 5, DIRT);
+        assertEquals(DIRT, extent.getBlockState(3, 70, 5));
+
+        // Once committed, the write is in the world and read from it again
+        Operations.complete(extent.commit());
+        setInWorld(3, 70, 5, DIRT);
+        when(below.getBlockState(3, 70, 5)).thenReturn(STONE);
+
+        assertEquals(DIRT, extent.getBlockState(3, 70, 5));
+        verify(world, times(2)).getChunkFromChunkCoords(0, 0);
+    }
+
+}
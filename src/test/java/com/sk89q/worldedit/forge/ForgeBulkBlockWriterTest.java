@@ -0,0 +1,213 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.forge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockedStatic;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+
+import cpw.mods.fml.common.Loader;
+
+public class ForgeBulkBlockWriterTest {
+
+    private static final int STONE = 1;
+    private static final int CHEST = 54;
+
+    private MockedStatic<Loader> loader;
+    private MockedStatic<Block> blocks;
+    private MockedStatic<TileEntityUtils> tileEntities;
+    private Block air;
+    private Block stone;
+    private Block chest;
+    private World world;
+    private Chunk chunk;
+    private ExtendedBlockStorage storage;
+    private ExtendedBlockStorage[] storageArray;
+    private byte[] lsb;
+    private NibbleArray metadata;
+    private ForgeBulkBlockWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        // NotEnoughIds is not loaded, so the vanilla arrays are written
+        loader = mockStatic(Loader.class);
+        blocks = mockStatic(Block.class);
+        tileEntities = mockStatic(TileEntityUtils.class);
+
+        air = mock(Block.class);
+        stone = mock(Block.class);
+        chest = mock(Block.class);
+        when(chest.hasTileEntity(anyInt())).thenReturn(true);
+        register(0, air);
+        register(STONE, stone);
+        register(CHEST, chest);
+
+        lsb = new byte[4096];
+        metadata = new NibbleArray(4096, 4);
+        storage = mock(ExtendedBlockStorage.class);
+        when(storage.getBlockLSBArray()).thenReturn(lsb);
+        when(storage.getMetadataArray()).thenReturn(metadata);
+        when(storage.getBlockByExtId(anyInt(), anyInt(), anyInt())).thenReturn(air);
+
+        storageArray = new ExtendedBlockStorage[16];
+        storageArray[4] = storage;
+        chunk = mock(Chunk.class);
+        when(chunk.getBlockStorageArray()).thenReturn(storageArray);
+
+        world = mock(World.class);
+        when(world.getChunkFromChunkCoords(0, 0)).thenReturn(chunk);
+        ForgeWorld forgeWorld = mock(ForgeWorld.class);
+        when(forgeWorld.getWorldChecked()).thenReturn(world);
+
+        writer = new ForgeBulkBlockWriter(forgeWorld);
+    }
+
+    @After
+    public void tearDown() {
+        tileEntities.close();
+        blocks.close();
+        loader.close();
+    }
+
+    private void register(final int id, final Block block) {
+        blocks.when(new MockedStatic.Verification() {
+
+            @Override
+            public void apply() {
+                Block.getBlockById(id);
+            }
+        })
+            .thenReturn(block);
+        blocks.when(new MockedStatic.Verification() {
+
+            @Override
+            public void apply() {
+                Block.getIdFromBlock(block);
+            }
+        })
+            .thenReturn(id);
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y & 15) << 8 | z << 4 | x;
+    }
+
+    @Test
+    public void testSectionWrite() throws Exception {
+        writer.setBlockState(3, 70, 5, PackedBlock.pack(STONE, 2));
+        writer.setBlock(new Vector(4, 70, 5), new BaseBlock(STONE, 7));
+        assertEquals(1, writer.getSectionCount());
+
+        writer.flush();
+
+        assertEquals(STONE, lsb[getIndex(3, 70, 5)]);
+        assertEquals(2, metadata.get(3, 6, 5));
+        assertEquals(STONE, lsb[getIndex(4, 70, 5)]);
+        assertEquals(7, metadata.get(4, 6, 5));
+        assertEquals(0, lsb[getIndex(5, 70, 5)]);
+        verify(storage).removeInvalidBlocks();
+        verify(chunk, never()).func_150807_a(anyInt(), anyInt(), anyInt(), any(Block.class), anyInt());
+        assertEquals(0, writer.getSectionCount());
+        assertEquals(PackedBlock.NONE, writer.getBlockState(3, 70, 5));
+    }
+
+    @Test
+    public void testAirIsNotWrittenToMissingSection() throws Exception {
+        writer.setBlockState(3, 80, 5, PackedBlock.pack(0, 0));
+        writer.flush();
+
+        assertNull(storageArray[5]);
+    }
+
+    @Test
+    public void testTileEntityBlockIsPlacedThroughChunk() throws Exception {
+        writer.setBlockState(3, 70, 5, PackedBlock.pack(CHEST, 2));
+        writer.flush();
+
+        // The chunk creates the tile entity and calls onBlockAdded()
+        verify(chunk).func_150807_a(3, 70, 5, chest, 2);
+        assertEquals(0, lsb[getIndex(3, 70, 5)]);
+    }
+
+    @Test
+    public void testReplacedTileEntityIsRemovedThroughChunk() throws Exception {
+        when(storage.getBlockByExtId(3, 6, 5)).thenReturn(chest);
+
+        writer.setBlockState(3, 70, 5, PackedBlock.pack(STONE, 0));
+        writer.flush();
+
+        // The chunk calls breakBlock() and removes the tile entity
+        verify(chunk).func_150807_a(3, 70, 5, stone, 0);
+        assertEquals(0, lsb[getIndex(3, 70, 5)]);
+    }
+
+    @Test
+    public void testTileEntityDataIsApplied() throws Exception {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Chest"));
+        writer.setBlock(new Vector(3, 70, 5), new BaseBlock(CHEST, 2, new CompoundTag(values)));
+        writer.flush();
+
+        verify(chunk).func_150807_a(3, 70, 5, chest, 2);
+        tileEntities.verify(new MockedStatic.Verification() {
+
+            @Override
+            public void apply() {
+                TileEntityUtils.setTileEntity(eq(world), eq(new Vector(3, 70, 5)), any(NBTTagCompound.class));
+            }
+        });
+    }
+
+    @Test
+    public void testHeightMapAndLightAreUpdated() throws Exception {
+        writer.setBlockState(3, 70, 5, PackedBlock.pack(STONE, 0));
+        writer.flush();
+
+        verify(chunk).generateSkylightMap();
+        verify(chunk).setChunkModified();
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.forge;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.NetHandlerPlayServer;
+import net.minecraft.network.Packet;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.network.play.server.S26PacketMapChunkBulk;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.ChunkPosition;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+
+import com.google.common.collect.Lists;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.entity.Player;
+import com.sk89q.worldedit.util.lighting.LightingScheduler;
+
+import cpw.mods.fml.common.Loader;
+
+public class ForgeWorldTest {
+
+    private MockedStatic<Loader> loader;
+    private MockedConstruction<S21PacketChunkData> chunkPackets;
+    private MockedConstruction<S26PacketMapChunkBulk> bulkPackets;
+    private LightingScheduler previousScheduler;
+    private LightingScheduler scheduler;
+    private WorldServer world;
+    private IChunkProvider provider;
+    private NetHandlerPlayServer handler;
+    private ForgeWorld forgeWorld;
+
+    @Before
+    public void setUp() {
+        loader = mockStatic(Loader.class);
+        // The real packets read the whole chunk
+        chunkPackets = mockConstruction(S21PacketChunkData.class);
+        bulkPackets = mockConstruction(S26PacketMapChunkBulk.class);
+
+        previousScheduler = WorldEdit.getInstance()
+            .getLightingScheduler();
+        scheduler = mock(LightingScheduler.class);
+        WorldEdit.getInstance()
+            .setLightingScheduler(scheduler);
+
+        provider = mock(IChunkProvider.class);
+        world = mock(WorldServer.class);
+        when(world.getChunkProvider()).thenReturn(provider);
+
+        EntityPlayerMP player = mock(EntityPlayerMP.class);
+        handler = mock(NetHandlerPlayServer.class);
+        player.playerNetServerHandler = handler;
+        world.playerEntities = new ArrayList<Object>(Arrays.asList(player));
+        PlayerManager playerManager = mock(PlayerManager.class);
+        when(playerManager.isPlayerWatchingChunk(eq(player), anyInt(), anyInt())).thenReturn(true);
+        when(world.getPlayerManager()).thenReturn(playerManager);
+
+        forgeWorld = new ForgeWorld(world);
+    }
+
+    @After
+    public void tearDown() {
+        WorldEdit.getInstance()
+            .setLightingScheduler(previousScheduler);
+        bulkPackets.close();
+        chunkPackets.close();
+        loader.close();
+    }
+
+    private Chunk addChunk(int chunkX, int chunkZ) {
+        Chunk chunk = mock(Chunk.class);
+        chunk.chunkTileEntityMap = new HashMap<Object, Object>();
+        when(provider.chunkExists(chunkX, chunkZ)).thenReturn(true);
+        when(world.getChunkFromChunkCoords(chunkX, chunkZ)).thenReturn(chunk);
+        return chunk;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLightingIsScheduledOncePerLoadedChunk() {
+        Chunk first = addChunk(0, 0);
+        Chunk second = addChunk(1, 0);
+
+        // The chunk at 5, 5 is not loaded
+        forgeWorld.fixAfterFastMode(
+            Arrays.asList(new BlockVector2D(0, 0), new BlockVector2D(1, 0), new BlockVector2D(5, 5)));
+
+        verify(first).generateSkylightMap();
+        verify(second).generateSkylightMap();
+        verify(world, never()).getChunkFromChunkCoords(5, 5);
+
+        ArgumentCaptor<Iterable<BlockVector2D>> chunks = ArgumentCaptor.forClass(Iterable.class);
+        verify(scheduler, times(1)).schedule(eq(forgeWorld), chunks.capture(), (Player) isNull(), (Runnable) isNull());
+        assertEquals(
+            Arrays.asList(new BlockVector2D(0, 0), new BlockVector2D(1, 0)),
+            Lists.newArrayList(chunks.getValue()));
+
+        // Both chunks go to the player in one packet
+        assertEquals(1, bulkPackets.constructed().size());
+        assertEquals(0, chunkPackets.constructed().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTileEntityDescriptionsAreSent() {
+        Chunk chunk = addChunk(0, 0);
+        Packet description = mock(Packet.class);
+        TileEntity tile = mock(TileEntity.class);
+        when(tile.getDescriptionPacket()).thenReturn(description);
+        chunk.chunkTileEntityMap.put(new ChunkPosition(1, 2, 3), tile);
+
+        forgeWorld.fixAfterFastMode(Arrays.asList(new BlockVector2D(0, 0)));
+
+        assertEquals(1, chunkPackets.constructed().size());
+        verify(handler).sendPacket(chunkPackets.constructed().get(0));
+        verify(handler).sendPacket(description);
+        verify(handler, times(2)).sendPacket(any(Packet.class));
+    }
+
+    @Test
+    public void testNothingIsScheduledForUnloadedChunks() {
+        forgeWorld.fixAfterFastMode(Arrays.asList(new BlockVector2D(5, 5)));
+
+        verify(scheduler, never()).schedule(any(), any(), any(), any());
+        verify(handler, never()).sendPacket(any(Packet.class));
+    }
+
+}
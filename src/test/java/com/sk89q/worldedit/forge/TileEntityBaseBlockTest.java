@@ -0,0 +1,137 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.sk89q.worldedit.forge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.tileentity.TileEntity;
+
+import org.junit.Test;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.LazyBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.ChangeSetExtent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.history.UndoContext;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
+import com.sk89q.worldedit.regions.CuboidRegion;
+
+public class TileEntityBaseBlockTest {
+
+    /**
+     * Returns blocks with NBT data the way {@link ForgeWorld} does, as
+     * lazy blocks and blocks that keep the saved tile entity.
+     */
+    private static class TileEntityWorld extends BlockArrayClipboard {
+
+        private TileEntityWorld() {
+            super(new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        }
+
+        private static BaseBlock withTileEntity(BaseBlock block) {
+            final NBTTagCompound saved = NBTConverter.toNative(block.getNbtData());
+            TileEntity tile = new TileEntity() {
+
+                @Override
+                public void writeToNBT(NBTTagCompound tag) {
+                    for (Object key : saved.func_150296_c()) {
+                        tag.setTag((String) key, saved.getTag((String) key).copy());
+                    }
+                }
+            };
+            return new TileEntityBaseBlock(block.getId(), block.getData(), tile);
+        }
+
+        @Override
+        public BaseBlock getBlock(Vector position) {
+            BaseBlock block = super.getBlock(position);
+            return block.hasNbtData() ? withTileEntity(block) : block;
+        }
+
+        @Override
+        public BaseBlock getLazyBlock(Vector position) {
+            BaseBlock block = super.getBlock(position);
+            return block.hasNbtData() ? new LazyBlock(block.getId(), block.getData(), this, position) : block;
+        }
+
+        @Override
+        public BaseBlock getNbtBlock(int x, int y, int z) {
+            BaseBlock block = super.getNbtBlock(x, y, z);
+            return block != null ? withTileEntity(block) : null;
+        }
+    }
+
+    private static CompoundTag createChestData() {
+        Map<String, Tag> values = new HashMap<String, Tag>();
+        values.put("id", new StringTag("Chest"));
+        values.put("CustomName", new StringTag("Loot"));
+        return new CompoundTag(values);
+    }
+
+    private static void assertChestRestored(TileEntityWorld world, BlockChange change) throws WorldEditException {
+        BaseBlock previous = change.getPrevious();
+        assertTrue(previous instanceof TileEntityBaseBlock);
+        // ForgeWorld places the block from the native tag
+        assertEquals("Loot", TileEntityBaseBlock.toNativeNbtData(previous).getString("CustomName"));
+
+        UndoContext context = new UndoContext();
+        context.setExtent(world);
+        change.undo(context);
+
+        BaseBlock restored = world.getNbtBlock(1, 2, 3);
+        assertEquals(BlockID.CHEST, restored.getId());
+        assertEquals(2, restored.getData());
+        assertEquals("Loot", restored.getNbtData().getString("CustomName"));
+    }
+
+    @Test
+    public void testSetBlockRecordsTileEntity() throws WorldEditException {
+        TileEntityWorld world = new TileEntityWorld();
+        world.setBlock(new Vector(1, 2, 3), new BaseBlock(BlockID.CHEST, 2, createChestData()));
+        BlockOptimizedHistory history = new BlockOptimizedHistory();
+
+        new ChangeSetExtent(world, history).setBlock(new Vector(1, 2, 3), new BaseBlock(BlockID.STONE));
+        assertEquals(PackedBlock.pack(BlockID.STONE, 0), world.getBlockState(1, 2, 3));
+
+        assertChestRestored(world, (BlockChange) history.backwardIterator().next());
+    }
+
+    @Test
+    public void testSetBlockStateRecordsTileEntity() throws WorldEditException {
+        TileEntityWorld world = new TileEntityWorld();
+        world.setBlock(new Vector(1, 2, 3), new BaseBlock(BlockID.CHEST, 2, createChestData()));
+        BlockOptimizedHistory history = new BlockOptimizedHistory();
+
+        new ChangeSetExtent(world, history).setBlockState(1, 2, 3, PackedBlock.pack(BlockID.STONE, 0));
+        assertEquals(PackedBlock.pack(BlockID.STONE, 0), world.getBlockState(1, 2, 3));
+
+        assertChestRestored(world, (BlockChange) history.backwardIterator().next());
+    }
+
+}
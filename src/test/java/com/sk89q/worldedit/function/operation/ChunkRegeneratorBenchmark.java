@@ -0,0 +1,92 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.ChunkGenerator;
+import com.sk89q.worldedit.world.GeneratedChunk;
+
+/**
+ * Regenerates square regions of increasing size with
+ * {@link ChunkRegenerator} and reports how many chunks were generated and
+ * how long each chunk took.
+ *
+ * <p>
+ * Every generated chunk costs the same, so the number of generated chunks
+ * must match the number of chunks in the region, and the time per chunk
+ * should stay flat as the region grows.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the tests. Run the main method directly.
+ * </p>
+ */
+public final class ChunkRegeneratorBenchmark {
+
+    private static final int HEIGHT = 256;
+    private static final int STONE = PackedBlock.pack(BlockID.STONE, 0);
+
+    private ChunkRegeneratorBenchmark() {}
+
+    public static void main(String[] args) throws WorldEditException {
+        for (int i = 0; i < 2; i++) {
+            for (int size : new int[] { 5, 10, 20, 40 }) {
+                run(size);
+            }
+        }
+    }
+
+    private static void run(int size) throws WorldEditException {
+        final long[] generated = new long[1];
+        ChunkGenerator generator = new ChunkGenerator() {
+
+            @Override
+            public GeneratedChunk generate(int chunkX, int chunkZ) {
+                generated[0]++;
+                int[] states = new int[HEIGHT << 8];
+                for (int i = 0; i < 64 << 8; i++) {
+                    states[i] = STONE;
+                }
+                return new GeneratedChunk(states);
+            }
+        };
+
+        CuboidRegion region = new CuboidRegion(
+            new Vector(0, 0, 0),
+            new Vector(size * 16 - 1, HEIGHT - 1, size * 16 - 1));
+        ChunkRegenerator regenerator = new ChunkRegenerator(region, new NullExtent(), generator);
+
+        long start = System.nanoTime();
+        Operations.complete(regenerator);
+        long time = System.nanoTime() - start;
+
+        System.out.println(
+            String.format(
+                "%2dx%-2d chunks: %,6d generated in %,6d ms, %,d us per chunk",
+                size,
+                size,
+                generated[0],
+                time / 1000000,
+                time / 1000 / generated[0]));
+    }
+
+}
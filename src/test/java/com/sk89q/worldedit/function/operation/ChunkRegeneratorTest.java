@@ -0,0 +1,165 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.sk89q.jnbt.ByteTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.ChunkGenerator;
+import com.sk89q.worldedit.world.GeneratedChunk;
+
+public class ChunkRegeneratorTest {
+
+    private static final int STONE = PackedBlock.pack(BlockID.STONE, 0);
+    private static final int DIRT = PackedBlock.pack(BlockID.DIRT, 0);
+
+    /**
+     * Generates chunks that are 32 blocks high, with stone below y = 8.
+     */
+    private static class StoneGenerator implements ChunkGenerator {
+
+        private final Set<Vector2D> generated = new HashSet<Vector2D>();
+        private Vector2D last;
+
+        @Override
+        public GeneratedChunk generate(int chunkX, int chunkZ) {
+            assertTrue("Chunk generated twice", generated.add(new BlockVector2D(chunkX, chunkZ)));
+            assertTrue(
+                "Chunk generated out of order",
+                last == null || last.getBlockX() < chunkX
+                    || last.getBlockX() == chunkX && last.getBlockZ() < chunkZ);
+            last = new BlockVector2D(chunkX, chunkZ);
+            int[] states = new int[32 << 8];
+            for (int i = 0; i < 8 << 8; i++) {
+                states[i] = STONE;
+            }
+            return new GeneratedChunk(states);
+        }
+    }
+
+    @Test
+    public void testRegenerate() throws WorldEditException {
+        BlockArrayClipboard world = new BlockArrayClipboard(
+            new CuboidRegion(new Vector(-32, 0, -32), new Vector(31, 31, 31)));
+        for (int x = -32; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                for (int z = -32; z < 32; z++) {
+                    world.setBlockState(x, y, z, DIRT);
+                }
+            }
+        }
+
+        CuboidRegion region = new CuboidRegion(new Vector(-5, 4, -20), new Vector(20, 40, 3));
+        StoneGenerator generator = new StoneGenerator();
+        ChunkRegenerator regenerator = new ChunkRegenerator(region, world, generator);
+
+        // Stop after every chunk
+        int resumes = 0;
+        Operation operation = regenerator;
+        while (operation != null) {
+            operation = operation.resume(new RunContext() {
+
+                @Override
+                public boolean shouldContinue() {
+                    return false;
+                }
+            });
+            resumes++;
+        }
+
+        int chunks = region.getChunks()
+            .size();
+        assertEquals(region.getChunks(), generator.generated);
+        assertEquals(chunks, regenerator.getGenerated());
+        assertEquals(chunks, resumes);
+
+        for (int x = -32; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                for (int z = -32; z < 32; z++) {
+                    int expected = DIRT;
+                    if (region.contains(new Vector(x, y, z))) {
+                        expected = y < 8 ? STONE : 0;
+                    }
+                    assertEquals(x + "," + y + "," + z, expected, world.getBlockState(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTileEntitiesAreReplaced() throws WorldEditException {
+        int chest = PackedBlock.pack(BlockID.CHEST, 0);
+        BlockArrayClipboard world = new BlockArrayClipboard(
+            new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15)));
+        // A chest with items where the generated chest is empty, and a
+        // furnace that is regenerated as a plain block of the same state
+        world.setBlock(new Vector(1, 2, 3), new BaseBlock(BlockID.CHEST, 0, tag("Items")));
+        world.setBlock(new Vector(4, 5, 6), new BaseBlock(BlockID.FURNACE, 0, tag("Items")));
+
+        final int[] states = new int[16 << 8];
+        states[2 << 8 | 3 << 4 | 1] = chest;
+        states[5 << 8 | 6 << 4 | 4] = PackedBlock.pack(BlockID.FURNACE, 0);
+        final Map<Integer, BaseBlock> tileEntities = new HashMap<Integer, BaseBlock>();
+        tileEntities.put(2 << 8 | 3 << 4 | 1, new BaseBlock(BlockID.CHEST, 0, tag("Empty")));
+        final BitSet existing = new BitSet();
+        existing.set(2 << 8 | 3 << 4 | 1);
+        existing.set(5 << 8 | 6 << 4 | 4);
+
+        ChunkRegenerator regenerator = new ChunkRegenerator(world.getRegion(), world, new ChunkGenerator() {
+
+            @Override
+            public GeneratedChunk generate(int chunkX, int chunkZ) {
+                return new GeneratedChunk(states, tileEntities, existing);
+            }
+        });
+        Operations.complete(regenerator);
+
+        assertEquals(chest, world.getBlockState(1, 2, 3));
+        assertTrue(world.getNbtBlock(1, 2, 3).getNbtData().containsKey("Empty"));
+        assertEquals(PackedBlock.pack(BlockID.FURNACE, 0), world.getBlockState(4, 5, 6));
+        assertNull(world.getNbtBlock(4, 5, 6));
+        assertEquals(2, regenerator.getAffected());
+    }
+
+    private static CompoundTag tag(String name) {
+        Map<String, Tag> value = new HashMap<String, Tag>();
+        value.put(name, new ByteTag((byte) 1));
+        return new CompoundTag(value);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEditException;
+
+public class DirectOperationSchedulerTest {
+
+    /**
+     * An operation that fails with the given exception when resumed.
+     */
+    private static class FailingOperation implements Operation {
+
+        private final RuntimeException runtimeException;
+        private boolean cancelled;
+
+        private FailingOperation(RuntimeException runtimeException) {
+            this.runtimeException = runtimeException;
+        }
+
+        @Override
+        public Operation resume(RunContext run) throws WorldEditException {
+            if (runtimeException != null) {
+                throw runtimeException;
+            }
+            throw new MaxChangedBlocksException(1);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void addStatusMessages(List<String> messages) {}
+    }
+
+    @Test
+    public void testCancelsOnWorldEditException() {
+        FailingOperation operation = new FailingOperation(null);
+        final boolean[] completed = new boolean[1];
+        new DirectOperationScheduler().schedule(operation, null, new Runnable() {
+
+            @Override
+            public void run() {
+                completed[0] = true;
+            }
+        });
+        assertTrue(operation.cancelled);
+        assertTrue(completed[0]);
+    }
+
+    @Test
+    public void testCancelsOnRuntimeException() {
+        FailingOperation operation = new FailingOperation(new IllegalStateException());
+        try {
+            new DirectOperationScheduler().schedule(operation, null, null);
+            fail("The exception was swallowed");
+        } catch (IllegalStateException expected) {}
+        assertTrue(operation.cancelled);
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.regions.CuboidRegion;
+
+public class ForwardExtentCopyTest {
+
+    private static final int STONE = PackedBlock.pack(BlockID.STONE, 0);
+
+    private static int countStone(BlockArrayClipboard clipboard) {
+        int count = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    if (clipboard.getBlockState(x, y, z) == STONE) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testCancelStopsAllRepetitions() throws WorldEditException {
+        CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 15, 15));
+        BlockArrayClipboard source = new BlockArrayClipboard(region);
+        BlockArrayClipboard destination = new BlockArrayClipboard(region);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    source.setBlockState(x, y, z, STONE);
+                }
+            }
+        }
+
+        ForwardExtentCopy copy = new ForwardExtentCopy(source, region, destination, new Vector(0, 0, 0));
+        copy.setRepetitions(3);
+
+        // Stop after every block
+        RunContext run = new RunContext() {
+
+            @Override
+            public boolean shouldContinue() {
+                return false;
+            }
+        };
+        Operation operation = copy.resume(run);
+        for (int i = 0; i < 10; i++) {
+            operation = operation.resume(run);
+        }
+        assertNotNull(operation);
+        operation.cancel();
+
+        // Resuming after the cancel must not copy anything more
+        while (operation != null) {
+            operation = operation.resume(new RunContext());
+        }
+        assertNull(copy.resume(new RunContext()));
+
+        List<String> messages = new ArrayList<String>();
+        copy.addStatusMessages(messages);
+        assertEquals(10, countStone(destination));
+        assertEquals("10 blocks affected", messages.get(0));
+    }
+
+}
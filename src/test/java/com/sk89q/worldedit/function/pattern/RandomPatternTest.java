@@ -0,0 +1,76 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.function.block.BlockReplace;
+import com.sk89q.worldedit.regions.CuboidRegion;
+
+public class RandomPatternTest {
+
+    private static final int SIZE = 32;
+
+    @Test
+    public void testOneChoicePerPosition() throws WorldEditException {
+        CompoundTag nbt = new CompoundTag(ImmutableMap.<String, Tag>of("CustomName", new StringTag("test")));
+        RandomPattern pattern = new RandomPattern(new Random(42));
+        pattern.add(new BlockPattern(new BaseBlock(BlockID.STONE)), 1);
+        // Blocks with NBT data can't be packed, so they take the BaseBlock path
+        pattern.add(new BlockPattern(new BaseBlock(BlockID.CHEST, 0, nbt)), 1);
+
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(
+            new CuboidRegion(new Vector(0, 0, 0), new Vector(SIZE - 1, SIZE - 1, SIZE - 1)));
+        BlockReplace replace = new BlockReplace(clipboard, pattern);
+        int stone = 0;
+        int chests = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    replace.apply(x, y, z);
+                    int state = clipboard.getBlockState(x, y, z);
+                    if (state == PackedBlock.pack(BlockID.STONE, 0)) {
+                        stone++;
+                    } else if (state == PackedBlock.pack(BlockID.CHEST, 0)) {
+                        chests++;
+                    }
+                }
+            }
+        }
+
+        // Each block is chosen half of the time, not a quarter for chests
+        assertEquals(SIZE * SIZE * SIZE, stone + chests);
+        double ratio = chests / (double) (SIZE * SIZE * SIZE);
+        assertTrue("Chests were chosen " + ratio + " of the time", ratio > 0.48 && ratio < 0.52);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.CuboidRegion;
+
+public class RegionVisitorTest {
+
+    private static final RunContext YIELD = new RunContext() {
+
+        @Override
+        public boolean shouldContinue() {
+            return false;
+        }
+    };
+
+    private static final RegionFunction COUNTER = new RegionFunction() {
+
+        @Override
+        public boolean apply(Vector position) throws WorldEditException {
+            return true;
+        }
+    };
+
+    @Test
+    public void testCompletesInOneRun() throws WorldEditException {
+        RegionVisitor visitor = new RegionVisitor(new CuboidRegion(new Vector(0, 0, 0), new Vector(3, 3, 3)), COUNTER);
+        assertNull(visitor.resume(new RunContext()));
+        assertEquals(64, visitor.getAffected());
+    }
+
+    @Test
+    public void testResumesWhereItLeftOff() throws WorldEditException {
+        RegionVisitor visitor = new RegionVisitor(new CuboidRegion(new Vector(0, 0, 0), new Vector(1, 1, 0)), COUNTER);
+        assertSame(visitor, visitor.resume(YIELD));
+        assertEquals(1, visitor.getAffected());
+        assertSame(visitor, visitor.resume(YIELD));
+        assertSame(visitor, visitor.resume(YIELD));
+        assertNull(visitor.resume(YIELD));
+        assertEquals(4, visitor.getAffected());
+    }
+
+}
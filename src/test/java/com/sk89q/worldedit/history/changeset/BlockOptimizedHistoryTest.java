@@ -0,0 +1,77 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+
+public class BlockOptimizedHistoryTest {
+
+    @Test
+    public void testForwardAndBackwardOrder() {
+        BlockOptimizedHistory history = new BlockOptimizedHistory();
+        int count = 40000;
+        for (int i = 0; i < count; i++) {
+            BlockVector position = new BlockVector(i - 20000, i % 256, -i * 700);
+            history.add(new BlockChange(position, new BaseBlock(i % 4096, i % 16), new BaseBlock(1, 2)));
+        }
+        assertEquals(count, history.size());
+
+        Iterator<Change> forward = history.forwardIterator();
+        for (int i = 0; i < count; i++) {
+            BlockChange change = (BlockChange) forward.next();
+            assertEquals(new BlockVector(i - 20000, i % 256, -i * 700), change.getPosition());
+            assertEquals(new BaseBlock(1, 2), change.getCurrent());
+        }
+        assertFalse(forward.hasNext());
+
+        Iterator<Change> backward = history.backwardIterator();
+        for (int i = count - 1; i >= 0; i--) {
+            BlockChange change = (BlockChange) backward.next();
+            assertEquals(new BlockVector(i - 20000, i % 256, -i * 700), change.getPosition());
+            assertEquals(new BaseBlock(i % 4096, i % 16), change.getPrevious());
+        }
+        assertFalse(backward.hasNext());
+    }
+
+    @Test
+    public void testKeepsUnpackableValues() {
+        BlockOptimizedHistory history = new BlockOptimizedHistory();
+        BaseBlock chest = new BaseBlock(54, 0, new CompoundTag(new HashMap<String, Tag>()));
+        BlockVector far = new BlockVector(1 << 27, 5000, -(1 << 27));
+        history.add(new BlockChange(far, chest, new BaseBlock(0)));
+
+        BlockChange undo = (BlockChange) history.backwardIterator()
+            .next();
+        assertEquals(far, undo.getPosition());
+        assertSame(chest, undo.getPrevious());
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+
+public class DiskSpillingHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<BlockVector, BaseBlock> replay(Iterator<Change> it, boolean undo) {
+        Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+        while (it.hasNext()) {
+            BlockChange change = (BlockChange) it.next();
+            blocks.put(change.getPosition(), undo ? change.getPrevious() : change.getCurrent());
+        }
+        return blocks;
+    }
+
+    @Test
+    public void testUndoAndRedoMatchMemoryHistory() {
+        File directory = new File(folder.getRoot(), "history");
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 100);
+        BlockOptimizedHistory expected = new BlockOptimizedHistory();
+
+        // Positions repeat, so the order of changes at a position matters
+        for (int i = 0; i < 1050; i++) {
+            BlockVector position = new BlockVector(i % 70 * 7, 64, i % 50 * 5);
+            BlockChange change = new BlockChange(position, new BaseBlock(i % 200), new BaseBlock((i + 1) % 200));
+            history.add(change);
+            expected.add(change);
+        }
+
+        assertEquals(1050, history.size());
+        history.awaitSegments();
+        assertEquals(10, directory.list().length);
+        assertEquals(replay(expected.backwardIterator(), true), replay(history.backwardIterator(), true));
+        assertEquals(replay(expected.forwardIterator(), false), replay(history.forwardIterator(), false));
+
+        history.close();
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void testUnpackedBlocksAreSpilled() {
+        File directory = new File(folder.getRoot(), "history");
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 10);
+        CompoundTag nbt = new CompoundTag(ImmutableMap.<String, Tag>of("Text1", new StringTag("hello")));
+        BaseBlock sign = new BaseBlock(63, 4, nbt);
+        for (int i = 0; i < 20; i++) {
+            history.addBlockChange(i, 64, 0, PackedBlock.pack(0, 0), PackedBlock.pack(1, i % 4));
+        }
+        history.add(new BlockChange(new BlockVector(5, 70, 0), new BaseBlock(1, 1), sign));
+        history.add(new BlockChange(new BlockVector(0, -10, 0), new BaseBlock(7), new BaseBlock(0)));
+        for (int i = 0; i < 8; i++) {
+            history.addBlockChange(i, 65, 0, PackedBlock.pack(0, 0), PackedBlock.pack(2, 0));
+        }
+
+        history.awaitSegments();
+        assertEquals(3, directory.list().length);
+        Map<BlockVector, BaseBlock> redone = replay(history.forwardIterator(), false);
+        assertEquals(30, redone.size());
+        assertEquals(new BaseBlock(1, 3), redone.get(new BlockVector(19, 64, 0)));
+        assertEquals("hello", ((StringTag) redone.get(new BlockVector(5, 70, 0))
+            .getNbtData()
+            .getValue()
+            .get("Text1")).getValue());
+        assertEquals(new BaseBlock(0), redone.get(new BlockVector(0, -10, 0)));
+        Map<BlockVector, BaseBlock> undone = replay(history.backwardIterator(), true);
+        assertEquals(new BaseBlock(1, 1), undone.get(new BlockVector(5, 70, 0)));
+        assertEquals(new BaseBlock(7), undone.get(new BlockVector(0, -10, 0)));
+        history.close();
+    }
+
+    @Test
+    public void testSmallHistoryStaysInMemory() {
+        File directory = new File(folder.getRoot(), "history");
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 100);
+        history.add(new BlockChange(new BlockVector(1, 2, 3), new BaseBlock(1), new BaseBlock(2)));
+
+        assertFalse(directory.exists());
+        assertTrue(history.backwardIterator()
+            .hasNext());
+    }
+
+    @Test
+    public void testUnreadableSegmentIsKept() throws IOException {
+        File directory = new File(folder.getRoot(), "history");
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 10);
+        for (int i = 0; i < 15; i++) {
+            history.add(new BlockChange(new BlockVector(i, 64, 0), new BaseBlock(1), new BaseBlock(2)));
+        }
+        history.awaitSegments();
+        File segment = directory.listFiles()[0];
+        byte[] original = Files.toByteArray(segment);
+        Files.write(new byte[] { 1, 2, 3 }, segment);
+
+        try {
+            replay(history.backwardIterator(), true);
+            fail("Expected the segment to be unreadable");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ChangeSetReadException);
+        }
+
+        // The changes can be read again once the file is readable
+        assertTrue(segment.exists());
+        Files.write(original, segment);
+        assertEquals(15, replay(history.backwardIterator(), true).size());
+        history.close();
+    }
+
+    @Test
+    public void testDeleteLeftoverSegments() throws IOException {
+        File root = new File(folder.getRoot(), "history");
+        File directory = new File(root, "session");
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 10);
+        for (int i = 0; i < 25; i++) {
+            history.add(new BlockChange(new BlockVector(i, 64, 0), new BaseBlock(1), new BaseBlock(2)));
+        }
+        history.awaitSegments();
+        assertEquals(2, directory.list().length);
+        File other = new File(directory, "notes.txt");
+        assertTrue(other.createNewFile());
+
+        // The change set is never closed, as if the server crashed
+        DiskSpillingHistory.deleteSegments(root);
+
+        assertEquals(1, directory.list().length);
+        assertTrue(other.exists());
+        assertTrue(other.delete());
+        DiskSpillingHistory.deleteSegments(root);
+        assertFalse(directory.exists());
+    }
+
+    @Test
+    public void testUndoWaitsForPendingSegments() throws InterruptedException {
+        File directory = new File(folder.getRoot(), "history");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch latch = new CountDownLatch(1);
+        // Hold up the writer until the change set has been read from
+        executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                Uninterruptibles.awaitUninterruptibly(latch);
+            }
+        });
+
+        try {
+            DiskSpillingHistory history = new DiskSpillingHistory(directory, 10, executor);
+            BlockOptimizedHistory expected = new BlockOptimizedHistory();
+            for (int i = 0; i < 25; i++) {
+                BlockChange change = new BlockChange(new BlockVector(i, 64, 0), new BaseBlock(1), new BaseBlock(2));
+                history.add(change);
+                expected.add(change);
+            }
+
+            // The segments are still in memory
+            assertFalse(directory.exists());
+            long pending = history.getMemoryUsage();
+            assertTrue(pending > expected.getMemoryUsage());
+
+            new Thread() {
+
+                @Override
+                public void run() {
+                    Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+                    latch.countDown();
+                }
+            }.start();
+            assertEquals(replay(expected.backwardIterator(), true), replay(history.backwardIterator(), true));
+            assertEquals(2, directory.list().length);
+            assertTrue(history.getMemoryUsage() < pending);
+            history.close();
+        } finally {
+            latch.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBusyWriterWritesInPlace() {
+        File directory = new File(folder.getRoot(), "history");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        DiskSpillingHistory history = new DiskSpillingHistory(directory, 10, executor);
+        for (int i = 0; i < 15; i++) {
+            history.add(new BlockChange(new BlockVector(i, 64, 0), new BaseBlock(1), new BaseBlock(2)));
+        }
+
+        assertEquals(1, directory.list().length);
+        assertEquals(15, replay(history.forwardIterator(), false).size());
+        history.close();
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+
+/**
+ * Compares {@link RegionIterator} with {@link ChunkOrderedRegionIterator}
+ * on a 512x256x512 cuboid.
+ *
+ * <p>
+ * Every point is resolved to a chunk through a hash map, the way a world
+ * looks up its loaded chunks, with the last chunk and section remembered
+ * so that only changes of chunk or section cost a lookup.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the tests. Run the main method directly.
+ * </p>
+ */
+public final class ChunkOrderBenchmark {
+
+    private ChunkOrderBenchmark() {}
+
+    public static void main(String[] args) {
+        Region region = new CuboidRegion(new Vector(-256, 0, -256), new Vector(255, 255, 255));
+
+        Map<Long, long[]> chunks = new HashMap<Long, long[]>();
+        for (int cx = -16; cx < 16; cx++) {
+            for (int cz = -16; cz < 16; cz++) {
+                chunks.put(getKey(cx, cz), new long[16]);
+            }
+        }
+
+        for (int i = 0; i < 2; i++) {
+            run("row order", new RegionIterator(region), chunks);
+            run("chunk order", new ChunkOrderedRegionIterator(region), chunks);
+        }
+    }
+
+    private static long getKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | chunkZ & 0xFFFFFFFFL;
+    }
+
+    private static void run(String name, Iterator<BlockVector> iterator, Map<Long, long[]> chunks) {
+        long start = System.nanoTime();
+        long points = 0;
+        long chunkLookups = 0;
+        long sectionChanges = 0;
+        int lastChunkX = Integer.MIN_VALUE;
+        int lastChunkZ = Integer.MIN_VALUE;
+        int lastSection = -1;
+        long[] chunk = null;
+
+        while (iterator.hasNext()) {
+            BlockVector point = iterator.next();
+            int chunkX = point.getBlockX() >> 4;
+            int chunkZ = point.getBlockZ() >> 4;
+            int section = point.getBlockY() >> 4;
+
+            if (chunkX != lastChunkX || chunkZ != lastChunkZ) {
+                chunk = chunks.get(getKey(chunkX, chunkZ));
+                lastChunkX = chunkX;
+                lastChunkZ = chunkZ;
+                lastSection = -1;
+                chunkLookups++;
+            }
+            if (section != lastSection) {
+                lastSection = section;
+                sectionChanges++;
+            }
+
+            chunk[section]++;
+            points++;
+        }
+
+        long time = System.nanoTime() - start;
+        System.out.println(
+            String.format(
+                "%-12s %,d points in %d ms: %,d chunk lookups, %,d section changes",
+                name,
+                points,
+                time / 1000000,
+                chunkLookups,
+                sectionChanges));
+    }
+
+}
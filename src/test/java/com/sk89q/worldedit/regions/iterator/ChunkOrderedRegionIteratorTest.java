@@ -0,0 +1,104 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions.iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.World;
+
+public class ChunkOrderedRegionIteratorTest {
+
+    private static Set<BlockVector> collect(Iterator<BlockVector> iterator) {
+        Set<BlockVector> points = new HashSet<BlockVector>();
+        while (iterator.hasNext()) {
+            assertTrue(points.add(iterator.next()));
+        }
+        return points;
+    }
+
+    private static void assertSamePoints(Region region) {
+        assertEquals(collect(new RegionIterator(region)), collect(new ChunkOrderedRegionIterator(region)));
+    }
+
+    /**
+     * Every chunk column must be visited in a single run, and every section
+     * within it in a single run as well.
+     */
+    private static void assertChunkMajor(Region region) {
+        Set<BlockVector> finishedChunks = new HashSet<BlockVector>();
+        Set<BlockVector> finishedSections = new HashSet<BlockVector>();
+        BlockVector lastChunk = null;
+        BlockVector lastSection = null;
+
+        for (BlockVector point : region) {
+            BlockVector chunk = new BlockVector(point.getBlockX() >> 4, 0, point.getBlockZ() >> 4);
+            BlockVector section = new BlockVector(chunk.getBlockX(), point.getBlockY() >> 4, chunk.getBlockZ());
+            if (!chunk.equals(lastChunk)) {
+                assertTrue(lastChunk == null || finishedChunks.add(lastChunk));
+                lastChunk = chunk;
+            }
+            if (!section.equals(lastSection)) {
+                assertTrue(lastSection == null || finishedSections.add(lastSection));
+                lastSection = section;
+            }
+            assertTrue(!finishedChunks.contains(chunk) && !finishedSections.contains(section));
+        }
+    }
+
+    @Test
+    public void testCuboid() {
+        Region region = new CuboidRegion(new Vector(-20, 3, -7), new Vector(37, 40, 18));
+        assertSamePoints(region);
+        assertChunkMajor(region);
+        assertEquals(region.getArea(), collect(region.iterator()).size());
+    }
+
+    @Test
+    public void testCylinder() {
+        Region region = new CylinderRegion(new Vector(5, 0, -3), new Vector2D(19.5, 11.5), 10, 30);
+        assertSamePoints(region);
+        assertChunkMajor(region);
+    }
+
+    @Test
+    public void testPolygon() {
+        Region region = new Polygonal2DRegion(
+            (World) null,
+            Lists.newArrayList(new BlockVector2D(-30, -30), new BlockVector2D(40, -10), new BlockVector2D(0, 35)),
+            0,
+            20);
+        assertSamePoints(region);
+        assertChunkMajor(region);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.command.tool.BrushTool;
+import com.sk89q.worldedit.command.tool.brush.ClipboardBrush;
+import com.sk89q.worldedit.command.tool.brush.SphereBrush;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.MappedClipboard;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+
+public class ClipboardHolderTest {
+
+    private static final int STONE = PackedBlock.pack(BlockID.STONE, 0);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedClipboard createClipboard() throws IOException {
+        MappedClipboard clipboard = new MappedClipboard(
+            new CuboidRegion(new Vector(0, 0, 0), new Vector(3, 3, 3)),
+            folder.getRoot());
+        clipboard.setBlockState(1, 1, 1, STONE);
+        return clipboard;
+    }
+
+    private static Operation createPaste(ClipboardHolder holder, BlockArrayClipboard target) {
+        return holder.createPaste(target, LegacyWorldData.getInstance())
+            .to(new Vector(10, 0, 10))
+            .build();
+    }
+
+    @Test
+    public void testQueuedPasteKeepsClipboardOpen() throws IOException, WorldEditException {
+        MappedClipboard clipboard = createClipboard();
+        BlockArrayClipboard target = new BlockArrayClipboard(
+            new CuboidRegion(new Vector(10, 0, 10), new Vector(13, 3, 13)));
+        LocalSession session = new LocalSession();
+        ClipboardHolder holder = new ClipboardHolder(clipboard, LegacyWorldData.getInstance());
+        session.setClipboard(holder);
+
+        Operation paste = createPaste(holder, target);
+        session.setClipboard(null);
+        assertTrue(clipboard.getFile()
+            .isFile());
+
+        Operations.completeLegacy(paste);
+        assertEquals(STONE, target.getBlockState(11, 1, 11));
+        assertFalse(clipboard.getFile()
+            .exists());
+    }
+
+    @Test
+    public void testCancelledPasteReleasesClipboard() throws IOException {
+        MappedClipboard clipboard = createClipboard();
+        BlockArrayClipboard target = new BlockArrayClipboard(
+            new CuboidRegion(new Vector(10, 0, 10), new Vector(13, 3, 13)));
+        ClipboardHolder holder = new ClipboardHolder(clipboard, LegacyWorldData.getInstance());
+
+        Operation paste = createPaste(holder, target);
+        paste.cancel();
+        assertTrue(clipboard.getFile()
+            .isFile());
+
+        holder.release();
+        assertFalse(clipboard.getFile()
+            .exists());
+    }
+
+    @Test
+    public void testBrushKeepsClipboardOpenUntilReplaced() throws IOException {
+        MappedClipboard clipboard = createClipboard();
+        LocalSession session = new LocalSession();
+        ClipboardHolder holder = new ClipboardHolder(clipboard, LegacyWorldData.getInstance());
+        session.setClipboard(holder);
+
+        BrushTool tool = new BrushTool("worldedit.brush.clipboard");
+        tool.setBrush(new ClipboardBrush(holder, false, false), "worldedit.brush.clipboard");
+        session.setClipboard(null);
+        assertTrue(clipboard.getFile()
+            .isFile());
+
+        tool.setBrush(new SphereBrush(), "worldedit.brush.sphere");
+        assertFalse(clipboard.getFile()
+            .exists());
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.function.operation.DirectOperationScheduler;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.OperationScheduler;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+
+public class EditJobQueueTest {
+
+    private final List<Operation> scheduled = new ArrayList<Operation>();
+    private final List<Runnable> completions = new ArrayList<Runnable>();
+    private final Actor actor = mock(Actor.class);
+    private final EditJobQueue queue = new EditJobQueue();
+    private final List<String> ran = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        // Jobs only run when the test says so
+        WorldEdit.getInstance()
+            .setOperationScheduler(new OperationScheduler() {
+
+                @Override
+                public void schedule(Operation operation, @Nullable Actor actor, @Nullable Runnable completion) {
+                    scheduled.add(operation);
+                    completions.add(completion);
+                }
+            });
+    }
+
+    @After
+    public void tearDown() {
+        WorldEdit.getInstance()
+            .setOperationScheduler(new DirectOperationScheduler());
+    }
+
+    private void runNextJob() throws WorldEditException {
+        Operations.complete(scheduled.remove(0));
+        completions.remove(0)
+            .run();
+    }
+
+    private static EditSession createEdit() {
+        EditSession editSession = mock(EditSession.class);
+        when(editSession.commit()).thenReturn(new Operation() {
+
+            @Override
+            public Operation resume(RunContext run) {
+                return null;
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public void addStatusMessages(List<String> messages) {}
+        }, (Operation) null);
+        return editSession;
+    }
+
+    private Runnable command(final String name, final boolean queuesJob) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                assertFalse(queue.isBusy());
+                ran.add(name);
+                if (queuesJob) {
+                    queue.submit(actor, name, createEdit(), null);
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testDeferredCommandsWaitForJobs() throws WorldEditException {
+        queue.submit(actor, "//set", createEdit(), null);
+        assertTrue(queue.isBusy());
+
+        queue.defer(command("//replace", true));
+        queue.defer(command("//undo", false));
+        assertEquals(2, queue.getDeferredCount());
+        assertTrue(ran.isEmpty());
+
+        // The first command queues a job, so the undo waits for it as well
+        runNextJob();
+        assertEquals(Arrays.asList("//replace"), ran);
+        assertTrue(queue.isBusy());
+
+        runNextJob();
+        assertEquals(Arrays.asList("//replace", "//undo"), ran);
+        assertFalse(queue.isBusy());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testDrainCallback() throws WorldEditException {
+        final List<String> drained = new ArrayList<String>();
+        EditJobQueue queue = new EditJobQueue(new Runnable() {
+
+            @Override
+            public void run() {
+                drained.add("drained");
+            }
+        });
+        queue.submit(actor, "//set", createEdit(), null);
+        queue.submit(actor, "//replace", createEdit(), null);
+
+        runNextJob();
+        assertTrue(drained.isEmpty());
+        runNextJob();
+        assertEquals(1, drained.size());
+    }
+
+    @Test
+    public void testCancelAllDropsDeferredCommands() throws WorldEditException {
+        queue.submit(actor, "//set", createEdit(), null);
+        queue.defer(command("//undo", false));
+
+        assertEquals(2, queue.cancelAll());
+        runNextJob();
+        assertTrue(ran.isEmpty());
+        assertTrue(queue.isEmpty());
+    }
+
+}
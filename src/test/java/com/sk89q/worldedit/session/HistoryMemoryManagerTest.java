@@ -0,0 +1,106 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.LocalSession;
+import com.sk89q.worldedit.LocalWorld;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.history.change.BlockChange;
+
+public class HistoryMemoryManagerTest {
+
+    @SuppressWarnings("deprecation")
+    private static EditSession createEdit(int blocks) {
+        EditSession editSession = new EditSession((LocalWorld) null, -1);
+        for (int i = 0; i < blocks; i++) {
+            editSession.getChangeSet()
+                .add(new BlockChange(new BlockVector(i, 0, 0), new BaseBlock(0), new BaseBlock(1)));
+        }
+        return editSession;
+    }
+
+    @Test
+    public void testEvictsOldestEntries() {
+        HistoryMemoryManager manager = new HistoryMemoryManager();
+        LocalSession first = new LocalSession();
+        LocalSession second = new LocalSession();
+        EditSession oldest = createEdit(1000);
+        EditSession newer = createEdit(1000);
+        EditSession newest = createEdit(1000);
+        first.remember(oldest);
+        second.remember(newer);
+        first.remember(newest);
+
+        manager.track(first, oldest);
+        manager.track(second, newer);
+        manager.track(first, newest);
+        long perEdit = manager.getFootprint(second);
+        assertTrue(perEdit > 0);
+
+        manager.setLimits(perEdit * 2, -1);
+        manager.enforce();
+        assertEquals(perEdit * 2, manager.getFootprint());
+        assertEquals(1, first.getHistorySize());
+        assertEquals(1, second.getHistorySize());
+    }
+
+    @Test
+    public void testSessionLimit() {
+        HistoryMemoryManager manager = new HistoryMemoryManager();
+        LocalSession session = new LocalSession();
+        LocalSession other = new LocalSession();
+        EditSession older = createEdit(1000);
+        EditSession newer = createEdit(1000);
+        EditSession otherEdit = createEdit(1000);
+        session.remember(older);
+        session.remember(newer);
+        other.remember(otherEdit);
+        manager.track(session, older);
+        manager.track(session, newer);
+        manager.track(other, otherEdit);
+
+        manager.setLimits(-1, manager.getFootprint(other));
+        manager.enforce();
+        assertEquals(1, session.getHistorySize());
+        assertEquals(1, other.getHistorySize());
+        assertEquals(manager.getFootprint(other), manager.getFootprint(session));
+    }
+
+    @Test
+    public void testKeepsEntriesThatCannotBeDiscarded() {
+        HistoryMemoryManager manager = new HistoryMemoryManager();
+        LocalSession session = new LocalSession();
+        EditSession editSession = createEdit(1000);
+
+        // Not in the history of the session, so discard() fails
+        manager.track(session, editSession);
+        long used = manager.getFootprint();
+        assertTrue(used > 0);
+
+        manager.setLimits(0, -1);
+        manager.enforce();
+        assertEquals(used, manager.getFootprint());
+    }
+
+}
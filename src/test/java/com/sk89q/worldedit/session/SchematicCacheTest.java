@@ -0,0 +1,120 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.blocks.PackedBlock;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.world.registry.LegacyWorldData;
+
+public class SchematicCacheTest {
+
+    private static final int STONE = PackedBlock.pack(BlockID.STONE, 0);
+    private static final int DIRT = PackedBlock.pack(BlockID.DIRT, 0);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File createSchematic() throws IOException {
+        byte[] blocks = new byte[8];
+        blocks[7] = BlockID.STONE;
+        Map<String, Tag> schematic = new HashMap<String, Tag>();
+        schematic.put("Width", new ShortTag((short) 2));
+        schematic.put("Height", new ShortTag((short) 2));
+        schematic.put("Length", new ShortTag((short) 2));
+        schematic.put("Materials", new StringTag("Alpha"));
+        for (String axis : new String[] { "X", "Y", "Z" }) {
+            schematic.put("WEOrigin" + axis, new IntTag(0));
+            schematic.put("WEOffset" + axis, new IntTag(0));
+        }
+        schematic.put("Blocks", new ByteArrayTag(blocks));
+        schematic.put("Data", new ByteArrayTag(new byte[8]));
+        schematic.put("Entities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+        schematic.put("TileEntities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+
+        File file = folder.newFile("test.schematic");
+        NBTOutputStream out = new NBTOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeNamedTag("Schematic", new CompoundTag(schematic));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testSharing() throws IOException, WorldEditException {
+        File file = createSchematic();
+        SchematicCache cache = new SchematicCache();
+
+        Clipboard first = cache.load(file, ClipboardFormat.SCHEMATIC, LegacyWorldData.getInstance());
+        Clipboard second = cache.load(file, ClipboardFormat.SCHEMATIC, LegacyWorldData.getInstance());
+        assertNotSame(first, second);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        first.setBlockState(1, 1, 1, DIRT);
+        assertEquals(DIRT, first.getBlockState(1, 1, 1));
+        assertEquals(STONE, second.getBlockState(1, 1, 1));
+        Clipboard third = cache.load(file, ClipboardFormat.SCHEMATIC, LegacyWorldData.getInstance());
+        assertEquals(STONE, third.getBlockState(1, 1, 1));
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        File file = createSchematic();
+        SchematicCache cache = new SchematicCache();
+        cache.setLimit(0);
+
+        SharedClipboard clipboard = (SharedClipboard) cache.load(
+            file,
+            ClipboardFormat.SCHEMATIC,
+            LegacyWorldData.getInstance());
+        // Still referenced, so evicting it would not free anything
+        assertEquals(1, cache.size());
+
+        clipboard.close();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.worldedit.world.storage.MissingWorldException;
+
+public class SnapshotCatalogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void createZip(File file, Calendar date, String... entries) throws IOException {
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.write(1);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        // Zip names don't match the date parser, so the modification time is the date
+        assertTrue(file.setLastModified(date.getTimeInMillis()));
+    }
+
+    private static List<String> getNames(List<Snapshot> snapshots) {
+        List<String> names = new ArrayList<String>();
+        for (Snapshot snapshot : snapshots) {
+            names.add(snapshot.getName());
+        }
+        return names;
+    }
+
+    private static Calendar date(int year, int month, int day) {
+        Calendar date = new GregorianCalendar();
+        date.set(year, month, day, 0, 0, 0);
+        date.set(Calendar.MILLISECOND, 0);
+        return date;
+    }
+
+    @Test
+    public void testLookups() throws IOException, MissingWorldException {
+        File dir = folder.newFolder("snapshots");
+        File catalogFile = new File(folder.getRoot(), "snapshots.json");
+        createZip(new File(dir, "backup-10.zip"), date(2020, 1, 10), "world/level.dat", "world/region/r.0.0.mca");
+        createZip(new File(dir, "backup-20.zip"), date(2020, 1, 20), "world/level.dat", "world/region/r.-1.2.mcr");
+        createZip(new File(dir, "backup-15.zip"), date(2020, 1, 15), "other/level.dat", "other/region/r.0.0.mca");
+        createZip(new File(dir, "backup-05.zip"), date(2020, 1, 5), "world/level.dat");
+        File nested = new File(dir, "world");
+        nested.mkdir();
+        createZip(new File(nested, "backup-25.zip"), date(2020, 1, 25), "level.dat");
+
+        SnapshotRepository repo = new SnapshotRepository(dir, catalogFile);
+        assertEquals(
+            Arrays.asList(
+                "world/backup-25.zip",
+                "backup-20.zip",
+                "backup-10.zip",
+                "backup-05.zip"),
+            getNames(repo.getSnapshots(true, "world")));
+        assertEquals(Arrays.asList("backup-15.zip"), getNames(repo.getSnapshots(false, "other")));
+        assertEquals(0, repo.getSnapshots(true, "missing")
+            .size());
+
+        assertEquals(
+            "world/backup-25.zip",
+            repo.getDefaultSnapshot("world")
+                .getName());
+        assertEquals(
+            "backup-10.zip",
+            repo.getSnapshotAfter(date(2020, 1, 6), "world")
+                .getName());
+        assertEquals(
+            "backup-10.zip",
+            repo.getSnapshotAfter(date(2020, 1, 10), "world")
+                .getName());
+        assertNull(repo.getSnapshotAfter(date(2020, 1, 26), "world"));
+        assertEquals(
+            "backup-10.zip",
+            repo.getSnapshotBefore(date(2020, 1, 19), "world")
+                .getName());
+        assertNull(repo.getSnapshotBefore(date(2020, 1, 4), "world"));
+
+        SnapshotCatalog.Entry entry = repo.getCatalog()
+            .getEntryBefore("world", date(2020, 1, 21).getTimeInMillis());
+        assertEquals(SnapshotCatalog.Container.ZIP, entry.getContainer());
+        assertEquals(SnapshotCatalog.Format.MCREGION, entry.getFormat());
+        assertEquals(Arrays.asList("world/region/r.-1.2.mcr"), entry.getRegions());
+        assertEquals(
+            SnapshotCatalog.Format.LEGACY,
+            repo.getCatalog()
+                .getEntryBefore("world", date(2020, 1, 6).getTimeInMillis())
+                .getFormat());
+        assertTrue(catalogFile.isFile());
+    }
+
+    @Test
+    public void testUndatedSnapshots() throws IOException, MissingWorldException {
+        File dir = folder.newFolder("snapshots");
+        createZip(new File(dir, "backup-10.zip"), date(2020, 1, 10), "world/level.dat");
+        createZip(new File(dir, "backup-20.zip"), date(2020, 1, 20), "world/level.dat");
+        createZip(new File(dir, "undated.zip"), date(2020, 1, 15), "world/level.dat");
+
+        SnapshotRepository repo = new SnapshotRepository(dir, null);
+        repo.dateParsers.clear();
+        repo.dateParsers.add(new SnapshotDateParser() {
+
+            @Override
+            public Calendar detectDate(File file) {
+                return file.getName()
+                    .startsWith("undated") ? null : new ModificationTimerParser().detectDate(file);
+            }
+        });
+
+        List<Snapshot> snapshots = repo.getSnapshots(false, "world");
+        assertEquals(Arrays.asList("undated.zip", "backup-10.zip", "backup-20.zip"), getNames(snapshots));
+        assertNull(snapshots.get(0)
+            .getDate());
+        assertEquals(
+            date(2020, 1, 10),
+            snapshots.get(1)
+                .getDate());
+
+        assertNull(repo.getSnapshotBefore(date(2020, 1, 5), "world"));
+        assertNull(repo.getSnapshotAfter(date(2020, 1, 25), "world"));
+        assertEquals(
+            "backup-10.zip",
+            repo.getSnapshotBefore(date(2020, 1, 15), "world")
+                .getName());
+        assertEquals(
+            "backup-20.zip",
+            repo.getSnapshotAfter(date(2020, 1, 15), "world")
+                .getName());
+        assertEquals(
+            "backup-20.zip",
+            repo.getDefaultSnapshot("world")
+                .getName());
+    }
+
+    @Test
+    public void testRefreshByModificationTime() throws IOException, MissingWorldException {
+        File dir = folder.newFolder("snapshots");
+        File catalogFile = new File(folder.getRoot(), "snapshots.json");
+        File zip = new File(dir, "backup-10.zip");
+        createZip(zip, date(2020, 1, 10), "world/level.dat");
+        long lastModified = zip.lastModified();
+
+        assertEquals(
+            1,
+            new SnapshotRepository(dir, catalogFile).getSnapshots(true, "world")
+                .size());
+
+        // Break the archive without changing its size or time, so that it
+        // only shows up if the saved catalog is used
+        RandomAccessFile raf = new RandomAccessFile(zip, "rw");
+        try {
+            raf.write(new byte[(int) raf.length()]);
+        } finally {
+            raf.close();
+        }
+        zip.setLastModified(lastModified);
+
+        SnapshotRepository repo = new SnapshotRepository(dir, catalogFile);
+        assertEquals(
+            1,
+            repo.getSnapshots(true, "world")
+                .size());
+
+        zip.setLastModified(lastModified - 60000);
+        assertEquals(
+            0,
+            repo.getSnapshots(true, "world")
+                .size());
+
+        assertTrue(zip.delete());
+        createZip(new File(dir, "backup-12.zip"), date(2020, 1, 12), "world/level.dat");
+        assertEquals(
+            Arrays.asList("backup-12.zip"),
+            getNames(repo.getSnapshots(true, "world")));
+    }
+
+}
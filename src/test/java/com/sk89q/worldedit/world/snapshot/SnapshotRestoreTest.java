@@ -0,0 +1,284 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.ByteTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.BlockVector;
+import com.sk89q.worldedit.BlockVector2D;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.blocks.BaseBlock;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.function.mask.BoundedHeightMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.chunk.AnvilChunk;
+import com.sk89q.worldedit.world.chunk.Chunk;
+import com.sk89q.worldedit.world.storage.ChunkStore;
+import com.sk89q.worldedit.world.storage.MissingChunkException;
+
+public class SnapshotRestoreTest {
+
+    /**
+     * Returns chunks filled with a block whose ID is one more than the
+     * chunk's X coordinate, and has no chunk at 1,0.
+     */
+    private static class TestChunkStore extends ChunkStore {
+
+        @Override
+        public Chunk getChunk(Vector2D position, World world) throws DataException {
+            if (position.equals(new Vector2D(1, 0))) {
+                throw new MissingChunkException();
+            }
+            final BaseBlock block = new BaseBlock(position.getBlockX() + 1);
+            return new Chunk() {
+
+                @Override
+                public int getBlockID(Vector position) {
+                    return block.getId();
+                }
+
+                @Override
+                public int getBlockData(Vector position) {
+                    return 0;
+                }
+
+                @Override
+                public BaseBlock getBlock(Vector position) {
+                    return block;
+                }
+            };
+        }
+
+        @Override
+        public CompoundTag getChunkTag(Vector2D position, World world) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    }
+
+    private static EditSession createEditSession(final Map<BlockVector, BaseBlock> blocks)
+        throws WorldEditException {
+        EditSession editSession = mock(EditSession.class);
+        when(editSession.getWorld()).thenReturn(NullWorld.getInstance());
+        when(editSession.setBlock(any(Vector.class), any(BaseBlock.class))).thenAnswer(new Answer<Boolean>() {
+
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                blocks.put(
+                    invocation.getArgument(0, Vector.class)
+                        .toBlockVector(),
+                    invocation.getArgument(1, BaseBlock.class));
+                return true;
+            }
+        });
+        return editSession;
+    }
+
+    private static void complete(Operation operation) throws WorldEditException {
+        while (operation != null) {
+            operation = operation.resume(new RunContext() {
+
+                @Override
+                public boolean shouldContinue() {
+                    return false;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testRestore() throws WorldEditException {
+        Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+        EditSession editSession = createEditSession(blocks);
+
+        CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(47, 1, 15));
+        SnapshotRestore restore = new SnapshotRestore(new TestChunkStore(), editSession, region);
+        assertEquals(3, restore.getChunksAffected());
+        assertEquals(region.getArea(), restore.getTotal());
+
+        complete(restore);
+
+        assertEquals(region.getArea(), restore.getCompleted());
+        assertEquals(Collections.<Vector2D>singletonList(new BlockVector2D(1, 0)), restore.getMissingChunks());
+        assertEquals(0, restore.getErrorChunks()
+            .size());
+        assertFalse(restore.hadTotalFailure());
+
+        assertEquals(2 * 16 * 16 * 2, blocks.size());
+        for (Map.Entry<BlockVector, BaseBlock> entry : blocks.entrySet()) {
+            int chunkX = entry.getKey()
+                .getBlockX() >> 4;
+            assertEquals(chunkX + 1, entry.getValue()
+                .getId());
+        }
+
+        List<String> messages = new ArrayList<String>();
+        restore.addStatusMessages(messages);
+        assertEquals("2 chunks restored", messages.get(0));
+    }
+
+    @Test
+    public void testRestorePolygonWithMask() throws WorldEditException {
+        Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+        EditSession editSession = createEditSession(blocks);
+        Mask mask = new BoundedHeightMask(0, 1);
+        when(editSession.getMask()).thenReturn(mask);
+
+        // No block of the triangle is in chunk 1,1
+        Polygonal2DRegion region = new Polygonal2DRegion(
+            (World) null,
+            Arrays.asList(new BlockVector2D(0, 0), new BlockVector2D(31, 0), new BlockVector2D(0, 31)),
+            0,
+            3);
+        SnapshotRestore restore = new SnapshotRestore(new TestChunkStore(), editSession, region);
+        assertEquals(4, restore.getChunksAffected());
+
+        complete(restore);
+
+        Set<BlockVector> expected = new HashSet<BlockVector>();
+        for (BlockVector pos : region) {
+            if (pos.getBlockX() < 16 && mask.test(pos)) {
+                expected.add(pos);
+            }
+        }
+        assertEquals(expected, blocks.keySet());
+        assertEquals(Collections.<Vector2D>singletonList(new BlockVector2D(1, 0)), restore.getMissingChunks());
+        assertFalse(restore.hadTotalFailure());
+    }
+
+    /**
+     * Create a chunk at 0,0 with the given block arrays, one per section
+     * and null for empty sections.
+     */
+    private static AnvilChunk createChunk(byte[]... sections) throws DataException {
+        List<Tag> sectionTags = new ArrayList<Tag>();
+        for (int y = 0; y < sections.length; y++) {
+            if (sections[y] != null) {
+                Map<String, Tag> section = new HashMap<String, Tag>();
+                section.put("Y", new ByteTag((byte) y));
+                section.put("Blocks", new ByteArrayTag(sections[y]));
+                section.put("Data", new ByteArrayTag(new byte[2048]));
+                sectionTags.add(new CompoundTag(section));
+            }
+        }
+
+        Map<String, Tag> level = new HashMap<String, Tag>();
+        level.put("xPos", new IntTag(0));
+        level.put("zPos", new IntTag(0));
+        level.put("Sections", new ListTag(CompoundTag.class, sectionTags));
+        level.put("TileEntities", new ListTag(CompoundTag.class, new ArrayList<Tag>()));
+        return new AnvilChunk(null, new CompoundTag(level));
+    }
+
+    private static byte[] fill(int id) {
+        byte[] blocks = new byte[4096];
+        Arrays.fill(blocks, (byte) id);
+        return blocks;
+    }
+
+    @Test
+    public void testRestoreDifferences() throws WorldEditException, DataException {
+        final AnvilChunk snapshot = createChunk(fill(BlockID.STONE), fill(BlockID.DIRT));
+        final AnvilChunk live = createChunk(fill(BlockID.STONE), fill(BlockID.DIRT), new byte[4096]);
+        live.getSectionBlocks(1)[(17 & 15) << 8 | 4 << 4 | 3] = 0;
+        live.getSectionBlocks(2)[(40 & 15) << 8 | 5 << 4 | 5] = BlockID.STONE;
+
+        World world = mock(World.class);
+        when(world.getMaxY()).thenReturn(255);
+        when(
+            world.copyChunkSection(
+                anyInt(),
+                anyInt(),
+                anyInt(),
+                any(byte[].class),
+                any(byte[].class),
+                any(byte[].class))).thenAnswer(new Answer<Boolean>() {
+
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) {
+                        int section = invocation.getArgument(1, Integer.class);
+                        System.arraycopy(live.getSectionBlocks(section), 0, invocation.getArgument(3), 0, 4096);
+                        System.arraycopy(live.getSectionAdd(section), 0, invocation.getArgument(4), 0, 2048);
+                        System.arraycopy(live.getSectionData(section), 0, invocation.getArgument(5), 0, 2048);
+                        return true;
+                    }
+                });
+
+        Map<BlockVector, BaseBlock> blocks = new HashMap<BlockVector, BaseBlock>();
+        EditSession editSession = createEditSession(blocks);
+        when(editSession.getWorld()).thenReturn(world);
+
+        ChunkStore store = new TestChunkStore() {
+
+            @Override
+            public Chunk getChunk(Vector2D position, World world) {
+                return snapshot;
+            }
+        };
+
+        CuboidRegion region = new CuboidRegion(new Vector(0, 0, 0), new Vector(15, 47, 15));
+        SnapshotRestore restore = new SnapshotRestore(store, editSession, region);
+        restore.setDifferential(true);
+        complete(restore);
+
+        Map<BlockVector, BaseBlock> expected = new HashMap<BlockVector, BaseBlock>();
+        expected.put(new BlockVector(3, 17, 4), new BaseBlock(BlockID.DIRT));
+        expected.put(new BlockVector(5, 40, 5), new BaseBlock(BlockID.AIR));
+        assertEquals(expected, blocks);
+        assertEquals(2, restore.getDifferingBlocks());
+        assertEquals(region.getArea(), restore.getCompleted());
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.Vector;
+import com.sk89q.worldedit.Vector2D;
+import com.sk89q.worldedit.blocks.BlockID;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.chunk.Chunk;
+import com.sk89q.worldedit.world.chunk.OldChunk;
+
+public class FileMcRegionChunkStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Write a region file that holds a chunk with its coordinates in the
+     * Level tag for each of the given chunks, one chunk per sector.
+     */
+    private static void writeRegion(File file, int... chunks) throws IOException {
+        writeRegion(file, new HashMap<String, Tag>(), chunks);
+    }
+
+    /**
+     * Write a region file like {@link #writeRegion(File, int...)}, with
+     * the given tags added to the Level tag of every chunk.
+     */
+    private static void writeRegion(File file, Map<String, Tag> levelTags, int... chunks) throws IOException {
+        ByteArrayOutputStream sectors = new ByteArrayOutputStream();
+        int[] offsets = new int[1024];
+
+        for (int i = 0; i < chunks.length; i += 2) {
+            int x = chunks[i];
+            int z = chunks[i + 1];
+
+            Map<String, Tag> level = new HashMap<String, Tag>(levelTags);
+            level.put("xPos", new IntTag(x));
+            level.put("zPos", new IntTag(z));
+            Map<String, Tag> root = new HashMap<String, Tag>();
+            root.put("Level", new CompoundTag(level));
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            NBTOutputStream nbt = new NBTOutputStream(new DeflaterOutputStream(compressed));
+            nbt.writeNamedTag("", new CompoundTag(root));
+            nbt.close();
+
+            byte[] sector = new byte[4096];
+            byte[] data = compressed.toByteArray();
+            sector[0] = (byte) ((data.length + 1) >>> 24);
+            sector[1] = (byte) ((data.length + 1) >>> 16);
+            sector[2] = (byte) ((data.length + 1) >>> 8);
+            sector[3] = (byte) (data.length + 1);
+            sector[4] = (byte) McRegionReader.VERSION_DEFLATE;
+            System.arraycopy(data, 0, sector, 5, data.length);
+
+            offsets[(x & 31) + (z & 31) * 32] = (2 + sectors.size() / 4096) << 8 | 1;
+            sectors.write(sector);
+        }
+
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.write(new byte[4096]); // Timestamps
+            sectors.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int getX(CompoundTag level) {
+        return ((IntTag) level.getValue()
+            .get("xPos")).getValue();
+    }
+
+    @Test
+    public void testReadChunks() throws IOException, DataException {
+        File region = folder.newFolder("region");
+        writeRegion(new File(region, "r.0.0.mca"), 31, 31, 0, 0, 5, 3);
+        writeRegion(new File(region, "R.1.0.mcr"), 40, 2);
+        writeRegion(new File(region, "r.2.0.txt"), 64, 0);
+
+        FileMcRegionChunkStore store = new FileMcRegionChunkStore(folder.getRoot());
+        try {
+            // Backwards from the order in the file
+            assertEquals(5, getX(store.getChunkTag(new Vector2D(5, 3), NullWorld.getInstance())));
+            assertEquals(0, getX(store.getChunkTag(new Vector2D(0, 0), NullWorld.getInstance())));
+            assertEquals(31, getX(store.getChunkTag(new Vector2D(31, 31), NullWorld.getInstance())));
+            assertEquals(40, getX(store.getChunkTag(new Vector2D(40, 2), NullWorld.getInstance())));
+
+            // The region file stays open
+            McRegionReader first = store.getReader(new Vector2D(1, 1), "world");
+            McRegionReader second = store.getReader(new Vector2D(2, 2), "world");
+            assertSame(first, second);
+            store.releaseReader(first);
+            store.releaseReader(second);
+
+            try {
+                store.getChunkTag(new Vector2D(1, 1), NullWorld.getInstance());
+                fail("Chunk was not generated");
+            } catch (DataException expected) {
+                assertFalse(expected instanceof MissingChunkException);
+            }
+
+            try {
+                store.getChunkTag(new Vector2D(64, 0), NullWorld.getInstance());
+                fail("Region file has the wrong extension");
+            } catch (MissingChunkException expected) {}
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testReadChunkWithoutSections() throws IOException, DataException {
+        // Chunks from before Anvil keep one array for the whole chunk
+        byte[] blocks = new byte[16 * 16 * 128];
+        blocks[5 + (3 * 128 + 2 * 128 * 16)] = BlockID.STONE;
+        Map<String, Tag> levelTags = new HashMap<String, Tag>();
+        levelTags.put("Blocks", new ByteArrayTag(blocks));
+        levelTags.put("Data", new ByteArrayTag(new byte[16 * 16 * 64]));
+        File region = folder.newFolder("region");
+        writeRegion(new File(region, "r.0.0.mcr"), levelTags, 1, 0);
+
+        FileMcRegionChunkStore store = new FileMcRegionChunkStore(folder.getRoot());
+        try {
+            Chunk chunk = store.getChunk(new Vector2D(1, 0), NullWorld.getInstance());
+            assertTrue(chunk instanceof OldChunk);
+            assertEquals(BlockID.STONE, chunk.getBlockID(new Vector(18, 5, 3)));
+            assertEquals(0, chunk.getBlockID(new Vector(18, 6, 3)));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testCacheClosesOldReaders() throws IOException, DataException {
+        File region = folder.newFolder("region");
+        RegionFileCache cache = new RegionFileCache(2);
+        MappedMcRegionReader[] readers = new MappedMcRegionReader[3];
+        for (int i = 0; i < readers.length; i++) {
+            final File file = new File(region, "r." + i + ".0.mca");
+            writeRegion(file, i * 32, 0);
+            readers[i] = (MappedMcRegionReader) cache.acquire(file.getName(), new RegionFileCache.Opener() {
+
+                @Override
+                public McRegionReader open() throws DataException, IOException {
+                    return new MappedMcRegionReader(file);
+                }
+            });
+            if (i > 0) {
+                cache.release(readers[i]);
+            }
+        }
+
+        // The first reader was pushed out, but is open while it is held
+        assertEquals(2, cache.size());
+        assertTrue(readers[0].hasChunk(0, 0));
+        readers[0].getChunkInputStream(new Vector2D(0, 0))
+            .close();
+        cache.release(readers[0]);
+        try {
+            readers[0].getChunkInputStream(new Vector2D(0, 0));
+            fail("Reader was not closed");
+        } catch (IOException expected) {}
+        assertTrue(readers[1].hasChunk(0, 0));
+
+        cache.close();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final File region = folder.newFolder("region");
+        int[] chunks = new int[32 * 2 * 2];
+        for (int i = 0; i < chunks.length; i += 2) {
+            chunks[i] = i / 2 % 32;
+            chunks[i + 1] = i / 64;
+        }
+        writeRegion(new File(region, "r.0.0.mca"), chunks);
+
+        final FileMcRegionChunkStore store = new FileMcRegionChunkStore(folder.getRoot());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < 500; i++) {
+                            int x = (i * 7 + seed) % 32;
+                            int z = (i + seed) % 2;
+                            assertEquals(x, getX(store.getChunkTag(new Vector2D(x, z), NullWorld.getInstance())));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            store.close();
+        }
+    }
+
+}